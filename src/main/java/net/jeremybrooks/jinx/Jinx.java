@@ -18,28 +18,62 @@
 package net.jeremybrooks.jinx;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import net.jeremybrooks.jinx.cache.ResponseCache;
 import net.jeremybrooks.jinx.logger.JinxLogger;
+import net.jeremybrooks.jinx.logger.LogLevel;
+import net.jeremybrooks.jinx.metrics.CallEvent;
+import net.jeremybrooks.jinx.metrics.CallRecorder;
+import net.jeremybrooks.jinx.metrics.JinxMetrics;
+import net.jeremybrooks.jinx.oauth.OAuthSigner;
+import net.jeremybrooks.jinx.ratelimit.RateLimiter;
 import net.jeremybrooks.jinx.response.Response;
+import net.jeremybrooks.jinx.response.photos.upload.UploadXmlParser;
+import net.jeremybrooks.jinx.retry.RetryPolicy;
+import net.jeremybrooks.jinx.transport.JinxTransport;
+import net.jeremybrooks.jinx.transport.MultipartBody;
+import net.jeremybrooks.jinx.transport.PooledHttpTransport;
+import net.jeremybrooks.jinx.transport.RequestBody;
+import net.jeremybrooks.jinx.transport.TransportRequest;
+import net.jeremybrooks.jinx.transport.TransportResponse;
 import org.scribe.builder.ServiceBuilder;
 import org.scribe.builder.api.FlickrApi;
 import org.scribe.model.OAuthRequest;
+import org.scribe.model.Request;
 import org.scribe.model.Token;
 import org.scribe.model.Verb;
 import org.scribe.model.Verifier;
 import org.scribe.oauth.OAuthService;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.net.Authenticator;
 import java.net.InetSocketAddress;
 import java.net.PasswordAuthentication;
 import java.net.Proxy;
 import java.net.URLDecoder;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.StringTokenizer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 import static net.jeremybrooks.jinx.JinxConstants.FLICKR_PHOTO_REPLACE_URL;
 import static net.jeremybrooks.jinx.JinxConstants.FLICKR_PHOTO_UPLOAD_URL;
 import static net.jeremybrooks.jinx.JinxConstants.Method;
+import static net.jeremybrooks.jinx.JinxConstants.REST_ENDPOINT;
 
 /**
  * This class contains the information needed to make calls to Flickr.
@@ -114,6 +148,27 @@ import static net.jeremybrooks.jinx.JinxConstants.Method;
  * <br>
  * <p>If you are trying to troubleshoot photo upload problems and need to see the content of the multipart request that is used
  * for photo uploads, you must set a JinxLogger, enable verbose logging, and enable multipart logging.</p>
+ * <br>
+ * <p>Jinx sends requests using a {@link net.jeremybrooks.jinx.transport.JinxTransport}. The default transport reuses
+ * persistent connections to Flickr, and allows as many concurrent connections to each host as the JDK keeps alive
+ * ({@code http.maxConnections}, default 5). If you need a different limit, change the timeouts, or use a different
+ * HTTP client, set your own transport:
+ * {@code
+ * jinx.setTransport(new PooledHttpTransport(10, 15000, 30000));
+ * }
+ * </p>
+ * <br>
+ * <p>Any API call can be made asynchronously by passing it to {@link #async(JinxCallable)}. The call runs on the
+ * executor set with {@link #setExecutor(Executor)}:
+ * {@code
+ * CompletableFuture<PhotoInfo> info = jinx.async(() -> photosApi.getInfo(photoId, null));
+ * }
+ * Each call is a blocking request that holds an executor thread until the response has been read. With the
+ * default executor, at most {@link #DEFAULT_ASYNC_THREADS} requests are in flight; further calls wait in the
+ * executor queue. This keeps the number of threads fixed, but does not make more requests at once. To have more
+ * requests in flight, set an executor with more threads (or, on Java 21 and later, a virtual thread executor),
+ * and raise the connection limit of the transport to match.
+ * </p>
  * * @author Jeremy Brooks
  */
 public class Jinx {
@@ -130,9 +185,10 @@ public class Jinx {
 
   private OAuthAccessToken oAuthAccessToken;
 
-  private Gson gson;
+  private final Gson gson = GSON;
 
   private OAuthService oAuthService;
+  private OAuthSigner oAuthSigner;
   private Token accessToken;
 
   private boolean flickrErrorThrowsException;
@@ -143,6 +199,46 @@ public class Jinx {
 
   private Proxy proxy;
 
+  private JinxTransport transport;
+
+  private String restEndpoint;
+
+  private String uploadEndpoint;
+
+  private String replaceEndpoint;
+
+  private Executor executor;
+
+  private ResponseCache responseCache;
+
+  private RateLimiter restRateLimiter;
+
+  private RateLimiter uploadRateLimiter;
+
+  private RetryPolicy retryPolicy;
+
+  private boolean coalescing;
+
+  private JinxMetrics metrics;
+
+  private final Map<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+  /**
+   * Default number of threads used to run asynchronous calls. Each call holds a thread for the whole request, so
+   * this is also the most asynchronous requests in flight at once with the default executor.
+   */
+  public static final int DEFAULT_ASYNC_THREADS = 10;
+
+  private static ExecutorService defaultExecutor;
+
+  private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+  /*
+   * Gson is thread safe, and builds an adapter for each response class the first time it sees it.
+   * Sharing one instance means that work is done once per class, not once per class per Jinx instance.
+   */
+  private static final Gson GSON = new Gson();
+
   private Jinx() {
     // Jinx must be created with a key and secret.
   }
@@ -178,15 +274,19 @@ public class Jinx {
     this.flickrErrorThrowsException = true;
     this.setVerboseLogging(false);
     this.setMultipartLogging(false);
-    this.gson = new Gson();
 
     this.oAuthService = new ServiceBuilder().provider(FlickrApi.class).apiKey(apiKey).apiSecret(apiSecret).build();
+    this.oAuthSigner = new OAuthSigner(apiKey, apiSecret);
 
     if (oAuthAccessToken != null) {
       this.accessToken = new Token(oAuthAccessToken.getOauthToken(), oAuthAccessToken.getOauthTokenSecret());
     }
 
     this.proxy = Proxy.NO_PROXY;
+    this.transport = new PooledHttpTransport();
+    this.restEndpoint = REST_ENDPOINT;
+    this.uploadEndpoint = FLICKR_PHOTO_UPLOAD_URL;
+    this.replaceEndpoint = FLICKR_PHOTO_REPLACE_URL;
   }
 
 
@@ -238,6 +338,230 @@ public class Jinx {
     }
   }
 
+  /**
+   * Get the transport used to send requests to Flickr.
+   *
+   * @return the transport.
+   */
+  public JinxTransport getTransport() {
+    return this.transport;
+  }
+
+  /**
+   * Set the transport used to send requests to Flickr.
+   * <br>
+   * By default, Jinx uses a {@link PooledHttpTransport}.
+   *
+   * @param transport the transport to use, or null to use the default transport.
+   */
+  public void setTransport(JinxTransport transport) {
+    this.transport = transport == null ? new PooledHttpTransport() : transport;
+  }
+
+  public String getRestEndpoint() {
+    return this.restEndpoint;
+  }
+
+  public String getUploadEndpoint() {
+    return this.uploadEndpoint;
+  }
+
+  public String getReplaceEndpoint() {
+    return this.replaceEndpoint;
+  }
+
+  /**
+   * Set the URL's that Jinx sends requests to.
+   * <br>
+   * By default, Jinx uses the Flickr endpoints defined in {@link JinxConstants}. This is mostly useful
+   * for pointing Jinx at a local stub server when testing. Requests are signed for the URL they are sent to.
+   *
+   * @param restEndpoint    the REST endpoint, or null to use {@link JinxConstants#REST_ENDPOINT}.
+   * @param uploadEndpoint  the upload endpoint, or null to use {@link JinxConstants#FLICKR_PHOTO_UPLOAD_URL}.
+   * @param replaceEndpoint the replace endpoint, or null to use {@link JinxConstants#FLICKR_PHOTO_REPLACE_URL}.
+   */
+  public void setEndpoints(String restEndpoint, String uploadEndpoint, String replaceEndpoint) {
+    this.restEndpoint = JinxUtils.isNullOrEmpty(restEndpoint) ? REST_ENDPOINT : restEndpoint;
+    this.uploadEndpoint = JinxUtils.isNullOrEmpty(uploadEndpoint) ? FLICKR_PHOTO_UPLOAD_URL : uploadEndpoint;
+    this.replaceEndpoint = JinxUtils.isNullOrEmpty(replaceEndpoint) ? FLICKR_PHOTO_REPLACE_URL : replaceEndpoint;
+  }
+
+  /**
+   * Get the executor used to run asynchronous calls.
+   *
+   * @return the executor.
+   */
+  public Executor getExecutor() {
+    if (this.executor == null) {
+      return getDefaultExecutor();
+    }
+    return this.executor;
+  }
+
+  /**
+   * Set the executor used to run asynchronous calls.
+   * <br>
+   * By default, asynchronous calls run on a shared pool of {@link #DEFAULT_ASYNC_THREADS} daemon threads, one call
+   * per thread. Calls that are submitted while all threads are busy wait in the executor queue.
+   *
+   * @param executor the executor to use, or null to use the default executor.
+   */
+  public void setExecutor(Executor executor) {
+    this.executor = executor;
+  }
+
+  private static synchronized ExecutorService getDefaultExecutor() {
+    if (defaultExecutor == null) {
+      AtomicInteger count = new AtomicInteger();
+      defaultExecutor = Executors.newFixedThreadPool(DEFAULT_ASYNC_THREADS, r -> {
+        Thread t = new Thread(r, "jinx-async-" + count.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+      });
+    }
+    return defaultExecutor;
+  }
+
+  /**
+   * Get the response cache.
+   *
+   * @return the response cache, or null if responses are not cached.
+   */
+  public ResponseCache getResponseCache() {
+    return this.responseCache;
+  }
+
+  /**
+   * Set the cache used for responses to http GET requests.
+   * <br>
+   * By default, responses are not cached. See {@link ResponseCache} for details on what is cached.
+   *
+   * @param responseCache the cache to use, or null to disable caching.
+   */
+  public void setResponseCache(ResponseCache responseCache) {
+    this.responseCache = responseCache;
+  }
+
+  /**
+   * Get the rate limiter used for REST API calls.
+   *
+   * @return the rate limiter, or null if REST API calls are not rate limited.
+   */
+  public RateLimiter getRestRateLimiter() {
+    return this.restRateLimiter;
+  }
+
+  /**
+   * Set the rate limiter used for REST API calls.
+   * <br>
+   * By default, calls are not rate limited. Flickr limits each API key to 3600 calls per hour; if several Jinx
+   * instances use the same key, they should share one rate limiter. Responses served from the
+   * {@link ResponseCache} do not count against the limit.
+   *
+   * @param restRateLimiter the rate limiter, or null to disable rate limiting.
+   */
+  public void setRestRateLimiter(RateLimiter restRateLimiter) {
+    this.restRateLimiter = restRateLimiter;
+  }
+
+  /**
+   * Get the rate limiter used for photo uploads and replacements.
+   *
+   * @return the rate limiter, or null if uploads are not rate limited.
+   */
+  public RateLimiter getUploadRateLimiter() {
+    return this.uploadRateLimiter;
+  }
+
+  /**
+   * Set the rate limiter used for photo uploads and replacements.
+   * <br>
+   * By default, uploads are not rate limited. Uploads use a separate limiter from REST API calls, so a
+   * batch of uploads does not starve other calls.
+   *
+   * @param uploadRateLimiter the rate limiter, or null to disable rate limiting.
+   */
+  public void setUploadRateLimiter(RateLimiter uploadRateLimiter) {
+    this.uploadRateLimiter = uploadRateLimiter;
+  }
+
+  /**
+   * Get the retry policy.
+   *
+   * @return the retry policy, or null if failed calls are not retried.
+   */
+  public RetryPolicy getRetryPolicy() {
+    return this.retryPolicy;
+  }
+
+  /**
+   * Set the policy used to retry failed REST API calls.
+   * <br>
+   * By default, failed calls are not retried. See {@link RetryPolicy} for details on which calls are retried.
+   * Uploads and replacements are never retried.
+   *
+   * @param retryPolicy the retry policy, or null to disable retries.
+   */
+  public void setRetryPolicy(RetryPolicy retryPolicy) {
+    this.retryPolicy = retryPolicy;
+  }
+
+  /**
+   * Check if identical concurrent read requests are coalesced.
+   *
+   * @return true if identical concurrent read requests share a single call to Flickr.
+   */
+  public boolean isCoalescing() {
+    return this.coalescing;
+  }
+
+  /**
+   * Coalesce identical concurrent read requests.
+   * <br>
+   * When this is true and a GET request is made while an identical request (same parameters, same response class,
+   * and same user if signed) is already waiting for Flickr, the second caller waits for the first call to finish and
+   * receives the same response object, or the same exception. Write methods are never coalesced.
+   * <br>
+   * The default is false.
+   *
+   * @param coalescing true to coalesce identical concurrent read requests.
+   */
+  public void setCoalescing(boolean coalescing) {
+    this.coalescing = coalescing;
+  }
+
+  /**
+   * Get the Gson instance used to parse responses.
+   * <br>
+   * The instance is shared by all Jinx instances, and is thread safe.
+   *
+   * @return the Gson instance.
+   */
+  public Gson getGson() {
+    return this.gson;
+  }
+
+  /**
+   * Get the metrics that calls are reported to.
+   *
+   * @return the metrics, or null if calls are not measured.
+   */
+  public JinxMetrics getMetrics() {
+    return this.metrics;
+  }
+
+  /**
+   * Set the metrics that calls are reported to.
+   * <br>
+   * Each REST API call, upload and replace is reported with its duration, byte counts, status and retries.
+   * See {@link JinxMetrics} for details. The default is null, which means calls are not measured.
+   *
+   * @param metrics the metrics, or null to stop measuring calls.
+   */
+  public void setMetrics(JinxMetrics metrics) {
+    this.metrics = metrics;
+  }
+
   /**
    * OAuth workflow, step one: Get a request token.
    * <br>
@@ -510,6 +834,98 @@ public class Jinx {
   }
 
 
+  /**
+   * Run a call to Flickr asynchronously.
+   * <br>
+   * The call runs on the executor returned by {@link #getExecutor()}, and holds one of its threads until the
+   * response has been read. If every thread is busy, the call waits in the executor queue. If the call throws a
+   * JinxException, the returned future completes exceptionally with that exception.
+   * <br>
+   * Any method in the net.jeremybrooks.jinx.api package can be called this way:
+   * {@code
+   * CompletableFuture<Photos> page = jinx.async(() -> peopleApi.getPhotos(userId, ...));
+   * }
+   *
+   * @param call the call to make.
+   * @param <T>  type of the result.
+   * @return a future that completes with the result of the call.
+   */
+  public <T> CompletableFuture<T> async(JinxCallable<T> call) {
+    CompletableFuture<T> future = new CompletableFuture<>();
+    try {
+      getExecutor().execute(() -> {
+        try {
+          future.complete(call.call());
+        } catch (Throwable t) {
+          future.completeExceptionally(t);
+        }
+      });
+    } catch (RuntimeException e) {
+      // executor rejected the call
+      future.completeExceptionally(new JinxException("Unable to run asynchronous call.", e));
+    }
+    return future;
+  }
+
+  /**
+   * Asynchronous version of {@link #flickrGet(Map, Class)}.
+   * <p>
+   * Do not call this method directly. The classes in the net.jeremybrooks.jinx.api package will call this.
+   *
+   * @param params request parameters.
+   * @param tClass the class that will be returned.
+   * @param <T>    type of the class returned.
+   * @return a future that completes with an instance of the specified class containing data from Flickr.
+   */
+  public <T> CompletableFuture<T> flickrGetAsync(Map<String, String> params, Class<T> tClass) {
+    return async(() -> flickrGet(params, tClass));
+  }
+
+  /**
+   * Asynchronous version of {@link #flickrGet(Map, Class, boolean)}.
+   * <p>
+   * Do not call this method directly. The classes in the net.jeremybrooks.jinx.api package will call this.
+   *
+   * @param params request parameters.
+   * @param tClass the class that will be returned.
+   * @param <T>    type of the class returned.
+   * @param sign   if true the request will be signed.
+   * @return a future that completes with an instance of the specified class containing data from Flickr.
+   */
+  public <T> CompletableFuture<T> flickrGetAsync(Map<String, String> params, Class<T> tClass, boolean sign) {
+    return async(() -> flickrGet(params, tClass, sign));
+  }
+
+  /**
+   * Asynchronous version of {@link #flickrPost(Map, Class)}.
+   * <p>
+   * Do not call this method directly. The classes in the net.jeremybrooks.jinx.api package will call this.
+   *
+   * @param params request parameters.
+   * @param tClass the class that will be returned.
+   * @param <T>    type of the class returned.
+   * @return a future that completes with an instance of the specified class containing data from Flickr.
+   */
+  public <T> CompletableFuture<T> flickrPostAsync(Map<String, String> params, Class<T> tClass) {
+    return async(() -> flickrPost(params, tClass));
+  }
+
+  /**
+   * Asynchronous version of {@link #flickrPost(Map, Class, boolean)}.
+   * <p>
+   * Do not call this method directly. The classes in the net.jeremybrooks.jinx.api package will call this.
+   *
+   * @param params request parameters.
+   * @param tClass the class that will be returned.
+   * @param <T>    type of the class returned.
+   * @param sign   if true the request will be signed.
+   * @return a future that completes with an instance of the specified class containing data from Flickr.
+   */
+  public <T> CompletableFuture<T> flickrPostAsync(Map<String, String> params, Class<T> tClass, boolean sign) {
+    return async(() -> flickrPost(params, tClass, sign));
+  }
+
+
   /**
    * Do the actual GET or POST request.
    * <br>
@@ -531,44 +947,161 @@ public class Jinx {
     params.put("nojsoncallback", "1");
     params.put("api_key", getApiKey());
 
-    org.scribe.model.Response flickrResponse;
-
-    if (method == Method.GET) {
-      OAuthRequest request = new OAuthRequest(Verb.GET, JinxConstants.REST_ENDPOINT);
-      for (String key : params.keySet()) {
-        request.addQuerystringParameter(key, params.get(key));
+    String cacheKey = null;
+    if (method == Method.GET && this.responseCache != null && this.responseCache.isCacheable(params.get("method"))) {
+      cacheKey = ResponseCache.buildKey(params, tClass, sign ? this.accessToken.getToken() : null);
+      T cached = this.responseCache.get(cacheKey, tClass);
+      if (cached != null) {
         if (verboseLogging) {
-          JinxLogger.getLogger().log(String.format("Added query parameter %s=%s", key, params.get(key)));
+          JinxLogger.log(LogLevel.DEBUG, "Using cached response for {}", params.get("method"));
+        }
+        return cached;
+      }
+    }
+
+    String flickrMethod = params.get("method");
+    if (!this.coalescing || method != Method.GET || JinxUtils.isWriteMethod(flickrMethod)) {
+      return callWithRetry(params, method, tClass, sign, cacheKey);
+    }
+
+    // single flight: if an identical request is already running, wait for its result
+    String flightKey = cacheKey == null ? ResponseCache.buildKey(params, tClass, sign ? this.accessToken.getToken() : null) : cacheKey;
+    CompletableFuture<Object> flight = new CompletableFuture<>();
+    CompletableFuture<Object> existing = this.inFlight.putIfAbsent(flightKey, flight);
+    if (existing != null) {
+      if (verboseLogging) {
+        JinxLogger.log(LogLevel.DEBUG, "Waiting for identical request to {}", flickrMethod);
+      }
+      try {
+        return tClass.cast(existing.join());
+      } catch (CompletionException e) {
+        if (e.getCause() instanceof JinxException) {
+          throw (JinxException) e.getCause();
+        }
+        throw new JinxException("Error communicating with Flickr.", e.getCause());
+      }
+    }
+    try {
+      T result = callWithRetry(params, method, tClass, sign, cacheKey);
+      flight.complete(result);
+      return result;
+    } catch (JinxException | RuntimeException e) {
+      flight.completeExceptionally(e);
+      throw e;
+    } finally {
+      this.inFlight.remove(flightKey, flight);
+    }
+  }
+
+  /*
+   * Make a REST API call, retrying according to the retry policy, and cache the result.
+   */
+  private <T> T callWithRetry(Map<String, String> params, Method method, Class<T> tClass, boolean sign, String cacheKey) throws JinxException {
+    String flickrMethod = params.get("method");
+    if (this.retryPolicy != null) {
+      this.retryPolicy.onRequest();
+    }
+    CallRecorder recorder = new CallRecorder(this.metrics, flickrMethod, method);
+    T fromJson;
+    try {
+      int attempt = 0;
+      while (true) {
+        attempt++;
+        JinxException failure;
+        try {
+          fromJson = sendAndParse(params, method, tClass, sign, recorder);
+          Response r = (Response) fromJson;
+          if (r.getCode() == 0 || this.retryPolicy == null || !this.retryPolicy.isRetryableCode(r.getCode())) {
+            break;
+          }
+          // Flickr returned a retryable error code, and flickrErrorThrowsException is false
+          failure = new JinxException("Flickr returned non-zero status.", null, r);
+          if (!this.retryPolicy.shouldRetry(flickrMethod, method, attempt, failure)) {
+            break;
+          }
+        } catch (JinxException e) {
+          if (this.retryPolicy == null || !this.retryPolicy.shouldRetry(flickrMethod, method, attempt, e)) {
+            throw e;
+          }
+          failure = e;
         }
+        recorder.onRetry(failure);
+        pause(flickrMethod, attempt, failure);
+      }
+    } catch (JinxException e) {
+      recorder.fail(e);
+      throw e;
+    } catch (RuntimeException e) {
+      recorder.fail(new JinxException("Error calling " + flickrMethod + ".", e));
+      throw e;
+    }
+    recorder.complete((Response) fromJson);
+
+    if (cacheKey != null && ((Response) fromJson).getCode() == 0) {
+      this.responseCache.put(flickrMethod, cacheKey, fromJson);
+    }
+    return fromJson;
+  }
+
+  /*
+   * Make a single attempt at a REST API call: build and sign the request, send it, and parse the response.
+   */
+  private <T> T sendAndParse(Map<String, String> params, Method method, Class<T> tClass, boolean sign, CallRecorder recorder) throws JinxException {
+    acquire(this.restRateLimiter);
+
+    OAuthRequest request;
+    RequestBody body = null;
+
+    if (method == Method.GET) {
+      request = new OAuthRequest(Verb.GET, this.restEndpoint);
+      for (Map.Entry<String, String> entry : params.entrySet()) {
+        request.addQuerystringParameter(entry.getKey(), entry.getValue());
       }
       if (sign) {
-        this.oAuthService.signRequest(this.accessToken, request);
+        sign(request, Method.GET, params);
       }
-      flickrResponse = request.send();
     } else if (method == Method.POST) {
-      OAuthRequest request = new OAuthRequest(Verb.POST, JinxConstants.REST_ENDPOINT);
-      for (String key : params.keySet()) {
-        request.addBodyParameter(key, params.get(key));
-        if (verboseLogging) {
-          JinxLogger.getLogger().log(String.format("Added body parameter %s=%s", key, params.get(key)));
-        }
+      request = new OAuthRequest(Verb.POST, this.restEndpoint);
+      request.addHeader("Content-Type", Request.DEFAULT_CONTENT_TYPE);
+      for (Map.Entry<String, String> entry : params.entrySet()) {
+        request.addBodyParameter(entry.getKey(), entry.getValue());
       }
       if (sign) {
-        this.oAuthService.signRequest(this.accessToken, request);
+        sign(request, Method.POST, params);
       }
-      flickrResponse = request.send();
+      body = RequestBody.of(request.getBodyContents().getBytes(UTF_8));
     } else {
       throw new JinxException("Unsupported method: " + method.toString());
     }
-
-    if (flickrResponse == null || flickrResponse.getBody() == null) {
-      throw new JinxException("Null return from call to Flickr.");
-    }
     if (verboseLogging) {
-      JinxLogger.getLogger().log("RESPONSE is " + flickrResponse.getBody());
+      JinxLogger.event(LogLevel.DEBUG, "Calling Flickr", "httpMethod", method, "params", params);
     }
 
-    T fromJson = gson.fromJson(flickrResponse.getBody(), tClass);
+    T fromJson;
+    try (TransportResponse response = send(request, body, this.restRateLimiter, recorder)) {
+      InputStream in = recorder.count(response.getBody());
+      if (in == null) {
+        throw new JinxException("Null return from call to Flickr.", new EOFException("Empty response."));
+      }
+      if (verboseLogging && JinxLogger.isEnabled(LogLevel.DEBUG)) {
+        // the response must be buffered so that it can be logged
+        String json = readBody(in);
+        JinxLogger.log(LogLevel.DEBUG, "RESPONSE is {}", JinxLogger.truncate(json));
+        fromJson = gson.fromJson(json, tClass);
+      } else {
+        // parse directly from the stream, without buffering the response
+        JsonReader reader = new JsonReader(new InputStreamReader(in, UTF_8));
+        fromJson = gson.fromJson(reader, tClass);
+      }
+    } catch (IOException e) {
+      throw new JinxException("Error communicating with Flickr.", e);
+    } catch (JsonParseException e) {
+      throw new JinxException("Unable to parse response from Flickr.", e);
+    }
+    if (fromJson == null) {
+      throw new JinxException("Null return from call to Flickr.", new EOFException("Empty response."));
+    }
+    checkThrottled(this.restRateLimiter, (Response) fromJson);
 
     if (this.flickrErrorThrowsException && ((Response) fromJson).getCode() != 0) {
       Response r = (Response) fromJson;
@@ -577,6 +1110,22 @@ public class Jinx {
     return fromJson;
   }
 
+  /*
+   * Wait before retrying a call.
+   */
+  private void pause(String flickrMethod, int attempt, JinxException failure) throws JinxException {
+    long delay = this.retryPolicy.getDelayMillis(attempt);
+    if (verboseLogging) {
+      JinxLogger.log(LogLevel.INFO, "Retrying {} in {}ms after attempt {} failed: {}", flickrMethod, delay, attempt, failure.getMessage());
+    }
+    try {
+      Thread.sleep(delay);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new JinxException("Interrupted while waiting to retry.", e);
+    }
+  }
+
 
   /**
    * Upload a photo or video to Flickr.
@@ -591,11 +1140,27 @@ public class Jinx {
    * @throws JinxException if there are any errors.
    */
   public <T> T flickrUpload(Map<String, String> params, byte[] photoData, Class<T> tClass) throws JinxException {
+    return flickrUpload(params, RequestBody.of(photoData), tClass);
+  }
+
+  /**
+   * Upload a photo or video to Flickr, streaming the content from the request body.
+   * <br>
+   * Do not call this directly. Use the {@link net.jeremybrooks.jinx.api.PhotosUploadApi} class.
+   *
+   * @param params    request parameters.
+   * @param photoData photo or video content to upload.
+   * @param tClass    the class that will be returned.
+   * @param <T>       type of the class returned.
+   * @return an instance of the specified class containing data from Flickr.
+   * @throws JinxException if there are any errors.
+   */
+  public <T> T flickrUpload(Map<String, String> params, RequestBody photoData, Class<T> tClass) throws JinxException {
     if (this.oAuthAccessToken == null) {
       throw new JinxException("Jinx has not been configured with an OAuth Access Token.");
     }
     params.put("api_key", getApiKey());
-    return uploadOrReplace(params, photoData, tClass, new OAuthRequest(Verb.POST, FLICKR_PHOTO_UPLOAD_URL));
+    return uploadOrReplace(params, photoData, tClass, new OAuthRequest(Verb.POST, this.uploadEndpoint));
   }
 
   /**
@@ -611,11 +1176,27 @@ public class Jinx {
    * @throws JinxException if there are any errors.
    */
   public <T> T flickrReplace(Map<String, String> params, byte[] photoData, Class<T> tClass) throws JinxException {
+    return flickrReplace(params, RequestBody.of(photoData), tClass);
+  }
+
+  /**
+   * Replace a photo or video on Flickr, streaming the content from the request body.
+   * <br>
+   * Do not call this directly. Use the {@link net.jeremybrooks.jinx.api.PhotosUploadApi} class.
+   *
+   * @param params    request parameters.
+   * @param photoData photo or video content to replace existing data.
+   * @param tClass    the class that will be returned.
+   * @param <T>       type of the class returned.
+   * @return an instance of the specified class containing data from Flickr.
+   * @throws JinxException if there are any errors.
+   */
+  public <T> T flickrReplace(Map<String, String> params, RequestBody photoData, Class<T> tClass) throws JinxException {
     if (this.oAuthAccessToken == null) {
       throw new JinxException("Jinx has not been configured with an OAuth Access Token.");
     }
     params.put("api_key", getApiKey());
-    return uploadOrReplace(params, photoData, tClass, new OAuthRequest(Verb.POST, FLICKR_PHOTO_REPLACE_URL));
+    return uploadOrReplace(params, photoData, tClass, new OAuthRequest(Verb.POST, this.replaceEndpoint));
   }
 
 
@@ -635,34 +1216,92 @@ public class Jinx {
    * @throws JinxException if there are any errors.
    */
   protected <T> T uploadOrReplace(Map<String, String> params, byte[] photoData, Class<T> tClass, OAuthRequest request) throws JinxException {
+    return uploadOrReplace(params, RequestBody.of(photoData), tClass, request);
+  }
+
+  /**
+   * Handle Flickr upload and replace API calls.
+   * <br>
+   * The multipart body is streamed to Flickr; only the form fields are held in memory.
+   *
+   * @param params    request parameters.
+   * @param photoData the content to send to Flickr.
+   * @param tClass    the class that will be returned.
+   * @param <T>       type of the class returned.
+   * @param request   the OAuthRequest object to use.
+   * @return an instance of the specified class containing data from Flickr.
+   * @throws JinxException if there are any errors.
+   */
+  protected <T> T uploadOrReplace(Map<String, String> params, RequestBody photoData, Class<T> tClass, OAuthRequest request) throws JinxException {
+    CallRecorder recorder = new CallRecorder(this.metrics,
+        request.getUrl().equals(this.replaceEndpoint) ? CallEvent.REPLACE : CallEvent.UPLOAD, Method.POST);
+    try {
+      T result = doUploadOrReplace(params, photoData, tClass, request, recorder);
+      recorder.complete((Response) result);
+      return result;
+    } catch (JinxException e) {
+      recorder.fail(e);
+      throw e;
+    } catch (RuntimeException e) {
+      recorder.fail(new JinxException("Error sending photo to Flickr.", e));
+      throw e;
+    }
+  }
+
+  /*
+   * Sign and send an upload or replace request, and parse the response.
+   */
+  private <T> T doUploadOrReplace(Map<String, String> params, RequestBody photoData, Class<T> tClass, OAuthRequest request,
+                                  CallRecorder recorder) throws JinxException {
+    acquire(this.uploadRateLimiter);
     String boundary = JinxUtils.generateBoundary();
     request.addHeader("Content-Type", "multipart/form-data; boundary=" + boundary);
+    Map<String, String> signed = new LinkedHashMap<>();
     for (Map.Entry<String, String> entry : params.entrySet()) {
       String key = entry.getKey();
       if (!key.equals("photo") && !key.equals("filename") && !key.equals("filemimetype")) {
-        request.addQuerystringParameter(key, String.valueOf(entry.getValue()));
+        String value = String.valueOf(entry.getValue());
+        request.addQuerystringParameter(key, value);
+        signed.put(key, value);
       }
     }
 
-    this.oAuthService.signRequest(this.accessToken, request);
+    sign(request, Method.POST, signed);
 
     // add all parameters to payload
     params.putAll(request.getOauthParameters());
-    request.addPayload(buildMultipartBody(params, photoData, boundary));
-
-    org.scribe.model.Response flickrResponse = request.send();
-
-    if (flickrResponse == null || flickrResponse.getBody() == null) {
-      throw new JinxException("Null return from call to Flickr.");
+    T fromJson;
+    try (TransportResponse response = send(request, buildMultipartBody(params, photoData, boundary), this.uploadRateLimiter, recorder)) {
+      InputStream in = recorder.count(response.getBody());
+      if (in == null) {
+        throw new JinxException("Null return from call to Flickr.");
+      }
+      String body = null;
+      if (verboseLogging && JinxLogger.isEnabled(LogLevel.DEBUG)) {
+        // the response must be buffered so that it can be logged
+        body = readBody(in);
+        JinxLogger.log(LogLevel.DEBUG, "RESPONSE is {}", JinxLogger.truncate(body));
+        in = new ByteArrayInputStream(body.getBytes(UTF_8));
+      }
+      if (UploadXmlParser.supports(tClass)) {
+        // map the XML directly, without converting it to JSON
+        fromJson = UploadXmlParser.parse(in, tClass);
+      } else {
+        // upload returns XML, so convert to json
+        if (body == null) {
+          body = readBody(in);
+        }
+        fromJson = gson.fromJson(JinxUtils.xml2json(body), tClass);
+      }
+    } catch (IOException e) {
+      throw new JinxException("Error communicating with Flickr.", e);
+    } catch (JsonParseException e) {
+      throw new JinxException("Unable to parse response from Flickr.", e);
     }
-    if (verboseLogging) {
-      JinxLogger.getLogger().log("RESPONSE is " + flickrResponse.getBody());
+    if (fromJson == null) {
+      throw new JinxException("Null return from call to Flickr.");
     }
-
-    // upload returns XML, so convert to json
-    String json = JinxUtils.xml2json(flickrResponse.getBody());
-
-    T fromJson = gson.fromJson(json, tClass);
+    checkThrottled(this.uploadRateLimiter, (Response) fromJson);
 
     if (this.flickrErrorThrowsException && ((Response) fromJson).getCode() != 0) {
       Response r = (Response) fromJson;
@@ -672,44 +1311,119 @@ public class Jinx {
   }
 
   /*
-   * Build a multipart body request.
+   * Send a signed request using the transport.
+   * The caller must close the response.
    */
-  private byte[] buildMultipartBody(Map<String, String> params, byte[] photoData, String boundary) throws JinxException {
-
-    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+  private TransportResponse send(OAuthRequest request, RequestBody body, RateLimiter rateLimiter, CallRecorder recorder) throws JinxException {
+    Method method = request.getVerb() == Verb.POST ? Method.POST : Method.GET;
+    TransportRequest transportRequest = new TransportRequest(method, request.getCompleteUrl(), request.getHeaders(), body);
+    TransportResponse response;
+    recorder.onSend(body == null ? -1 : body.getContentLength());
     try {
-      String filename = params.get("filename");
-      if (JinxUtils.isNullOrEmpty(filename)) {
-        filename = "image.jpg";
+      response = this.transport.execute(transportRequest);
+    } catch (IOException e) {
+      throw new JinxException("Error communicating with Flickr.", e);
+    }
+    int status = response.getCode();
+    recorder.onResponse(status);
+    if (status == HTTP_TOO_MANY_REQUESTS || status >= 500) {
+      if (status == HTTP_TOO_MANY_REQUESTS && rateLimiter != null) {
+        rateLimiter.onThrottled();
       }
-      String fileMimeType = params.get("filemimetype");
-      if (JinxUtils.isNullOrEmpty(fileMimeType)) {
-        fileMimeType = "image/jpeg";
+      try {
+        response.close();
+      } catch (IOException e) {
+        // ignore
       }
+      JinxException je = new JinxException(status == HTTP_TOO_MANY_REQUESTS ?
+          "Flickr is throttling requests (HTTP 429)." : "Flickr returned HTTP status " + status + ".");
+      je.setHttpStatus(status);
+      throw je;
+    }
+    return response;
+  }
 
-      buffer.write(("--" + boundary + "\r\n").getBytes(JinxConstants.UTF8));
-      for (Map.Entry<String, String> entry : params.entrySet()) {
-        String key = entry.getKey();
-        if (!key.equals("filename") && !key.equals("filemimetype")) {
+  /*
+   * Sign a request, adding the OAuth parameters and the Authorization header.
+   * params must hold every query string and form parameter of the request.
+   */
+  private void sign(OAuthRequest request, Method method, Map<String, String> params) {
+    Token token = this.accessToken;
+    Map<String, String> oauth = this.oAuthSigner.sign(method, request.getUrl(), params,
+        token == null ? null : token.getToken(), token == null ? null : token.getSecret());
+    for (Map.Entry<String, String> entry : oauth.entrySet()) {
+      request.addOAuthParameter(entry.getKey(), entry.getValue());
+    }
+    request.addHeader("Authorization", OAuthSigner.toHeader(oauth));
+  }
 
-          buffer.write(("Content-Disposition: form-data; name=\"" + key + "\"\r\n\r\n").getBytes(JinxConstants.UTF8));
-          buffer.write((entry.getValue()).getBytes(JinxConstants.UTF8));
-          buffer.write(("\r\n" + "--" + boundary + "\r\n").getBytes(JinxConstants.UTF8));
-        }
+  /*
+   * Wait for the rate limiter, if there is one.
+   * This is done before the request is signed, so that the OAuth timestamp is current when the request is sent.
+   */
+  private void acquire(RateLimiter rateLimiter) throws JinxException {
+    if (rateLimiter != null) {
+      try {
+        rateLimiter.acquire();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new JinxException("Interrupted while waiting for the rate limiter.", e);
+      }
+    }
+  }
+
+  /*
+   * Let the rate limiter know if Flickr is throttling requests.
+   */
+  private void checkThrottled(RateLimiter rateLimiter, Response response) {
+    if (rateLimiter != null && response != null) {
+      if (rateLimiter.isThrottleCode(response.getCode())) {
+        rateLimiter.onThrottled();
+      } else {
+        rateLimiter.onSuccess();
       }
-      buffer.write(("Content-Disposition: form-data; name=\"photo\"; filename=\"" + filename + "\";\r\n").getBytes(JinxConstants.UTF8));
-      buffer.write(("Content-Type: " + fileMimeType + "\r\n\r\n").getBytes(JinxConstants.UTF8));
-      buffer.write(photoData);
-      buffer.write(("\r\n" + "--" + boundary + "--\r\n").getBytes(JinxConstants.UTF8));   // NOTE: last boundary has -- suffix
+    }
+  }
 
-    } catch (Exception e) {
-      throw new JinxException("Unable to build multipart body.", e);
+  /*
+   * Read a response body into a String.
+   */
+  private String readBody(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[8192];
+    int count;
+    while ((count = in.read(buffer)) != -1) {
+      out.write(buffer, 0, count);
+    }
+    return new String(out.toByteArray(), UTF_8);
+  }
+
+  /*
+   * Build a multipart body request.
+   */
+  private RequestBody buildMultipartBody(Map<String, String> params, RequestBody photoData, String boundary) {
+    String filename = params.get("filename");
+    if (JinxUtils.isNullOrEmpty(filename)) {
+      filename = "image.jpg";
+    }
+    String fileMimeType = params.get("filemimetype");
+    if (JinxUtils.isNullOrEmpty(fileMimeType)) {
+      fileMimeType = "image/jpeg";
+    }
+    Map<String, String> fields = new LinkedHashMap<>();
+    for (Map.Entry<String, String> entry : params.entrySet()) {
+      String key = entry.getKey();
+      if (!key.equals("filename") && !key.equals("filemimetype")) {
+        fields.put(key, entry.getValue());
+      }
     }
+    MultipartBody body = new MultipartBody(boundary, fields, "photo", filename, fileMimeType, photoData);
 
     if (this.isVerboseLogging() && this.isMultipartLogging()) {
-      JinxLogger.getLogger().log("Multipart body: " + buffer.toString());
+      JinxLogger.event(LogLevel.DEBUG, "Multipart body", "fields", fields, "filename", filename,
+          "mimeType", fileMimeType, "bytes", photoData.getContentLength());
     }
 
-    return buffer.toByteArray();
+    return body;
   }
 }
@@ -0,0 +1,42 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx;
+
+/**
+ * A call to Flickr that returns a result.
+ * <br>
+ * This allows any method in the net.jeremybrooks.jinx.api package to be run asynchronously by passing it to
+ * {@link Jinx#async(JinxCallable)}:
+ * {@code
+ * CompletableFuture<PhotoInfo> future = jinx.async(() -> photosApi.getInfo(photoId, null));
+ * }
+ *
+ * @param <T> type of the result.
+ * @author Jeremy Brooks
+ */
+@FunctionalInterface
+public interface JinxCallable<T> {
+
+  /**
+   * Make the call.
+   *
+   * @return the result of the call.
+   * @throws JinxException if there are any errors.
+   */
+  T call() throws JinxException;
+}
@@ -30,6 +30,7 @@ public class JinxException extends java.lang.Exception {
 
   private int flickrErrorCode;
   private String flickrErrorMessage;
+  private int httpStatus;
 
   /**
    * Constructs an instance of {@code JinxException} with the specified detail message.
@@ -78,4 +79,17 @@ public class JinxException extends java.lang.Exception {
   public void setFlickrErrorMessage(String flickrErrorMessage) {
     this.flickrErrorMessage = flickrErrorMessage;
   }
+
+  /**
+   * Get the HTTP status code, if the error was caused by an unexpected HTTP status.
+   *
+   * @return the HTTP status code, or zero if the error was not caused by the HTTP status.
+   */
+  public int getHttpStatus() {
+    return httpStatus;
+  }
+
+  public void setHttpStatus(int httpStatus) {
+    this.httpStatus = httpStatus;
+  }
 }
@@ -18,6 +18,7 @@
 package net.jeremybrooks.jinx;
 
 import javax.xml.transform.Source;
+import javax.xml.transform.Templates;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.stream.StreamResult;
@@ -29,7 +30,15 @@ import java.io.OutputStream;
 import java.io.Reader;
 import java.io.Writer;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.text.ParsePosition;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.ResolverStyle;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
@@ -48,16 +57,27 @@ import java.util.Random;
  */
 public class JinxUtils {
 
-    static {
-        formatter = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-        ymdFormatter = new SimpleDateFormat("yyyy-MM-dd");
-
-    }
+    /*
+     * Lenient, like the SimpleDateFormat these replaced: fields may have fewer digits ("2018-1-5"), and out of
+     * range fields roll over, so the zero dates that Flickr sends ("0000-00-00 00:00:00") still parse. Formatting
+     * still pads to two digits. Dates before the Gregorian cutover in 1582 are proleptic Gregorian, where
+     * SimpleDateFormat used the Julian calendar.
+     */
+    private static final DateTimeFormatter MYSQL_FORMATTER = lenientFormatter("uuuu-MM-dd HH:mm:ss");
+    private static final DateTimeFormatter YMD_FORMATTER = lenientFormatter("uuuu-MM-dd");
 
+    private static volatile Templates xml2jsonTemplates;
 
-    private static SimpleDateFormat formatter;
-    private static SimpleDateFormat ymdFormatter;
-    private static TransformerFactory transformerFactory;
+    /*
+     * Build a formatter that parses fields of any width and rolls out of range values over.
+     */
+    private static DateTimeFormatter lenientFormatter(String pattern) {
+        return new DateTimeFormatterBuilder()
+                .parseLenient()
+                .appendPattern(pattern)
+                .toFormatter()
+                .withResolverStyle(ResolverStyle.LENIENT);
+    }
 
 
     /**
@@ -71,7 +91,24 @@ public class JinxUtils {
     public static String formatDateAsMySqlTimestamp(Date date) {
         String retString = "";
         if (date != null) {
-            retString = JinxUtils.formatter.format(date);
+            retString = formatMySqlTimestamp(LocalDateTime.ofInstant(date.toInstant(), ZoneId.systemDefault()));
+        }
+        return retString;
+    }
+
+
+    /**
+     * Format a date and time in MySQL format.
+     * <br>
+     * If the date is null, this method will return an empty string.
+     *
+     * @param dateTime the date and time to format.
+     * @return formatted date.
+     */
+    public static String formatMySqlTimestamp(LocalDateTime dateTime) {
+        String retString = "";
+        if (dateTime != null) {
+            retString = MYSQL_FORMATTER.format(dateTime);
         }
         return retString;
     }
@@ -87,13 +124,31 @@ public class JinxUtils {
      * format.
      */
     public static Date parseMySqlDatetimeToDate(String datetime) {
-        Date date = null;
+        return toDate(parseMySqlDatetime(datetime));
+    }
+
+
+    /**
+     * Convert a MySql datetime to a LocalDateTime.
+     * <br>
+     * The MySql datetime should look something like this: 2004-11-29 16:01:26
+     * <br>
+     * Fields that are out of range roll over, so 2004-11-31 is December 1, and the zero date
+     * 0000-00-00 00:00:00 is November 30, 2 BC.
+     *
+     * @param datetime the datetime to convert.
+     * @return date and time represented by the datetime, or null if it is not a valid
+     * format.
+     */
+    public static LocalDateTime parseMySqlDatetime(String datetime) {
+        LocalDateTime dateTime = null;
         try {
-            date = JinxUtils.formatter.parse(datetime);
+            // like SimpleDateFormat, ignore anything after the time
+            dateTime = LocalDateTime.from(MYSQL_FORMATTER.parse(datetime, new ParsePosition(0)));
         } catch (Exception e) {
             // will return null
         }
-        return date;
+        return dateTime;
     }
 
 
@@ -108,7 +163,24 @@ public class JinxUtils {
     public static String formatDateAsYMD(Date date) {
         String retString = "";
         if (date != null) {
-            retString = JinxUtils.ymdFormatter.format(date);
+            retString = formatYMD(LocalDate.ofInstant(date.toInstant(), ZoneId.systemDefault()));
+        }
+        return retString;
+    }
+
+
+    /**
+     * Format a date in YYYY-MM-DD format.
+     * <br>
+     * If the date is null, this method will return an empty string.
+     *
+     * @param date the date to format.
+     * @return formatted date.
+     */
+    public static String formatYMD(LocalDate date) {
+        String retString = "";
+        if (date != null) {
+            retString = YMD_FORMATTER.format(date);
         }
         return retString;
     }
@@ -121,7 +193,25 @@ public class JinxUtils {
      * @throws ParseException if the date is not in the correct yyyy-MM-dd format.
      */
     public static Date parseYMDToDate(String dateString) throws ParseException {
-        return ymdFormatter.parse(dateString);
+        return toDate(parseYMD(dateString));
+    }
+
+    /**
+     * Parse a string in the format yyyy-MM-dd to a LocalDate.
+     *
+     * @param dateString string to parse.
+     * @return date string as a LocalDate.
+     * @throws ParseException if the date is not in the correct yyyy-MM-dd format.
+     */
+    public static LocalDate parseYMD(String dateString) throws ParseException {
+        ParsePosition position = new ParsePosition(0);
+        try {
+            return LocalDate.from(YMD_FORMATTER.parse(dateString, position));
+        } catch (DateTimeException e) {
+            ParseException pe = new ParseException("Unparseable date: \"" + dateString + "\"", position.getErrorIndex());
+            pe.initCause(e);
+            throw pe;
+        }
     }
 
 
@@ -151,6 +241,25 @@ public class JinxUtils {
     }
 
 
+    /**
+     * Create an Instant from a Unix timestamp.
+     * <br>
+     * If the timestamp is not a valid long, this method will return null.
+     *
+     * @param timestamp Unix timestamp to convert to an Instant.
+     * @return the timestamp as an Instant, or null if the timestamp is invalid.
+     */
+    public static Instant parseTimestamp(String timestamp) {
+        Instant instant = null;
+        try {
+            instant = Instant.ofEpochSecond(Long.parseLong(timestamp));
+        } catch (Exception e) {
+            // ignore; will return null
+        }
+        return instant;
+    }
+
+
     /**
      * Convert a Date to a Unix timestamp.
      * <br>
@@ -163,15 +272,63 @@ public class JinxUtils {
      */
     public static String formatDateAsUnixTimestamp(Date date) {
         String timestamp = "";
-        try {
+        if (date != null) {
             timestamp = Long.toString(date.getTime() / 1000L);
-        } catch (Exception e) {
-            // ignore; will return empty string
         }
+        return timestamp;
+    }
+
 
+    /**
+     * Convert an Instant to a Unix timestamp.
+     * <br>
+     * If the instant is null, this method will return an empty String.
+     *
+     * @param instant the instant to convert.
+     * @return instant as a Unix timestamp, represented as a String, or an empty
+     * String if the instant is null.
+     */
+    public static String formatUnixTimestamp(Instant instant) {
+        String timestamp = "";
+        if (instant != null) {
+            timestamp = Long.toString(instant.getEpochSecond());
+        }
         return timestamp;
     }
 
+
+    /**
+     * Convert an Instant to a Date.
+     *
+     * @param instant the instant to convert.
+     * @return the instant as a Date, or null if the instant is null.
+     */
+    public static Date toDate(Instant instant) {
+        return instant == null ? null : Date.from(instant);
+    }
+
+
+    /**
+     * Convert a LocalDateTime to a Date, using the system default time zone.
+     *
+     * @param dateTime the date and time to convert.
+     * @return the date and time as a Date, or null if the dateTime is null.
+     */
+    public static Date toDate(LocalDateTime dateTime) {
+        return dateTime == null ? null : Date.from(dateTime.atZone(ZoneId.systemDefault()).toInstant());
+    }
+
+
+    /**
+     * Convert a LocalDate to a Date representing the start of that day, using the system default time zone.
+     *
+     * @param date the date to convert.
+     * @return the start of the day as a Date, or null if the date is null.
+     */
+    public static Date toDate(LocalDate date) {
+        return date == null ? null : Date.from(date.atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+
     static char[] hexChar = {
             '0', '1', '2', '3',
             '4', '5', '6', '7',
@@ -912,6 +1069,37 @@ public class JinxUtils {
     }
 
 
+    /*
+     * The last part of a Flickr method name starting with one of these means the method changes data.
+     */
+    private static final String[] WRITE_METHOD_PREFIXES = {
+            "add", "approve", "batchCorrect", "correct", "create", "delete", "edit", "join", "leave", "order", "post",
+            "remove", "reorder", "reject", "replace", "rotate", "set", "subscribe", "suggest", "unsubscribe", "upload"
+    };
+
+    /**
+     * Determine if a Flickr method changes data on Flickr.
+     * <br>
+     * This is based on the method name; for example, flickr.photos.setMeta and flickr.photosets.addPhoto change
+     * data, while flickr.photos.getInfo and flickr.photos.search do not.
+     *
+     * @param method the Flickr method name.
+     * @return true if the method changes data, false if it only reads data or the name is null.
+     */
+    public static boolean isWriteMethod(String method) {
+        if (method == null) {
+            return false;
+        }
+        String name = method.substring(method.lastIndexOf('.') + 1);
+        for (String prefix : WRITE_METHOD_PREFIXES) {
+            if (name.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
     /**
      * Generate a random multipart boundary.
      *
@@ -969,20 +1157,23 @@ public class JinxUtils {
         }
     }
 
+    /**
+     * Convert an XML document to JSON, using the xml2json stylesheet.
+     * <br>
+     * The stylesheet is compiled once, and the compiled Templates are shared by all threads.
+     *
+     * @param xml the XML to convert.
+     * @return JSON representation of the XML, or null if the xml is null or empty.
+     * @throws JinxException if the XML cannot be transformed.
+     */
     public static String xml2json(String xml) throws JinxException {
         if (JinxUtils.isNullOrEmpty(xml)) {
             return null;
         }
-        if (transformerFactory == null) {
-            transformerFactory = TransformerFactory.newInstance();
-        }
         String json;
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        InputStream in = JinxUtils.class.getResourceAsStream("/xml2json.xsl");
-        Source xslt = new StreamSource(in);
-        Transformer transformer;
         try {
-            transformer = transformerFactory.newTransformer(xslt);
+            Transformer transformer = getXml2jsonTemplates().newTransformer();
             Source text = new StreamSource(new ByteArrayInputStream(xml.getBytes(JinxConstants.UTF8)));
             transformer.transform(text, new StreamResult(baos));
             json = baos.toString(JinxConstants.UTF8);
@@ -991,4 +1182,23 @@ public class JinxUtils {
         }
         return json;
     }
+
+    /*
+     * Compile the xml2json stylesheet the first time it is needed.
+     */
+    private static Templates getXml2jsonTemplates() throws Exception {
+        Templates templates = xml2jsonTemplates;
+        if (templates == null) {
+            synchronized (JinxUtils.class) {
+                templates = xml2jsonTemplates;
+                if (templates == null) {
+                    try (InputStream in = JinxUtils.class.getResourceAsStream("/xml2json.xsl")) {
+                        templates = TransformerFactory.newInstance().newTemplates(new StreamSource(in));
+                    }
+                    xml2jsonTemplates = templates;
+                }
+            }
+        }
+        return templates;
+    }
 }
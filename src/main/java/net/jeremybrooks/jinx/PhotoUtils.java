@@ -25,6 +25,11 @@ import java.awt.image.BufferedImage;
 import java.net.URL;
 
 /**
+ * Utility methods for photo URLs and images.
+ * <br>
+ * The getImageForSize methods download and decode the image on every call. To download images once and reuse them,
+ * or to get the image bytes without decoding them, use {@link net.jeremybrooks.jinx.image.ImageCache}.
+ *
  * @author Jeremy Brooks
  */
 public class PhotoUtils {
@@ -0,0 +1,55 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx;
+
+/**
+ * Wraps a {@link JinxException} with an unchecked exception.
+ * <br>
+ * This is thrown from places that cannot throw checked exceptions, such as iterators and streams.
+ * The original exception is available from {@link #getCause()}.
+ *
+ * @author Jeremy Brooks
+ */
+public class UncheckedJinxException extends RuntimeException {
+
+  private static final long serialVersionUID = 3017467392418452093L;
+
+  /**
+   * Constructs an instance of {@code UncheckedJinxException} with the specified detail message and cause.
+   *
+   * @param msg   the detail message.
+   * @param cause the cause of the error.
+   */
+  public UncheckedJinxException(String msg, JinxException cause) {
+    super(msg, cause);
+  }
+
+  /**
+   * Constructs an instance of {@code UncheckedJinxException} with the specified cause.
+   *
+   * @param cause the cause of the error.
+   */
+  public UncheckedJinxException(JinxException cause) {
+    super(cause);
+  }
+
+  @Override
+  public JinxException getCause() {
+    return (JinxException) super.getCause();
+  }
+}
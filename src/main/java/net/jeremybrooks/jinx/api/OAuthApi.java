@@ -17,7 +17,6 @@
 
 package net.jeremybrooks.jinx.api;
 
-import com.google.gson.Gson;
 import net.jeremybrooks.jinx.Jinx;
 import net.jeremybrooks.jinx.JinxConstants;
 import net.jeremybrooks.jinx.JinxException;
@@ -129,7 +128,7 @@ public class OAuthApi {
       JinxUtils.close(in);
     }
 
-    OAuthExchangedToken exchangedToken = new Gson().fromJson(json.toString(), OAuthExchangedToken.class);
+    OAuthExchangedToken exchangedToken = this.jinx.getGson().fromJson(json.toString(), OAuthExchangedToken.class);
     if (!exchangedToken.getStat().equals("ok")) {
       throw new JinxException("Flickr reported an error.", null, exchangedToken);
     }
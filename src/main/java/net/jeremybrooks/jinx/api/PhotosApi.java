@@ -35,6 +35,7 @@ import net.jeremybrooks.jinx.response.photos.Photocounts;
 import net.jeremybrooks.jinx.response.photos.Photos;
 import net.jeremybrooks.jinx.response.photos.SearchParameters;
 
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
@@ -674,6 +675,29 @@ public class PhotosApi {
     return jinx.flickrGet(params, Photos.class);
   }
 
+  /**
+   * Return a list of your photos that have been recently created or which have been recently modified.
+   * <br>
+   * Recently modified may mean that the photo's metadata (title, description, tags) may have been changed or a comment has been added (or just modified somehow :-)
+   * <br>
+   * This method requires authentication with 'read' permission.
+   * <br>
+   * Photos are sorted by their date updated timestamp, in descending order.
+   * <br>
+   * This is the same as {@link #recentlyUpdated(Date, Set, int, int)}, using an {@link Instant}.
+   *
+   * @param minDate Required. The date from which modifications should be compared.
+   * @param extras  Optional. Extra information to fetch for each returned record.
+   * @param perPage Optional. Number of photos to return per page. If this argument is zero, it defaults to 100. The maximum allowed value is 500.
+   * @param page    Optional. The page of results to return. If this argument is zero, it defaults to 1.
+   * @return photos object.
+   * @throws JinxException if required parameters are null or empty, or if there are any errors.
+   * @see <a href="https://www.flickr.com/services/api/flickr.photos.recentlyUpdated.html">flickr.photos.recentlyUpdated</a>
+   */
+  public Photos recentlyUpdated(Instant minDate, Set<JinxConstants.PhotoExtras> extras, int perPage, int page) throws JinxException {
+    return recentlyUpdated(JinxUtils.toDate(minDate), extras, perPage, page);
+  }
+
 
   /**
    * Remove a tag from a photo.
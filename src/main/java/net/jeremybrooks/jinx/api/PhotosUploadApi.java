@@ -24,9 +24,10 @@ import net.jeremybrooks.jinx.JinxUtils;
 import net.jeremybrooks.jinx.response.photos.upload.CheckTicketsResponse;
 import net.jeremybrooks.jinx.response.photos.upload.ReplaceResponse;
 import net.jeremybrooks.jinx.response.photos.upload.UploadResponse;
+import net.jeremybrooks.jinx.transport.RequestBody;
 
 import java.io.File;
-import java.io.FileInputStream;
+import java.io.InputStream;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
@@ -95,26 +96,22 @@ public class PhotosUploadApi {
                                Boolean isFriend, Boolean isFamily, JinxConstants.SafetyLevel safetyLevel,
                                JinxConstants.ContentType contentType, Boolean hidden, Boolean async) throws JinxException {
     JinxUtils.validateParams(photo);
-    byte[] photoData = new byte[(int) photo.length()];
-    FileInputStream in = null;
-    try {
-      in = new FileInputStream(photo);
-      in.read(photoData);
-
-      if (JinxUtils.isNullOrEmpty(title)) {
-        int index = photo.getName().indexOf('.');
-        if (index > 0) {
-          title = photo.getName().substring(0, index);
-        } else {
-          title = photo.getName();
-        }
+    if (JinxUtils.isNullOrEmpty(title)) {
+      int index = photo.getName().indexOf('.');
+      if (index > 0) {
+        title = photo.getName().substring(0, index);
+      } else {
+        title = photo.getName();
       }
+    }
+    RequestBody photoData;
+    try {
+      photoData = RequestBody.of(photo.toPath());
     } catch (Exception e) {
       throw new JinxException("Unable to load data from photo " + photo.getAbsolutePath(), e);
-    } finally {
-      JinxUtils.close(in);
     }
-    return upload(photoData, title, description, tags, isPublic, isFriend, isFamily, safetyLevel, contentType, hidden, async);
+    return jinx.flickrUpload(buildUploadParams(title, description, tags, isPublic, isFriend, isFamily, safetyLevel,
+        contentType, hidden, async), photoData, UploadResponse.class);
   }
 
   /**
@@ -144,6 +141,49 @@ public class PhotosUploadApi {
                                Boolean isFriend, Boolean isFamily, JinxConstants.SafetyLevel safetyLevel,
                                JinxConstants.ContentType contentType, Boolean hidden, Boolean async) throws JinxException {
     JinxUtils.validateParams(photoData);
+    return jinx.flickrUpload(buildUploadParams(title, description, tags, isPublic, isFriend, isFamily, safetyLevel,
+        contentType, hidden, async), photoData, UploadResponse.class);
+  }
+
+  /**
+   * Upload a photo or video to Flickr, streaming the content from an InputStream.
+   * <br>
+   * This method requires authentication with 'write' permission.
+   * <br>
+   * The content is not loaded into memory, so this method is suitable for large videos. The stream is read once and is
+   * not closed.
+   *
+   * @param photoData   (Required) the photo or video content to upload.
+   * @param length      the number of bytes to read from the stream, or -1 if the length is not known. If the length is
+   *                    not known, the content will be sent using chunked transfer encoding.
+   * @param title       (Optional) the title of the photo or video.
+   * @param description (Optional) the description of the photo or video.
+   * @param tags        (Optional) list of tags to apply to the photo or video.
+   * @param isPublic    (Optional) is photo/video visible to everyone. This is the default if none of isPublic, isFriends, or
+   *                    isFamily is specified.
+   * @param isFriend    (Optional) is photo/video visible only to friends.
+   * @param isFamily    (Optional) is photo/video visible only to family.
+   * @param safetyLevel (Optional) safety level of the photo or video.
+   * @param contentType (Optional) content type of the upload.
+   * @param hidden      (Optional) if true, photo/video will be hidden from public searches.
+   *                    If false or null, it will be included in public searches.
+   * @param async       if true, the photo/video will be uploaded using the Flickr async API.
+   * @return object with the results of the upload. Successful synchronous uploads will contain a photo id; successful
+   * asynchronous uploads will include a ticket id.
+   * @throws JinxException if required parameters are missing, or if there are any errors.
+   * @see <a href="https://www.flickr.com/services/api/upload.api.html">Flickr photo upload documentation</a>
+   */
+  public UploadResponse upload(InputStream photoData, long length, String title, String description, List<String> tags,
+                               Boolean isPublic, Boolean isFriend, Boolean isFamily, JinxConstants.SafetyLevel safetyLevel,
+                               JinxConstants.ContentType contentType, Boolean hidden, Boolean async) throws JinxException {
+    JinxUtils.validateParams(photoData);
+    return jinx.flickrUpload(buildUploadParams(title, description, tags, isPublic, isFriend, isFamily, safetyLevel,
+        contentType, hidden, async), RequestBody.of(photoData, length), UploadResponse.class);
+  }
+
+  private Map<String, String> buildUploadParams(String title, String description, List<String> tags, Boolean isPublic,
+                                                Boolean isFriend, Boolean isFamily, JinxConstants.SafetyLevel safetyLevel,
+                                                JinxConstants.ContentType contentType, Boolean hidden, Boolean async) {
     Map<String, String> params = new TreeMap<>();
     if (async != null && async) {
       params.put("async", "1");
@@ -176,7 +216,7 @@ public class PhotosUploadApi {
     if (hidden != null) {
       params.put("hidden", hidden ? "1" : "0");
     }
-    return jinx.flickrUpload(params, photoData, UploadResponse.class);
+    return params;
   }
 
 
@@ -195,17 +235,13 @@ public class PhotosUploadApi {
    */
   public ReplaceResponse replace(File photo, String photoId, Boolean async) throws JinxException {
     JinxUtils.validateParams(photo, photoId);
-    byte[] photoData = new byte[(int) photo.length()];
-    FileInputStream in = null;
+    RequestBody photoData;
     try {
-      in = new FileInputStream(photo);
-      in.read(photoData);
+      photoData = RequestBody.of(photo.toPath());
     } catch (Exception e) {
       throw new JinxException("Unable to load data from photo " + photo.getAbsolutePath(), e);
-    } finally {
-      JinxUtils.close(in);
     }
-    return replace(photoData, photoId, async);
+    return jinx.flickrReplace(buildReplaceParams(photoId, async), photoData, ReplaceResponse.class);
   }
 
 
@@ -224,11 +260,37 @@ public class PhotosUploadApi {
    */
   public ReplaceResponse replace(byte[] photoData, String photoId, Boolean async) throws JinxException {
     JinxUtils.validateParams(photoData, photoId);
+    return jinx.flickrReplace(buildReplaceParams(photoId, async), photoData, ReplaceResponse.class);
+  }
+
+
+  /**
+   * Replace a photo on Flickr, streaming the content from an InputStream.
+   * <br>
+   * This method requires authentication with 'write' permission.
+   * <br>
+   * The content is not loaded into memory. The stream is read once and is not closed.
+   *
+   * @param photoData (Required) the photo or video content to replace existing content.
+   * @param length    the number of bytes to read from the stream, or -1 if the length is not known.
+   * @param photoId   (Required) the id of the existing photo or video to be replaced.
+   * @param async     if true, the photo will be uploaded using the Flickr async API.
+   * @return object with the results of the upload. Successful synchronous uploads will contain a photo id; successful
+   * asynchronous uploads will include a ticket id.
+   * @throws JinxException if required parameters are missing, or if there are any errors.
+   * @see <a href="https://www.flickr.com/services/api/upload.api.html">Flickr photo upload documentation</a>
+   */
+  public ReplaceResponse replace(InputStream photoData, long length, String photoId, Boolean async) throws JinxException {
+    JinxUtils.validateParams(photoData, photoId);
+    return jinx.flickrReplace(buildReplaceParams(photoId, async), RequestBody.of(photoData, length), ReplaceResponse.class);
+  }
+
+  private Map<String, String> buildReplaceParams(String photoId, Boolean async) {
     Map<String, String> params = new TreeMap<>();
     params.put("photo_id", photoId);
     if (async != null && async) {
       params.put("async", "1");
     }
-    return jinx.flickrReplace(params, photoData, ReplaceResponse.class);
+    return params;
   }
 }
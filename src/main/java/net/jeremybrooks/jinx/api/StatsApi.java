@@ -27,6 +27,7 @@ import net.jeremybrooks.jinx.response.stats.Referrers;
 import net.jeremybrooks.jinx.response.stats.Stats;
 import net.jeremybrooks.jinx.response.stats.TotalViews;
 
+import java.time.LocalDate;
 import java.util.Date;
 import java.util.Map;
 import java.util.TreeMap;
@@ -82,6 +83,27 @@ public class StatsApi {
     return jinx.flickrGet(params, Domains.class);
   }
 
+  /**
+   * Get a list of referring domains for a collection
+   * <br>
+   * This is the same as {@link #getCollectionDomains(Date, String, Integer, Integer)}, using a {@link LocalDate}.
+   *
+   * @param date         stats will be returned for this date. Required.
+   * @param collectionId id of the collection to get stats for. If not provided,
+   *                     stats for all collections will be returned. Optional.
+   * @param perPage      number of domains to return per page.
+   *                     If this argument is omitted, it defaults to 25.
+   *                     The maximum allowed value is 100. Optional.
+   * @param page         the page of results to return. If this argument is omitted, it defaults to 1. Optional.
+   * @return referring domains for a collection.
+   * @throws JinxException if required parameters are missing, or if there are any errors.
+   * @see <a href="https://www.flickr.com/services/api/flickr.stats.getCollectionDomains.html">flickr.stats.getCollectionDomains</a>
+   */
+  public Domains getCollectionDomains(LocalDate date, String collectionId, Integer perPage, Integer page)
+      throws JinxException {
+    return getCollectionDomains(JinxUtils.toDate(date), collectionId, perPage, page);
+  }
+
   /**
    * Get a list of referrers from a given domain to a collection
    *
@@ -120,6 +142,28 @@ public class StatsApi {
     return jinx.flickrGet(params, Referrers.class);
   }
 
+  /**
+   * Get a list of referrers from a given domain to a collection
+   * <br>
+   * This is the same as {@link #getCollectionReferrers(Date, String, String, Integer, Integer)}, using a {@link LocalDate}.
+   *
+   * @param date         stats will be returned for this date. Required.
+   * @param domain       domain to return referrers for. This should be a hostname (eg: "flickr.com")
+   *                     with no protocol or pathname. Required.
+   * @param collectionId id of the collection to get stats for. If not provided, stats for all
+   *                     collections will be returned. Optional.
+   * @param perPage      number of referrers to return per page. If this argument is omitted, it defaults
+   *                     to 25. The maximum allowed value is 100. Optional.
+   * @param page         page of results to return. If this argument is omitted, it defaults to 1. Optional.
+   * @return Referrers from a given domain for a collection.
+   * @throws JinxException if required parameters are missing, or if there are any errors.
+   * @see <a href="https://www.flickr.com/services/api/flickr.stats.getCollectionReferrers.html">flickr.stats.getCollectionReferrers</a>
+   */
+  public Referrers getCollectionReferrers(LocalDate date, String domain, String collectionId, Integer perPage, Integer page)
+      throws JinxException {
+    return getCollectionReferrers(JinxUtils.toDate(date), domain, collectionId, perPage, page);
+  }
+
   /**
    * Get the number of views on a collection for a given date.
    *
@@ -142,6 +186,21 @@ public class StatsApi {
     return jinx.flickrGet(params, Stats.class);
   }
 
+  /**
+   * Get the number of views on a collection for a given date.
+   * <br>
+   * This is the same as {@link #getCollectionStats(Date, String)}, using a {@link LocalDate}.
+   *
+   * @param date         stats will be returned for this date. Required.
+   * @param collectionId id of the collection to get stats for. Required.
+   * @return stats for the specified collection.
+   * @throws JinxException if required parameters are missing, or if there are any errors.
+   * @see <a href="https://www.flickr.com/services/api/flickr.stats.getCollectionStats.html">flickr.stats.getCollectionStats</a>
+   */
+  public Stats getCollectionStats(LocalDate date, String collectionId) throws JinxException {
+    return getCollectionStats(JinxUtils.toDate(date), collectionId);
+  }
+
   /**
    * Get a list of referring domains for a photo
    *
@@ -175,6 +234,24 @@ public class StatsApi {
     return jinx.flickrGet(params, Domains.class);
   }
 
+  /**
+   * Get a list of referring domains for a photo
+   * <br>
+   * This is the same as {@link #getPhotoDomains(Date, String, Integer, Integer)}, using a {@link LocalDate}.
+   *
+   * @param date    stats will be returned for this date. Required.
+   * @param photoId id of the photo to get stats for. If not provided, stats for all photos will be returned. Optional.
+   * @param perPage number of domains to return per page. If this argument is omitted,
+   *                it defaults to 25. The maximum allowed value is 100. Optional.
+   * @param page    page of results to return. If this argument is omitted, it defaults to 1. Optional.
+   * @return referrig domains for a photo.
+   * @throws JinxException if required parameters are missing, or if there are any errors.
+   * @see <a href="https://www.flickr.com/services/api/flickr.stats.getPhotoDomains.html">flickr.stats.getPhotoDomains</a>
+   */
+  public Domains getPhotoDomains(LocalDate date, String photoId, Integer perPage, Integer page) throws JinxException {
+    return getPhotoDomains(JinxUtils.toDate(date), photoId, perPage, page);
+  }
+
   /**
    * Get a list of referrers from a given domain to a photo
    *
@@ -210,6 +287,27 @@ public class StatsApi {
     return jinx.flickrGet(params, Referrers.class);
   }
 
+  /**
+   * Get a list of referrers from a given domain to a photo
+   * <br>
+   * This is the same as {@link #getPhotoReferrers(Date, String, String, Integer, Integer)}, using a {@link LocalDate}.
+   *
+   * @param date    stats will be returned for this date. Required.
+   * @param domain  domain to return referrers for. This should be a hostname (eg: "flickr.com") with no
+   *                protocol or pathname. Required.
+   * @param photoId id of the photo to get stats for. If not provided, stats for all photos will be returned. Optional.
+   * @param perPage number of referrers to return per page. If this argument is omitted, it defaults
+   *                to 25. The maximum allowed value is 100. Optional.
+   * @param page    page of results to return. If this argument is omitted, it defaults to 1. Optional.
+   * @return referrers from a given domain to a photo.
+   * @throws JinxException if required parameters are missing, or if there are any errors.
+   * @see <a href="https://www.flickr.com/services/api/flickr.stats.getPhotoReferrers.html">flickr.stats.getPhotoReferrers</a>
+   */
+  public Referrers getPhotoReferrers(LocalDate date, String domain, String photoId, Integer perPage, Integer page)
+      throws JinxException {
+    return getPhotoReferrers(JinxUtils.toDate(date), domain, photoId, perPage, page);
+  }
+
   /**
    * Get the number of views, comments and favorites on a photo for a given date.
    *
@@ -230,6 +328,21 @@ public class StatsApi {
     return jinx.flickrGet(params, Stats.class);
   }
 
+  /**
+   * Get the number of views, comments and favorites on a photo for a given date.
+   * <br>
+   * This is the same as {@link #getPhotoStats(Date, String)}, using a {@link LocalDate}.
+   *
+   * @param date    stats will be returned for this date. Required.
+   * @param photoId id of the photo to get stats for. Required.
+   * @return number of views, comments, and favorites on a photo for a given date.
+   * @throws JinxException if required parameters are missing, or if there are any errors.
+   * @see <a href="https://www.flickr.com/services/api/flickr.stats.getPhotoStats.html">flickr.stats.getPhotoStats</a>
+   */
+  public Stats getPhotoStats(LocalDate date, String photoId) throws JinxException {
+    return getPhotoStats(JinxUtils.toDate(date), photoId);
+  }
+
   /**
    * Get a list of referring domains for a photoset
    *
@@ -261,6 +374,25 @@ public class StatsApi {
     return jinx.flickrGet(params, Domains.class);
   }
 
+  /**
+   * Get a list of referring domains for a photoset
+   * <br>
+   * This is the same as {@link #getPhotosetDomains(Date, String, Integer, Integer)}, using a {@link LocalDate}.
+   *
+   * @param date       stats will be returned for this date. Required.
+   * @param photosetId id of the photoset to get stats for. If not provided, stats for all sets will be returned. Optional.
+   * @param perPage    number of domains to return per page. If this argument is omitted,
+   *                   it defaults to 25. The maximum allowed value is 100. Optional.
+   * @param page       page of results to return. If this argument is omitted, it defaults to 1. Optional.
+   * @return referring domains for a photoset.
+   * @throws JinxException if required parameters are missing, or if there are any errors.
+   * @see <a href="https://www.flickr.com/services/api/flickr.stats.getPhotosetDomains.html">flickr.stats.getPhotosetDomains</a>
+   */
+  public Domains getPhotosetDomains(LocalDate date, String photosetId, Integer perPage, Integer page)
+      throws JinxException {
+    return getPhotosetDomains(JinxUtils.toDate(date), photosetId, perPage, page);
+  }
+
   /**
    * Get a list of referrers from a given domain to a photoset
    *
@@ -296,6 +428,27 @@ public class StatsApi {
     return jinx.flickrGet(params, Referrers.class);
   }
 
+  /**
+   * Get a list of referrers from a given domain to a photoset
+   * <br>
+   * This is the same as {@link #getPhotosetReferrers(Date, String, String, Integer, Integer)}, using a {@link LocalDate}.
+   *
+   * @param date       stats will be returned for this date. Required.
+   * @param domain     domain to return referrers for. This should be a hostname (eg: "flickr.com") with no
+   *                   protocol or pathname. Required.
+   * @param photosetId id of the photoset to get stats for. If not provided, stats for all sets will be returned. Optional.
+   * @param perPage    number of referrers to return per page. If this argument is omitted, it defaults to
+   *                   25. The maximum allowed value is 100. Optional.
+   * @param page       page of results to return. If this argument is omitted, it defaults to 1. Optional.
+   * @return referrers from a domain to a photoset.
+   * @throws JinxException if required parameters are missing, or if there are any errors.
+   * @see <a href="https://www.flickr.com/services/api/flickr.stats.getPhotosetReferrers.html">flickr.stats.getPhotosetReferrers</a>
+   */
+  public Referrers getPhotosetReferrers(LocalDate date, String domain, String photosetId, Integer perPage, Integer page)
+      throws JinxException {
+    return getPhotosetReferrers(JinxUtils.toDate(date), domain, photosetId, perPage, page);
+  }
+
   /**
    * Get the number of views on a photoset for a given date.
    *
@@ -316,6 +469,21 @@ public class StatsApi {
     return jinx.flickrGet(params, Stats.class);
   }
 
+  /**
+   * Get the number of views on a photoset for a given date.
+   * <br>
+   * This is the same as {@link #getPhotosetStats(Date, String)}, using a {@link LocalDate}.
+   *
+   * @param date       stats will be returned for this date. Required.
+   * @param photosetId id of the photoset to get stats for. Required.
+   * @return number of views on a photoset for a given date.
+   * @throws JinxException if required parameters are missing, or if there are any errors.
+   * @see <a href="https://www.flickr.com/services/api/flickr.stats.getPhotosetStats.html">flickr.stats.getPhotosetStats</a>
+   */
+  public Stats getPhotosetStats(LocalDate date, String photosetId) throws JinxException {
+    return getPhotosetStats(JinxUtils.toDate(date), photosetId);
+  }
+
   /**
    * Get a list of referring domains for a photostream
    *
@@ -343,6 +511,23 @@ public class StatsApi {
     return jinx.flickrGet(params, Domains.class);
   }
 
+  /**
+   * Get a list of referring domains for a photostream
+   * <br>
+   * This is the same as {@link #getPhotostreamDomains(Date, Integer, Integer)}, using a {@link LocalDate}.
+   *
+   * @param date    stats will be returned for this date. Required.
+   * @param perPage nummber of domains to return per page. If this argument is omitted, it defaults
+   *                to 25. The maximum allowed value is 100. Optional.
+   * @param page    page of results to return. If this argument is omitted, it defaults to 1. Optional.
+   * @return referring domains for a photostream.
+   * @throws JinxException if required parameters are missing, or if there are any errors.
+   * @see <a href="https://www.flickr.com/services/api/flickr.stats.getPhotostreamDomains.html">flickr.stats.getPhotostreamDomains</a>
+   */
+  public Domains getPhotostreamDomains(LocalDate date, Integer perPage, Integer page) throws JinxException {
+    return getPhotostreamDomains(JinxUtils.toDate(date), perPage, page);
+  }
+
   /**
    * Get a list of referrers from a given domain to a user's photostream
    *
@@ -374,6 +559,26 @@ public class StatsApi {
     return jinx.flickrGet(params, Referrers.class);
   }
 
+  /**
+   * Get a list of referrers from a given domain to a user's photostream
+   * <br>
+   * This is the same as {@link #getPhotostreamReferrers(Date, String, Integer, Integer)}, using a {@link LocalDate}.
+   *
+   * @param date    stats will be returned for this date. Required.
+   * @param domain  domain to return referrers for. This should be a hostname (eg: "flickr.com")
+   *                with no protocol or pathname. Required.
+   * @param perPage number of referrers to return per page. If this argument is omitted, it defaults
+   *                to 25. The maximum allowed value is 100. Optional.
+   * @param page    page of results to return. If this argument is omitted, it defaults to 1. Optional.
+   * @return referrers from a given domain to a user's photostream.
+   * @throws JinxException if required parameters are missing, or if there are any errors.
+   * @see <a href="https://www.flickr.com/services/api/flickr.stats.getPhotostreamReferrers.html">flickr.stats.getPhotostreamReferrers</a>
+   */
+  public Referrers getPhotostreamReferrers(LocalDate date, String domain, Integer perPage, Integer page)
+      throws JinxException {
+    return getPhotostreamReferrers(JinxUtils.toDate(date), domain, perPage, page);
+  }
+
   /**
    * Get the number of views on a user's photostream for a given date.
    *
@@ -392,6 +597,20 @@ public class StatsApi {
     return jinx.flickrGet(params, Stats.class);
   }
 
+  /**
+   * Get the number of views on a user's photostream for a given date.
+   * <br>
+   * This is the same as {@link #getPhotostreamStats(Date)}, using a {@link LocalDate}.
+   *
+   * @param date stats will be returned for this date. Required.
+   * @return number of views on a user's photostream for a given date.
+   * @throws JinxException if required parameters are missing or if there are any errors.
+   * @see <a href="https://www.flickr.com/services/api/flickr.stats.getPhotostreamStats.html">flickr.stats.getPhotostreamStats</a>
+   */
+  public Stats getPhotostreamStats(LocalDate date) throws JinxException {
+    return getPhotostreamStats(JinxUtils.toDate(date));
+  }
+
   /**
    * Returns a list of URLs for text files containing all your stats data (from November 26th 2007 onwards)
    * for the currently auth'd user.
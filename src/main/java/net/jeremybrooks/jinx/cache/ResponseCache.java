@@ -0,0 +1,279 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.cache;
+
+import net.jeremybrooks.jinx.JinxUtils;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An in-memory cache of Flickr responses.
+ * <br>
+ * The cache is disabled by default. To enable it, create an instance and set it on Jinx:
+ * {@code
+ * ResponseCache cache = new ResponseCache(1000, 0, TimeUnit.SECONDS);
+ * cache.setTtl("flickr.photos.licenses.getInfo", 1, TimeUnit.DAYS);
+ * cache.setTtl("flickr.people.getInfo", 10, TimeUnit.MINUTES);
+ * jinx.setResponseCache(cache);
+ * }
+ * Only successful responses to http GET requests are cached. Requests sent with http POST are never cached, and
+ * neither are methods that change data on Flickr (set, add, remove, delete, and so on), even if a time to live
+ * has been set for them.
+ * <br>
+ * Entries are keyed by the sorted request parameters and the type of the response. Responses to signed requests
+ * are also keyed by the access token, so users never see each other's data. When the cache is full, the least
+ * recently used entry is evicted.
+ * <br>
+ * Cached response objects are shared by every caller that gets a cache hit, so they must not be modified.
+ * <br>
+ * Instances of this class are thread safe and can be shared by multiple Jinx instances.
+ *
+ * @author Jeremy Brooks
+ */
+public class ResponseCache {
+
+  private final int maxEntries;
+  private final long defaultTtlNanos;
+  private final Map<String, Long> ttlNanos = new ConcurrentHashMap<>();
+  private final LinkedHashMap<String, CachedResponse> entries;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong evictions = new AtomicLong();
+
+  /**
+   * Create a new cache.
+   *
+   * @param maxEntries maximum number of responses to keep. Must be greater than zero.
+   * @param defaultTtl how long responses are kept for methods that do not have their own time to live.
+   *                   Zero means that only methods with their own time to live are cached.
+   * @param unit       unit of the default time to live.
+   */
+  public ResponseCache(int maxEntries, long defaultTtl, TimeUnit unit) {
+    if (maxEntries < 1) {
+      throw new IllegalArgumentException("maxEntries must be greater than zero.");
+    }
+    if (defaultTtl < 0) {
+      throw new IllegalArgumentException("defaultTtl cannot be negative.");
+    }
+    this.maxEntries = maxEntries;
+    this.defaultTtlNanos = unit.toNanos(defaultTtl);
+    this.entries = new LinkedHashMap<String, CachedResponse>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, CachedResponse> eldest) {
+        if (size() > ResponseCache.this.maxEntries) {
+          evictions.incrementAndGet();
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  /**
+   * Set the time to live for a Flickr method.
+   *
+   * @param method the Flickr method name, such as flickr.photos.getSizes.
+   * @param ttl    how long responses to this method are kept. Zero means responses to this method are not cached.
+   * @param unit   unit of the time to live.
+   * @return this cache.
+   */
+  public ResponseCache setTtl(String method, long ttl, TimeUnit unit) {
+    if (ttl < 0) {
+      throw new IllegalArgumentException("ttl cannot be negative.");
+    }
+    ttlNanos.put(method, unit.toNanos(ttl));
+    return this;
+  }
+
+  /**
+   * Indicates if responses to a Flickr method can be cached.
+   *
+   * @param method the Flickr method name.
+   * @return true if the method has a time to live and does not change data on Flickr.
+   */
+  public boolean isCacheable(String method) {
+    return method != null && getTtlNanos(method) > 0 && !JinxUtils.isWriteMethod(method);
+  }
+
+  /**
+   * Build the cache key for a request.
+   *
+   * @param params   request parameters.
+   * @param tClass   the class that the response is deserialized to.
+   * @param identity identifies the user for signed requests, or null for unsigned requests.
+   * @return cache key.
+   */
+  public static String buildKey(Map<String, String> params, Class<?> tClass, String identity) {
+    StringBuilder sb = new StringBuilder(tClass.getName());
+    appendField(sb, identity);
+    Map<String, String> sorted = params instanceof TreeMap ? params : new TreeMap<>(params);
+    for (Map.Entry<String, String> param : sorted.entrySet()) {
+      appendField(sb, param.getKey());
+      appendField(sb, param.getValue());
+    }
+    return sb.toString();
+  }
+
+  /*
+   * Append a length-prefixed field, so that no value can be mistaken for a separator and two different
+   * parameter sets never produce the same key. Null is written as a bare '|'.
+   */
+  private static void appendField(StringBuilder sb, String field) {
+    sb.append('|');
+    if (field != null) {
+      sb.append(field.length()).append(':').append(field);
+    }
+  }
+
+  /**
+   * Get a cached response.
+   *
+   * @param key    the cache key.
+   * @param tClass the class of the response.
+   * @param <T>    type of the response.
+   * @return the cached response, or null if there is no unexpired response for the key.
+   */
+  public <T> T get(String key, Class<T> tClass) {
+    CachedResponse entry;
+    synchronized (entries) {
+      entry = entries.get(key);
+      if (entry != null && entry.expires - System.nanoTime() <= 0) {
+        entries.remove(key);
+        entry = null;
+      }
+    }
+    if (entry == null || !tClass.isInstance(entry.value)) {
+      misses.incrementAndGet();
+      return null;
+    }
+    hits.incrementAndGet();
+    return tClass.cast(entry.value);
+  }
+
+  /**
+   * Add a response to the cache. If the method is not cacheable, this does nothing.
+   *
+   * @param method the Flickr method name.
+   * @param key    the cache key.
+   * @param value  the response.
+   */
+  public void put(String method, String key, Object value) {
+    if (value == null || !isCacheable(method)) {
+      return;
+    }
+    CachedResponse entry = new CachedResponse(value, System.nanoTime() + getTtlNanos(method));
+    synchronized (entries) {
+      entries.put(key, entry);
+    }
+  }
+
+  /**
+   * Remove all cached responses.
+   */
+  public void clear() {
+    synchronized (entries) {
+      entries.clear();
+    }
+  }
+
+  /**
+   * Remove expired responses. Expired responses are also removed when they are looked up, so calling
+   * this is only needed to free memory sooner.
+   */
+  public void removeExpired() {
+    long now = System.nanoTime();
+    synchronized (entries) {
+      for (Iterator<CachedResponse> it = entries.values().iterator(); it.hasNext(); ) {
+        if (it.next().expires - now <= 0) {
+          it.remove();
+        }
+      }
+    }
+  }
+
+  /**
+   * @return number of responses in the cache, including any that have expired but not been removed yet.
+   */
+  public int size() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  public int getMaxEntries() {
+    return maxEntries;
+  }
+
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  public long getEvictionCount() {
+    return evictions.get();
+  }
+
+  /**
+   * Get the names of methods that have their own time to live.
+   *
+   * @return method names.
+   */
+  public Set<String> getMethods() {
+    return Collections.unmodifiableSet(new HashSet<>(ttlNanos.keySet()));
+  }
+
+  private long getTtlNanos(String method) {
+    Long ttl = ttlNanos.get(method);
+    return ttl == null ? defaultTtlNanos : ttl;
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder("ResponseCache{");
+    sb.append("size=").append(size());
+    sb.append(", maxEntries=").append(maxEntries);
+    sb.append(", hits=").append(hits.get());
+    sb.append(", misses=").append(misses.get());
+    sb.append(", evictions=").append(evictions.get());
+    sb.append('}');
+    return sb.toString();
+  }
+
+  private static class CachedResponse {
+    private final Object value;
+    private final long expires;
+
+    CachedResponse(Object value, long expires) {
+      this.value = value;
+      this.expires = expires;
+    }
+  }
+}
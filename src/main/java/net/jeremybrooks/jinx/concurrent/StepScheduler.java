@@ -0,0 +1,179 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.concurrent;
+
+import net.jeremybrooks.jinx.JinxException;
+
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs many small units of work, such as page fetches, with bounded parallelism.
+ * <br>
+ * Steps are kept in a deque. Steps queued first are taken before everything else, so work that was just discovered,
+ * such as the remaining pages of a result, can be finished before moving on. Up to parallelism workers run on the
+ * executor, and each takes steps until the deque is empty; workers never wait for each other, so a large job cannot
+ * starve the executor.
+ * <br>
+ * The future completes with {@link #result()} when every step has run. Subclasses queue their first steps, then call
+ * {@link #queued()}. Cancelling the future stops the workers after the steps being run.
+ *
+ * @param <T> type of the result.
+ * @author Jeremy Brooks
+ */
+public abstract class StepScheduler<T> {
+
+  /**
+   * A unit of work.
+   */
+  @FunctionalInterface
+  public interface Step {
+    /**
+     * Run the step.
+     *
+     * @throws JinxException if there are any errors.
+     */
+    void run() throws JinxException;
+  }
+
+  private final Executor executor;
+  private final int parallelism;
+  private final String name;
+  private final Deque<Step> steps = new ConcurrentLinkedDeque<>();
+  /* steps queued or running, plus one until queued() is called; finished when this reaches zero */
+  private final AtomicInteger pending = new AtomicInteger(1);
+  private final AtomicInteger workers = new AtomicInteger();
+  private final CompletableFuture<T> future = new CompletableFuture<>();
+
+  /**
+   * Create a new scheduler.
+   *
+   * @param executor    the executor to run workers on.
+   * @param parallelism maximum number of steps to run at the same time.
+   * @param name        name of the job, used in error messages.
+   */
+  protected StepScheduler(Executor executor, int parallelism, String name) {
+    if (executor == null) {
+      throw new IllegalArgumentException("executor is required.");
+    }
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("parallelism must be at least 1.");
+    }
+    this.executor = executor;
+    this.parallelism = parallelism;
+    this.name = name;
+  }
+
+  /**
+   * Get the future that completes when every step has run.
+   * <br>
+   * The future completes exceptionally only if the executor refuses to run a worker.
+   *
+   * @return the future.
+   */
+  public CompletableFuture<T> getFuture() {
+    return future;
+  }
+
+  /**
+   * Queue a step.
+   *
+   * @param first if true, the step is taken before the steps already queued.
+   * @param step  the step.
+   */
+  protected void schedule(boolean first, Step step) {
+    pending.incrementAndGet();
+    if (first) {
+      steps.addFirst(step);
+    } else {
+      steps.addLast(step);
+    }
+    startWorker();
+  }
+
+  /**
+   * Call once the first steps have been queued. Until then, the future does not complete even if every step has run.
+   */
+  protected void queued() {
+    finish();
+  }
+
+  /**
+   * Create the result when every step has run.
+   *
+   * @return the result.
+   */
+  protected abstract T result();
+
+  /**
+   * Called when a step throws an exception. Steps should report their own failures; this is a safety net.
+   *
+   * @param e the error.
+   */
+  protected abstract void failed(JinxException e);
+
+  private void startWorker() {
+    while (true) {
+      int running = workers.get();
+      if (running >= parallelism) {
+        return;
+      }
+      if (workers.compareAndSet(running, running + 1)) {
+        try {
+          executor.execute(this::work);
+        } catch (RejectedExecutionException e) {
+          workers.decrementAndGet();
+          future.completeExceptionally(new JinxException("Unable to start " + name + " worker.", e));
+        }
+        return;
+      }
+    }
+  }
+
+  /*
+   * Run steps until the queue is empty. A step queued after this worker sees an empty queue is picked up by
+   * the check after the worker count is decremented.
+   */
+  private void work() {
+    Step step;
+    while (!future.isDone() && (step = steps.pollFirst()) != null) {
+      try {
+        step.run();
+      } catch (JinxException e) {
+        failed(e);
+      } catch (RuntimeException e) {
+        failed(new JinxException("Unable to run " + name + " step.", e));
+      }
+      finish();
+    }
+    workers.decrementAndGet();
+    if (!steps.isEmpty() && !future.isDone()) {
+      startWorker();
+    }
+  }
+
+  private void finish() {
+    if (pending.decrementAndGet() == 0) {
+      future.complete(result());
+    }
+  }
+}
@@ -0,0 +1,314 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.crawl;
+
+import net.jeremybrooks.jinx.Jinx;
+import net.jeremybrooks.jinx.JinxConstants;
+import net.jeremybrooks.jinx.JinxException;
+import net.jeremybrooks.jinx.JinxUtils;
+import net.jeremybrooks.jinx.api.CollectionsApi;
+import net.jeremybrooks.jinx.api.PhotosetsApi;
+import net.jeremybrooks.jinx.concurrent.StepScheduler;
+import net.jeremybrooks.jinx.logger.JinxLogger;
+import net.jeremybrooks.jinx.logger.LogLevel;
+import net.jeremybrooks.jinx.response.collections.CollectionTree;
+import net.jeremybrooks.jinx.response.photos.Photo;
+import net.jeremybrooks.jinx.response.photosets.Photoset;
+import net.jeremybrooks.jinx.response.photosets.PhotosetList;
+import net.jeremybrooks.jinx.response.photosets.PhotosetPhotos;
+
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Walks the structure of an account: its collection tree, its photosets, and the photos in each photoset.
+ * <br>
+ * Every page is a separate unit of work, and up to parallelism pages are fetched at the same time, using the
+ * executor returned by {@link Jinx#getExecutor()}. When the first page of a photoset arrives, the rest of its pages
+ * are queued ahead of other work, so later pages are fetched in parallel while the first is being delivered, and a
+ * photoset is finished before the crawler moves far ahead. Pages of the photoset list are fetched the same way, and
+ * the photos of each photoset are requested as soon as the photoset is found, without waiting for the whole list.
+ * Workers never wait for each other, so the crawl cannot starve the executor.
+ * <br>
+ * Results are passed to a {@link CrawlVisitor} as they arrive. The returned future completes when everything has
+ * been fetched; it does not complete exceptionally because of failed calls, which are reported to the visitor and
+ * in {@link CrawlResult#getFailures()}. Cancelling the future stops the crawl after the pages being fetched.
+ * <br>
+ * {@code
+ * AccountCrawler crawler = new AccountCrawler(jinx, 4);
+ * crawler.setPhotoExtras(EnumSet.of(PhotoExtras.date_taken));
+ * CrawlResult result = crawler.crawl(userId, (photoset, page, photos) -> export(photoset, photos)).join();
+ * }
+ *
+ * @author Jeremy Brooks
+ */
+public class AccountCrawler {
+
+  /**
+   * Default number of photos or photosets requested in each page. This is the maximum Flickr allows.
+   */
+  public static final int DEFAULT_PER_PAGE = 500;
+
+  private final Jinx jinx;
+  private final CollectionsApi collectionsApi;
+  private final PhotosetsApi photosetsApi;
+  private final int parallelism;
+  private EnumSet<JinxConstants.PhotoExtras> photoExtras;
+  private int perPage = DEFAULT_PER_PAGE;
+
+  /**
+   * Create a new crawler.
+   *
+   * @param jinx        the Jinx instance to use.
+   * @param parallelism maximum number of calls to make at the same time.
+   */
+  public AccountCrawler(Jinx jinx, int parallelism) {
+    if (jinx == null) {
+      throw new IllegalArgumentException("jinx is required.");
+    }
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("parallelism must be at least 1.");
+    }
+    this.jinx = jinx;
+    this.collectionsApi = new CollectionsApi(jinx);
+    this.photosetsApi = new PhotosetsApi(jinx);
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * Crawl an account.
+   *
+   * @param userId  the user to crawl. If null, the calling user is crawled.
+   * @param visitor receives the collections, photosets and photos.
+   * @return future that completes when the crawl has finished.
+   */
+  public CompletableFuture<CrawlResult> crawl(String userId, CrawlVisitor visitor) {
+    if (visitor == null) {
+      throw new IllegalArgumentException("visitor is required.");
+    }
+    Job job = new Job(userId, visitor);
+    job.start();
+    return job.getFuture();
+  }
+
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  public Set<JinxConstants.PhotoExtras> getPhotoExtras() {
+    return photoExtras;
+  }
+
+  /**
+   * @param photoExtras extra information to fetch for each photo. May be null.
+   */
+  public void setPhotoExtras(Set<JinxConstants.PhotoExtras> photoExtras) {
+    this.photoExtras = JinxUtils.isNullOrEmpty(photoExtras) ? null : EnumSet.copyOf(photoExtras);
+  }
+
+  public int getPerPage() {
+    return perPage;
+  }
+
+  /**
+   * @param perPage number of photos or photosets requested in each page, from 1 to 500.
+   */
+  public void setPerPage(int perPage) {
+    if (perPage < 1 || perPage > 500) {
+      throw new IllegalArgumentException("perPage must be between 1 and 500.");
+    }
+    this.perPage = perPage;
+  }
+
+
+  /*
+   * Progress of one photoset.
+   */
+  private static class PhotosetState {
+    private final Photoset photoset;
+    private final AtomicInteger remaining = new AtomicInteger(1);
+    private final AtomicBoolean failed = new AtomicBoolean();
+
+    PhotosetState(Photoset photoset) {
+      this.photoset = photoset;
+    }
+  }
+
+  /*
+   * State for a single call to crawl.
+   */
+  private class Job extends StepScheduler<CrawlResult> {
+    private final String userId;
+    private final CrawlVisitor visitor;
+    private final AtomicInteger collections = new AtomicInteger();
+    private final AtomicInteger photosetsFound = new AtomicInteger();
+    private final AtomicInteger photosetsDone = new AtomicInteger();
+    private final AtomicInteger photosetsCompleted = new AtomicInteger();
+    private final AtomicLong photos = new AtomicLong();
+    private final Map<String, JinxException> failures = new ConcurrentHashMap<>();
+
+    Job(String userId, CrawlVisitor visitor) {
+      super(jinx.getExecutor(), parallelism, "crawl");
+      this.userId = userId;
+      this.visitor = visitor;
+    }
+
+    void start() {
+      schedule(false, this::crawlTree);
+      schedule(false, () -> crawlList(1));
+      queued();
+    }
+
+    @Override
+    protected CrawlResult result() {
+      return new CrawlResult(collections.get(), photosetsCompleted.get(), photos.get(), new LinkedHashMap<>(failures));
+    }
+
+    @Override
+    protected void failed(JinxException e) {
+      fail("crawl", e);
+    }
+
+    private void crawlTree() {
+      try {
+        CollectionTree tree = collectionsApi.getTree(null, userId);
+        visit(tree.getCollectionList(), null);
+      } catch (JinxException e) {
+        fail("flickr.collections.getTree", e);
+      } catch (RuntimeException e) {
+        fail("flickr.collections.getTree", new JinxException("Unable to visit the collection tree.", e));
+      }
+    }
+
+    private void visit(List<CollectionTree.Collection> list, CollectionTree.Collection parent) {
+      if (list != null) {
+        for (CollectionTree.Collection collection : list) {
+          collections.incrementAndGet();
+          visitor.onCollection(collection, parent);
+          visit(collection.getCollectionList(), collection);
+        }
+      }
+    }
+
+    private void crawlList(int page) {
+      PhotosetList list;
+      try {
+        list = photosetsApi.getList(userId, page, perPage, null);
+      } catch (JinxException e) {
+        fail("flickr.photosets.getList", e);
+        return;
+      }
+      if (page == 1 && list.getPages() != null) {
+        for (int i = 2; i <= list.getPages(); i++) {
+          int next = i;
+          schedule(false, () -> crawlList(next));
+        }
+      }
+      if (list.getPhotosetList() != null) {
+        for (Photoset photoset : list.getPhotosetList()) {
+          photosetsFound.incrementAndGet();
+          PhotosetState state = new PhotosetState(photoset);
+          try {
+            visitor.onPhotoset(photoset);
+            schedule(true, () -> crawlPhotoset(state, 1));
+          } catch (RuntimeException e) {
+            failPhotoset(state, new JinxException("Visitor failed for photoset " + photoset.getPhotosetId(), e));
+          }
+        }
+      }
+    }
+
+    private void crawlPhotoset(PhotosetState state, int page) {
+      if (state.failed.get()) {
+        return;
+      }
+      Photoset photoset = state.photoset;
+      try {
+        PhotosetPhotos result = photosetsApi.getPhotos(photoset.getPhotosetId(), photoExtras, null, perPage, page, null);
+        if (page == 1) {
+          int pages = result.getPages() == null ? 1 : Math.max(1, result.getPages());
+          state.remaining.addAndGet(pages - 1);
+          // queue in reverse so the pages are taken in order
+          for (int i = pages; i >= 2; i--) {
+            int next = i;
+            schedule(true, () -> crawlPhotoset(state, next));
+          }
+        }
+        List<Photo> list = result.getPhotoList();
+        if (list != null && !list.isEmpty()) {
+          visitor.onPhotos(photoset, page, list);
+          photos.addAndGet(list.size());
+        }
+      } catch (JinxException e) {
+        failPhotoset(state, e);
+        return;
+      } catch (RuntimeException e) {
+        failPhotoset(state, new JinxException("Unable to crawl page " + page + " of photoset " + photoset.getPhotosetId(), e));
+        return;
+      }
+      if (state.remaining.decrementAndGet() == 0 && !state.failed.get()) {
+        photosetsCompleted.incrementAndGet();
+        try {
+          visitor.onPhotosetComplete(photoset);
+        } catch (RuntimeException e) {
+          warn("Crawl visitor threw an exception.", e);
+        }
+        progress();
+      }
+    }
+
+    private void failPhotoset(PhotosetState state, JinxException e) {
+      if (state.failed.compareAndSet(false, true)) {
+        fail(state.photoset.getPhotosetId(), e);
+        progress();
+      }
+    }
+
+    private void progress() {
+      int done = photosetsDone.incrementAndGet();
+      try {
+        visitor.onProgress(done, photosetsFound.get(), photos.get());
+      } catch (RuntimeException e) {
+        warn("Crawl visitor threw an exception.", e);
+      }
+    }
+
+    private void fail(String key, JinxException e) {
+      failures.putIfAbsent(key, e);
+      try {
+        visitor.onFailure(key, e);
+      } catch (RuntimeException re) {
+        warn("Crawl visitor threw an exception.", re);
+      }
+    }
+
+    private void warn(String message, Throwable t) {
+      if (jinx.isVerboseLogging()) {
+        JinxLogger.log(LogLevel.WARN, message, t);
+      }
+    }
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.crawl;
+
+import net.jeremybrooks.jinx.JinxException;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * The outcome of a crawl.
+ *
+ * @author Jeremy Brooks
+ */
+public class CrawlResult {
+
+  private final int collections;
+  private final int photosets;
+  private final long photos;
+  private final Map<String, JinxException> failures;
+
+  CrawlResult(int collections, int photosets, long photos, Map<String, JinxException> failures) {
+    this.collections = collections;
+    this.photosets = photosets;
+    this.photos = photos;
+    this.failures = Collections.unmodifiableMap(failures);
+  }
+
+  /**
+   * @return number of collections visited.
+   */
+  public int getCollections() {
+    return collections;
+  }
+
+  /**
+   * @return number of photosets that were crawled completely.
+   */
+  public int getPhotosets() {
+    return photosets;
+  }
+
+  /**
+   * @return number of photos delivered to the visitor.
+   */
+  public long getPhotos() {
+    return photos;
+  }
+
+  /**
+   * Get the parts of the account that could not be fetched.
+   *
+   * @return map of photoset id, or Flickr method name, to the first error.
+   */
+  public Map<String, JinxException> getFailures() {
+    return failures;
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder("CrawlResult{");
+    sb.append("collections=").append(collections);
+    sb.append(", photosets=").append(photosets);
+    sb.append(", photos=").append(photos);
+    sb.append(", failures=").append(failures.size());
+    sb.append('}');
+    return sb.toString();
+  }
+}
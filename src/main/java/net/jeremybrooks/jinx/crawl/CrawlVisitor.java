@@ -0,0 +1,91 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.crawl;
+
+import net.jeremybrooks.jinx.JinxException;
+import net.jeremybrooks.jinx.response.collections.CollectionTree;
+import net.jeremybrooks.jinx.response.photos.Photo;
+import net.jeremybrooks.jinx.response.photosets.Photoset;
+
+import java.util.List;
+
+/**
+ * Receives the structure of an account from an {@link AccountCrawler} as it is fetched.
+ * <br>
+ * Methods are called from the threads doing the work, so implementations must be thread safe. Pages of different
+ * photosets arrive interleaved, and the pages of one photoset can arrive out of order; use the page number if the
+ * order matters. An exception thrown by a method is reported as a failure of the photoset being crawled.
+ *
+ * @author Jeremy Brooks
+ */
+public interface CrawlVisitor {
+
+  /**
+   * Called for each collection in the collection tree, parents before children.
+   *
+   * @param collection the collection. {@link CollectionTree.Collection#getSetList()} has the photosets in it.
+   * @param parent     the collection it is in, or null for a top level collection.
+   */
+  default void onCollection(CollectionTree.Collection collection, CollectionTree.Collection parent) {
+  }
+
+  /**
+   * Called for each photoset, before any of its photos.
+   *
+   * @param photoset the photoset.
+   */
+  default void onPhotoset(Photoset photoset) {
+  }
+
+  /**
+   * Called for each page of photos in a photoset.
+   *
+   * @param photoset the photoset.
+   * @param page     the page number. The first page is 1.
+   * @param photos   the photos on the page.
+   */
+  void onPhotos(Photoset photoset, int page, List<Photo> photos);
+
+  /**
+   * Called when every page of a photoset has been delivered.
+   *
+   * @param photoset the photoset.
+   */
+  default void onPhotosetComplete(Photoset photoset) {
+  }
+
+  /**
+   * Called when part of the account could not be fetched.
+   *
+   * @param key the photoset id, or the Flickr method that failed if the failure was not in a photoset.
+   * @param e   the reason for the failure.
+   */
+  default void onFailure(String key, JinxException e) {
+  }
+
+  /**
+   * Called each time a photoset has been completed or has failed.
+   * The number of photosets found grows until the whole photoset list has been read.
+   *
+   * @param photosetsDone  number of photosets completed or failed.
+   * @param photosetsFound number of photosets found so far.
+   * @param photos         number of photos delivered so far.
+   */
+  default void onProgress(int photosetsDone, int photosetsFound, long photos) {
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.enrich;
+
+import net.jeremybrooks.jinx.response.photos.ExifData;
+import net.jeremybrooks.jinx.response.photos.PhotoInfo;
+import net.jeremybrooks.jinx.response.photos.PhotoPerms;
+import net.jeremybrooks.jinx.response.photos.PhotoSizes;
+import net.jeremybrooks.jinx.response.photos.geo.Location;
+
+/**
+ * The data fetched for a single photo by a {@link PhotoEnricher}.
+ * <br>
+ * Facets that were not requested are null.
+ *
+ * @author Jeremy Brooks
+ */
+public class EnrichedPhoto {
+
+  private final String photoId;
+  private volatile PhotoInfo info;
+  private volatile PhotoSizes sizes;
+  private volatile ExifData exif;
+  private volatile PhotoPerms perms;
+  private volatile Location location;
+
+  EnrichedPhoto(String photoId) {
+    this.photoId = photoId;
+  }
+
+  public String getPhotoId() {
+    return photoId;
+  }
+
+  public PhotoInfo getInfo() {
+    return info;
+  }
+
+  void setInfo(PhotoInfo info) {
+    this.info = info;
+  }
+
+  public PhotoSizes getSizes() {
+    return sizes;
+  }
+
+  void setSizes(PhotoSizes sizes) {
+    this.sizes = sizes;
+  }
+
+  public ExifData getExif() {
+    return exif;
+  }
+
+  void setExif(ExifData exif) {
+    this.exif = exif;
+  }
+
+  public PhotoPerms getPerms() {
+    return perms;
+  }
+
+  void setPerms(PhotoPerms perms) {
+    this.perms = perms;
+  }
+
+  public Location getLocation() {
+    return location;
+  }
+
+  void setLocation(Location location) {
+    this.location = location;
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder("EnrichedPhoto{");
+    sb.append("photoId='").append(photoId).append('\'');
+    sb.append(", info=").append(info);
+    sb.append(", sizes=").append(sizes);
+    sb.append(", exif=").append(exif);
+    sb.append(", perms=").append(perms);
+    sb.append(", location=").append(location);
+    sb.append('}');
+    return sb.toString();
+  }
+}
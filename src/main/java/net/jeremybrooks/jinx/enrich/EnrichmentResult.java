@@ -0,0 +1,81 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.enrich;
+
+import net.jeremybrooks.jinx.JinxException;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The outcome of a bulk enrichment.
+ *
+ * @author Jeremy Brooks
+ */
+public class EnrichmentResult {
+
+  private final Map<String, EnrichedPhoto> photos;
+  private final Map<String, Map<PhotoEnricher.Facet, JinxException>> failures;
+
+  EnrichmentResult(Map<String, EnrichedPhoto> photos, Map<String, Map<PhotoEnricher.Facet, JinxException>> failures) {
+    this.photos = Collections.unmodifiableMap(photos);
+    this.failures = Collections.unmodifiableMap(failures);
+  }
+
+  /**
+   * Get every photo that was enriched, including photos where some facets could not be fetched.
+   * <br>
+   * Facets that failed are null in the photo; see {@link #getFailures()}.
+   *
+   * @return map of photo id to the data fetched for the photo, in the order the ids were given.
+   */
+  public Map<String, EnrichedPhoto> getPhotos() {
+    return photos;
+  }
+
+  /**
+   * Get the facets that could not be fetched.
+   *
+   * @return map of photo id to the error for each failed facet of that photo. Photos where every facet was fetched
+   * are not included.
+   */
+  public Map<String, Map<PhotoEnricher.Facet, JinxException>> getFailures() {
+    return failures;
+  }
+
+  /**
+   * Get the facets that could not be fetched for a photo.
+   *
+   * @param photoId id of the photo.
+   * @return the failed facets, or an empty set if every facet was fetched.
+   */
+  public Set<PhotoEnricher.Facet> getFailedFacets(String photoId) {
+    Map<PhotoEnricher.Facet, JinxException> facets = failures.get(photoId);
+    return facets == null ? Collections.emptySet() : facets.keySet();
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder("EnrichmentResult{");
+    sb.append("photos=").append(photos.size());
+    sb.append(", failures=").append(failures.size());
+    sb.append('}');
+    return sb.toString();
+  }
+}
@@ -0,0 +1,211 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.enrich;
+
+import net.jeremybrooks.jinx.Jinx;
+import net.jeremybrooks.jinx.JinxException;
+import net.jeremybrooks.jinx.api.PhotosApi;
+import net.jeremybrooks.jinx.api.PhotosGeoApi;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fetches several kinds of data (facets) for many photos, with bounded parallelism.
+ * <br>
+ * Each combination of photo id and facet is one call to Flickr. Duplicate photo ids are only fetched once. Up to
+ * parallelism calls are made at the same time, using the executor returned by {@link Jinx#getExecutor()}.
+ * <br>
+ * If several jobs may ask for the same photos at the same time, turn on {@link Jinx#setCoalescing(boolean)} so that
+ * identical calls that overlap share a single request.
+ *
+ * @author Jeremy Brooks
+ */
+public class PhotoEnricher {
+
+  /**
+   * The kinds of data that can be fetched for a photo.
+   */
+  public enum Facet {
+    /** flickr.photos.getInfo */
+    info,
+    /** flickr.photos.getSizes */
+    sizes,
+    /** flickr.photos.getExif */
+    exif,
+    /** flickr.photos.getPerms */
+    perms,
+    /** flickr.photos.geo.getLocation */
+    location
+  }
+
+  private final Jinx jinx;
+  private final PhotosApi photosApi;
+  private final PhotosGeoApi photosGeoApi;
+  private final int parallelism;
+
+  /**
+   * Create a new enricher.
+   *
+   * @param jinx        the Jinx instance to use.
+   * @param parallelism maximum number of calls to make at the same time.
+   */
+  public PhotoEnricher(Jinx jinx, int parallelism) {
+    if (jinx == null) {
+      throw new IllegalArgumentException("jinx is required.");
+    }
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("parallelism must be at least 1.");
+    }
+    this.jinx = jinx;
+    this.photosApi = new PhotosApi(jinx);
+    this.photosGeoApi = new PhotosGeoApi(jinx);
+    this.parallelism = parallelism;
+  }
+
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  /**
+   * Fetch facets for a collection of photos.
+   * <br>
+   * Every photo is included in {@link EnrichmentResult#getPhotos()}. A facet that could not be fetched is left null
+   * in the photo, and is reported in {@link EnrichmentResult#getFailures()}; the other facets of that photo are
+   * still fetched. The future does not complete exceptionally because of failed calls, only if the executor
+   * refuses to run the work.
+   *
+   * @param photoIds ids of the photos.
+   * @param facets   the facets to fetch for each photo.
+   * @return future that completes when all calls have finished.
+   */
+  public CompletableFuture<EnrichmentResult> enrich(Collection<String> photoIds, Set<Facet> facets) {
+    if (photoIds == null || facets == null || facets.isEmpty()) {
+      throw new IllegalArgumentException("photoIds and facets are required.");
+    }
+    Set<String> ids = new LinkedHashSet<>(photoIds);
+    Set<Facet> facetSet = EnumSet.copyOf(facets);
+    Map<String, EnrichedPhoto> photos = new LinkedHashMap<>();
+    Queue<Task> tasks = new ConcurrentLinkedQueue<>();
+    for (String id : ids) {
+      EnrichedPhoto photo = new EnrichedPhoto(id);
+      photos.put(id, photo);
+      for (Facet facet : facetSet) {
+        tasks.add(new Task(photo, facet));
+      }
+    }
+    Map<String, Map<Facet, JinxException>> failures = new ConcurrentHashMap<>();
+    CompletableFuture<EnrichmentResult> future = new CompletableFuture<>();
+    if (tasks.isEmpty()) {
+      future.complete(new EnrichmentResult(photos, Collections.emptyMap()));
+      return future;
+    }
+
+    AtomicInteger remaining = new AtomicInteger(tasks.size());
+    Runnable worker = () -> {
+      Task task;
+      while (!future.isDone() && (task = tasks.poll()) != null) {
+        try {
+          fetch(task);
+        } catch (JinxException e) {
+          fail(failures, task, e);
+        } catch (RuntimeException e) {
+          fail(failures, task,
+              new JinxException("Unable to get " + task.facet + " for photo " + task.photo.getPhotoId(), e));
+        }
+        if (remaining.decrementAndGet() == 0) {
+          future.complete(new EnrichmentResult(photos, orderedFailures(photos, failures)));
+        }
+      }
+    };
+    int workers = Math.min(parallelism, tasks.size());
+    for (int i = 0; i < workers; i++) {
+      try {
+        jinx.getExecutor().execute(worker);
+      } catch (RejectedExecutionException e) {
+        // workers already started stop at their next task
+        future.completeExceptionally(new JinxException("Unable to start enrichment worker.", e));
+        break;
+      }
+    }
+    return future;
+  }
+
+  /* Record the failure of one facet of one photo. */
+  private static void fail(Map<String, Map<Facet, JinxException>> failures, Task task, JinxException e) {
+    failures.computeIfAbsent(task.photo.getPhotoId(), k -> new ConcurrentHashMap<>()).put(task.facet, e);
+  }
+
+  /* Copy the failures in the order the photos were given, with the facets in declaration order. */
+  private static Map<String, Map<Facet, JinxException>> orderedFailures(Map<String, EnrichedPhoto> photos,
+                                                                         Map<String, Map<Facet, JinxException>> failures) {
+    Map<String, Map<Facet, JinxException>> ordered = new LinkedHashMap<>();
+    for (String id : photos.keySet()) {
+      Map<Facet, JinxException> facets = failures.get(id);
+      if (facets != null) {
+        ordered.put(id, Collections.unmodifiableMap(new EnumMap<>(facets)));
+      }
+    }
+    return ordered;
+  }
+
+  private void fetch(Task task) throws JinxException {
+    String id = task.photo.getPhotoId();
+    switch (task.facet) {
+      case info:
+        task.photo.setInfo(photosApi.getInfo(id, null));
+        break;
+      case sizes:
+        task.photo.setSizes(photosApi.getSizes(id));
+        break;
+      case exif:
+        task.photo.setExif(photosApi.getExif(id, null));
+        break;
+      case perms:
+        task.photo.setPerms(photosApi.getPerms(id));
+        break;
+      case location:
+        task.photo.setLocation(photosGeoApi.getLocation(id, true));
+        break;
+      default:
+        throw new JinxException("Unsupported facet " + task.facet);
+    }
+  }
+
+  private static class Task {
+    private final EnrichedPhoto photo;
+    private final Facet facet;
+
+    Task(EnrichedPhoto photo, Facet facet) {
+      this.photo = photo;
+      this.facet = facet;
+    }
+  }
+}
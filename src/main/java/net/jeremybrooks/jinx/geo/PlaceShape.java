@@ -0,0 +1,235 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.geo;
+
+import net.jeremybrooks.jinx.response.places.Place;
+import net.jeremybrooks.jinx.response.places.Shape;
+import net.jeremybrooks.jinx.response.places.ShapeHistory;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The decoded shape of a place.
+ * <br>
+ * A shape is made of one or more rings, one for each polyline Flickr returned. A point is inside the shape if it is
+ * inside an odd number of rings, so a ring inside another ring is a hole. The bounding box and area of the whole
+ * shape are calculated once, when it is created. Instances are immutable.
+ *
+ * @author Jeremy Brooks
+ */
+public class PlaceShape implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private final String placeId;
+  private final String woeId;
+  private final String name;
+  private final String placeType;
+  private final List<Polygon> rings;
+  private final double minLatitude;
+  private final double minLongitude;
+  private final double maxLatitude;
+  private final double maxLongitude;
+  private final double area;
+
+  /**
+   * Create a place shape.
+   *
+   * @param placeId   Flickr place id.
+   * @param woeId     Where On Earth id. May be null.
+   * @param name      name of the place. May be null.
+   * @param placeType place type, such as "locality" or "region". May be null.
+   * @param rings     the rings of the shape.
+   */
+  public PlaceShape(String placeId, String woeId, String name, String placeType, List<Polygon> rings) {
+    if (placeId == null) {
+      throw new IllegalArgumentException("placeId is required.");
+    }
+    if (rings == null || rings.isEmpty()) {
+      throw new IllegalArgumentException("At least one ring is required.");
+    }
+    this.placeId = placeId;
+    this.woeId = woeId;
+    this.name = name;
+    this.placeType = placeType;
+    this.rings = Collections.unmodifiableList(new ArrayList<>(rings));
+    double minLat = Double.POSITIVE_INFINITY;
+    double minLon = Double.POSITIVE_INFINITY;
+    double maxLat = Double.NEGATIVE_INFINITY;
+    double maxLon = Double.NEGATIVE_INFINITY;
+    double total = 0;
+    for (Polygon ring : rings) {
+      minLat = Math.min(minLat, ring.getMinLatitude());
+      minLon = Math.min(minLon, ring.getMinLongitude());
+      maxLat = Math.max(maxLat, ring.getMaxLatitude());
+      maxLon = Math.max(maxLon, ring.getMaxLongitude());
+      total += isHole(ring, rings) ? -ring.getArea() : ring.getArea();
+    }
+    this.minLatitude = minLat;
+    this.minLongitude = minLon;
+    this.maxLatitude = maxLat;
+    this.maxLongitude = maxLon;
+    this.area = total;
+  }
+
+  /**
+   * Decode the shape of a place returned by flickr.places.getInfo or flickr.places.getInfoByUrl.
+   *
+   * @param place the place.
+   * @return the decoded shape, or null if Flickr did not return a shape for the place.
+   */
+  public static PlaceShape of(Place place) {
+    if (place == null || place.getShape() == null) {
+      return null;
+    }
+    return of(place.getPlaceId(), place.getWoeId(), place.getName(), place.getPlaceType(), place.getShape());
+  }
+
+  /**
+   * Decode the newest shape returned by flickr.places.getShapeHistory.
+   *
+   * @param history the shape history.
+   * @return the decoded shape, or null if there are no shapes.
+   */
+  public static PlaceShape of(ShapeHistory history) {
+    if (history == null || history.getShapeList() == null) {
+      return null;
+    }
+    Shape newest = null;
+    for (Shape shape : history.getShapeList()) {
+      if (newest == null || (shape.getCreated() != null &&
+          (newest.getCreated() == null || shape.getCreated() > newest.getCreated()))) {
+        newest = shape;
+      }
+    }
+    return newest == null ? null :
+        of(history.getPlaceId(), history.getWoeId(), null, history.getPlaceType(), newest);
+  }
+
+  /**
+   * Decode a shape.
+   *
+   * @param placeId   Flickr place id.
+   * @param woeId     Where On Earth id. May be null.
+   * @param name      name of the place. May be null.
+   * @param placeType place type. May be null.
+   * @param shape     the shape returned by Flickr.
+   * @return the decoded shape, or null if the shape has no polylines.
+   */
+  public static PlaceShape of(String placeId, String woeId, String name, String placeType, Shape shape) {
+    if (shape == null || shape.getPolylines() == null) {
+      return null;
+    }
+    List<Polygon> rings = new ArrayList<>();
+    for (Shape.Polyline polyline : shape.getPolylines()) {
+      if (polyline.getContent() != null && !polyline.getContent().trim().isEmpty()) {
+        rings.add(Polygon.parse(polyline.getContent()));
+      }
+    }
+    return rings.isEmpty() ? null : new PlaceShape(placeId, woeId, name, placeType, rings);
+  }
+
+  /* A ring is a hole if its first vertex is inside an odd number of the other rings. */
+  private static boolean isHole(Polygon ring, List<Polygon> rings) {
+    boolean hole = false;
+    for (Polygon other : rings) {
+      if (other != ring && other.contains(ring.getLatitude(0), ring.getLongitude(0))) {
+        hole = !hole;
+      }
+    }
+    return hole;
+  }
+
+  public String getPlaceId() {
+    return placeId;
+  }
+
+  public String getWoeId() {
+    return woeId;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public String getPlaceType() {
+    return placeType;
+  }
+
+  public List<Polygon> getRings() {
+    return rings;
+  }
+
+  public double getMinLatitude() {
+    return minLatitude;
+  }
+
+  public double getMinLongitude() {
+    return minLongitude;
+  }
+
+  public double getMaxLatitude() {
+    return maxLatitude;
+  }
+
+  public double getMaxLongitude() {
+    return maxLongitude;
+  }
+
+  /**
+   * @return the area of the shape in square degrees, less any holes, used to order places from the most specific to the least.
+   */
+  public double getArea() {
+    return area;
+  }
+
+  /**
+   * Check if a point is inside this shape.
+   *
+   * @param latitude  latitude of the point.
+   * @param longitude longitude of the point.
+   * @return true if the point is inside.
+   */
+  public boolean contains(double latitude, double longitude) {
+    if (latitude < minLatitude || latitude > maxLatitude || longitude < minLongitude || longitude > maxLongitude) {
+      return false;
+    }
+    boolean inside = false;
+    for (Polygon ring : rings) {
+      if (ring.contains(latitude, longitude)) {
+        inside = !inside;
+      }
+    }
+    return inside;
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder("PlaceShape{");
+    sb.append("placeId='").append(placeId).append('\'');
+    sb.append(", woeId='").append(woeId).append('\'');
+    sb.append(", name='").append(name).append('\'');
+    sb.append(", placeType='").append(placeType).append('\'');
+    sb.append(", rings=").append(rings.size());
+    sb.append('}');
+    return sb.toString();
+  }
+}
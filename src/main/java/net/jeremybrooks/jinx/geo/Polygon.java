@@ -0,0 +1,296 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.geo;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * A closed ring of latitude and longitude points, decoded from a Flickr polyline.
+ * <br>
+ * Flickr returns place shapes as polylines in the form "lat,lon lat,lon ...". This class holds the points in two
+ * double arrays, along with the bounding box, so that {@link #contains(double, double)} can reject most points with
+ * four comparisons and test the rest without creating any objects.
+ * <br>
+ * Points are treated as planar coordinates, which is accurate enough for place boundaries away from the poles.
+ * Rings that cross the 180th meridian are not supported. Instances are immutable.
+ *
+ * @author Jeremy Brooks
+ */
+public final class Polygon implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  /* powers of ten that are exact as doubles */
+  private static final double[] POWERS_OF_TEN = {
+      1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18
+  };
+  /* mantissas up to this value are exact as doubles */
+  private static final long MAX_EXACT = 1L << 53;
+
+  private final double[] latitudes;
+  private final double[] longitudes;
+  private final double minLatitude;
+  private final double minLongitude;
+  private final double maxLatitude;
+  private final double maxLongitude;
+
+  /**
+   * Create a polygon from arrays of points. The arrays are copied.
+   *
+   * @param latitudes  latitude of each point.
+   * @param longitudes longitude of each point.
+   */
+  public Polygon(double[] latitudes, double[] longitudes) {
+    this(latitudes.clone(), longitudes.clone(), true);
+  }
+
+  private Polygon(double[] latitudes, double[] longitudes, boolean owned) {
+    if (latitudes.length != longitudes.length) {
+      throw new IllegalArgumentException("There must be the same number of latitudes and longitudes.");
+    }
+    if (latitudes.length < 3) {
+      throw new IllegalArgumentException("A polygon needs at least three points.");
+    }
+    this.latitudes = latitudes;
+    this.longitudes = longitudes;
+    double minLat = Double.POSITIVE_INFINITY;
+    double minLon = Double.POSITIVE_INFINITY;
+    double maxLat = Double.NEGATIVE_INFINITY;
+    double maxLon = Double.NEGATIVE_INFINITY;
+    for (int i = 0; i < latitudes.length; i++) {
+      minLat = Math.min(minLat, latitudes[i]);
+      maxLat = Math.max(maxLat, latitudes[i]);
+      minLon = Math.min(minLon, longitudes[i]);
+      maxLon = Math.max(maxLon, longitudes[i]);
+    }
+    this.minLatitude = minLat;
+    this.minLongitude = minLon;
+    this.maxLatitude = maxLat;
+    this.maxLongitude = maxLon;
+  }
+
+  /**
+   * Decode a Flickr polyline.
+   * <br>
+   * The text is scanned in place; points are not split into strings first.
+   *
+   * @param polyline polyline in the form "lat,lon lat,lon ...", as returned by
+   *                 {@link net.jeremybrooks.jinx.response.places.Shape.Polyline#getContent()}.
+   * @return the polygon.
+   * @throws IllegalArgumentException if the polyline is not valid.
+   */
+  public static Polygon parse(String polyline) {
+    if (polyline == null) {
+      throw new IllegalArgumentException("polyline is required.");
+    }
+    int length = polyline.length();
+    // every point has one comma, so this is an upper bound on the number of points
+    int capacity = 0;
+    for (int i = 0; i < length; i++) {
+      if (polyline.charAt(i) == ',') {
+        capacity++;
+      }
+    }
+    double[] lats = new double[capacity];
+    double[] lons = new double[capacity];
+    int count = 0;
+    int position = skipSpaces(polyline, 0);
+    while (position < length) {
+      int comma = polyline.indexOf(',', position);
+      if (comma < 0) {
+        throw new IllegalArgumentException("Missing longitude at position " + position + ".");
+      }
+      int end = position;
+      while (end < length && !Character.isWhitespace(polyline.charAt(end))) {
+        end++;
+      }
+      if (comma > end) {
+        throw new IllegalArgumentException("Missing longitude at position " + position + ".");
+      }
+      lats[count] = parseDouble(polyline, position, comma);
+      lons[count] = parseDouble(polyline, comma + 1, end);
+      count++;
+      position = skipSpaces(polyline, end);
+    }
+    return new Polygon(Arrays.copyOf(lats, count), Arrays.copyOf(lons, count), true);
+  }
+
+  /**
+   * @return number of points.
+   */
+  public int size() {
+    return latitudes.length;
+  }
+
+  public double getLatitude(int index) {
+    return latitudes[index];
+  }
+
+  public double getLongitude(int index) {
+    return longitudes[index];
+  }
+
+  /**
+   * @return copy of the latitudes.
+   */
+  public double[] getLatitudes() {
+    return latitudes.clone();
+  }
+
+  /**
+   * @return copy of the longitudes.
+   */
+  public double[] getLongitudes() {
+    return longitudes.clone();
+  }
+
+  public double getMinLatitude() {
+    return minLatitude;
+  }
+
+  public double getMinLongitude() {
+    return minLongitude;
+  }
+
+  public double getMaxLatitude() {
+    return maxLatitude;
+  }
+
+  public double getMaxLongitude() {
+    return maxLongitude;
+  }
+
+  /**
+   * Check if a point is inside the bounding box of this polygon.
+   *
+   * @param latitude  latitude of the point.
+   * @param longitude longitude of the point.
+   * @return true if the point is inside or on the edge of the bounding box.
+   */
+  public boolean boundsContain(double latitude, double longitude) {
+    return latitude >= minLatitude && latitude <= maxLatitude && longitude >= minLongitude && longitude <= maxLongitude;
+  }
+
+  /**
+   * Check if a point is inside this polygon, using the even-odd rule.
+   * <br>
+   * Points exactly on an edge may be reported as inside or outside.
+   *
+   * @param latitude  latitude of the point.
+   * @param longitude longitude of the point.
+   * @return true if the point is inside.
+   */
+  public boolean contains(double latitude, double longitude) {
+    if (!boundsContain(latitude, longitude)) {
+      return false;
+    }
+    boolean inside = false;
+    double[] lats = latitudes;
+    double[] lons = longitudes;
+    for (int i = 0, j = lats.length - 1; i < lats.length; j = i++) {
+      double latI = lats[i];
+      double latJ = lats[j];
+      // count crossings of a ray from the point towards increasing longitude
+      if ((latI > latitude) != (latJ > latitude) &&
+          longitude < (lons[j] - lons[i]) * (latitude - latI) / (latJ - latI) + lons[i]) {
+        inside = !inside;
+      }
+    }
+    return inside;
+  }
+
+  /**
+   * Get the area enclosed by this polygon, in square degrees. This is only useful for comparing polygons.
+   *
+   * @return the planar area.
+   */
+  public double getArea() {
+    double sum = 0;
+    for (int i = 0, j = latitudes.length - 1; i < latitudes.length; j = i++) {
+      sum += (longitudes[j] * latitudes[i]) - (longitudes[i] * latitudes[j]);
+    }
+    return Math.abs(sum) / 2;
+  }
+
+  private static int skipSpaces(String s, int position) {
+    while (position < s.length() && Character.isWhitespace(s.charAt(position))) {
+      position++;
+    }
+    return position;
+  }
+
+  /*
+   * Parse a plain decimal number such as -122.41539764404. When the digits fit in a double exactly, dividing by an
+   * exact power of ten gives the correctly rounded result, the same as Double.parseDouble. Anything else, such as
+   * numbers with exponents or too many digits, is passed to Double.parseDouble.
+   */
+  private static double parseDouble(String s, int start, int end) {
+    int i = start;
+    boolean negative = false;
+    if (i < end && (s.charAt(i) == '-' || s.charAt(i) == '+')) {
+      negative = s.charAt(i) == '-';
+      i++;
+    }
+    long mantissa = 0;
+    int scale = -1;
+    int digits = 0;
+    for (; i < end; i++) {
+      char c = s.charAt(i);
+      if (c >= '0' && c <= '9') {
+        mantissa = mantissa * 10 + (c - '0');
+        digits++;
+        if (scale >= 0) {
+          scale++;
+        }
+        if (mantissa >= MAX_EXACT || scale >= POWERS_OF_TEN.length) {
+          return slowParse(s, start, end);
+        }
+      } else if (c == '.' && scale < 0) {
+        scale = 0;
+      } else {
+        return slowParse(s, start, end);
+      }
+    }
+    if (digits == 0) {
+      throw new IllegalArgumentException("Invalid number '" + s.substring(start, end) + "'.");
+    }
+    double value = scale > 0 ? mantissa / POWERS_OF_TEN[scale] : mantissa;
+    return negative ? -value : value;
+  }
+
+  private static double slowParse(String s, int start, int end) {
+    try {
+      return Double.parseDouble(s.substring(start, end));
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid number '" + s.substring(start, end) + "'.", e);
+    }
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder("Polygon{");
+    sb.append("points=").append(latitudes.length);
+    sb.append(", minLatitude=").append(minLatitude);
+    sb.append(", minLongitude=").append(minLongitude);
+    sb.append(", maxLatitude=").append(maxLatitude);
+    sb.append(", maxLongitude=").append(maxLongitude);
+    sb.append('}');
+    return sb.toString();
+  }
+}
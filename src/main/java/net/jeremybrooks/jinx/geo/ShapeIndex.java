@@ -0,0 +1,259 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.geo;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An in-memory index of place shapes, for finding the places that contain a point without calling
+ * flickr.places.findByLatLon.
+ * <br>
+ * The world is divided into a grid of square cells. Each shape is listed in every cell that its bounding box
+ * overlaps, and each cell keeps its shapes ordered from the smallest area to the largest. A lookup only tests the
+ * shapes in the cell that holds the point, in that order, so {@link #find(double, double)} returns the most specific
+ * place, such as a neighbourhood before the city it is in.
+ * <br>
+ * Typical use is to decode the shapes of the places a set of photos may be in, then resolve each photo locally:
+ * {@code
+ * ShapeIndex index = new ShapeIndex();
+ * index.add(PlaceShape.of(placesApi.getInfo(placeId, null).getPlace()));
+ * PlaceShape place = index.find(photo.getLatitude(), photo.getLongitude());
+ * }
+ * Instances of this class are thread safe.
+ *
+ * @author Jeremy Brooks
+ */
+public class ShapeIndex {
+
+  /**
+   * Default size of a grid cell, in degrees.
+   */
+  public static final double DEFAULT_CELL_SIZE = 1.0;
+
+  private final double cellSize;
+  private final int latCells;
+  private final int lonCells;
+  private final Map<Integer, List<PlaceShape>> cells = new HashMap<>();
+  private final Map<String, PlaceShape> shapes = new HashMap<>();
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  /**
+   * Create an index with the default cell size.
+   */
+  public ShapeIndex() {
+    this(DEFAULT_CELL_SIZE);
+  }
+
+  /**
+   * Create an index.
+   * <br>
+   * Smaller cells mean fewer shapes to test for each lookup, but more memory for large shapes.
+   *
+   * @param cellSize size of a grid cell, in degrees.
+   */
+  public ShapeIndex(double cellSize) {
+    if (!(cellSize > 0) || cellSize > 180) {
+      throw new IllegalArgumentException("cellSize must be greater than zero and not more than 180.");
+    }
+    this.cellSize = cellSize;
+    this.latCells = (int) Math.ceil(180 / cellSize);
+    this.lonCells = (int) Math.ceil(360 / cellSize);
+  }
+
+  /**
+   * Add a shape. A shape already in the index with the same place id is replaced.
+   *
+   * @param shape the shape to add.
+   */
+  public void add(PlaceShape shape) {
+    if (shape == null) {
+      throw new IllegalArgumentException("shape is required.");
+    }
+    lock.writeLock().lock();
+    try {
+      PlaceShape old = shapes.put(shape.getPlaceId(), shape);
+      if (old != null) {
+        unlist(old);
+      }
+      int lat1 = latCell(shape.getMaxLatitude());
+      int lon0 = lonCell(shape.getMinLongitude());
+      int lon1 = lonCell(shape.getMaxLongitude());
+      for (int lat = latCell(shape.getMinLatitude()); lat <= lat1; lat++) {
+        for (int lon = lon0; lon <= lon1; lon++) {
+          List<PlaceShape> list = cells.computeIfAbsent(lat * lonCells + lon, k -> new ArrayList<>(2));
+          int i = 0;
+          while (i < list.size() && list.get(i).getArea() <= shape.getArea()) {
+            i++;
+          }
+          list.add(i, shape);
+        }
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Remove a shape.
+   *
+   * @param placeId place id of the shape.
+   * @return true if the shape was in the index.
+   */
+  public boolean remove(String placeId) {
+    lock.writeLock().lock();
+    try {
+      PlaceShape old = shapes.remove(placeId);
+      if (old != null) {
+        unlist(old);
+      }
+      return old != null;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * @param placeId place id of a shape.
+   * @return the shape, or null if it is not in the index.
+   */
+  public PlaceShape get(String placeId) {
+    lock.readLock().lock();
+    try {
+      return shapes.get(placeId);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * @return number of shapes in the index.
+   */
+  public int size() {
+    lock.readLock().lock();
+    try {
+      return shapes.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Find the smallest place that contains a point.
+   *
+   * @param latitude  latitude of the point.
+   * @param longitude longitude of the point.
+   * @return the smallest shape containing the point, or null if no shape contains it.
+   */
+  public PlaceShape find(double latitude, double longitude) {
+    return find(latitude, longitude, null);
+  }
+
+  /**
+   * Find the smallest place of a type that contains a point.
+   *
+   * @param latitude  latitude of the point.
+   * @param longitude longitude of the point.
+   * @param placeType the place type, such as "locality". Null matches any type.
+   * @return the smallest shape of the type containing the point, or null if there is none.
+   */
+  public PlaceShape find(double latitude, double longitude, String placeType) {
+    lock.readLock().lock();
+    try {
+      List<PlaceShape> list = cells.get(cell(latitude, longitude));
+      if (list != null) {
+        for (PlaceShape shape : list) {
+          if ((placeType == null || placeType.equals(shape.getPlaceType())) && shape.contains(latitude, longitude)) {
+            return shape;
+          }
+        }
+      }
+      return null;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Find every place that contains a point.
+   *
+   * @param latitude  latitude of the point.
+   * @param longitude longitude of the point.
+   * @return the shapes containing the point, from the smallest to the largest.
+   */
+  public List<PlaceShape> findAll(double latitude, double longitude) {
+    List<PlaceShape> found = new ArrayList<>();
+    lock.readLock().lock();
+    try {
+      List<PlaceShape> list = cells.get(cell(latitude, longitude));
+      if (list != null) {
+        for (PlaceShape shape : list) {
+          if (shape.contains(latitude, longitude)) {
+            found.add(shape);
+          }
+        }
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+    return found;
+  }
+
+  private void unlist(PlaceShape shape) {
+    int lat1 = latCell(shape.getMaxLatitude());
+    int lon0 = lonCell(shape.getMinLongitude());
+    int lon1 = lonCell(shape.getMaxLongitude());
+    for (int lat = latCell(shape.getMinLatitude()); lat <= lat1; lat++) {
+      for (int lon = lon0; lon <= lon1; lon++) {
+        int key = lat * lonCells + lon;
+        List<PlaceShape> list = cells.get(key);
+        if (list != null) {
+          list.remove(shape);
+          if (list.isEmpty()) {
+            cells.remove(key);
+          }
+        }
+      }
+    }
+  }
+
+  private int cell(double latitude, double longitude) {
+    return latCell(latitude) * lonCells + lonCell(longitude);
+  }
+
+  private int latCell(double latitude) {
+    return Math.max(0, Math.min(latCells - 1, (int) Math.floor((latitude + 90) / cellSize)));
+  }
+
+  private int lonCell(double longitude) {
+    return Math.max(0, Math.min(lonCells - 1, (int) Math.floor((longitude + 180) / cellSize)));
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder("ShapeIndex{");
+    sb.append("cellSize=").append(cellSize);
+    sb.append(", shapes=").append(size());
+    sb.append('}');
+    return sb.toString();
+  }
+}
@@ -0,0 +1,477 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.image;
+
+import net.jeremybrooks.jinx.JinxConstants;
+import net.jeremybrooks.jinx.JinxException;
+import net.jeremybrooks.jinx.JinxUtils;
+import net.jeremybrooks.jinx.PhotoUtils;
+import net.jeremybrooks.jinx.response.photos.Photo;
+import net.jeremybrooks.jinx.transport.JinxTransport;
+import net.jeremybrooks.jinx.transport.PooledHttpTransport;
+import net.jeremybrooks.jinx.transport.TransportRequest;
+import net.jeremybrooks.jinx.transport.TransportResponse;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Downloads and caches photo images.
+ * <br>
+ * Images are keyed by their URL, as returned by {@link PhotoUtils#getUrlForSize(JinxConstants.PhotoSize, Photo)}.
+ * There are two tiers:
+ * <ul>
+ * <li>An on-disk tier. Each image is stored in the cache directory in a file named by the SHA-256 hash of its URL.
+ * When the total size of the files exceeds maxDiskBytes, the least recently used files are deleted. Cache files already
+ * in the directory are picked up when the cache is created, ordered by their last modified time. Only files named
+ * like cache files are indexed, so other files in the directory are never evicted, but a dedicated directory is
+ * still recommended.</li>
+ * <li>An in-memory tier holding the raw bytes of recently used images. When the total size exceeds maxMemoryBytes,
+ * the least recently used images are dropped. Images larger than a quarter of maxMemoryBytes are not held in
+ * memory.</li>
+ * </ul>
+ * Images are streamed from the network straight to disk. If several threads ask for the same image at the same
+ * time, it is only downloaded once. Downloads use a {@link PooledHttpTransport} by default, so connections to the
+ * image servers are reused.
+ * <br>
+ * Use {@link #getPath(URL)} or {@link #getBytes(URL)} if you do not need a decoded image. A Path returned by this
+ * class may be deleted later if the image is evicted, so copy the file if you need to keep it.
+ * <br>
+ * Instances of this class are thread safe.
+ *
+ * @author Jeremy Brooks
+ */
+public class ImageCache {
+
+  /* the names given to cached files: a hex SHA-256 hash, then the extension of the URL, if it has a simple one */
+  private static final Pattern CACHE_FILE = Pattern.compile("[0-9a-f]{64}(\\.[A-Za-z0-9]{1,8})?");
+
+  private final Path directory;
+  private final long maxDiskBytes;
+  private final long maxMemoryBytes;
+  private JinxTransport transport = new PooledHttpTransport();
+
+  /* disk index, file name to size, in access order */
+  private final LinkedHashMap<String, Long> disk = new LinkedHashMap<>(16, 0.75f, true);
+  private long diskBytes;
+
+  /* memory tier, file name to bytes, in access order */
+  private final LinkedHashMap<String, byte[]> memory = new LinkedHashMap<>(16, 0.75f, true);
+  private long memoryBytes;
+
+  private final Map<String, CompletableFuture<Path>> inFlight = new ConcurrentHashMap<>();
+
+  private final AtomicLong memoryHits = new AtomicLong();
+  private final AtomicLong diskHits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+
+  /**
+   * Create a new image cache.
+   *
+   * @param directory      the directory to store images in. It will be created if it does not exist.
+   * @param maxDiskBytes   maximum total size of the images on disk.
+   * @param maxMemoryBytes maximum total size of the images held in memory. Zero disables the memory tier.
+   * @throws JinxException if the directory cannot be created or read.
+   */
+  public ImageCache(Path directory, long maxDiskBytes, long maxMemoryBytes) throws JinxException {
+    if (directory == null) {
+      throw new IllegalArgumentException("directory is required.");
+    }
+    if (maxDiskBytes < 1 || maxMemoryBytes < 0) {
+      throw new IllegalArgumentException("Invalid cache size.");
+    }
+    this.directory = directory;
+    this.maxDiskBytes = maxDiskBytes;
+    this.maxMemoryBytes = maxMemoryBytes;
+    try {
+      Files.createDirectories(directory);
+      loadIndex();
+    } catch (IOException e) {
+      throw new JinxException("Unable to open image cache in " + directory, e);
+    }
+  }
+
+  /**
+   * Set the transport used to download images.
+   *
+   * @param transport the transport to use. If null, the default transport will be used.
+   */
+  public void setTransport(JinxTransport transport) {
+    this.transport = transport == null ? new PooledHttpTransport() : transport;
+  }
+
+  public JinxTransport getTransport() {
+    return transport;
+  }
+
+  /**
+   * Get an image, downloading it if it is not in the cache.
+   *
+   * @param size  the desired size.
+   * @param photo the photo.
+   * @return decoded image.
+   * @throws JinxException if any parameter is null, or if the image cannot be downloaded or decoded.
+   */
+  public BufferedImage getImage(JinxConstants.PhotoSize size, Photo photo) throws JinxException {
+    return getImage(PhotoUtils.getUrlForSize(size, photo));
+  }
+
+  /**
+   * Get an image, downloading it if it is not in the cache.
+   *
+   * @param url the image URL.
+   * @return decoded image.
+   * @throws JinxException if the image cannot be downloaded or decoded.
+   */
+  public BufferedImage getImage(URL url) throws JinxException {
+    BufferedImage image;
+    try {
+      image = ImageIO.read(new ByteArrayInputStream(getBytes(url)));
+    } catch (IOException e) {
+      throw new JinxException("Unable to decode image " + url, e);
+    }
+    if (image == null) {
+      throw new JinxException("Unable to decode image " + url);
+    }
+    return image;
+  }
+
+  /**
+   * Get the raw bytes of an image, downloading it if it is not in the cache.
+   *
+   * @param size  the desired size.
+   * @param photo the photo.
+   * @return image bytes, as returned by Flickr.
+   * @throws JinxException if any parameter is null, or if the image cannot be downloaded.
+   */
+  public byte[] getBytes(JinxConstants.PhotoSize size, Photo photo) throws JinxException {
+    return getBytes(PhotoUtils.getUrlForSize(size, photo));
+  }
+
+  /**
+   * Get the raw bytes of an image, downloading it if it is not in the cache.
+   *
+   * @param url the image URL.
+   * @return image bytes, as returned by Flickr. The caller must not modify the array.
+   * @throws JinxException if the image cannot be downloaded.
+   */
+  public byte[] getBytes(URL url) throws JinxException {
+    String name = nameFor(url);
+    byte[] bytes;
+    synchronized (this) {
+      bytes = memory.get(name);
+    }
+    if (bytes != null) {
+      memoryHits.incrementAndGet();
+      return bytes;
+    }
+    Path path = getPath(url);
+    try {
+      bytes = Files.readAllBytes(path);
+    } catch (NoSuchFileException e) {
+      // evicted or deleted after the index was checked, so treat it as a miss
+      unindex(name);
+      path = getPath(url);
+      try {
+        bytes = Files.readAllBytes(path);
+      } catch (IOException ex) {
+        throw new JinxException("Unable to read cached image " + path, ex);
+      }
+    } catch (IOException e) {
+      throw new JinxException("Unable to read cached image " + path, e);
+    }
+    remember(name, bytes);
+    return bytes;
+  }
+
+  /**
+   * Get the cached file for an image, downloading it if it is not in the cache.
+   *
+   * @param size  the desired size.
+   * @param photo the photo.
+   * @return path to the cached image.
+   * @throws JinxException if any parameter is null, or if the image cannot be downloaded.
+   */
+  public Path getPath(JinxConstants.PhotoSize size, Photo photo) throws JinxException {
+    return getPath(PhotoUtils.getUrlForSize(size, photo));
+  }
+
+  /**
+   * Get the cached file for an image, downloading it if it is not in the cache.
+   * The image is not loaded into memory.
+   *
+   * @param url the image URL.
+   * @return path to the cached image.
+   * @throws JinxException if the image cannot be downloaded.
+   */
+  public Path getPath(URL url) throws JinxException {
+    String name = nameFor(url);
+    Path path = directory.resolve(name);
+    boolean cached;
+    synchronized (this) {
+      cached = disk.get(name) != null;
+    }
+    if (cached) {
+      diskHits.incrementAndGet();
+      touch(path);
+      return path;
+    }
+    CompletableFuture<Path> download = new CompletableFuture<>();
+    CompletableFuture<Path> existing = inFlight.putIfAbsent(name, download);
+    if (existing != null) {
+      // another thread is downloading this image
+      try {
+        return existing.join();
+      } catch (CompletionException e) {
+        throw e.getCause() instanceof JinxException ? (JinxException) e.getCause() :
+            new JinxException("Unable to get image " + url, e.getCause());
+      }
+    }
+    misses.incrementAndGet();
+    try {
+      download(url, name, path);
+      download.complete(path);
+      return path;
+    } catch (JinxException | RuntimeException e) {
+      download.completeExceptionally(e);
+      throw e;
+    } finally {
+      inFlight.remove(name);
+    }
+  }
+
+  /**
+   * Download images for a list of photos in the background, so that later requests are served from the cache.
+   * <br>
+   * Images already in the cache are not downloaded again. Failures are ignored.
+   *
+   * @param photos   the photos to download images for.
+   * @param size     the size to download.
+   * @param executor executor to run the downloads on, for example {@link net.jeremybrooks.jinx.Jinx#getExecutor()}.
+   *                 The number of simultaneous downloads is limited by the transport.
+   * @return future that completes when all of the downloads have finished. It completes with the number of images
+   * that are now in the cache.
+   */
+  public CompletableFuture<Integer> prefetch(List<Photo> photos, JinxConstants.PhotoSize size, Executor executor) {
+    List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+    for (Photo photo : photos) {
+      futures.add(CompletableFuture.supplyAsync(() -> {
+        try {
+          getPath(size, photo);
+          return true;
+        } catch (JinxException | RuntimeException e) {
+          return false;
+        }
+      }, executor));
+    }
+    return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+        .thenApply(v -> (int) futures.stream().filter(CompletableFuture::join).count());
+  }
+
+  /**
+   * Remove all images from the cache.
+   *
+   * @throws JinxException if the files cannot be deleted.
+   */
+  public synchronized void clear() throws JinxException {
+    memory.clear();
+    memoryBytes = 0;
+    try {
+      for (Iterator<Map.Entry<String, Long>> it = disk.entrySet().iterator(); it.hasNext(); ) {
+        Map.Entry<String, Long> entry = it.next();
+        Files.deleteIfExists(directory.resolve(entry.getKey()));
+        diskBytes -= entry.getValue();
+        it.remove();
+      }
+    } catch (IOException e) {
+      throw new JinxException("Unable to clear image cache.", e);
+    }
+  }
+
+  public Path getDirectory() {
+    return directory;
+  }
+
+  public synchronized long getDiskBytes() {
+    return diskBytes;
+  }
+
+  public synchronized long getMemoryBytes() {
+    return memoryBytes;
+  }
+
+  public synchronized int getDiskCount() {
+    return disk.size();
+  }
+
+  public long getMemoryHits() {
+    return memoryHits.get();
+  }
+
+  public long getDiskHits() {
+    return diskHits.get();
+  }
+
+  public long getMisses() {
+    return misses.get();
+  }
+
+  /*
+   * Stream an image to a temporary file, then move it into place.
+   */
+  private void download(URL url, String name, Path path) throws JinxException {
+    Path tmp = null;
+    try (TransportResponse response = transport.execute(new TransportRequest(JinxConstants.Method.GET, url.toString(), null, null))) {
+      if (!response.isSuccessful() || response.getBody() == null) {
+        throw new JinxException("Unable to get image " + url + ": HTTP status " + response.getCode());
+      }
+      tmp = Files.createTempFile(directory, name, ".tmp");
+      try (InputStream in = response.getBody()) {
+        Files.copy(in, tmp, StandardCopyOption.REPLACE_EXISTING);
+      }
+      Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      tmp = null;
+      add(name, Files.size(path));
+    } catch (IOException e) {
+      throw new JinxException("Unable to get image " + url, e);
+    } finally {
+      if (tmp != null) {
+        try {
+          Files.deleteIfExists(tmp);
+        } catch (IOException e) {
+          // ignore
+        }
+      }
+    }
+  }
+
+  private synchronized void add(String name, long size) throws IOException {
+    Long old = disk.put(name, size);
+    diskBytes += size - (old == null ? 0 : old);
+    Iterator<Map.Entry<String, Long>> it = disk.entrySet().iterator();
+    while (diskBytes > maxDiskBytes && disk.size() > 1) {
+      Map.Entry<String, Long> eldest = it.next();
+      if (eldest.getKey().equals(name)) {
+        continue;
+      }
+      Files.deleteIfExists(directory.resolve(eldest.getKey()));
+      diskBytes -= eldest.getValue();
+      forget(eldest.getKey());
+      it.remove();
+    }
+  }
+
+  /*
+   * Drop an image whose file has gone from the index, so the next request downloads it again.
+   */
+  private synchronized void unindex(String name) {
+    Long size = disk.remove(name);
+    if (size != null) {
+      diskBytes -= size;
+    }
+    forget(name);
+  }
+
+  private synchronized void remember(String name, byte[] bytes) {
+    if (bytes.length > maxMemoryBytes / 4) {
+      return;
+    }
+    byte[] old = memory.put(name, bytes);
+    memoryBytes += bytes.length - (old == null ? 0 : old.length);
+    Iterator<byte[]> it = memory.values().iterator();
+    while (memoryBytes > maxMemoryBytes) {
+      memoryBytes -= it.next().length;
+      it.remove();
+    }
+  }
+
+  private synchronized void forget(String name) {
+    byte[] bytes = memory.remove(name);
+    if (bytes != null) {
+      memoryBytes -= bytes.length;
+    }
+  }
+
+  /*
+   * Record the access time on disk, so that the order is kept if the cache is reopened.
+   */
+  private void touch(Path path) {
+    try {
+      Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+    } catch (IOException e) {
+      // not important
+    }
+  }
+
+  private void loadIndex() throws IOException {
+    List<Path> files = new ArrayList<>();
+    try (Stream<Path> paths = Files.list(directory)) {
+      paths.filter(p -> Files.isRegularFile(p) && CACHE_FILE.matcher(p.getFileName().toString()).matches())
+          .forEach(files::add);
+    }
+    files.sort(Comparator.comparing(p -> {
+      try {
+        return Files.getLastModifiedTime(p);
+      } catch (IOException e) {
+        return FileTime.fromMillis(0);
+      }
+    }));
+    for (Path file : files) {
+      add(file.getFileName().toString(), Files.size(file));
+    }
+  }
+
+  private static String nameFor(URL url) throws JinxException {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      String s = url.toString();
+      int dot = s.lastIndexOf('.');
+      String extension = dot > s.lastIndexOf('/') ? s.substring(dot) : "";
+      String name = JinxUtils.toHexString(digest.digest(s.getBytes(UTF_8))) + extension;
+      // a URL with an unusual extension is stored without it, so that every cache file matches the pattern
+      return CACHE_FILE.matcher(name).matches() ? name : name.substring(0, 64);
+    } catch (Exception e) {
+      throw new JinxException("Unable to create cache key for " + url, e);
+    }
+  }
+}
@@ -32,4 +32,15 @@ public class DefaultLogger implements LogInterface {
 	// Does nothing
     }
 
+    /**
+     * Nothing is logged, so no level is enabled.
+     *
+     * @param level the level.
+     * @return false.
+     */
+    @Override
+    public boolean isEnabled(LogLevel level) {
+        return false;
+    }
+
 }
@@ -17,23 +17,58 @@
 
 package net.jeremybrooks.jinx.logger;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
 /**
+ * Holds the logger used by Jinx, and provides methods that only build a
+ * message if it will be logged.
+ * <br>
+ * Messages can be built three ways:
+ * <ul>
+ * <li>with a pattern, where each <code>{}</code> is replaced by the next
+ * argument: <code>JinxLogger.log(LogLevel.DEBUG, "Retrying {} in {}ms", method, delay);</code></li>
+ * <li>with a supplier: <code>JinxLogger.log(LogLevel.DEBUG, () -&gt; expensiveMessage());</code></li>
+ * <li>with structured fields: <code>JinxLogger.event(LogLevel.DEBUG, "Calling Flickr", "method", method, "params", params);</code></li>
+ * </ul>
+ * In each case nothing is formatted unless the logger has the level enabled.
+ * Values of secret fields, such as api_key and the OAuth token and signature,
+ * are replaced with {@link #REDACTED}, including inside Map values, so request
+ * parameters can be logged safely.
  *
  * @author Jeremy Brooks
  */
 public class JinxLogger {
 
-    private static LogInterface logger = null;
+    /**
+     * Replaces the value of secret fields.
+     */
+    public static final String REDACTED = "[redacted]";
+
+    /**
+     * Default maximum number of characters of a response body to log.
+     */
+    public static final int DEFAULT_MAX_BODY_LENGTH = 4096;
+
+    private static final Set<String> SECRET_KEYS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "api_key", "api_secret", "oauth_consumer_key", "oauth_token", "oauth_token_secret",
+            "oauth_signature", "oauth_verifier", "secret")));
+
+    private static volatile LogInterface logger = new DefaultLogger();
+
+    private static volatile int maxBodyLength = DEFAULT_MAX_BODY_LENGTH;
 
 
     /**
      * @return the logger
      */
     public static LogInterface getLogger() {
-		if (logger == null) {
-			logger = new DefaultLogger();
-		}
-		return logger;
+	return logger;
     }
 
 
@@ -49,5 +84,165 @@ public class JinxLogger {
     }
 
 
+    /**
+     * @return maximum number of characters of a response body that will be logged.
+     */
+    public static int getMaxBodyLength() {
+        return maxBodyLength;
+    }
+
+
+    /**
+     * Set the maximum number of characters of a response body that will be logged.
+     *
+     * @param maxBodyLength maximum length; longer bodies are truncated by {@link #truncate(String)}.
+     */
+    public static void setMaxBodyLength(int maxBodyLength) {
+        if (maxBodyLength < 0) {
+            throw new IllegalArgumentException("maxBodyLength must not be negative.");
+        }
+        JinxLogger.maxBodyLength = maxBodyLength;
+    }
+
+
+    /**
+     * Check if the logger will log messages at a level.
+     *
+     * @param level the level.
+     * @return true if messages at the level will be logged.
+     */
+    public static boolean isEnabled(LogLevel level) {
+        return logger.isEnabled(level);
+    }
+
+
+    /**
+     * Log a message built from a pattern.
+     * <br>
+     * Each <code>{}</code> in the pattern is replaced by the next argument. If
+     * there is one more argument than there are placeholders, and it is a
+     * Throwable, it is logged as the cause.
+     *
+     * @param level the level.
+     * @param pattern the message pattern.
+     * @param args arguments for the pattern.
+     */
+    public static void log(LogLevel level, String pattern, Object... args) {
+        LogInterface l = logger;
+        if (!l.isEnabled(level)) {
+            return;
+        }
+        StringBuilder sb = new StringBuilder(pattern.length() + 32);
+        int argIndex = 0;
+        int start = 0;
+        int placeholder;
+        while ((placeholder = pattern.indexOf("{}", start)) != -1) {
+            sb.append(pattern, start, placeholder);
+            if (args != null && argIndex < args.length) {
+                sb.append(args[argIndex++]);
+            } else {
+                sb.append("{}");
+            }
+            start = placeholder + 2;
+        }
+        sb.append(pattern, start, pattern.length());
+        Throwable t = null;
+        if (args != null && argIndex == args.length - 1 && args[argIndex] instanceof Throwable) {
+            t = (Throwable) args[argIndex];
+        }
+        l.log(level, sb.toString(), Collections.emptyMap(), t);
+    }
 
+
+    /**
+     * Log a message built by a supplier.
+     *
+     * @param level the level.
+     * @param message supplies the message; only called if the level is enabled.
+     */
+    public static void log(LogLevel level, Supplier<String> message) {
+        LogInterface l = logger;
+        if (l.isEnabled(level)) {
+            l.log(level, message.get(), Collections.emptyMap(), null);
+        }
+    }
+
+
+    /**
+     * Log a message with structured fields.
+     * <br>
+     * Fields are given as alternating keys and values. Values of secret keys
+     * are redacted; Map values are copied with their secret entries redacted.
+     *
+     * @param level the level.
+     * @param message the message.
+     * @param keysAndValues alternating field names and values.
+     */
+    public static void event(LogLevel level, String message, Object... keysAndValues) {
+        LogInterface l = logger;
+        if (!l.isEnabled(level)) {
+            return;
+        }
+        Map<String, Object> fields = new LinkedHashMap<>();
+        for (int i = 0; i + 1 < keysAndValues.length; i += 2) {
+            String key = String.valueOf(keysAndValues[i]);
+            fields.put(key, redact(key, keysAndValues[i + 1]));
+        }
+        l.log(level, message, fields, null);
+    }
+
+
+    /**
+     * Check if a field or parameter name holds a secret.
+     *
+     * @param key the name.
+     * @return true if values of the field should not be logged.
+     */
+    public static boolean isSecret(String key) {
+        return key != null && SECRET_KEYS.contains(key);
+    }
+
+
+    /**
+     * Truncate a response body to the maximum body length.
+     *
+     * @param body the body.
+     * @return the body, or the start of the body followed by the original length if it was too long.
+     */
+    public static String truncate(String body) {
+        int max = maxBodyLength;
+        if (body == null || body.length() <= max) {
+            return body;
+        }
+        return body.substring(0, max) + "...[" + body.length() + " chars]";
+    }
+
+
+    private static Object redact(String key, Object value) {
+        if (isSecret(key)) {
+            return REDACTED;
+        }
+        if (value instanceof Map) {
+            Map<String, Object> copy = new LinkedHashMap<>();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                String k = String.valueOf(entry.getKey());
+                copy.put(k, redact(k, entry.getValue()));
+            }
+            return copy;
+        }
+        return value;
+    }
+
+
+    /*
+     * Append fields to a message as key=value pairs.
+     */
+    static StringBuilder appendFields(StringBuilder sb, Map<String, Object> fields) {
+        if (fields != null) {
+            for (Map.Entry<String, Object> entry : fields.entrySet()) {
+                sb.append(' ').append(entry.getKey()).append('=').append(entry.getValue());
+            }
+        }
+        return sb;
+    }
 }
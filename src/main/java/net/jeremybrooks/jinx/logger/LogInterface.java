@@ -17,13 +17,20 @@
 
 package net.jeremybrooks.jinx.logger;
 
+import java.util.Map;
+
 /**
  * Defines the interface that Jinx uses to log messages.
  *
  * By default, Jinx will not log anything. If you wish to see Jinx log output,
  * you can implement this class and then tell Jinx what class to use for logging
  * by calling <code>JinxLogger.setLogger(your class instance)</code>.
- * 
+ * <br>
+ * Only the two <code>log</code> methods must be implemented. Override
+ * {@link #isEnabled(LogLevel)} so that Jinx can skip building messages that
+ * will not be logged, and {@link #log(LogLevel, String, Map, Throwable)} to
+ * send levels and fields to a structured logging library.
+ *
  * @author Jeremy Brooks
  */
 public interface LogInterface {
@@ -43,5 +50,40 @@ public interface LogInterface {
      * @param t the cause of the error.
      */
     public void log(String message, Throwable t);
-    
+
+
+    /**
+     * Check if messages at a level will be logged.
+     * <br>
+     * Jinx checks this before building a message, so returning false avoids
+     * the cost of formatting it. The default returns true.
+     *
+     * @param level the level.
+     * @return true if messages at the level will be logged.
+     */
+    default boolean isEnabled(LogLevel level) {
+        return true;
+    }
+
+
+    /**
+     * Log a message with a level and structured fields.
+     * <br>
+     * Secret field values have already been redacted. The default appends the
+     * fields to the message as <code>key=value</code> pairs and calls
+     * {@link #log(String)} or {@link #log(String, Throwable)}.
+     *
+     * @param level the level.
+     * @param message the message.
+     * @param fields fields to log with the message; may be empty.
+     * @param t the cause of the error; may be null.
+     */
+    default void log(LogLevel level, String message, Map<String, Object> fields, Throwable t) {
+        String line = JinxLogger.appendFields(new StringBuilder(message), fields).toString();
+        if (t == null) {
+            log(line);
+        } else {
+            log(line, t);
+        }
+    }
 }
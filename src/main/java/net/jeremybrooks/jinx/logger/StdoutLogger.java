@@ -19,17 +19,64 @@ package net.jeremybrooks.jinx.logger;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.Map;
 
 /**
  * Log to <code>System.out</code>.
  *
  * By default, Jinx will not log anything. If you want to see Jinx log output
  * on stdout, call <code>JinxLogger.setLogger(new StdoutLogger());</code>.
- * 
+ * <br>
+ * All levels are logged unless a lower level is passed to the constructor.
+ *
  * @author Jeremy Brooks
  */
 public class StdoutLogger implements LogInterface {
 
+    private final LogLevel level;
+
+
+    /**
+     * Log messages at all levels.
+     */
+    public StdoutLogger() {
+        this(LogLevel.DEBUG);
+    }
+
+
+    /**
+     * Log messages at the given level and more important levels.
+     *
+     * @param level the least important level to log.
+     */
+    public StdoutLogger(LogLevel level) {
+        this.level = level == null ? LogLevel.DEBUG : level;
+    }
+
+
+    @Override
+    public boolean isEnabled(LogLevel level) {
+        return level.compareTo(this.level) <= 0;
+    }
+
+
+    /**
+     * Log messages to stdout, with the level and fields.
+     *
+     * @param level the level.
+     * @param message the message to log.
+     * @param fields fields to log with the message.
+     * @param t the Throwable to log; may be null.
+     */
+    @Override
+    public void log(LogLevel level, String message, Map<String, Object> fields, Throwable t) {
+        StringBuilder sb = new StringBuilder(level.name()).append(' ').append(message);
+        System.out.println(JinxLogger.appendFields(sb, fields));
+        if (t != null) {
+            System.out.println(getStackTrace(t));
+        }
+    }
+
 
     /**
      * Log messages to stdout.
@@ -0,0 +1,146 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.metrics;
+
+import net.jeremybrooks.jinx.JinxConstants;
+import net.jeremybrooks.jinx.JinxException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measurements for a single call to Flickr, including any retries.
+ *
+ * @author Jeremy Brooks
+ */
+public class CallEvent {
+
+  /**
+   * Name used for photo uploads, which do not have a Flickr method name.
+   */
+  public static final String UPLOAD = "upload";
+
+  /**
+   * Name used for photo replaces, which do not have a Flickr method name.
+   */
+  public static final String REPLACE = "replace";
+
+  private final String flickrMethod;
+  private final JinxConstants.Method httpMethod;
+  private final long durationNanos;
+  private final long bytesSent;
+  private final long bytesReceived;
+  private final int httpStatus;
+  private final int flickrErrorCode;
+  private final int attempts;
+  private final JinxException exception;
+
+  /**
+   * Create a new event.
+   *
+   * @param flickrMethod    the Flickr method.
+   * @param httpMethod      the http method.
+   * @param durationNanos   time taken by the call, including rate limiter waits and retries.
+   * @param bytesSent       request body bytes sent, for all attempts.
+   * @param bytesReceived   response body bytes read, for all attempts.
+   * @param httpStatus      http status of the last response, or 0 if there was no response.
+   * @param flickrErrorCode Flickr error code of the last response, or 0 if there was none.
+   * @param attempts        number of attempts made.
+   * @param exception       the exception thrown by the call, or null if it did not throw one.
+   */
+  public CallEvent(String flickrMethod, JinxConstants.Method httpMethod, long durationNanos, long bytesSent,
+                   long bytesReceived, int httpStatus, int flickrErrorCode, int attempts, JinxException exception) {
+    this.flickrMethod = flickrMethod;
+    this.httpMethod = httpMethod;
+    this.durationNanos = durationNanos;
+    this.bytesSent = bytesSent;
+    this.bytesReceived = bytesReceived;
+    this.httpStatus = httpStatus;
+    this.flickrErrorCode = flickrErrorCode;
+    this.attempts = attempts;
+    this.exception = exception;
+  }
+
+  public String getFlickrMethod() {
+    return flickrMethod;
+  }
+
+  public JinxConstants.Method getHttpMethod() {
+    return httpMethod;
+  }
+
+  public long getDurationNanos() {
+    return durationNanos;
+  }
+
+  public long getDuration(TimeUnit unit) {
+    return unit.convert(durationNanos, TimeUnit.NANOSECONDS);
+  }
+
+  public long getBytesSent() {
+    return bytesSent;
+  }
+
+  public long getBytesReceived() {
+    return bytesReceived;
+  }
+
+  public int getHttpStatus() {
+    return httpStatus;
+  }
+
+  public int getFlickrErrorCode() {
+    return flickrErrorCode;
+  }
+
+  public int getAttempts() {
+    return attempts;
+  }
+
+  public int getRetries() {
+    return Math.max(0, attempts - 1);
+  }
+
+  public JinxException getException() {
+    return exception;
+  }
+
+  /**
+   * Indicates if the call failed, either by throwing an exception or by returning a Flickr error code.
+   *
+   * @return true if the call failed.
+   */
+  public boolean isError() {
+    return exception != null || flickrErrorCode != 0;
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder("CallEvent{");
+    sb.append("flickrMethod='").append(flickrMethod).append('\'');
+    sb.append(", httpMethod=").append(httpMethod);
+    sb.append(", durationNanos=").append(durationNanos);
+    sb.append(", bytesSent=").append(bytesSent);
+    sb.append(", bytesReceived=").append(bytesReceived);
+    sb.append(", httpStatus=").append(httpStatus);
+    sb.append(", flickrErrorCode=").append(flickrErrorCode);
+    sb.append(", attempts=").append(attempts);
+    sb.append(", exception=").append(exception == null ? null : exception.getMessage());
+    sb.append('}');
+    return sb.toString();
+  }
+}
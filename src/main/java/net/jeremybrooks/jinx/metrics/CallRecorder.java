@@ -0,0 +1,164 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.metrics;
+
+import net.jeremybrooks.jinx.JinxConstants;
+import net.jeremybrooks.jinx.JinxException;
+import net.jeremybrooks.jinx.response.Response;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Collects the measurements for one call while it runs, and reports them to a {@link JinxMetrics} instance.
+ * <br>
+ * This is used by Jinx, and is not intended to be used directly. If metrics are null, every method does nothing,
+ * so callers do not need to check if metrics are enabled. Instances are used by a single thread.
+ *
+ * @author Jeremy Brooks
+ */
+public class CallRecorder {
+
+  private final JinxMetrics metrics;
+  private final String flickrMethod;
+  private final JinxConstants.Method httpMethod;
+  private final long start;
+  private long bytesSent;
+  private long bytesReceived;
+  private int httpStatus;
+  private int attempts;
+  private boolean complete;
+
+  /**
+   * Start recording a call.
+   *
+   * @param metrics      where to report the call. May be null.
+   * @param flickrMethod the Flickr method.
+   * @param httpMethod   the http method.
+   */
+  public CallRecorder(JinxMetrics metrics, String flickrMethod, JinxConstants.Method httpMethod) {
+    this.metrics = metrics;
+    this.flickrMethod = flickrMethod;
+    this.httpMethod = httpMethod;
+    this.start = metrics == null ? 0 : System.nanoTime();
+    if (metrics != null) {
+      metrics.onStart(flickrMethod, httpMethod);
+    }
+  }
+
+  /**
+   * Record that an attempt is about to be sent.
+   *
+   * @param contentLength length of the request body, or -1 if it is unknown or there is no body.
+   */
+  public void onSend(long contentLength) {
+    attempts++;
+    if (contentLength > 0) {
+      bytesSent += contentLength;
+    }
+  }
+
+  /**
+   * Record the http status of a response.
+   *
+   * @param httpStatus the status.
+   */
+  public void onResponse(int httpStatus) {
+    this.httpStatus = httpStatus;
+  }
+
+  /**
+   * Count the bytes read from a response body.
+   *
+   * @param in the response body.
+   * @return a stream that counts the bytes read, or the same stream if metrics are not enabled.
+   */
+  public InputStream count(InputStream in) {
+    if (metrics == null || in == null) {
+      return in;
+    }
+    return new FilterInputStream(in) {
+      @Override
+      public int read() throws IOException {
+        int b = super.read();
+        if (b != -1) {
+          bytesReceived++;
+        }
+        return b;
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) throws IOException {
+        int count = super.read(b, off, len);
+        if (count > 0) {
+          bytesReceived += count;
+        }
+        return count;
+      }
+
+      @Override
+      public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        bytesReceived += skipped;
+        return skipped;
+      }
+    };
+  }
+
+  /**
+   * Record that an attempt failed and will be retried.
+   *
+   * @param failure the reason the attempt failed.
+   */
+  public void onRetry(JinxException failure) {
+    if (metrics != null) {
+      metrics.onRetry(flickrMethod, attempts, failure);
+    }
+  }
+
+  /**
+   * Report a call that returned a response.
+   *
+   * @param response the response. The Flickr error code is taken from the response.
+   */
+  public void complete(Response response) {
+    finish(response == null ? 0 : response.getCode(), null);
+  }
+
+  /**
+   * Report a call that threw an exception.
+   *
+   * @param e the exception.
+   */
+  public void fail(JinxException e) {
+    if (e.getHttpStatus() != 0) {
+      httpStatus = e.getHttpStatus();
+    }
+    finish(e.getFlickrErrorCode(), e);
+  }
+
+  private void finish(int flickrErrorCode, JinxException e) {
+    if (metrics == null || complete) {
+      return;
+    }
+    complete = true;
+    metrics.onComplete(new CallEvent(flickrMethod, httpMethod, System.nanoTime() - start, bytesSent, bytesReceived,
+        httpStatus, flickrErrorCode, attempts, e));
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.metrics;
+
+import net.jeremybrooks.jinx.JinxConstants;
+import net.jeremybrooks.jinx.JinxException;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps call counts, errors, retries, byte counts and latency histograms in memory, for each Flickr method.
+ * <br>
+ * All counters are lock free, so recording a call does not make callers wait for each other. Instances of this
+ * class are thread safe and can be shared by multiple Jinx instances.
+ *
+ * @author Jeremy Brooks
+ */
+public class InMemoryMetrics implements JinxMetrics {
+
+  private final Map<String, MethodStats> stats = new ConcurrentHashMap<>();
+  private final AtomicInteger inFlight = new AtomicInteger();
+
+  @Override
+  public void onStart(String flickrMethod, JinxConstants.Method httpMethod) {
+    inFlight.incrementAndGet();
+    getOrCreate(flickrMethod).onStart();
+  }
+
+  @Override
+  public void onRetry(String flickrMethod, int attempt, JinxException failure) {
+    getOrCreate(flickrMethod).onRetry();
+  }
+
+  @Override
+  public void onComplete(CallEvent event) {
+    inFlight.decrementAndGet();
+    getOrCreate(event.getFlickrMethod()).onComplete(event);
+  }
+
+  private MethodStats getOrCreate(String flickrMethod) {
+    String key = flickrMethod == null ? "unknown" : flickrMethod;
+    MethodStats methodStats = stats.get(key);
+    if (methodStats == null) {
+      methodStats = stats.computeIfAbsent(key, MethodStats::new);
+    }
+    return methodStats;
+  }
+
+  /**
+   * Get the stats for a Flickr method.
+   *
+   * @param flickrMethod the Flickr method, or {@link CallEvent#UPLOAD} or {@link CallEvent#REPLACE}.
+   * @return stats for the method, or null if it has not been called.
+   */
+  public MethodStats getMethodStats(String flickrMethod) {
+    return stats.get(flickrMethod);
+  }
+
+  /**
+   * @return map of Flickr method name to stats, sorted by method name.
+   */
+  public Map<String, MethodStats> getMethodStats() {
+    return Collections.unmodifiableMap(new TreeMap<>(stats));
+  }
+
+  /**
+   * @return number of calls that have started but not completed, for all methods.
+   */
+  public int getInFlight() {
+    return inFlight.get();
+  }
+
+  /**
+   * Remove stats for all methods that do not have calls in flight.
+   */
+  public void reset() {
+    stats.values().removeIf(s -> s.getInFlight() == 0);
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder("InMemoryMetrics{");
+    sb.append("inFlight=").append(getInFlight());
+    sb.append(", methods=").append(getMethodStats().values());
+    sb.append('}');
+    return sb.toString();
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.metrics;
+
+import net.jeremybrooks.jinx.JinxConstants;
+import net.jeremybrooks.jinx.JinxException;
+
+/**
+ * Receives measurements for every call Jinx makes to Flickr.
+ * <br>
+ * Metrics are off by default. To collect them, set an implementation on Jinx:
+ * {@code
+ * InMemoryMetrics metrics = new InMemoryMetrics();
+ * jinx.setMetrics(metrics);
+ * }
+ * {@link InMemoryMetrics} keeps counters and latency histograms in memory. To send measurements to an external
+ * metrics library, implement this interface and record each {@link CallEvent} in that library. Use
+ * {@link #combine(JinxMetrics...)} to send measurements to more than one implementation.
+ * <br>
+ * Methods are called on the thread making the call, so implementations must be thread safe and should return
+ * quickly. Responses served from the {@link net.jeremybrooks.jinx.cache.ResponseCache} are not reported, since
+ * no call is made to Flickr.
+ *
+ * @author Jeremy Brooks
+ */
+public interface JinxMetrics {
+
+  /**
+   * Called when a call starts, before waiting for the rate limiter.
+   *
+   * @param flickrMethod the Flickr method, such as flickr.photos.getInfo. Uploads are reported as
+   *                     {@link CallEvent#UPLOAD} and replaces as {@link CallEvent#REPLACE}.
+   * @param httpMethod   the http method.
+   */
+  default void onStart(String flickrMethod, JinxConstants.Method httpMethod) {
+  }
+
+  /**
+   * Called when an attempt fails and will be retried.
+   *
+   * @param flickrMethod the Flickr method.
+   * @param attempt      the attempt that failed, starting at 1.
+   * @param failure      the reason the attempt failed.
+   */
+  default void onRetry(String flickrMethod, int attempt, JinxException failure) {
+  }
+
+  /**
+   * Called exactly once for every call that was started, when it succeeds or fails.
+   *
+   * @param event measurements for the call.
+   */
+  void onComplete(CallEvent event);
+
+  /**
+   * Send measurements to several implementations, in order.
+   *
+   * @param metrics the implementations.
+   * @return an implementation that calls each of the given implementations.
+   */
+  static JinxMetrics combine(JinxMetrics... metrics) {
+    JinxMetrics[] copy = metrics.clone();
+    return new JinxMetrics() {
+      @Override
+      public void onStart(String flickrMethod, JinxConstants.Method httpMethod) {
+        for (JinxMetrics m : copy) {
+          m.onStart(flickrMethod, httpMethod);
+        }
+      }
+
+      @Override
+      public void onRetry(String flickrMethod, int attempt, JinxException failure) {
+        for (JinxMetrics m : copy) {
+          m.onRetry(flickrMethod, attempt, failure);
+        }
+      }
+
+      @Override
+      public void onComplete(CallEvent event) {
+        for (JinxMetrics m : copy) {
+          m.onComplete(event);
+        }
+      }
+    };
+  }
+}
@@ -0,0 +1,149 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock free histogram of call durations.
+ * <br>
+ * Durations are counted in buckets whose bounds are powers of two microseconds, so percentiles are accurate to
+ * within a factor of two. This is enough to spot slow methods and regressions, and recording a value never blocks.
+ *
+ * @author Jeremy Brooks
+ */
+public class LatencyHistogram {
+
+  /*
+   * Bucket 0 counts durations under 1 microsecond, bucket i counts durations of 2^(i-1) to 2^i - 1 microseconds.
+   * The last bucket also counts anything longer, which is more than 18 hours.
+   */
+  private static final int BUCKETS = 38;
+
+  private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+  private final LongAdder count = new LongAdder();
+  private final LongAdder totalNanos = new LongAdder();
+  private final AtomicLong maxNanos = new AtomicLong();
+
+  /**
+   * Record a duration.
+   *
+   * @param nanos the duration in nanoseconds.
+   */
+  public void record(long nanos) {
+    if (nanos < 0) {
+      nanos = 0;
+    }
+    long micros = nanos / 1000;
+    int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+    buckets.incrementAndGet(bucket);
+    count.increment();
+    totalNanos.add(nanos);
+    maxNanos.accumulateAndGet(nanos, Math::max);
+  }
+
+  public long getCount() {
+    return count.sum();
+  }
+
+  public long getTotal(TimeUnit unit) {
+    return unit.convert(totalNanos.sum(), TimeUnit.NANOSECONDS);
+  }
+
+  public long getMax(TimeUnit unit) {
+    return unit.convert(maxNanos.get(), TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Get the mean duration.
+   *
+   * @param unit the unit to return.
+   * @return the mean, or 0 if nothing has been recorded.
+   */
+  public long getMean(TimeUnit unit) {
+    long n = count.sum();
+    return n == 0 ? 0 : unit.convert(totalNanos.sum() / n, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Get an estimate of a percentile.
+   * <br>
+   * The value returned is the upper bound of the bucket containing the percentile, but no more than the longest
+   * duration recorded.
+   *
+   * @param percentile the percentile, from 0 to 100.
+   * @param unit       the unit to return.
+   * @return the estimate, or 0 if nothing has been recorded.
+   */
+  public long getPercentile(double percentile, TimeUnit unit) {
+    if (percentile < 0 || percentile > 100) {
+      throw new IllegalArgumentException("percentile must be between 0 and 100.");
+    }
+    long[] snapshot = new long[BUCKETS];
+    long total = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      snapshot[i] = buckets.get(i);
+      total += snapshot[i];
+    }
+    if (total == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+    long seen = 0;
+    long max = maxNanos.get();
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += snapshot[i];
+      if (seen >= rank) {
+        long upperNanos = i == BUCKETS - 1 ? max : ((1L << i) - 1) * 1000 + 999;
+        return unit.convert(Math.min(upperNanos, max), TimeUnit.NANOSECONDS);
+      }
+    }
+    return unit.convert(max, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Get the number of durations counted in each bucket.
+   * <br>
+   * Bucket 0 counts durations under 1 microsecond; bucket i counts durations from 2^(i-1) up to 2^i microseconds.
+   * This can be used to copy the histogram to an external metrics library.
+   *
+   * @return bucket counts.
+   */
+  public long[] getBucketCounts() {
+    long[] snapshot = new long[BUCKETS];
+    for (int i = 0; i < BUCKETS; i++) {
+      snapshot[i] = buckets.get(i);
+    }
+    return snapshot;
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder("LatencyHistogram{");
+    sb.append("count=").append(getCount());
+    sb.append(", meanMs=").append(getMean(TimeUnit.MILLISECONDS));
+    sb.append(", p50Ms=").append(getPercentile(50, TimeUnit.MILLISECONDS));
+    sb.append(", p99Ms=").append(getPercentile(99, TimeUnit.MILLISECONDS));
+    sb.append(", maxMs=").append(getMax(TimeUnit.MILLISECONDS));
+    sb.append('}');
+    return sb.toString();
+  }
+}
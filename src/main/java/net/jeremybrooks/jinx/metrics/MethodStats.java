@@ -0,0 +1,151 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency for a single Flickr method, collected by {@link InMemoryMetrics}.
+ *
+ * @author Jeremy Brooks
+ */
+public class MethodStats {
+
+  private final String flickrMethod;
+  private final LatencyHistogram latency = new LatencyHistogram();
+  private final LongAdder calls = new LongAdder();
+  private final LongAdder errors = new LongAdder();
+  private final LongAdder retries = new LongAdder();
+  private final LongAdder bytesSent = new LongAdder();
+  private final LongAdder bytesReceived = new LongAdder();
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final Map<Integer, LongAdder> errorCodes = new ConcurrentHashMap<>();
+  private final Map<Integer, LongAdder> httpStatuses = new ConcurrentHashMap<>();
+
+  MethodStats(String flickrMethod) {
+    this.flickrMethod = flickrMethod;
+  }
+
+  void onStart() {
+    inFlight.incrementAndGet();
+  }
+
+  void onRetry() {
+    retries.increment();
+  }
+
+  void onComplete(CallEvent event) {
+    inFlight.decrementAndGet();
+    calls.increment();
+    latency.record(event.getDurationNanos());
+    bytesSent.add(event.getBytesSent());
+    bytesReceived.add(event.getBytesReceived());
+    if (event.isError()) {
+      errors.increment();
+    }
+    if (event.getFlickrErrorCode() != 0) {
+      errorCodes.computeIfAbsent(event.getFlickrErrorCode(), k -> new LongAdder()).increment();
+    }
+    if (event.getHttpStatus() != 0) {
+      httpStatuses.computeIfAbsent(event.getHttpStatus(), k -> new LongAdder()).increment();
+    }
+  }
+
+  public String getFlickrMethod() {
+    return flickrMethod;
+  }
+
+  public LatencyHistogram getLatency() {
+    return latency;
+  }
+
+  /**
+   * @return number of completed calls.
+   */
+  public long getCalls() {
+    return calls.sum();
+  }
+
+  /**
+   * @return number of calls that threw an exception or returned a Flickr error code.
+   */
+  public long getErrors() {
+    return errors.sum();
+  }
+
+  public long getRetries() {
+    return retries.sum();
+  }
+
+  public long getBytesSent() {
+    return bytesSent.sum();
+  }
+
+  public long getBytesReceived() {
+    return bytesReceived.sum();
+  }
+
+  /**
+   * @return number of calls that have started but not completed.
+   */
+  public int getInFlight() {
+    return inFlight.get();
+  }
+
+  /**
+   * @return map of Flickr error code to the number of calls that returned it.
+   */
+  public Map<Integer, Long> getErrorCodes() {
+    return snapshot(errorCodes);
+  }
+
+  /**
+   * @return map of http status to the number of calls that ended with it.
+   */
+  public Map<Integer, Long> getHttpStatuses() {
+    return snapshot(httpStatuses);
+  }
+
+  private static Map<Integer, Long> snapshot(Map<Integer, LongAdder> counters) {
+    Map<Integer, Long> map = new TreeMap<>();
+    for (Map.Entry<Integer, LongAdder> entry : counters.entrySet()) {
+      map.put(entry.getKey(), entry.getValue().sum());
+    }
+    return map;
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder("MethodStats{");
+    sb.append("flickrMethod='").append(flickrMethod).append('\'');
+    sb.append(", calls=").append(getCalls());
+    sb.append(", errors=").append(getErrors());
+    sb.append(", retries=").append(getRetries());
+    sb.append(", inFlight=").append(getInFlight());
+    sb.append(", bytesSent=").append(getBytesSent());
+    sb.append(", bytesReceived=").append(getBytesReceived());
+    sb.append(", errorCodes=").append(getErrorCodes());
+    sb.append(", latency=").append(latency);
+    sb.append('}');
+    return sb.toString();
+  }
+}
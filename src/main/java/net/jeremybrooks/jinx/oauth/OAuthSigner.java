@@ -0,0 +1,282 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.oauth;
+
+import net.jeremybrooks.jinx.JinxConstants;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Signs requests with OAuth 1.0a, using HMAC-SHA1.
+ * <br>
+ * This produces the same signatures as Scribe's {@code OAuthService.signRequest}, with less work per request. Each
+ * thread keeps a {@link Mac} that is already initialized with the signing key, and only initializes it again when
+ * the token secret changes. Parameters are percent-encoded using a lookup table into a buffer that each thread
+ * reuses, instead of going through {@link java.net.URLEncoder} and several regular expression replacements.
+ * <br>
+ * {@code
+ * OAuthSigner signer = new OAuthSigner(apiKey, apiSecret);
+ * Map<String, String> oauth = signer.sign(JinxConstants.Method.GET, url, params, token, tokenSecret);
+ * String header = OAuthSigner.toHeader(oauth);
+ * }
+ * <br>
+ * Instances of this class are thread safe.
+ *
+ * @author Jeremy Brooks
+ */
+public class OAuthSigner {
+
+  private static final String HMAC_SHA1 = "HmacSHA1";
+  private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+  private static final boolean[] UNRESERVED = new boolean[128];
+
+  static {
+    for (char c = 'a'; c <= 'z'; c++) {
+      UNRESERVED[c] = true;
+    }
+    for (char c = 'A'; c <= 'Z'; c++) {
+      UNRESERVED[c] = true;
+    }
+    for (char c = '0'; c <= '9'; c++) {
+      UNRESERVED[c] = true;
+    }
+    UNRESERVED['-'] = true;
+    UNRESERVED['.'] = true;
+    UNRESERVED['_'] = true;
+    UNRESERVED['~'] = true;
+  }
+
+  private final String consumerKey;
+  private final String encodedConsumerSecret;
+  private final ThreadLocal<State> state = ThreadLocal.withInitial(State::new);
+
+  /**
+   * Create a signer.
+   *
+   * @param consumerKey    the API key.
+   * @param consumerSecret the API secret.
+   */
+  public OAuthSigner(String consumerKey, String consumerSecret) {
+    if (consumerKey == null || consumerSecret == null) {
+      throw new IllegalArgumentException("consumerKey and consumerSecret are required.");
+    }
+    this.consumerKey = consumerKey;
+    this.encodedConsumerSecret = encode(consumerSecret);
+  }
+
+  /**
+   * Sign a request.
+   *
+   * @param method      the http method.
+   * @param url         the URL, without a query string. Any query string is removed before signing.
+   * @param params      the query string or form parameters of the request. May be null.
+   * @param token       the OAuth token. May be null or empty for requests that are not made for a user.
+   * @param tokenSecret the OAuth token secret. May be null.
+   * @return the OAuth parameters, including oauth_signature, to send with the request.
+   */
+  public Map<String, String> sign(JinxConstants.Method method, String url, Map<String, String> params, String token,
+                                  String tokenSecret) {
+    String timestamp = Long.toString(System.currentTimeMillis() / 1000);
+    String nonce = Long.toString(Long.parseLong(timestamp) + ThreadLocalRandom.current().nextInt());
+    return sign(method, url, params, token, tokenSecret, timestamp, nonce);
+  }
+
+  /*
+   * Sign a request with a known timestamp and nonce.
+   */
+  Map<String, String> sign(JinxConstants.Method method, String url, Map<String, String> params, String token,
+                           String tokenSecret, String timestamp, String nonce) {
+    Map<String, String> oauth = new LinkedHashMap<>();
+    if (token != null && !token.isEmpty()) {
+      oauth.put("oauth_token", token);
+    }
+    oauth.put("oauth_timestamp", timestamp);
+    oauth.put("oauth_nonce", nonce);
+    oauth.put("oauth_consumer_key", consumerKey);
+    oauth.put("oauth_signature_method", "HMAC-SHA1");
+    oauth.put("oauth_version", "1.0");
+
+    State s = state.get();
+    String baseString = baseString(s, method, url, params, oauth);
+    oauth.put("oauth_signature", s.sign(encodedConsumerSecret + '&' + encode(tokenSecret == null ? "" : tokenSecret),
+        baseString));
+    return oauth;
+  }
+
+  /**
+   * Build the value of the Authorization header for a signed request.
+   *
+   * @param oauth the OAuth parameters returned by {@link #sign(JinxConstants.Method, String, Map, String, String)}.
+   * @return the header value.
+   */
+  public static String toHeader(Map<String, String> oauth) {
+    StringBuilder sb = new StringBuilder(oauth.size() * 40).append("OAuth ");
+    boolean first = true;
+    for (Map.Entry<String, String> entry : oauth.entrySet()) {
+      if (!first) {
+        sb.append(", ");
+      }
+      first = false;
+      sb.append(entry.getKey()).append("=\"");
+      encode(entry.getValue(), sb);
+      sb.append('"');
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Percent-encode a value as described in RFC 3986, which is what OAuth requires.
+   *
+   * @param value the value to encode.
+   * @return the encoded value.
+   */
+  public static String encode(String value) {
+    StringBuilder sb = new StringBuilder(value.length() + 16);
+    encode(value, sb);
+    return sb.toString();
+  }
+
+  /**
+   * Percent-encode a value as described in RFC 3986, appending the result to a buffer.
+   *
+   * @param value the value to encode.
+   * @param out   the buffer.
+   */
+  public static void encode(String value, StringBuilder out) {
+    int length = value.length();
+    for (int i = 0; i < length; i++) {
+      char c = value.charAt(i);
+      if (c < 0x80) {
+        if (UNRESERVED[c]) {
+          out.append(c);
+        } else {
+          hex(c, out);
+        }
+      } else if (c < 0x800) {
+        hex(0xC0 | (c >> 6), out);
+        hex(0x80 | (c & 0x3F), out);
+      } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+        int cp = Character.toCodePoint(c, value.charAt(++i));
+        hex(0xF0 | (cp >> 18), out);
+        hex(0x80 | ((cp >> 12) & 0x3F), out);
+        hex(0x80 | ((cp >> 6) & 0x3F), out);
+        hex(0x80 | (cp & 0x3F), out);
+      } else if (Character.isSurrogate(c)) {
+        // an unpaired surrogate cannot be encoded as UTF-8; Java replaces it with '?'
+        hex('?', out);
+      } else {
+        hex(0xE0 | (c >> 12), out);
+        hex(0x80 | ((c >> 6) & 0x3F), out);
+        hex(0x80 | (c & 0x3F), out);
+      }
+    }
+  }
+
+  private static void hex(int b, StringBuilder out) {
+    out.append('%').append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+  }
+
+  /*
+   * Build the signature base string: method, URL, and the sorted parameters, each part encoded and joined with '&'.
+   * The parameters are encoded twice, once as a form and again as part of the base string.
+   */
+  private static String baseString(State s, JinxConstants.Method method, String url, Map<String, String> params,
+                                   Map<String, String> oauth) {
+    int count = (params == null ? 0 : params.size()) + oauth.size();
+    String[] keys = s.keys(count);
+    int n = 0;
+    if (params != null) {
+      for (String key : params.keySet()) {
+        keys[n++] = key;
+      }
+    }
+    for (String key : oauth.keySet()) {
+      keys[n++] = key;
+    }
+    Arrays.sort(keys, 0, n);
+
+    StringBuilder form = s.form;
+    form.setLength(0);
+    for (int i = 0; i < n; i++) {
+      String value = params == null ? null : params.get(keys[i]);
+      if (value == null) {
+        value = oauth.get(keys[i]);
+      }
+      if (i > 0) {
+        form.append('&');
+      }
+      encode(keys[i], form);
+      form.append('=');
+      encode(value == null ? "" : value, form);
+      keys[i] = null;
+    }
+
+    StringBuilder base = s.base;
+    base.setLength(0);
+    base.append(method.name()).append('&');
+    int query = url.indexOf('?');
+    encode(query < 0 ? url : url.substring(0, query), base);
+    base.append('&');
+    encode(form.toString(), base);
+    return base.toString();
+  }
+
+  /*
+   * Buffers and the initialized Mac for one thread.
+   */
+  private static final class State {
+    private final StringBuilder form = new StringBuilder(512);
+    private final StringBuilder base = new StringBuilder(1024);
+    private String[] keys = new String[32];
+    private Mac mac;
+    private String signingKey;
+
+    private String[] keys(int count) {
+      if (keys.length < count) {
+        keys = new String[count];
+      }
+      return keys;
+    }
+
+    private String sign(String key, String baseString) {
+      try {
+        if (mac == null) {
+          mac = Mac.getInstance(HMAC_SHA1);
+        }
+        if (!key.equals(signingKey)) {
+          mac.init(new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), HMAC_SHA1));
+          signingKey = key;
+        }
+        // doFinal resets the Mac, ready for the next request with the same key
+        return Base64.getEncoder().encodeToString(mac.doFinal(baseString.getBytes(StandardCharsets.UTF_8)));
+      } catch (GeneralSecurityException e) {
+        mac = null;
+        signingKey = null;
+        throw new IllegalStateException("Unable to sign request with " + HMAC_SHA1, e);
+      }
+    }
+  }
+}
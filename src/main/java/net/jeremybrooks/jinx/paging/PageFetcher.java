@@ -0,0 +1,44 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.paging;
+
+import net.jeremybrooks.jinx.JinxException;
+
+/**
+ * Fetches a single page of results from Flickr.
+ * <br>
+ * This is usually a lambda that calls a paged API method with the requested page number:
+ * {@code
+ * PageFetcher<Photos> fetcher = page -> favoritesApi.getList(userId, null, null, extras, 500, page);
+ * }
+ *
+ * @param <P> type of the page returned by Flickr.
+ * @author Jeremy Brooks
+ */
+@FunctionalInterface
+public interface PageFetcher<P> {
+
+  /**
+   * Fetch a page.
+   *
+   * @param page the page to fetch. The first page is 1.
+   * @return the page.
+   * @throws JinxException if there are any errors.
+   */
+  P getPage(int page) throws JinxException;
+}
@@ -0,0 +1,204 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.paging;
+
+import net.jeremybrooks.jinx.JinxException;
+import net.jeremybrooks.jinx.UncheckedJinxException;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+/**
+ * Iterates over the items in a paged Flickr response, fetching pages as they are needed.
+ * <br>
+ * The first page is fetched on the first call to {@link #hasNext()} or {@link #next()}. The number of pages
+ * reported by the first page determines when iteration stops. Iteration also stops early if Flickr returns
+ * a page with no items.
+ * <br>
+ * If prefetch is greater than zero, up to that many pages after the current one are requested in the background
+ * while the current page is being processed, so network latency overlaps with processing. Prefetched pages are
+ * requested using the executor passed to the constructor.
+ * <br>
+ * If a page cannot be fetched, {@link #hasNext()} and {@link #next()} throw an {@link UncheckedJinxException}
+ * wrapping the original {@link JinxException}.
+ * <br>
+ * Instances of this class are not thread safe. Call {@link #close()} if you stop iterating before the end, so
+ * that outstanding prefetch requests are cancelled.
+ *
+ * @param <P> type of the page returned by Flickr.
+ * @param <T> type of the items in each page.
+ * @author Jeremy Brooks
+ * @see Paging
+ */
+public class PagedIterator<P, T> implements Iterator<T>, AutoCloseable {
+
+  private final PageFetcher<P> fetcher;
+  private final Function<P, List<T>> itemsOf;
+  private final Function<P, Integer> pagesOf;
+  private final int prefetch;
+  private final Executor executor;
+
+  private final Deque<CompletableFuture<P>> pending = new ArrayDeque<>();
+  private Iterator<T> current = Collections.emptyIterator();
+  private int nextPageToRequest = 1;
+  private int pages = -1;
+  private boolean done;
+
+  /**
+   * Create a new iterator.
+   *
+   * @param fetcher  fetches pages from Flickr.
+   * @param itemsOf  returns the items in a page.
+   * @param pagesOf  returns the total number of pages reported by a page.
+   * @param prefetch number of pages to request ahead of the current page. Zero disables prefetch.
+   * @param executor executor used to request pages ahead of the current page. Can be null if prefetch is zero.
+   */
+  public PagedIterator(PageFetcher<P> fetcher, Function<P, List<T>> itemsOf, Function<P, Integer> pagesOf,
+                       int prefetch, Executor executor) {
+    if (fetcher == null || itemsOf == null || pagesOf == null) {
+      throw new IllegalArgumentException("fetcher, itemsOf, and pagesOf are required.");
+    }
+    if (prefetch < 0) {
+      throw new IllegalArgumentException("prefetch cannot be negative.");
+    }
+    if (prefetch > 0 && executor == null) {
+      throw new IllegalArgumentException("An executor is required when prefetch is greater than zero.");
+    }
+    this.fetcher = fetcher;
+    this.itemsOf = itemsOf;
+    this.pagesOf = pagesOf;
+    this.prefetch = prefetch;
+    this.executor = executor;
+  }
+
+  /**
+   * Get the total number of pages.
+   *
+   * @return total number of pages, or -1 if the first page has not been fetched yet.
+   */
+  public int getPages() {
+    return pages;
+  }
+
+  @Override
+  public boolean hasNext() {
+    while (!current.hasNext()) {
+      if (done) {
+        return false;
+      }
+      P page = nextPage();
+      List<T> items = page == null ? null : itemsOf.apply(page);
+      if (items == null || items.isEmpty()) {
+        close();
+        return false;
+      }
+      current = items.iterator();
+    }
+    return true;
+  }
+
+  @Override
+  public T next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    return current.next();
+  }
+
+  /**
+   * Stop iterating and cancel any outstanding prefetch requests.
+   */
+  @Override
+  public void close() {
+    done = true;
+    for (CompletableFuture<P> future : pending) {
+      future.cancel(true);
+    }
+    pending.clear();
+  }
+
+  private P nextPage() {
+    if (pending.isEmpty()) {
+      if (pages != -1 && nextPageToRequest > pages) {
+        return null;
+      }
+      // nothing prefetched, so fetch on the calling thread
+      pending.add(fetch(nextPageToRequest++));
+    }
+    P page;
+    try {
+      page = pending.poll().join();
+    } catch (CompletionException e) {
+      close();
+      if (e.getCause() instanceof JinxException) {
+        throw new UncheckedJinxException((JinxException) e.getCause());
+      }
+      throw e;
+    }
+    if (page == null) {
+      return null;
+    }
+    if (pages == -1) {
+      Integer total = pagesOf.apply(page);
+      // if Flickr does not report the number of pages, there is only one
+      pages = total == null ? 1 : total;
+    }
+    while (pending.size() < prefetch && nextPageToRequest <= pages) {
+      pending.add(prefetch(nextPageToRequest++));
+    }
+    return page;
+  }
+
+  private CompletableFuture<P> fetch(int pageNumber) {
+    CompletableFuture<P> future = new CompletableFuture<>();
+    try {
+      future.complete(fetcher.getPage(pageNumber));
+    } catch (Throwable t) {
+      future.completeExceptionally(t);
+    }
+    return future;
+  }
+
+  private CompletableFuture<P> prefetch(int pageNumber) {
+    CompletableFuture<P> future = new CompletableFuture<>();
+    try {
+      executor.execute(() -> {
+        if (future.isDone()) {
+          // cancelled before it started
+          return;
+        }
+        try {
+          future.complete(fetcher.getPage(pageNumber));
+        } catch (Throwable t) {
+          future.completeExceptionally(t);
+        }
+      });
+    } catch (RuntimeException e) {
+      future.completeExceptionally(new JinxException("Unable to prefetch page " + pageNumber, e));
+    }
+    return future;
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.paging;
+
+import net.jeremybrooks.jinx.Jinx;
+import net.jeremybrooks.jinx.response.photos.Photo;
+import net.jeremybrooks.jinx.response.photos.Photos;
+import net.jeremybrooks.jinx.response.photosets.PhotosetPhotos;
+
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Convenience methods for walking paged photo results.
+ * <br>
+ * Paged methods such as {@link net.jeremybrooks.jinx.api.PhotosApi#search(net.jeremybrooks.jinx.response.photos.SearchParameters)},
+ * {@link net.jeremybrooks.jinx.api.PeopleApi#getPhotos} and
+ * {@link net.jeremybrooks.jinx.api.PhotosetsApi#getPhotos} return one page at a time. These methods wrap a paged
+ * call in an iterator or stream that returns every photo, fetching pages as needed:
+ * {@code
+ * try (Stream<Photo> photos = Paging.photoStream(jinx, page -> favoritesApi.getList(userId, null, null, extras, 500, page), 2)) {
+ *   photos.forEach(photo -> ...);
+ * }
+ * }
+ * Prefetched pages are requested using {@link Jinx#getExecutor()}.
+ *
+ * @author Jeremy Brooks
+ */
+public class Paging {
+
+  private Paging() {
+  }
+
+  /**
+   * Iterate over every photo returned by a paged method that returns {@link Photos}.
+   *
+   * @param jinx     Jinx instance; its executor is used to prefetch pages.
+   * @param fetcher  fetches a page of photos.
+   * @param prefetch number of pages to request ahead of the current page. Zero disables prefetch.
+   * @return iterator over all photos.
+   */
+  public static PagedIterator<Photos, Photo> photos(Jinx jinx, PageFetcher<Photos> fetcher, int prefetch) {
+    return new PagedIterator<>(fetcher, Photos::getPhotoList, Photos::getPages, prefetch, jinx.getExecutor());
+  }
+
+  /**
+   * Iterate over every photo returned by a paged method that returns {@link PhotosetPhotos}.
+   *
+   * @param jinx     Jinx instance; its executor is used to prefetch pages.
+   * @param fetcher  fetches a page of photos.
+   * @param prefetch number of pages to request ahead of the current page. Zero disables prefetch.
+   * @return iterator over all photos.
+   */
+  public static PagedIterator<PhotosetPhotos, Photo> photosetPhotos(Jinx jinx, PageFetcher<PhotosetPhotos> fetcher, int prefetch) {
+    return new PagedIterator<>(fetcher, PhotosetPhotos::getPhotoList, PhotosetPhotos::getPages, prefetch, jinx.getExecutor());
+  }
+
+  /**
+   * Stream every photo returned by a paged method that returns {@link Photos}.
+   * <br>
+   * Close the stream if you stop before the end, so that outstanding prefetch requests are cancelled.
+   *
+   * @param jinx     Jinx instance; its executor is used to prefetch pages.
+   * @param fetcher  fetches a page of photos.
+   * @param prefetch number of pages to request ahead of the current page. Zero disables prefetch.
+   * @return stream of all photos.
+   */
+  public static Stream<Photo> photoStream(Jinx jinx, PageFetcher<Photos> fetcher, int prefetch) {
+    return stream(photos(jinx, fetcher, prefetch));
+  }
+
+  /**
+   * Stream every photo returned by a paged method that returns {@link PhotosetPhotos}.
+   * <br>
+   * Close the stream if you stop before the end, so that outstanding prefetch requests are cancelled.
+   *
+   * @param jinx     Jinx instance; its executor is used to prefetch pages.
+   * @param fetcher  fetches a page of photos.
+   * @param prefetch number of pages to request ahead of the current page. Zero disables prefetch.
+   * @return stream of all photos.
+   */
+  public static Stream<Photo> photosetPhotoStream(Jinx jinx, PageFetcher<PhotosetPhotos> fetcher, int prefetch) {
+    return stream(photosetPhotos(jinx, fetcher, prefetch));
+  }
+
+  /**
+   * Turn a paged iterator into a sequential stream. Closing the stream closes the iterator.
+   *
+   * @param iterator the iterator.
+   * @param <T>      type of the items.
+   * @return stream over the items returned by the iterator.
+   */
+  public static <T> Stream<T> stream(PagedIterator<?, T> iterator) {
+    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+        .onClose(iterator::close);
+  }
+}
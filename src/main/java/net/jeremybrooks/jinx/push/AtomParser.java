@@ -0,0 +1,170 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.push;
+
+import net.jeremybrooks.jinx.JinxException;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.util.function.Predicate;
+
+/**
+ * Reads the Atom feeds sent in push notifications.
+ * <br>
+ * The feed is read with a StAX reader as it arrives, and each entry is passed on as soon as its closing tag is read,
+ * so a large notification is never held in memory.
+ *
+ * @author Jeremy Brooks
+ */
+final class AtomParser {
+
+  private static final String MEDIA_NS = "http://search.yahoo.com/mrss/";
+  private static final XMLInputFactory FACTORY = createFactory();
+
+  private AtomParser() {
+  }
+
+  /**
+   * Parse a feed.
+   *
+   * @param in           the feed. The stream is not closed.
+   * @param subscription subscription the feed was sent to.
+   * @param sink         receives each entry. If it returns false, parsing stops.
+   * @return number of entries accepted by the sink.
+   * @throws JinxException if the feed cannot be parsed.
+   */
+  static int parse(InputStream in, String subscription, Predicate<PushEvent> sink) throws JinxException {
+    XMLStreamReader reader = null;
+    int count = 0;
+    try {
+      reader = FACTORY.createXMLStreamReader(in);
+      PushEvent event = null;
+      boolean author = false;
+      while (reader.hasNext()) {
+        int type = reader.next();
+        if (type == XMLStreamConstants.START_ELEMENT) {
+          String name = reader.getLocalName();
+          if (name.equals("entry")) {
+            event = new PushEvent();
+            event.subscription = subscription;
+          } else if (event != null) {
+            if (name.equals("author")) {
+              author = true;
+            } else if (author) {
+              if (name.equals("name")) {
+                event.authorName = text(reader);
+              } else if (name.equals("nsid")) {
+                event.authorNsid = text(reader);
+              }
+            } else {
+              readEntryElement(reader, name, event);
+            }
+          }
+        } else if (type == XMLStreamConstants.END_ELEMENT) {
+          String name = reader.getLocalName();
+          if (name.equals("author")) {
+            author = false;
+          } else if (name.equals("entry") && event != null) {
+            PushEvent done = event;
+            event = null;
+            if (!sink.test(done)) {
+              return count;
+            }
+            count++;
+          }
+        }
+      }
+      return count;
+    } catch (XMLStreamException e) {
+      throw new JinxException("Unable to parse push notification.", e);
+    } finally {
+      if (reader != null) {
+        try {
+          reader.close();
+        } catch (XMLStreamException e) {
+          // ignore
+        }
+      }
+    }
+  }
+
+  /* Read a child of an entry, other than the author. */
+  private static void readEntryElement(XMLStreamReader reader, String name, PushEvent event) throws XMLStreamException {
+    switch (name) {
+      case "id":
+        event.id = text(reader);
+        break;
+      case "title":
+        event.title = text(reader);
+        break;
+      case "published":
+        event.published = text(reader);
+        break;
+      case "updated":
+        event.updated = text(reader);
+        break;
+      case "date_taken":
+        event.dateTaken = text(reader);
+        break;
+      case "link":
+        String rel = reader.getAttributeValue(null, "rel");
+        String href = reader.getAttributeValue(null, "href");
+        if (rel == null || rel.equals("alternate")) {
+          if (event.link == null) {
+            event.link = href;
+          }
+        } else if (rel.equals("enclosure")) {
+          event.imageUrl = href;
+        }
+        break;
+      case "category":
+        String term = reader.getAttributeValue(null, "term");
+        if (term != null && !term.isEmpty()) {
+          event.tags.add(term);
+        }
+        break;
+      case "content":
+        if (MEDIA_NS.equals(reader.getNamespaceURI())) {
+          if (event.imageUrl == null) {
+            event.imageUrl = reader.getAttributeValue(null, "url");
+          }
+        } else {
+          event.content = reader.getElementText();
+        }
+        break;
+      default:
+        break;
+    }
+  }
+
+  private static String text(XMLStreamReader reader) throws XMLStreamException {
+    return reader.getElementText().trim();
+  }
+
+  private static XMLInputFactory createFactory() {
+    XMLInputFactory factory = XMLInputFactory.newInstance();
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+    factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+    return factory;
+  }
+}
@@ -0,0 +1,131 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.push;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded, lock-free queue for many producers and many consumers.
+ * <br>
+ * This is an array ring buffer in which each slot has a sequence number. A producer claims a slot by moving the tail
+ * forward with a compare and set, writes the element, then publishes it by advancing the slot's sequence; a consumer
+ * does the same from the head. Neither side ever blocks: {@link #offer(Object)} returns false when the queue is
+ * full and {@link #poll()} returns null when it is empty, and the caller decides how to wait.
+ *
+ * @param <E> type of the elements.
+ * @author Jeremy Brooks
+ */
+final class BoundedQueue<E> {
+
+  private final int mask;
+  private final AtomicReferenceArray<E> items;
+  private final AtomicLongArray sequences;
+  private final AtomicLong head = new AtomicLong();
+  private final AtomicLong tail = new AtomicLong();
+
+  /**
+   * Create a queue.
+   *
+   * @param capacity minimum capacity. The capacity is rounded up to a power of two.
+   */
+  BoundedQueue(int capacity) {
+    if (capacity < 1 || capacity > 1 << 30) {
+      throw new IllegalArgumentException("capacity must be between 1 and 2^30.");
+    }
+    int size = Integer.highestOneBit(capacity);
+    if (size < capacity) {
+      size <<= 1;
+    }
+    this.mask = size - 1;
+    this.items = new AtomicReferenceArray<>(size);
+    this.sequences = new AtomicLongArray(size);
+    for (int i = 0; i < size; i++) {
+      sequences.set(i, i);
+    }
+  }
+
+  /**
+   * Add an element if there is room.
+   *
+   * @param e the element. Must not be null.
+   * @return true if the element was added, false if the queue is full.
+   */
+  boolean offer(E e) {
+    if (e == null) {
+      throw new NullPointerException();
+    }
+    long pos = tail.get();
+    while (true) {
+      int index = (int) (pos & mask);
+      long diff = sequences.get(index) - pos;
+      if (diff == 0) {
+        if (tail.compareAndSet(pos, pos + 1)) {
+          items.lazySet(index, e);
+          sequences.set(index, pos + 1);
+          return true;
+        }
+        pos = tail.get();
+      } else if (diff < 0) {
+        // the slot still holds an element from the previous lap
+        return false;
+      } else {
+        pos = tail.get();
+      }
+    }
+  }
+
+  /**
+   * Remove the element at the head of the queue.
+   *
+   * @return the element, or null if the queue is empty.
+   */
+  E poll() {
+    long pos = head.get();
+    while (true) {
+      int index = (int) (pos & mask);
+      long diff = sequences.get(index) - (pos + 1);
+      if (diff == 0) {
+        if (head.compareAndSet(pos, pos + 1)) {
+          E e = items.get(index);
+          items.lazySet(index, null);
+          sequences.set(index, pos + mask + 1);
+          return e;
+        }
+        pos = head.get();
+      } else if (diff < 0) {
+        return null;
+      } else {
+        pos = head.get();
+      }
+    }
+  }
+
+  /**
+   * @return number of elements in the queue. This is an estimate while other threads are using the queue.
+   */
+  int size() {
+    long size = tail.get() - head.get();
+    return (int) Math.max(0, Math.min(size, mask + 1));
+  }
+
+  int capacity() {
+    return mask + 1;
+  }
+}
@@ -0,0 +1,151 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.push;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One entry from a push notification.
+ * <br>
+ * Flickr sends notifications as Atom feeds with one entry for each new or updated photo. Fields that are not in the
+ * entry are null.
+ *
+ * @author Jeremy Brooks
+ */
+public class PushEvent implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  String subscription;
+  String id;
+  String title;
+  String link;
+  String imageUrl;
+  String content;
+  String authorName;
+  String authorNsid;
+  String published;
+  String updated;
+  String dateTaken;
+  List<String> tags = new ArrayList<>();
+
+  PushEvent() {
+  }
+
+  /**
+   * The subscription the event was sent to, which is the part of the callback URL path after the receiver's path.
+   * <br>
+   * For example, if the receiver path is /push and the callback URL is http://example.com:8080/push/cats, the
+   * subscription is "cats".
+   *
+   * @return the subscription, or an empty string if the callback URL is the receiver path.
+   */
+  public String getSubscription() {
+    return subscription;
+  }
+
+  /**
+   * @return Atom id of the entry, such as "tag:flickr.com,2005:/photo/12345".
+   */
+  public String getId() {
+    return id;
+  }
+
+  /**
+   * @return id of the photo, taken from the end of the entry id, or null if the entry is not about a photo.
+   */
+  public String getPhotoId() {
+    if (id == null) {
+      return null;
+    }
+    int end = id.length();
+    int start = end;
+    while (start > 0 && Character.isDigit(id.charAt(start - 1))) {
+      start--;
+    }
+    return start == end ? null : id.substring(start, end);
+  }
+
+  public String getTitle() {
+    return title;
+  }
+
+  /**
+   * @return URL of the photo page.
+   */
+  public String getLink() {
+    return link;
+  }
+
+  /**
+   * @return URL of the image, from the enclosure link or media content of the entry.
+   */
+  public String getImageUrl() {
+    return imageUrl;
+  }
+
+  /**
+   * @return HTML content of the entry.
+   */
+  public String getContent() {
+    return content;
+  }
+
+  public String getAuthorName() {
+    return authorName;
+  }
+
+  public String getAuthorNsid() {
+    return authorNsid;
+  }
+
+  public String getPublished() {
+    return published;
+  }
+
+  public String getUpdated() {
+    return updated;
+  }
+
+  public String getDateTaken() {
+    return dateTaken;
+  }
+
+  /**
+   * @return tags of the photo. Never null.
+   */
+  public List<String> getTags() {
+    return Collections.unmodifiableList(tags);
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder("PushEvent{");
+    sb.append("subscription='").append(subscription).append('\'');
+    sb.append(", id='").append(id).append('\'');
+    sb.append(", title='").append(title).append('\'');
+    sb.append(", link='").append(link).append('\'');
+    sb.append(", authorNsid='").append(authorNsid).append('\'');
+    sb.append(", updated='").append(updated).append('\'');
+    sb.append('}');
+    return sb.toString();
+  }
+}
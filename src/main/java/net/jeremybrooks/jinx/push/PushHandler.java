@@ -0,0 +1,53 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.push;
+
+/**
+ * Receives the events and verification requests that arrive at a {@link PushReceiver}.
+ * <br>
+ * Events are delivered on the receiver's dispatch threads. If more than one dispatch thread is used, events can be
+ * delivered at the same time and out of order. Hubs deliver notifications at least once, so an event may arrive
+ * more than once; {@link PushEvent#getId()} can be used to recognize duplicates.
+ *
+ * @author Jeremy Brooks
+ */
+@FunctionalInterface
+public interface PushHandler {
+
+  /**
+   * Called for each entry in a notification.
+   *
+   * @param event the event.
+   */
+  void onEvent(PushEvent event);
+
+  /**
+   * Called when the hub asks to verify a subscribe or unsubscribe request, after the verify token has been checked.
+   * <br>
+   * This is called on an HTTP thread, before the response to the hub is sent. The default accepts every request.
+   *
+   * @param subscription the subscription, as described in {@link PushEvent#getSubscription()}.
+   * @param mode         "subscribe" or "unsubscribe".
+   * @param topic        the topic URL.
+   * @param leaseSeconds lease requested by the hub, or null if the subscription does not expire.
+   * @return true to confirm the request, false to refuse it.
+   */
+  default boolean onVerify(String subscription, String mode, String topic, Integer leaseSeconds) {
+    return true;
+  }
+}
@@ -0,0 +1,672 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.push;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import net.jeremybrooks.jinx.JinxException;
+import net.jeremybrooks.jinx.logger.JinxLogger;
+import net.jeremybrooks.jinx.logger.LogLevel;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * An embedded HTTP server that receives push notifications, so an application can react to new photos instead of
+ * polling.
+ * <br>
+ * The receiver answers the hub's verification requests, and reads each notification as it arrives, putting every
+ * entry on a bounded queue. Dispatch threads take entries from the queue and pass them to a {@link PushHandler}.
+ * If the handler falls behind and the queue stays full for longer than the offer timeout, the notification is
+ * refused with HTTP 503 so that the hub sends it again later; entries queued before the queue filled are still
+ * delivered, so the handler may see them twice.
+ * <br>
+ * The receiver must be running before calling {@link net.jeremybrooks.jinx.api.PushApi#subscribe} with
+ * {@link net.jeremybrooks.jinx.JinxConstants.VerificationMode#sync}, since the hub verifies the subscription before
+ * the call returns. The callback URL must be reachable from the internet.
+ * <br>
+ * Several subscriptions can share one receiver. Flickr requires each subscription to have a different callback URL,
+ * so add a name to the path for each one, and use {@link PushEvent#getSubscription()} to tell them apart:
+ * {@code
+ * PushReceiver receiver = new PushReceiver(8080, event -> System.out.println(event.getPhotoId()));
+ * receiver.setVerifyToken(token);
+ * receiver.start();
+ * pushApi.subscribe("contacts_photos", "http://example.com:8080/push/contacts", VerificationMode.sync, token,
+ *     null, null, null, null, null, null, null, null, null, null);
+ * }
+ * Settings must be changed before the receiver is started.
+ *
+ * @author Jeremy Brooks
+ */
+public class PushReceiver implements AutoCloseable {
+
+  /**
+   * Default path of the callback URLs.
+   */
+  public static final String DEFAULT_PATH = "/push";
+
+  /**
+   * Default capacity of the event queue.
+   */
+  public static final int DEFAULT_QUEUE_CAPACITY = 4096;
+
+  /**
+   * Default time to wait for room in the queue before refusing a notification, in milliseconds.
+   */
+  public static final long DEFAULT_OFFER_TIMEOUT = 5000;
+
+  /**
+   * Default maximum size of a notification, in bytes.
+   */
+  public static final long DEFAULT_MAX_BODY_BYTES = 1024 * 1024;
+
+  private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+  private final InetSocketAddress address;
+  private final PushHandler handler;
+  private String path = DEFAULT_PATH;
+  private String verifyToken;
+  private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+  private int dispatchThreads = 1;
+  private int httpThreads = 2;
+  private long offerTimeout = DEFAULT_OFFER_TIMEOUT;
+  private long maxBodyBytes = DEFAULT_MAX_BODY_BYTES;
+  private boolean verboseLogging;
+
+  private final AtomicLong received = new AtomicLong();
+  private final AtomicLong dispatched = new AtomicLong();
+  private final AtomicLong failed = new AtomicLong();
+  private final AtomicLong rejected = new AtomicLong();
+  private final AtomicLong verified = new AtomicLong();
+
+  private volatile boolean running;
+  private BoundedQueue<PushEvent> queue;
+  private HttpServer server;
+  private ExecutorService httpExecutor;
+  private List<Thread> dispatchers;
+  /* dispatchers that found the queue empty and are parked, or about to park */
+  private final Queue<Thread> idle = new ConcurrentLinkedQueue<>();
+
+  /**
+   * Create a receiver that listens on all interfaces.
+   *
+   * @param port    port to listen on. Use 0 to pick a free port, which is returned by {@link #getPort()}.
+   * @param handler receives the events.
+   */
+  public PushReceiver(int port, PushHandler handler) {
+    this(new InetSocketAddress(port), handler);
+  }
+
+  /**
+   * Create a receiver.
+   *
+   * @param address address to listen on.
+   * @param handler receives the events.
+   */
+  public PushReceiver(InetSocketAddress address, PushHandler handler) {
+    if (address == null || handler == null) {
+      throw new IllegalArgumentException("address and handler are required.");
+    }
+    this.address = address;
+    this.handler = handler;
+  }
+
+  /**
+   * Start listening.
+   *
+   * @throws JinxException if the server cannot be started.
+   */
+  public synchronized void start() throws JinxException {
+    if (running) {
+      throw new IllegalStateException("The receiver is already running.");
+    }
+    queue = new BoundedQueue<>(queueCapacity);
+    try {
+      server = HttpServer.create(address, 0);
+    } catch (IOException e) {
+      throw new JinxException("Unable to start push receiver on " + address, e);
+    }
+    AtomicInteger count = new AtomicInteger();
+    httpExecutor = Executors.newFixedThreadPool(httpThreads, r -> {
+      Thread t = new Thread(r, "jinx-push-http-" + count.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    });
+    server.setExecutor(httpExecutor);
+    // take every path, so requests outside the callback path are answered here and not reset by the server
+    server.createContext("/", this::handle);
+    running = true;
+    dispatchers = new ArrayList<>();
+    for (int i = 1; i <= dispatchThreads; i++) {
+      Thread t = new Thread(this::dispatch, "jinx-push-dispatch-" + i);
+      t.setDaemon(true);
+      dispatchers.add(t);
+      t.start();
+    }
+    server.start();
+  }
+
+  /**
+   * Stop listening. Events already in the queue are delivered before this method returns, unless it takes longer
+   * than the timeout.
+   *
+   * @param timeout maximum time to wait for the queue to drain, in milliseconds.
+   */
+  public synchronized void stop(long timeout) {
+    if (!running) {
+      return;
+    }
+    server.stop(0);
+    httpExecutor.shutdownNow();
+    running = false;
+    for (Thread t : dispatchers) {
+      LockSupport.unpark(t);
+    }
+    long deadline = System.currentTimeMillis() + timeout;
+    for (Thread t : dispatchers) {
+      try {
+        t.join(Math.max(1, deadline - System.currentTimeMillis()));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        break;
+      }
+    }
+    for (Thread t : dispatchers) {
+      t.interrupt();
+    }
+  }
+
+  /**
+   * Stop listening, waiting up to the offer timeout for queued events to be delivered.
+   */
+  @Override
+  public void close() {
+    stop(offerTimeout);
+  }
+
+  public boolean isRunning() {
+    return running;
+  }
+
+  /**
+   * @return the port the receiver is listening on. Only valid while running.
+   */
+  public synchronized int getPort() {
+    if (server == null) {
+      throw new IllegalStateException("The receiver has not been started.");
+    }
+    return server.getAddress().getPort();
+  }
+
+  /**
+   * Build a callback URL for a subscription.
+   *
+   * @param baseUrl      the URL the receiver can be reached at from the internet, such as "http://example.com:8080".
+   * @param subscription name of the subscription. May be null or empty.
+   * @return the callback URL.
+   */
+  public String getCallbackUrl(String baseUrl, String subscription) {
+    StringBuilder sb = new StringBuilder(baseUrl);
+    if (sb.length() > 0 && sb.charAt(sb.length() - 1) == '/') {
+      sb.setLength(sb.length() - 1);
+    }
+    sb.append(path);
+    if (subscription != null && !subscription.isEmpty()) {
+      sb.append('/').append(subscription);
+    }
+    return sb.toString();
+  }
+
+  public String getPath() {
+    return path;
+  }
+
+  /**
+   * @param path path of the callback URLs. The default is {@link #DEFAULT_PATH}.
+   */
+  public void setPath(String path) {
+    if (path == null || !path.startsWith("/")) {
+      throw new IllegalArgumentException("path must start with /.");
+    }
+    this.path = path.length() > 1 && path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+  }
+
+  public String getVerifyToken() {
+    return verifyToken;
+  }
+
+  /**
+   * @param verifyToken if set, verification requests must carry this token, which is the verificationToken passed
+   *                    to subscribe and unsubscribe. May be null.
+   */
+  public void setVerifyToken(String verifyToken) {
+    this.verifyToken = verifyToken;
+  }
+
+  public int getQueueCapacity() {
+    return queueCapacity;
+  }
+
+  /**
+   * @param queueCapacity capacity of the event queue, rounded up to a power of two. The default is
+   *                      {@link #DEFAULT_QUEUE_CAPACITY}.
+   */
+  public void setQueueCapacity(int queueCapacity) {
+    if (queueCapacity < 1) {
+      throw new IllegalArgumentException("queueCapacity must be at least 1.");
+    }
+    this.queueCapacity = queueCapacity;
+  }
+
+  public int getDispatchThreads() {
+    return dispatchThreads;
+  }
+
+  /**
+   * @param dispatchThreads number of threads that call the handler. The default is 1, which delivers events in the
+   *                        order they arrive.
+   */
+  public void setDispatchThreads(int dispatchThreads) {
+    if (dispatchThreads < 1) {
+      throw new IllegalArgumentException("dispatchThreads must be at least 1.");
+    }
+    this.dispatchThreads = dispatchThreads;
+  }
+
+  public int getHttpThreads() {
+    return httpThreads;
+  }
+
+  /**
+   * @param httpThreads number of threads that read requests. The default is 2.
+   */
+  public void setHttpThreads(int httpThreads) {
+    if (httpThreads < 1) {
+      throw new IllegalArgumentException("httpThreads must be at least 1.");
+    }
+    this.httpThreads = httpThreads;
+  }
+
+  public long getOfferTimeout() {
+    return offerTimeout;
+  }
+
+  /**
+   * @param offerTimeout time to wait for room in the queue before refusing a notification, in milliseconds.
+   *                     The default is {@link #DEFAULT_OFFER_TIMEOUT}.
+   */
+  public void setOfferTimeout(long offerTimeout) {
+    if (offerTimeout < 0) {
+      throw new IllegalArgumentException("offerTimeout must not be negative.");
+    }
+    this.offerTimeout = offerTimeout;
+  }
+
+  public long getMaxBodyBytes() {
+    return maxBodyBytes;
+  }
+
+  /**
+   * @param maxBodyBytes notifications larger than this are refused with HTTP 413. The default is
+   *                     {@link #DEFAULT_MAX_BODY_BYTES}.
+   */
+  public void setMaxBodyBytes(long maxBodyBytes) {
+    if (maxBodyBytes < 1) {
+      throw new IllegalArgumentException("maxBodyBytes must be at least 1.");
+    }
+    this.maxBodyBytes = maxBodyBytes;
+  }
+
+  public boolean isVerboseLogging() {
+    return verboseLogging;
+  }
+
+  /**
+   * @param verboseLogging if true, failed requests and handler exceptions are logged to the {@link JinxLogger} as
+   *                       warnings. The default is false.
+   */
+  public void setVerboseLogging(boolean verboseLogging) {
+    this.verboseLogging = verboseLogging;
+  }
+
+  /**
+   * @return number of events put on the queue.
+   */
+  public long getReceived() {
+    return received.get();
+  }
+
+  /**
+   * @return number of events passed to the handler.
+   */
+  public long getDispatched() {
+    return dispatched.get();
+  }
+
+  /**
+   * @return number of events for which the handler threw an exception.
+   */
+  public long getFailed() {
+    return failed.get();
+  }
+
+  /**
+   * @return number of notifications refused because the queue was full.
+   */
+  public long getRejected() {
+    return rejected.get();
+  }
+
+  /**
+   * @return number of verification requests confirmed.
+   */
+  public long getVerified() {
+    return verified.get();
+  }
+
+  /**
+   * @return number of events waiting to be passed to the handler.
+   */
+  public int getQueueSize() {
+    BoundedQueue<PushEvent> q = queue;
+    return q == null ? 0 : q.size();
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder("PushReceiver{");
+    sb.append("address=").append(address);
+    sb.append(", path='").append(path).append('\'');
+    sb.append(", running=").append(running);
+    sb.append(", received=").append(received.get());
+    sb.append(", dispatched=").append(dispatched.get());
+    sb.append(", rejected=").append(rejected.get());
+    sb.append('}');
+    return sb.toString();
+  }
+
+  /*
+   * Route a request. GET requests are verifications, POST requests are notifications.
+   */
+  private void handle(HttpExchange exchange) throws IOException {
+    try {
+      String requestPath = exchange.getRequestURI().getPath();
+      String prefix = path.equals("/") ? path : path + "/";
+      String subscription = requestPath.startsWith(prefix) ? requestPath.substring(prefix.length()) : "";
+      if (!requestPath.equals(path) && !requestPath.startsWith(prefix)) {
+        // /pushed does not belong to /push
+        refuse(exchange, 404);
+      } else if (exchange.getRequestMethod().equals("GET")) {
+        verify(exchange, subscription);
+      } else if (exchange.getRequestMethod().equals("POST")) {
+        notify(exchange, subscription);
+      } else {
+        exchange.getResponseHeaders().set("Allow", "GET, POST");
+        refuse(exchange, 405);
+      }
+    } catch (RuntimeException e) {
+      warn("Push request failed.", e);
+      refuse(exchange, 500);
+    } finally {
+      exchange.close();
+    }
+  }
+
+  /*
+   * Answer a verification request by echoing the challenge, if the token matches and the handler agrees.
+   */
+  private void verify(HttpExchange exchange, String subscription) throws IOException {
+    Map<String, String> query;
+    try {
+      query = parseQuery(exchange.getRequestURI().getRawQuery());
+    } catch (IllegalArgumentException e) {
+      respond(exchange, 400, null);
+      return;
+    }
+    String mode = query.get("hub.mode");
+    String challenge = query.get("hub.challenge");
+    if (mode == null || challenge == null) {
+      respond(exchange, 400, null);
+      return;
+    }
+    Integer leaseSeconds = null;
+    String lease = query.get("hub.lease_seconds");
+    if (lease != null && !lease.isEmpty()) {
+      try {
+        leaseSeconds = Integer.valueOf(lease);
+      } catch (NumberFormatException e) {
+        respond(exchange, 400, null);
+        return;
+      }
+    }
+    boolean ok = (verifyToken == null || verifyToken.equals(query.get("hub.verify_token"))) &&
+        (mode.equals("subscribe") || mode.equals("unsubscribe")) &&
+        handler.onVerify(subscription, mode, query.get("hub.topic"), leaseSeconds);
+    if (ok) {
+      verified.incrementAndGet();
+      exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+      respond(exchange, 200, challenge.getBytes(StandardCharsets.UTF_8));
+    } else {
+      respond(exchange, 404, null);
+    }
+  }
+
+  /*
+   * Read a notification, queueing each entry as it is parsed.
+   */
+  private void notify(HttpExchange exchange, String subscription) throws IOException {
+    String length = exchange.getRequestHeaders().getFirst("Content-Length");
+    if (length != null) {
+      try {
+        if (Long.parseLong(length.trim()) > maxBodyBytes) {
+          refuse(exchange, 413);
+          return;
+        }
+      } catch (NumberFormatException e) {
+        refuse(exchange, 400);
+        return;
+      }
+    }
+    LimitedInputStream in = new LimitedInputStream(exchange.getRequestBody(), maxBodyBytes);
+    boolean[] full = new boolean[1];
+    try {
+      AtomParser.parse(in, subscription, event -> {
+        if (offer(event)) {
+          received.incrementAndGet();
+          return true;
+        }
+        full[0] = true;
+        return false;
+      });
+    } catch (JinxException e) {
+      refuse(exchange, in.exceeded ? 413 : 400);
+      return;
+    }
+    if (full[0]) {
+      rejected.incrementAndGet();
+      exchange.getResponseHeaders().set("Retry-After", "5");
+      refuse(exchange, 503);
+    } else {
+      respond(exchange, 204, null);
+    }
+  }
+
+  /*
+   * Put an event on the queue, waiting up to the offer timeout for room. The wait backs off from spinning to
+   * parking, so a brief burst costs little and a long stall does not burn a core.
+   */
+  private boolean offer(PushEvent event) {
+    if (queue.offer(event)) {
+      wakeDispatcher();
+      return true;
+    }
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(offerTimeout);
+    long park = 1000;
+    while (running && System.nanoTime() < deadline) {
+      LockSupport.parkNanos(park);
+      if (queue.offer(event)) {
+        wakeDispatcher();
+        return true;
+      }
+      park = Math.min(park * 2, MAX_PARK_NANOS);
+    }
+    return false;
+  }
+
+  /*
+   * Unpark one idle dispatcher after an event is queued. If none is idle, a running dispatcher will find the event.
+   */
+  private void wakeDispatcher() {
+    Thread t = idle.poll();
+    if (t != null) {
+      LockSupport.unpark(t);
+    }
+  }
+
+  /*
+   * Take events from the queue and pass them to the handler until the receiver stops and the queue is empty.
+   * An idle dispatcher parks until an event is offered or the receiver stops. It checks the queue again after
+   * registering as idle, so an event offered before the registration is not missed.
+   */
+  private void dispatch() {
+    Thread current = Thread.currentThread();
+    while (true) {
+      PushEvent event = queue.poll();
+      if (event == null) {
+        if (!running || current.isInterrupted()) {
+          return;
+        }
+        idle.add(current);
+        if (queue.size() == 0 && running) {
+          LockSupport.park(this);
+        }
+        idle.remove(current);
+        continue;
+      }
+      try {
+        handler.onEvent(event);
+      } catch (RuntimeException e) {
+        failed.incrementAndGet();
+        warn("Push handler threw an exception.", e);
+      }
+      dispatched.incrementAndGet();
+    }
+  }
+
+  /*
+   * Answer a request whose body may not have been read to the end. The connection is closed rather than
+   * handed back to the sender's pool, where the next request on it would find the leftover bytes or a reset.
+   */
+  private static void refuse(HttpExchange exchange, int status) throws IOException {
+    exchange.getResponseHeaders().set("Connection", "close");
+    respond(exchange, status, null);
+  }
+
+  private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+    if (body == null || body.length == 0) {
+      exchange.sendResponseHeaders(status, -1);
+    } else {
+      exchange.sendResponseHeaders(status, body.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(body);
+      }
+    }
+  }
+
+  private static Map<String, String> parseQuery(String rawQuery) throws UnsupportedEncodingException {
+    Map<String, String> map = new HashMap<>();
+    if (rawQuery != null) {
+      for (String pair : rawQuery.split("&")) {
+        int eq = pair.indexOf('=');
+        String key = eq < 0 ? pair : pair.substring(0, eq);
+        String value = eq < 0 ? "" : pair.substring(eq + 1);
+        map.putIfAbsent(URLDecoder.decode(key, "UTF-8"), URLDecoder.decode(value, "UTF-8"));
+      }
+    }
+    return map;
+  }
+
+  private void warn(String message, Throwable t) {
+    if (verboseLogging) {
+      JinxLogger.log(LogLevel.WARN, message, t);
+    }
+  }
+
+  /*
+   * Stops reading after a number of bytes, so a notification without a Content-Length cannot exhaust memory.
+   */
+  private static class LimitedInputStream extends FilterInputStream {
+    private long remaining;
+    private boolean exceeded;
+
+    LimitedInputStream(InputStream in, long limit) {
+      super(in);
+      this.remaining = limit;
+    }
+
+    @Override
+    public int read() throws IOException {
+      if (remaining <= 0) {
+        return exceed();
+      }
+      int b = super.read();
+      if (b >= 0) {
+        remaining--;
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (remaining <= 0) {
+        return exceed();
+      }
+      int n = super.read(b, off, (int) Math.min(len, remaining));
+      if (n > 0) {
+        remaining -= n;
+      }
+      return n;
+    }
+
+    private int exceed() throws IOException {
+      if (super.read() < 0) {
+        return -1;
+      }
+      exceeded = true;
+      throw new IOException("Notification is too large.");
+    }
+  }
+}
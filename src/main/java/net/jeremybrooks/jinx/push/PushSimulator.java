@@ -0,0 +1,233 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.push;
+
+import net.jeremybrooks.jinx.JinxConstants;
+import net.jeremybrooks.jinx.JinxException;
+import net.jeremybrooks.jinx.transport.JinxTransport;
+import net.jeremybrooks.jinx.transport.PooledHttpTransport;
+import net.jeremybrooks.jinx.transport.RequestBody;
+import net.jeremybrooks.jinx.transport.TransportRequest;
+import net.jeremybrooks.jinx.transport.TransportResponse;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Acts as a push hub, for testing a {@link PushReceiver} without subscribing to Flickr.
+ * <br>
+ * The simulator sends the same requests the hub does: a verification request with a challenge, and notifications
+ * containing Atom feeds.
+ * {@code
+ * PushSimulator hub = new PushSimulator();
+ * String callback = receiver.getCallbackUrl("http://localhost:" + receiver.getPort(), "test");
+ * hub.verify(callback, "subscribe", "contacts_photos", token, null);
+ * hub.publishPhotos(callback, "85853333@N00", Arrays.asList("123", "456"));
+ * }
+ *
+ * @author Jeremy Brooks
+ */
+public class PushSimulator {
+
+  private static final String ATOM_NS = "http://www.w3.org/2005/Atom";
+  private static final String FLICKR_NS = "urn:flickr:user";
+  private static final String MEDIA_NS = "http://search.yahoo.com/mrss/";
+
+  private final JinxTransport transport;
+
+  /**
+   * Create a simulator that uses the default transport.
+   */
+  public PushSimulator() {
+    this(new PooledHttpTransport());
+  }
+
+  /**
+   * Create a simulator.
+   *
+   * @param transport the transport used to send requests to the receiver.
+   */
+  public PushSimulator(JinxTransport transport) {
+    if (transport == null) {
+      throw new IllegalArgumentException("transport is required.");
+    }
+    this.transport = transport;
+  }
+
+  /**
+   * Send a verification request.
+   *
+   * @param callbackUrl  the callback URL.
+   * @param mode         "subscribe" or "unsubscribe".
+   * @param topic        the topic.
+   * @param verifyToken  the verify token. May be null.
+   * @param leaseSeconds the lease. May be null.
+   * @return true if the receiver confirmed the request by echoing the challenge.
+   * @throws JinxException if the request cannot be sent.
+   */
+  public boolean verify(String callbackUrl, String mode, String topic, String verifyToken, Integer leaseSeconds)
+      throws JinxException {
+    String challenge = Long.toHexString(ThreadLocalRandom.current().nextLong());
+    StringBuilder url = new StringBuilder(callbackUrl).append(callbackUrl.indexOf('?') < 0 ? '?' : '&');
+    url.append("hub.mode=").append(encode(mode));
+    url.append("&hub.topic=").append(encode(topic));
+    url.append("&hub.challenge=").append(challenge);
+    if (verifyToken != null) {
+      url.append("&hub.verify_token=").append(encode(verifyToken));
+    }
+    if (leaseSeconds != null) {
+      url.append("&hub.lease_seconds=").append(leaseSeconds);
+    }
+    try (TransportResponse response = transport.execute(
+        new TransportRequest(JinxConstants.Method.GET, url.toString(), null, null))) {
+      if (!response.isSuccessful() || response.getBody() == null) {
+        return false;
+      }
+      return challenge.equals(read(response.getBody()));
+    } catch (IOException e) {
+      throw new JinxException("Unable to send verification request to " + callbackUrl, e);
+    }
+  }
+
+  /**
+   * Send a notification.
+   *
+   * @param callbackUrl the callback URL.
+   * @param atom        the Atom feed to send.
+   * @return the HTTP status returned by the receiver.
+   * @throws JinxException if the request cannot be sent.
+   */
+  public int publish(String callbackUrl, String atom) throws JinxException {
+    TransportRequest request = new TransportRequest(JinxConstants.Method.POST, callbackUrl,
+        Collections.singletonMap("Content-Type", "application/atom+xml; charset=utf-8"),
+        RequestBody.of(atom.getBytes(StandardCharsets.UTF_8)));
+    try (TransportResponse response = transport.execute(request)) {
+      return response.getCode();
+    } catch (IOException e) {
+      throw new JinxException("Unable to send notification to " + callbackUrl, e);
+    }
+  }
+
+  /**
+   * Send a notification with an entry for each photo, in the form Flickr uses.
+   *
+   * @param callbackUrl the callback URL.
+   * @param ownerNsid   owner of the photos.
+   * @param photoIds    ids of the photos.
+   * @return the HTTP status returned by the receiver.
+   * @throws JinxException if the request cannot be sent.
+   */
+  public int publishPhotos(String callbackUrl, String ownerNsid, List<String> photoIds) throws JinxException {
+    return publish(callbackUrl, buildFeed(ownerNsid, photoIds));
+  }
+
+  /**
+   * Build an Atom feed with an entry for each photo, in the form Flickr uses.
+   *
+   * @param ownerNsid owner of the photos.
+   * @param photoIds  ids of the photos.
+   * @return the feed.
+   */
+  public static String buildFeed(String ownerNsid, List<String> photoIds) {
+    StringWriter out = new StringWriter();
+    try {
+      XMLStreamWriter xml = XMLOutputFactory.newInstance().createXMLStreamWriter(out);
+      String now = Instant.now().toString();
+      xml.writeStartDocument("utf-8", "1.0");
+      xml.writeStartElement("feed");
+      xml.writeDefaultNamespace(ATOM_NS);
+      xml.writeNamespace("flickr", FLICKR_NS);
+      xml.writeNamespace("media", MEDIA_NS);
+      element(xml, "title", "Simulated push feed");
+      element(xml, "updated", now);
+      for (String photoId : photoIds) {
+        String page = "https://www.flickr.com/photos/" + ownerNsid + "/" + photoId + "/";
+        xml.writeStartElement("entry");
+        element(xml, "title", "Photo " + photoId);
+        link(xml, "alternate", "text/html", page);
+        element(xml, "id", "tag:flickr.com,2005:/photo/" + photoId);
+        element(xml, "published", now);
+        element(xml, "updated", now);
+        xml.writeStartElement(FLICKR_NS, "date_taken");
+        xml.writeCharacters(now);
+        xml.writeEndElement();
+        xml.writeStartElement("content");
+        xml.writeAttribute("type", "html");
+        xml.writeCharacters("<p><a href=\"" + page + "\">Photo " + photoId + "</a></p>");
+        xml.writeEndElement();
+        xml.writeStartElement("author");
+        element(xml, "name", ownerNsid);
+        xml.writeStartElement(FLICKR_NS, "nsid");
+        xml.writeCharacters(ownerNsid);
+        xml.writeEndElement();
+        xml.writeEndElement();
+        link(xml, "enclosure", "image/jpeg", "https://live.staticflickr.com/65535/" + photoId + "_secret_b.jpg");
+        xml.writeEndElement();
+      }
+      xml.writeEndElement();
+      xml.writeEndDocument();
+      xml.close();
+    } catch (XMLStreamException e) {
+      throw new IllegalStateException("Unable to build feed.", e);
+    }
+    return out.toString();
+  }
+
+  private static void element(XMLStreamWriter xml, String name, String text) throws XMLStreamException {
+    xml.writeStartElement(name);
+    xml.writeCharacters(text);
+    xml.writeEndElement();
+  }
+
+  private static void link(XMLStreamWriter xml, String rel, String type, String href) throws XMLStreamException {
+    xml.writeEmptyElement("link");
+    xml.writeAttribute("rel", rel);
+    xml.writeAttribute("type", type);
+    xml.writeAttribute("href", href);
+  }
+
+  private static String encode(String value) {
+    try {
+      return value == null ? "" : URLEncoder.encode(value, "UTF-8");
+    } catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static String read(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[1024];
+    int n;
+    while ((n = in.read(buffer)) != -1) {
+      out.write(buffer, 0, n);
+    }
+    return out.toString("UTF-8");
+  }
+}
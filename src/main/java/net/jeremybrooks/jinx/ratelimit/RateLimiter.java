@@ -0,0 +1,242 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.ratelimit;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A token bucket rate limiter.
+ * <br>
+ * Tokens are added to the bucket at a fixed rate, up to the burst size. Each request takes one token; if
+ * the bucket is empty, the caller waits until a token is available. Callers are served in the order they
+ * arrive.
+ * <br>
+ * Flickr limits each API key to 3600 requests per hour, so a limiter shared by everything that uses the
+ * key would usually be created like this:
+ * {@code
+ * RateLimiter limiter = new RateLimiter(1.0, 10);
+ * jinx.setRestRateLimiter(limiter);
+ * }
+ * <br>
+ * If adaptive mode is enabled, the rate is halved every time Flickr indicates that requests are being
+ * throttled, down to the minimum rate. Each successful request after that raises the rate by a small
+ * step until the configured rate is reached again.
+ * <br>
+ * Instances of this class are thread safe, and can be shared by multiple Jinx instances that use the same
+ * API key.
+ *
+ * @author Jeremy Brooks
+ */
+public class RateLimiter {
+
+  /**
+   * Flickr error codes that are treated as throttling by default.
+   * 105 is "Service currently unavailable".
+   */
+  public static final Set<Integer> DEFAULT_THROTTLE_CODES = Collections.singleton(105);
+
+  private final double rate;
+  private final int burst;
+
+  private boolean adaptive;
+  private double minRate;
+  /* an immutable set, replaced as a whole, so volatile is enough for request threads to see changes */
+  private volatile Set<Integer> throttleCodes = DEFAULT_THROTTLE_CODES;
+
+  private double currentRate;
+  private double tokens;
+  private long lastRefill;
+  private long throttledCount;
+
+  /**
+   * Create a rate limiter.
+   *
+   * @param permitsPerSecond number of requests allowed per second. Must be greater than zero.
+   * @param burst            maximum number of requests that can be made at once after the limiter has been idle.
+   *                         Must be greater than zero.
+   */
+  public RateLimiter(double permitsPerSecond, int burst) {
+    if (!(permitsPerSecond > 0)) {
+      throw new IllegalArgumentException("permitsPerSecond must be greater than zero.");
+    }
+    if (burst < 1) {
+      throw new IllegalArgumentException("burst must be greater than zero.");
+    }
+    this.rate = permitsPerSecond;
+    this.burst = burst;
+    this.currentRate = permitsPerSecond;
+    this.minRate = permitsPerSecond / 16;
+    this.tokens = burst;
+    this.lastRefill = System.nanoTime();
+  }
+
+  /**
+   * Wait until a request is allowed.
+   *
+   * @throws InterruptedException if the thread is interrupted while waiting.
+   */
+  public void acquire() throws InterruptedException {
+    long waitNanos;
+    synchronized (this) {
+      refill(System.nanoTime());
+      // take the token now, even if it has not been added yet; later callers wait behind this one
+      tokens -= 1;
+      waitNanos = tokens >= 0 ? 0 : (long) (-tokens * TimeUnit.SECONDS.toNanos(1) / currentRate);
+    }
+    if (waitNanos > 0) {
+      TimeUnit.NANOSECONDS.sleep(waitNanos);
+    }
+  }
+
+  /**
+   * Take a token only if one is available right now.
+   *
+   * @return true if the request is allowed.
+   */
+  public synchronized boolean tryAcquire() {
+    refill(System.nanoTime());
+    if (tokens >= 1) {
+      tokens -= 1;
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Tell the limiter that Flickr throttled a request.
+   * In adaptive mode, this halves the current rate.
+   */
+  public synchronized void onThrottled() {
+    throttledCount++;
+    if (adaptive) {
+      refill(System.nanoTime());
+      currentRate = Math.max(minRate, currentRate / 2);
+      tokens = Math.min(tokens, 0);
+    }
+  }
+
+  /**
+   * Tell the limiter that a request succeeded.
+   * In adaptive mode, this moves the current rate back toward the configured rate.
+   */
+  public synchronized void onSuccess() {
+    if (adaptive && currentRate < rate) {
+      refill(System.nanoTime());
+      currentRate = Math.min(rate, currentRate + rate / 32);
+    }
+  }
+
+  /**
+   * Indicates if a Flickr error code means that requests are being throttled.
+   *
+   * @param code the error code from {@link net.jeremybrooks.jinx.response.Response#getCode()}.
+   * @return true if the code indicates throttling.
+   */
+  public boolean isThrottleCode(int code) {
+    return throttleCodes.contains(code);
+  }
+
+  public synchronized boolean isAdaptive() {
+    return adaptive;
+  }
+
+  /**
+   * Enable or disable adaptive mode.
+   *
+   * @param adaptive if true, the rate is lowered automatically when Flickr throttles requests.
+   */
+  public synchronized void setAdaptive(boolean adaptive) {
+    this.adaptive = adaptive;
+    if (!adaptive) {
+      this.currentRate = rate;
+    }
+  }
+
+  public synchronized double getMinRate() {
+    return minRate;
+  }
+
+  /**
+   * Set the lowest rate that adaptive mode will slow down to. The default is 1/16 of the configured rate.
+   *
+   * @param minRate minimum requests per second. Must be greater than zero and no more than the configured rate.
+   */
+  public synchronized void setMinRate(double minRate) {
+    if (!(minRate > 0) || minRate > rate) {
+      throw new IllegalArgumentException("minRate must be greater than zero and no more than the rate.");
+    }
+    this.minRate = minRate;
+    this.currentRate = Math.max(minRate, currentRate);
+  }
+
+  public Set<Integer> getThrottleCodes() {
+    return throttleCodes;
+  }
+
+  /**
+   * Set the Flickr error codes that indicate throttling.
+   *
+   * @param throttleCodes error codes. Null or empty means only HTTP 429 responses indicate throttling.
+   */
+  public void setThrottleCodes(Set<Integer> throttleCodes) {
+    this.throttleCodes = throttleCodes == null ? Collections.emptySet() : Collections.unmodifiableSet(new HashSet<>(throttleCodes));
+  }
+
+  public double getRate() {
+    return rate;
+  }
+
+  public int getBurst() {
+    return burst;
+  }
+
+  /**
+   * @return the rate currently in effect, which is lower than the configured rate while backing off.
+   */
+  public synchronized double getCurrentRate() {
+    return currentRate;
+  }
+
+  /**
+   * @return number of times Flickr has throttled a request.
+   */
+  public synchronized long getThrottledCount() {
+    return throttledCount;
+  }
+
+  private void refill(long now) {
+    double elapsedSeconds = (now - lastRefill) / (double) TimeUnit.SECONDS.toNanos(1);
+    tokens = Math.min(burst, tokens + elapsedSeconds * currentRate);
+    lastRefill = now;
+  }
+
+  @Override
+  public synchronized String toString() {
+    final StringBuilder sb = new StringBuilder("RateLimiter{");
+    sb.append("rate=").append(rate);
+    sb.append(", burst=").append(burst);
+    sb.append(", currentRate=").append(currentRate);
+    sb.append(", adaptive=").append(adaptive);
+    sb.append(", throttledCount=").append(throttledCount);
+    sb.append('}');
+    return sb.toString();
+  }
+}
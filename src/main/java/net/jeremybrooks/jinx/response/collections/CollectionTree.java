@@ -55,6 +55,8 @@ public class CollectionTree extends Response {
 		private String iconSmall;
 		@SerializedName("set")
 		private List<Set> setList;
+		@SerializedName("collection")
+		private List<Collection> collectionList;
 
 		public String getCollectionId() {
 			return collectionId;
@@ -74,6 +76,9 @@ public class CollectionTree extends Response {
 		public List<Set> getSetList() {
 			return setList;
 		}
+		public List<Collection> getCollectionList() {
+			return collectionList;
+		}
 
 		public class Set implements Serializable {
 			private static final long serialVersionUID = -6888266293650650649L;
@@ -117,6 +122,7 @@ public class CollectionTree extends Response {
 			sb.append(" | iconLarge='").append(iconLarge).append('\'');
 			sb.append(" | iconSmall='").append(iconSmall).append('\'');
 			sb.append(" | setList=").append(setList == null ? "null" : setList.size());
+			sb.append(" | collectionList=").append(collectionList == null ? "null" : collectionList.size());
 			sb.append('}');
 			return sb.toString();
 		}
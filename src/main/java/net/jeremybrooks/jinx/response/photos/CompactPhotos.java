@@ -0,0 +1,1116 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.response.photos;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import net.jeremybrooks.jinx.JinxConstants;
+import net.jeremybrooks.jinx.JinxConstants.PhotoExtras;
+import net.jeremybrooks.jinx.JinxException;
+import net.jeremybrooks.jinx.PhotoUtils;
+import net.jeremybrooks.jinx.response.stats.PhotoStats;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.net.URL;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * A memory efficient list of photos, for holding very large result sets such as an index of every photo in an
+ * account.
+ * <br>
+ * A {@link Photo} object has more than 70 fields, most of them null for any given query, and stores every value,
+ * including numbers, as a separate object. This class stores each field in its own primitive array instead:
+ * ids, dates and server numbers as longs, secrets packed into longs, repeated values such as owners and media types
+ * as codes into a shared dictionary, and flags as bytes. A column is only allocated when a value is first seen, and
+ * the columns for extras that were not requested are never stored. Photo urls are not stored; they are rebuilt from
+ * the farm, server, id and secret when they are asked for.
+ * <br>
+ * Photos are added from pages as they are fetched, so the full Photo objects for a page can be garbage collected
+ * before the next page is read:
+ * {@code
+ * CompactPhotos all = new CompactPhotos(EnumSet.of(PhotoExtras.date_taken, PhotoExtras.geo));
+ * try (Stream<Photo> photos = Paging.photoStream(jinx, page -> peopleApi.getPhotos(..., page), 2)) {
+ *   photos.forEach(all::add);
+ * }
+ * }
+ * {@link #get(int)} returns a flyweight view: a Photo that reads its values from the arrays. Views are cheap to
+ * create and should not be kept; use {@link #toPhoto(int)} for a standalone copy. Rebuilt urls use the
+ * farm.static.flickr.com form created by {@link PhotoUtils#getUrlForSize(JinxConstants.PhotoSize, Photo)}, which may
+ * differ from the url Flickr returned. Photo stats are not stored.
+ * <br>
+ * This class is not thread safe while photos are being added. Once it is filled, it can be read from many threads.
+ *
+ * @author Jeremy Brooks
+ */
+public class CompactPhotos implements Iterable<Photo> {
+
+  private static final Gson GSON = new Gson();
+  private static final DateTimeFormatter DATE_TAKEN = DateTimeFormatter.ofPattern("uuuu-MM-dd HH:mm:ss");
+  private static final int DEFAULT_CAPACITY = 500;
+
+  private static final int NULL_INT = Integer.MIN_VALUE;
+  private static final long NULL_LONG = Long.MIN_VALUE;
+  private static final long NULL_HEX = -1;
+  private static final int MAX_HEX_LENGTH = 14;
+
+  /*
+   * How a column stores its values.
+   */
+  enum Kind {
+    /* Boolean as a byte: 0 is null, 1 is false, 2 is true */
+    FLAG,
+    /* Integer as an int */
+    INT,
+    /* Float as a float */
+    FLOAT,
+    /* String holding a decimal number, as a long */
+    NUMBER,
+    /* String holding lower case hex digits, as a long with the length in the top four bits */
+    HEX,
+    /* String holding a date and time, as seconds */
+    DATETIME,
+    /* String that is often repeated, as a code into a dictionary */
+    DICTIONARY,
+    /* String */
+    TEXT
+  }
+
+  /*
+   * The Photo fields that can be stored, with their name in Flickr responses.
+   * Fields with no extras are always stored; other fields are only stored if one of their extras was requested.
+   */
+  enum Field {
+    ID("id", Kind.NUMBER, Photo::getPhotoId),
+    SECRET("secret", Kind.HEX, Photo::getSecret),
+    SERVER("server", Kind.NUMBER, Photo::getServer),
+    FARM("farm", Kind.NUMBER, Photo::getFarm),
+    OWNER("owner", Kind.DICTIONARY, Photo::getOwner),
+    USERNAME("username", Kind.DICTIONARY, Photo::getUsername),
+    TITLE("title", Kind.TEXT, Photo::getTitle),
+    IS_PUBLIC("ispublic", Kind.FLAG, Photo::isPublic),
+    IS_FRIEND("isfriend", Kind.FLAG, Photo::isFriend),
+    IS_FAMILY("isfamily", Kind.FLAG, Photo::isFamily),
+    IS_PRIMARY("is_primary", Kind.FLAG, Photo::isPrimary),
+    HAS_COMMENT("has_comment", Kind.FLAG, Photo::isHasComment),
+    DATE_ADDED("dateadded", Kind.NUMBER, Photo::getDateAdded),
+    DATE_FAVED("date_faved", Kind.NUMBER, Photo::getDateFaved),
+    DATE_PERSON_ADDED("datepersonadded", Kind.NUMBER, Photo::getDatePersonAdded),
+    DESCRIPTION("description", Kind.TEXT, Photo::getDescription, PhotoExtras.description),
+    LICENSE("license", Kind.INT, Photo::getLicense, PhotoExtras.license),
+    DATE_UPLOAD("dateupload", Kind.NUMBER, Photo::getDateUpload, PhotoExtras.date_upload),
+    DATE_TAKEN("datetaken", Kind.DATETIME, Photo::getDateTaken, PhotoExtras.date_taken),
+    DATE_TAKEN_GRANULARITY("datetakengranularity", Kind.INT, Photo::getDateTakenGranularity, PhotoExtras.date_taken),
+    OWNER_NAME("ownername", Kind.DICTIONARY, Photo::getOwnerName, PhotoExtras.owner_name),
+    ICON_SERVER("iconserver", Kind.NUMBER, Photo::getIconServer, PhotoExtras.icon_server),
+    ICON_FARM("iconfarm", Kind.NUMBER, Photo::getIconFarm, PhotoExtras.icon_server),
+    ORIGINAL_SECRET("originalsecret", Kind.HEX, Photo::getOriginalSecret, PhotoExtras.original_format, PhotoExtras.url_o),
+    ORIGINAL_FORMAT("originalformat", Kind.DICTIONARY, Photo::getOriginalFormat, PhotoExtras.original_format, PhotoExtras.url_o),
+    LAST_UPDATE("lastupdate", Kind.NUMBER, Photo::getLastUpdate, PhotoExtras.last_update),
+    LATITUDE("latitude", Kind.FLOAT, Photo::getLatitude, PhotoExtras.geo),
+    LONGITUDE("longitude", Kind.FLOAT, Photo::getLongitude, PhotoExtras.geo),
+    ACCURACY("accuracy", Kind.INT, Photo::getAccuracy, PhotoExtras.geo),
+    CONTEXT("context", Kind.INT, Photo::getContext, PhotoExtras.geo),
+    PLACE_ID("place_id", Kind.DICTIONARY, Photo::getPlaceId, PhotoExtras.geo),
+    WOE_ID("woeid", Kind.NUMBER, Photo::getWoeId, PhotoExtras.geo),
+    GEO_IS_FAMILY("geo_is_family", Kind.FLAG, Photo::isGeoIsFamily, PhotoExtras.geo),
+    GEO_IS_FRIEND("geo_is_friend", Kind.FLAG, Photo::isGeoIsFriend, PhotoExtras.geo),
+    GEO_IS_CONTACT("geo_is_contact", Kind.FLAG, Photo::isGeoIsContact, PhotoExtras.geo),
+    GEO_IS_PUBLIC("geo_is_public", Kind.FLAG, Photo::isGeoIsPublic, PhotoExtras.geo),
+    TAGS("tags", Kind.TEXT, Photo::getTags, PhotoExtras.tags),
+    MACHINE_TAGS("machine_tags", Kind.TEXT, Photo::getMachineTags, PhotoExtras.machine_tags),
+    O_WIDTH("o_width", Kind.NUMBER, Photo::getoWidth, PhotoExtras.o_dims),
+    O_HEIGHT("o_height", Kind.NUMBER, Photo::getoHeight, PhotoExtras.o_dims),
+    VIEWS("views", Kind.INT, Photo::getViews, PhotoExtras.views),
+    MEDIA("media", Kind.DICTIONARY, Photo::getMedia, PhotoExtras.media),
+    MEDIA_STATUS("media_status", Kind.DICTIONARY, Photo::getMediaStatus, PhotoExtras.media),
+    PATH_ALIAS("pathalias", Kind.DICTIONARY, Photo::getPathAlias, PhotoExtras.path_alias),
+    WIDTH_SQ("width_sq", Kind.INT, Photo::getWidthSq, PhotoExtras.url_sq),
+    HEIGHT_SQ("height_sq", Kind.INT, Photo::getHeightSq, PhotoExtras.url_sq),
+    WIDTH_T("width_t", Kind.INT, Photo::getWidthT, PhotoExtras.url_t),
+    HEIGHT_T("height_t", Kind.INT, Photo::getHeightT, PhotoExtras.url_t),
+    WIDTH_S("width_s", Kind.INT, Photo::getWidthS, PhotoExtras.url_s),
+    HEIGHT_S("height_s", Kind.INT, Photo::getHeightS, PhotoExtras.url_s),
+    WIDTH_Q("width_q", Kind.INT, Photo::getWidthQ, PhotoExtras.url_q),
+    HEIGHT_Q("height_q", Kind.INT, Photo::getHeightQ, PhotoExtras.url_q),
+    WIDTH_M("width_m", Kind.INT, Photo::getWidthM, PhotoExtras.url_m),
+    HEIGHT_M("height_m", Kind.INT, Photo::getHeightM, PhotoExtras.url_m),
+    WIDTH_N("width_n", Kind.INT, Photo::getWidthN, PhotoExtras.url_n),
+    HEIGHT_N("height_n", Kind.INT, Photo::getHeightN, PhotoExtras.url_n),
+    WIDTH_Z("width_z", Kind.INT, Photo::getWidthZ, PhotoExtras.url_z),
+    HEIGHT_Z("height_z", Kind.INT, Photo::getHeightZ, PhotoExtras.url_z),
+    WIDTH_C("width_c", Kind.INT, Photo::getWidthC, PhotoExtras.url_c),
+    HEIGHT_C("height_c", Kind.INT, Photo::getHeightC, PhotoExtras.url_c),
+    WIDTH_L("width_l", Kind.INT, Photo::getWidthL, PhotoExtras.url_l),
+    HEIGHT_L("height_l", Kind.INT, Photo::getHeightL, PhotoExtras.url_l),
+    WIDTH_O("width_o", Kind.INT, Photo::getWidthO, PhotoExtras.url_o),
+    HEIGHT_O("height_o", Kind.INT, Photo::getHeightO, PhotoExtras.url_o);
+
+    private final String jsonName;
+    private final Kind kind;
+    final Function<Photo, Object> getter;
+    private final Set<PhotoExtras> extras;
+
+    Field(String jsonName, Kind kind, Function<Photo, Object> getter, PhotoExtras... extras) {
+      this.jsonName = jsonName;
+      this.kind = kind;
+      this.getter = getter;
+      this.extras = extras.length == 0 ? Collections.emptySet() : EnumSet.copyOf(Arrays.asList(extras));
+    }
+  }
+
+  private final Set<PhotoExtras> extras;
+  private final Field[] storedFields;
+  private final Map<Field, Column> columns = new EnumMap<>(Field.class);
+  private int size;
+  private int capacity;
+
+  /**
+   * Create an empty list.
+   *
+   * @param extras the extras to keep. Values for other extras are dropped, even if Flickr returned them. Null or
+   *               empty keeps only the fields that are always returned, such as id, secret, server, farm, owner
+   *               and title.
+   */
+  public CompactPhotos(Set<PhotoExtras> extras) {
+    this(extras, DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Create an empty list with room for a number of photos.
+   *
+   * @param extras          the extras to keep.
+   * @param initialCapacity number of photos to allocate room for.
+   */
+  public CompactPhotos(Set<PhotoExtras> extras, int initialCapacity) {
+    if (initialCapacity < 0) {
+      throw new IllegalArgumentException("initialCapacity must not be negative.");
+    }
+    this.extras = extras == null || extras.isEmpty() ? EnumSet.noneOf(PhotoExtras.class) : EnumSet.copyOf(extras);
+    List<Field> stored = new ArrayList<>();
+    for (Field field : Field.values()) {
+      if (field.extras.isEmpty() || !Collections.disjoint(field.extras, this.extras)) {
+        stored.add(field);
+      }
+    }
+    this.storedFields = stored.toArray(new Field[0]);
+    this.capacity = initialCapacity;
+  }
+
+  /**
+   * @return the extras that are kept.
+   */
+  public Set<PhotoExtras> getExtras() {
+    return Collections.unmodifiableSet(extras);
+  }
+
+  /**
+   * @return number of photos.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Add a photo.
+   *
+   * @param photo the photo to add.
+   */
+  public void add(Photo photo) {
+    if (photo == null) {
+      throw new IllegalArgumentException("photo is required.");
+    }
+    if (size == capacity) {
+      grow(Math.max(16, capacity + (capacity >> 1)));
+    }
+    int row = size;
+    for (Field field : storedFields) {
+      Object value = field.getter.apply(photo);
+      if (value != null) {
+        Column column = columns.get(field);
+        if (column == null) {
+          column = new Column(field.kind, capacity);
+          columns.put(field, column);
+        }
+        column.set(row, value);
+      }
+    }
+    size++;
+  }
+
+  /**
+   * Add every photo in a page of results.
+   *
+   * @param photos the page.
+   */
+  public void addAll(Photos photos) {
+    if (photos != null && photos.getPhotoList() != null) {
+      addAll(photos.getPhotoList());
+    }
+  }
+
+  /**
+   * Add photos.
+   *
+   * @param photos the photos.
+   */
+  public void addAll(Iterable<Photo> photos) {
+    for (Photo photo : photos) {
+      add(photo);
+    }
+  }
+
+  /**
+   * Get a view of a photo.
+   * <br>
+   * The view reads its values from this list each time a getter is called.
+   *
+   * @param index index of the photo.
+   * @return view of the photo.
+   */
+  public Photo get(int index) {
+    checkIndex(index);
+    return new View(this, index);
+  }
+
+  /**
+   * Get the id of a photo, without creating a view.
+   *
+   * @param index index of the photo.
+   * @return the photo id.
+   */
+  public String getPhotoId(int index) {
+    checkIndex(index);
+    return (String) value(Field.ID, index);
+  }
+
+  /**
+   * Get the url of a photo at a size.
+   *
+   * @param index index of the photo.
+   * @param size  the size.
+   * @return url for the photo at the size.
+   * @throws JinxException if the fields needed to build the url were not stored.
+   */
+  public URL getUrl(int index, JinxConstants.PhotoSize size) throws JinxException {
+    checkIndex(index);
+    return PhotoUtils.getUrlForSize(size, (String) value(Field.ID, index), (String) value(Field.SECRET, index),
+        (String) value(Field.FARM, index), (String) value(Field.SERVER, index),
+        (String) value(Field.ORIGINAL_FORMAT, index), (String) value(Field.ORIGINAL_SECRET, index));
+  }
+
+  /**
+   * Create a standalone Photo with the stored values of a photo.
+   * <br>
+   * Unlike a view, the copy does not refer to this list. Urls are rebuilt; photo stats are null.
+   *
+   * @param index index of the photo.
+   * @return copy of the photo.
+   */
+  public Photo toPhoto(int index) {
+    checkIndex(index);
+    StringWriter json = new StringWriter();
+    try (JsonWriter out = new JsonWriter(json)) {
+      out.beginObject();
+      for (Field field : storedFields) {
+        Object value = value(field, index);
+        if (value == null) {
+          continue;
+        }
+        out.name(field.jsonName);
+        if (field == Field.DESCRIPTION) {
+          out.beginObject().name("_content").value((String) value).endObject();
+        } else if (value instanceof Boolean) {
+          out.value((Boolean) value ? "1" : "0");
+        } else if (value instanceof Number) {
+          out.value((Number) value);
+        } else {
+          out.value((String) value);
+        }
+      }
+      writeUrl(out, index, "url_sq", Field.WIDTH_SQ, JinxConstants.PhotoSize.SIZE_SMALL_SQUARE);
+      writeUrl(out, index, "url_t", Field.WIDTH_T, JinxConstants.PhotoSize.SIZE_THUMBNAIL);
+      writeUrl(out, index, "url_s", Field.WIDTH_S, JinxConstants.PhotoSize.SIZE_SMALL);
+      writeUrl(out, index, "url_q", Field.WIDTH_Q, JinxConstants.PhotoSize.SIZE_LARGE_SQUARE);
+      writeUrl(out, index, "url_m", Field.WIDTH_M, JinxConstants.PhotoSize.SIZE_MEDIUM);
+      writeUrl(out, index, "url_n", Field.WIDTH_N, JinxConstants.PhotoSize.SIZE_SMALL_320);
+      writeUrl(out, index, "url_z", Field.WIDTH_Z, JinxConstants.PhotoSize.SIZE_MEDIUM_640);
+      writeUrl(out, index, "url_c", Field.WIDTH_C, JinxConstants.PhotoSize.SIZE_MEDIUM_800);
+      writeUrl(out, index, "url_l", Field.WIDTH_L, JinxConstants.PhotoSize.SIZE_LARGE);
+      writeUrl(out, index, "url_o", Field.WIDTH_O, JinxConstants.PhotoSize.SIZE_ORIGINAL);
+      out.endObject();
+    } catch (IOException e) {
+      // cannot happen when writing to a StringWriter
+      throw new IllegalStateException(e);
+    }
+    return GSON.fromJson(json.toString(), Photo.class);
+  }
+
+  private void writeUrl(JsonWriter out, int index, String name, Field width, JinxConstants.PhotoSize size) throws IOException {
+    String url = url(width, size, index);
+    if (url != null) {
+      out.name(name).value(url);
+    }
+  }
+
+  /**
+   * @return an unmodifiable list of views over all photos.
+   */
+  public List<Photo> asList() {
+    return new ViewList();
+  }
+
+  @Override
+  public Iterator<Photo> iterator() {
+    return asList().iterator();
+  }
+
+  /**
+   * Release unused capacity.
+   */
+  public void trimToSize() {
+    if (capacity > size) {
+      grow(size);
+    }
+  }
+
+  private void grow(int newCapacity) {
+    for (Column column : columns.values()) {
+      column.resize(capacity, newCapacity);
+    }
+    capacity = newCapacity;
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+    }
+  }
+
+  private Object value(Field field, int row) {
+    Column column = columns.get(field);
+    return column == null ? null : column.get(row);
+  }
+
+  /*
+   * Rebuild the url Flickr returned for a size. Flickr only returns a url, width and height for sizes that exist,
+   * so the url is rebuilt only if the width was returned.
+   */
+  private String url(Field width, JinxConstants.PhotoSize size, int row) {
+    if (value(width, row) == null) {
+      return null;
+    }
+    try {
+      return getUrl(row, size).toString();
+    } catch (JinxException e) {
+      return null;
+    }
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder("CompactPhotos{");
+    sb.append("size=").append(size);
+    sb.append(", extras=").append(extras);
+    sb.append(", columns=").append(columns.keySet());
+    sb.append('}');
+    return sb.toString();
+  }
+
+  /*
+   * Values for one field. Only the array for the column's kind is allocated.
+   */
+  private static class Column {
+    private final Kind kind;
+    private byte[] bytes;
+    private int[] ints;
+    private long[] longs;
+    private float[] floats;
+    private String[] strings;
+    private List<String> dictionary;
+    private Map<String, Integer> codes;
+    /* values that would not come back unchanged from the packed form, stored as given */
+    private Map<Integer, String> irregular;
+
+    Column(Kind kind, int capacity) {
+      this.kind = kind;
+      switch (kind) {
+        case FLAG:
+          bytes = new byte[capacity];
+          break;
+        case INT:
+          ints = new int[capacity];
+          Arrays.fill(ints, NULL_INT);
+          break;
+        case FLOAT:
+          floats = new float[capacity];
+          Arrays.fill(floats, Float.NaN);
+          break;
+        case NUMBER:
+        case DATETIME:
+          longs = new long[capacity];
+          Arrays.fill(longs, NULL_LONG);
+          break;
+        case HEX:
+          longs = new long[capacity];
+          Arrays.fill(longs, NULL_HEX);
+          break;
+        case DICTIONARY:
+          ints = new int[capacity];
+          dictionary = new ArrayList<>();
+          codes = new HashMap<>();
+          break;
+        default:
+          strings = new String[capacity];
+      }
+    }
+
+    void resize(int oldCapacity, int newCapacity) {
+      int filled = Math.min(oldCapacity, newCapacity);
+      switch (kind) {
+        case FLAG:
+          bytes = Arrays.copyOf(bytes, newCapacity);
+          break;
+        case INT:
+          ints = Arrays.copyOf(ints, newCapacity);
+          Arrays.fill(ints, filled, newCapacity, NULL_INT);
+          break;
+        case FLOAT:
+          floats = Arrays.copyOf(floats, newCapacity);
+          Arrays.fill(floats, filled, newCapacity, Float.NaN);
+          break;
+        case NUMBER:
+        case DATETIME:
+          longs = Arrays.copyOf(longs, newCapacity);
+          Arrays.fill(longs, filled, newCapacity, NULL_LONG);
+          break;
+        case HEX:
+          longs = Arrays.copyOf(longs, newCapacity);
+          Arrays.fill(longs, filled, newCapacity, NULL_HEX);
+          break;
+        case DICTIONARY:
+          ints = Arrays.copyOf(ints, newCapacity);
+          break;
+        default:
+          strings = Arrays.copyOf(strings, newCapacity);
+      }
+    }
+
+    void set(int row, Object value) {
+      switch (kind) {
+        case FLAG:
+          bytes[row] = (byte) ((Boolean) value ? 2 : 1);
+          break;
+        case INT:
+          int i = (Integer) value;
+          if (i == NULL_INT) {
+            setIrregular(row, value.toString());
+          } else {
+            ints[row] = i;
+          }
+          break;
+        case FLOAT:
+          float f = (Float) value;
+          if (Float.isNaN(f)) {
+            setIrregular(row, value.toString());
+          } else {
+            floats[row] = f;
+          }
+          break;
+        case NUMBER:
+          setNumber(row, (String) value);
+          break;
+        case HEX:
+          setHex(row, (String) value);
+          break;
+        case DATETIME:
+          setDateTime(row, (String) value);
+          break;
+        case DICTIONARY:
+          String s = (String) value;
+          Integer code = codes.get(s);
+          if (code == null) {
+            dictionary.add(s);
+            code = dictionary.size();
+            codes.put(s, code);
+          }
+          ints[row] = code;
+          break;
+        default:
+          strings[row] = (String) value;
+      }
+    }
+
+    Object get(int row) {
+      if (irregular != null) {
+        String s = irregular.get(row);
+        if (s != null) {
+          return kind == Kind.INT ? Integer.valueOf(s) : kind == Kind.FLOAT ? Float.valueOf(s) : s;
+        }
+      }
+      switch (kind) {
+        case FLAG:
+          return bytes[row] == 0 ? null : bytes[row] == 2;
+        case INT:
+          return ints[row] == NULL_INT ? null : ints[row];
+        case FLOAT:
+          return Float.isNaN(floats[row]) ? null : floats[row];
+        case NUMBER:
+          return longs[row] == NULL_LONG ? null : Long.toString(longs[row]);
+        case HEX:
+          return longs[row] == NULL_HEX ? null : formatHex(longs[row]);
+        case DATETIME:
+          return longs[row] == NULL_LONG ? null :
+              DATE_TAKEN.format(LocalDateTime.ofEpochSecond(longs[row], 0, ZoneOffset.UTC));
+        case DICTIONARY:
+          return ints[row] == 0 ? null : dictionary.get(ints[row] - 1);
+        default:
+          return strings[row];
+      }
+    }
+
+    private void setNumber(int row, String s) {
+      try {
+        long value = Long.parseLong(s);
+        if (value != NULL_LONG && Long.toString(value).equals(s)) {
+          longs[row] = value;
+          return;
+        }
+      } catch (NumberFormatException e) {
+        // stored as given
+      }
+      setIrregular(row, s);
+    }
+
+    private void setHex(int row, String s) {
+      int length = s.length();
+      if (length > 0 && length <= MAX_HEX_LENGTH) {
+        long value = 0;
+        boolean hex = true;
+        for (int i = 0; i < length && hex; i++) {
+          int digit = Character.digit(s.charAt(i), 16);
+          hex = digit >= 0 && !Character.isUpperCase(s.charAt(i));
+          value = (value << 4) | digit;
+        }
+        if (hex) {
+          longs[row] = ((long) length << 60) | value;
+          return;
+        }
+      }
+      setIrregular(row, s);
+    }
+
+    private static String formatHex(long packed) {
+      int length = (int) (packed >>> 60);
+      String hex = Long.toHexString(packed & ((1L << 60) - 1));
+      StringBuilder sb = new StringBuilder(length);
+      for (int i = hex.length(); i < length; i++) {
+        sb.append('0');
+      }
+      return sb.append(hex).toString();
+    }
+
+    private void setDateTime(int row, String s) {
+      try {
+        long seconds = LocalDateTime.parse(s, DATE_TAKEN).toEpochSecond(ZoneOffset.UTC);
+        if (seconds != NULL_LONG && DATE_TAKEN.format(LocalDateTime.ofEpochSecond(seconds, 0, ZoneOffset.UTC)).equals(s)) {
+          longs[row] = seconds;
+          return;
+        }
+      } catch (DateTimeParseException e) {
+        // stored as given
+      }
+      setIrregular(row, s);
+    }
+
+    private void setIrregular(int row, String s) {
+      if (irregular == null) {
+        irregular = new HashMap<>();
+      }
+      irregular.put(row, s);
+    }
+  }
+
+  private class ViewList extends AbstractList<Photo> implements RandomAccess {
+    @Override
+    public Photo get(int index) {
+      return CompactPhotos.this.get(index);
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+  }
+
+  /*
+   * A Photo that reads its values from a CompactPhotos row.
+   * Serializing a view, with Java serialization or Gson, writes a standalone copy.
+   */
+  @JsonAdapter(ViewAdapterFactory.class)
+  static class View extends Photo {
+    private static final long serialVersionUID = 1L;
+
+    private final transient CompactPhotos photos;
+    private final transient int row;
+
+    View(CompactPhotos photos, int row) {
+      this.photos = photos;
+      this.row = row;
+    }
+
+    private Object value(Field field) {
+      return photos.value(field, row);
+    }
+
+    private String url(Field width, JinxConstants.PhotoSize size) {
+      return photos.url(width, size, row);
+    }
+
+    private Object writeReplace() {
+      return photos.toPhoto(row);
+    }
+
+    @Override
+    public String getPhotoId() {
+      return (String) value(Field.ID);
+    }
+
+    @Override
+    public String getSecret() {
+      return (String) value(Field.SECRET);
+    }
+
+    @Override
+    public String getServer() {
+      return (String) value(Field.SERVER);
+    }
+
+    @Override
+    public String getFarm() {
+      return (String) value(Field.FARM);
+    }
+
+    @Override
+    public String getOwner() {
+      return (String) value(Field.OWNER);
+    }
+
+    @Override
+    public String getUsername() {
+      return (String) value(Field.USERNAME);
+    }
+
+    @Override
+    public String getTitle() {
+      return (String) value(Field.TITLE);
+    }
+
+    @Override
+    public Boolean isPublic() {
+      return (Boolean) value(Field.IS_PUBLIC);
+    }
+
+    @Override
+    public Boolean isFriend() {
+      return (Boolean) value(Field.IS_FRIEND);
+    }
+
+    @Override
+    public Boolean isFamily() {
+      return (Boolean) value(Field.IS_FAMILY);
+    }
+
+    @Override
+    public Boolean isPrimary() {
+      return (Boolean) value(Field.IS_PRIMARY);
+    }
+
+    @Override
+    public Boolean isHasComment() {
+      return (Boolean) value(Field.HAS_COMMENT);
+    }
+
+    @Override
+    public String getDateAdded() {
+      return (String) value(Field.DATE_ADDED);
+    }
+
+    @Override
+    public String getDateFaved() {
+      return (String) value(Field.DATE_FAVED);
+    }
+
+    @Override
+    public String getDatePersonAdded() {
+      return (String) value(Field.DATE_PERSON_ADDED);
+    }
+
+    @Override
+    public String getDescription() {
+      return (String) value(Field.DESCRIPTION);
+    }
+
+    @Override
+    public Integer getLicense() {
+      return (Integer) value(Field.LICENSE);
+    }
+
+    @Override
+    public String getDateUpload() {
+      return (String) value(Field.DATE_UPLOAD);
+    }
+
+    @Override
+    public String getDateTaken() {
+      return (String) value(Field.DATE_TAKEN);
+    }
+
+    @Override
+    public Integer getDateTakenGranularity() {
+      return (Integer) value(Field.DATE_TAKEN_GRANULARITY);
+    }
+
+    @Override
+    public String getOwnerName() {
+      return (String) value(Field.OWNER_NAME);
+    }
+
+    @Override
+    public String getIconServer() {
+      return (String) value(Field.ICON_SERVER);
+    }
+
+    @Override
+    public String getIconFarm() {
+      return (String) value(Field.ICON_FARM);
+    }
+
+    @Override
+    public String getOriginalSecret() {
+      return (String) value(Field.ORIGINAL_SECRET);
+    }
+
+    @Override
+    public String getOriginalFormat() {
+      return (String) value(Field.ORIGINAL_FORMAT);
+    }
+
+    @Override
+    public String getLastUpdate() {
+      return (String) value(Field.LAST_UPDATE);
+    }
+
+    @Override
+    public Float getLatitude() {
+      return (Float) value(Field.LATITUDE);
+    }
+
+    @Override
+    public Float getLongitude() {
+      return (Float) value(Field.LONGITUDE);
+    }
+
+    @Override
+    public Integer getAccuracy() {
+      return (Integer) value(Field.ACCURACY);
+    }
+
+    @Override
+    public Integer getContext() {
+      return (Integer) value(Field.CONTEXT);
+    }
+
+    @Override
+    public String getPlaceId() {
+      return (String) value(Field.PLACE_ID);
+    }
+
+    @Override
+    public String getWoeId() {
+      return (String) value(Field.WOE_ID);
+    }
+
+    @Override
+    public Boolean isGeoIsFamily() {
+      return (Boolean) value(Field.GEO_IS_FAMILY);
+    }
+
+    @Override
+    public Boolean isGeoIsFriend() {
+      return (Boolean) value(Field.GEO_IS_FRIEND);
+    }
+
+    @Override
+    public Boolean isGeoIsContact() {
+      return (Boolean) value(Field.GEO_IS_CONTACT);
+    }
+
+    @Override
+    public Boolean isGeoIsPublic() {
+      return (Boolean) value(Field.GEO_IS_PUBLIC);
+    }
+
+    @Override
+    public String getTags() {
+      return (String) value(Field.TAGS);
+    }
+
+    @Override
+    public String getMachineTags() {
+      return (String) value(Field.MACHINE_TAGS);
+    }
+
+    @Override
+    public String getoWidth() {
+      return (String) value(Field.O_WIDTH);
+    }
+
+    @Override
+    public String getoHeight() {
+      return (String) value(Field.O_HEIGHT);
+    }
+
+    @Override
+    public Integer getViews() {
+      return (Integer) value(Field.VIEWS);
+    }
+
+    @Override
+    public String getMedia() {
+      return (String) value(Field.MEDIA);
+    }
+
+    @Override
+    public String getMediaStatus() {
+      return (String) value(Field.MEDIA_STATUS);
+    }
+
+    @Override
+    public String getPathAlias() {
+      return (String) value(Field.PATH_ALIAS);
+    }
+
+    @Override
+    public String getUrlSq() {
+      return url(Field.WIDTH_SQ, JinxConstants.PhotoSize.SIZE_SMALL_SQUARE);
+    }
+
+    @Override
+    public Integer getWidthSq() {
+      return (Integer) value(Field.WIDTH_SQ);
+    }
+
+    @Override
+    public Integer getHeightSq() {
+      return (Integer) value(Field.HEIGHT_SQ);
+    }
+
+    @Override
+    public String getUrlT() {
+      return url(Field.WIDTH_T, JinxConstants.PhotoSize.SIZE_THUMBNAIL);
+    }
+
+    @Override
+    public Integer getWidthT() {
+      return (Integer) value(Field.WIDTH_T);
+    }
+
+    @Override
+    public Integer getHeightT() {
+      return (Integer) value(Field.HEIGHT_T);
+    }
+
+    @Override
+    public String getUrlS() {
+      return url(Field.WIDTH_S, JinxConstants.PhotoSize.SIZE_SMALL);
+    }
+
+    @Override
+    public Integer getWidthS() {
+      return (Integer) value(Field.WIDTH_S);
+    }
+
+    @Override
+    public Integer getHeightS() {
+      return (Integer) value(Field.HEIGHT_S);
+    }
+
+    @Override
+    public String getUrlQ() {
+      return url(Field.WIDTH_Q, JinxConstants.PhotoSize.SIZE_LARGE_SQUARE);
+    }
+
+    @Override
+    public Integer getWidthQ() {
+      return (Integer) value(Field.WIDTH_Q);
+    }
+
+    @Override
+    public Integer getHeightQ() {
+      return (Integer) value(Field.HEIGHT_Q);
+    }
+
+    @Override
+    public String getUrlM() {
+      return url(Field.WIDTH_M, JinxConstants.PhotoSize.SIZE_MEDIUM);
+    }
+
+    @Override
+    public Integer getWidthM() {
+      return (Integer) value(Field.WIDTH_M);
+    }
+
+    @Override
+    public Integer getHeightM() {
+      return (Integer) value(Field.HEIGHT_M);
+    }
+
+    @Override
+    public String getUrlN() {
+      return url(Field.WIDTH_N, JinxConstants.PhotoSize.SIZE_SMALL_320);
+    }
+
+    @Override
+    public Integer getWidthN() {
+      return (Integer) value(Field.WIDTH_N);
+    }
+
+    @Override
+    public Integer getHeightN() {
+      return (Integer) value(Field.HEIGHT_N);
+    }
+
+    @Override
+    public String getUrlZ() {
+      return url(Field.WIDTH_Z, JinxConstants.PhotoSize.SIZE_MEDIUM_640);
+    }
+
+    @Override
+    public Integer getWidthZ() {
+      return (Integer) value(Field.WIDTH_Z);
+    }
+
+    @Override
+    public Integer getHeightZ() {
+      return (Integer) value(Field.HEIGHT_Z);
+    }
+
+    @Override
+    public String getUrlC() {
+      return url(Field.WIDTH_C, JinxConstants.PhotoSize.SIZE_MEDIUM_800);
+    }
+
+    @Override
+    public Integer getWidthC() {
+      return (Integer) value(Field.WIDTH_C);
+    }
+
+    @Override
+    public Integer getHeightC() {
+      return (Integer) value(Field.HEIGHT_C);
+    }
+
+    @Override
+    public String getUrlL() {
+      return url(Field.WIDTH_L, JinxConstants.PhotoSize.SIZE_LARGE);
+    }
+
+    @Override
+    public Integer getWidthL() {
+      return (Integer) value(Field.WIDTH_L);
+    }
+
+    @Override
+    public Integer getHeightL() {
+      return (Integer) value(Field.HEIGHT_L);
+    }
+
+    @Override
+    public String getUrlO() {
+      return url(Field.WIDTH_O, JinxConstants.PhotoSize.SIZE_ORIGINAL);
+    }
+
+    @Override
+    public Integer getWidthO() {
+      return (Integer) value(Field.WIDTH_O);
+    }
+
+    @Override
+    public Integer getHeightO() {
+      return (Integer) value(Field.HEIGHT_O);
+    }
+
+    @Override
+    public PhotoStats getPhotoStats() {
+      return null;
+    }
+
+    @Override
+    public String toString() {
+      return photos.toPhoto(row).toString();
+    }
+  }
+
+  /*
+   * Gson reads fields, and a view keeps its values in the arrays, so write the standalone copy instead.
+   * Views are never created by Gson.
+   */
+  static class ViewAdapterFactory implements TypeAdapterFactory {
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+      if (type.getRawType() != View.class) {
+        return null;
+      }
+      TypeAdapter<Photo> photoAdapter = gson.getAdapter(Photo.class);
+      return (TypeAdapter<T>) new TypeAdapter<View>() {
+        @Override
+        public void write(JsonWriter out, View view) throws IOException {
+          photoAdapter.write(out, view == null ? null : view.photos.toPhoto(view.row));
+        }
+
+        @Override
+        public View read(JsonReader in) {
+          throw new UnsupportedOperationException("Photo views cannot be read.");
+        }
+      };
+    }
+  }
+}
@@ -237,7 +237,7 @@ public class Photo implements Serializable {
   }
 
   public String getDescription() {
-    return description.description;
+    return description == null ? null : description.description;
   }
 
   public String getoWidth() {
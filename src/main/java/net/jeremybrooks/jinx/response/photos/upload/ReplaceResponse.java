@@ -57,6 +57,27 @@ public class ReplaceResponse extends Response {
     }
 
     private _Rsp rsp;
+
+    /*
+     * Create a response from values read by UploadXmlParser.
+     */
+    static ReplaceResponse create(String stat, int code, String message, String photoId, String secret,
+                                  String originalSecret, String ticketId) {
+        ReplaceResponse response = new ReplaceResponse();
+        response.rsp = response.new _Rsp();
+        response.rsp.stat = stat;
+        response.rsp.code = code;
+        response.rsp.message = message;
+        response.rsp.ticketid = ticketId;
+        if (photoId != null) {
+            response.rsp.photoid = response.new _PhotoId();
+            response.rsp.photoid.photoId = photoId;
+            response.rsp.photoid.secret = secret;
+            response.rsp.photoid.originalSecret = originalSecret;
+        }
+        return response;
+    }
+
     private class _Rsp implements Serializable {
         private String stat;
         private int code;
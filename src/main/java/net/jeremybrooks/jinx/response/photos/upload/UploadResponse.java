@@ -49,6 +49,20 @@ public class UploadResponse extends Response {
 
     private _Rsp rsp;
 
+    /*
+     * Create a response from values read by UploadXmlParser.
+     */
+    static UploadResponse create(String stat, int code, String message, String photoId, String ticketId) {
+        UploadResponse response = new UploadResponse();
+        response.rsp = response.new _Rsp();
+        response.rsp.stat = stat;
+        response.rsp.code = code;
+        response.rsp.message = message;
+        response.rsp.photoid = photoId;
+        response.rsp.ticketid = ticketId;
+        return response;
+    }
+
     private class _Rsp implements Serializable {
         private static final long serialVersionUID = -6437383739022068623L;
         private String stat;
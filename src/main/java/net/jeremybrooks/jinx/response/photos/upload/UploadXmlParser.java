@@ -0,0 +1,141 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.response.photos.upload;
+
+import net.jeremybrooks.jinx.JinxException;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+
+/**
+ * Reads the XML returned by the Flickr upload and replace endpoints directly into response objects.
+ * <br>
+ * The upload endpoints always return XML, even when JSON is requested. This parser maps that XML with a StAX reader
+ * as it is read from the connection, which avoids converting the XML to JSON with the xml2json stylesheet and then
+ * parsing the JSON.
+ * <br>
+ * Error responses look like this: {@code <rsp stat="fail"><err code="5" msg="Filetype was not recognised"/></rsp>}.
+ * The error code and message are returned by getCode() and getMessage().
+ *
+ * @author Jeremy Brooks
+ */
+public class UploadXmlParser {
+
+  private static final XMLInputFactory FACTORY = createFactory();
+
+  private UploadXmlParser() {
+  }
+
+  /**
+   * Check if a response class can be created by this parser.
+   *
+   * @param tClass the response class.
+   * @return true if the class is {@link UploadResponse} or {@link ReplaceResponse}.
+   */
+  public static boolean supports(Class<?> tClass) {
+    return tClass == UploadResponse.class || tClass == ReplaceResponse.class;
+  }
+
+  /**
+   * Parse an upload or replace response.
+   *
+   * @param in     the XML returned by Flickr. The stream is not closed.
+   * @param tClass {@link UploadResponse} or {@link ReplaceResponse}.
+   * @param <T>    type of the response.
+   * @return the parsed response.
+   * @throws JinxException if the XML cannot be parsed, or the class is not supported.
+   */
+  public static <T> T parse(InputStream in, Class<T> tClass) throws JinxException {
+    if (!supports(tClass)) {
+      throw new JinxException("Unsupported upload response type " + tClass.getName());
+    }
+    Rsp rsp = read(in);
+    if (tClass == UploadResponse.class) {
+      return tClass.cast(UploadResponse.create(rsp.stat, rsp.code, rsp.message, rsp.photoId, rsp.ticketId));
+    }
+    return tClass.cast(ReplaceResponse.create(rsp.stat, rsp.code, rsp.message, rsp.photoId, rsp.secret,
+        rsp.originalSecret, rsp.ticketId));
+  }
+
+  private static Rsp read(InputStream in) throws JinxException {
+    XMLStreamReader reader = null;
+    try {
+      reader = FACTORY.createXMLStreamReader(in);
+      Rsp rsp = new Rsp();
+      while (reader.hasNext()) {
+        if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+          switch (reader.getLocalName()) {
+            case "rsp":
+              rsp.stat = reader.getAttributeValue(null, "stat");
+              break;
+            case "err":
+              String code = reader.getAttributeValue(null, "code");
+              rsp.code = code == null ? 0 : Integer.parseInt(code.trim());
+              rsp.message = reader.getAttributeValue(null, "msg");
+              break;
+            case "photoid":
+              rsp.secret = reader.getAttributeValue(null, "secret");
+              rsp.originalSecret = reader.getAttributeValue(null, "originalsecret");
+              rsp.photoId = reader.getElementText().trim();
+              break;
+            case "ticketid":
+              rsp.ticketId = reader.getElementText().trim();
+              break;
+            default:
+              break;
+          }
+        }
+      }
+      if (rsp.stat == null) {
+        throw new JinxException("Unable to parse response from Flickr.");
+      }
+      return rsp;
+    } catch (XMLStreamException | NumberFormatException e) {
+      throw new JinxException("Unable to parse response from Flickr.", e);
+    } finally {
+      if (reader != null) {
+        try {
+          reader.close();
+        } catch (XMLStreamException e) {
+          // ignore
+        }
+      }
+    }
+  }
+
+  private static XMLInputFactory createFactory() {
+    XMLInputFactory factory = XMLInputFactory.newInstance();
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+    return factory;
+  }
+
+  private static class Rsp {
+    private String stat;
+    private int code;
+    private String message;
+    private String photoId;
+    private String secret;
+    private String originalSecret;
+    private String ticketId;
+  }
+}
@@ -69,7 +69,7 @@ public class Shape implements Serializable {
   }
 
   public List<Polyline> getPolylines() {
-    return polylines.polyline;
+    return polylines == null ? null : polylines.polyline;
   }
 
 
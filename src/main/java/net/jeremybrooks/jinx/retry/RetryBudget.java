@@ -0,0 +1,96 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.retry;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the number of retries across all requests.
+ * <br>
+ * Every request adds a fraction of a token to the budget, and every retry takes one token. The budget also
+ * refills at a small fixed rate, so that a few retries are allowed even when there is little traffic. When
+ * Flickr is having problems and most requests fail, the budget runs out and failures are returned to the caller
+ * instead of multiplying the load with retries.
+ * <br>
+ * Instances of this class are thread safe and should be shared by everything that talks to Flickr.
+ *
+ * @author Jeremy Brooks
+ */
+public class RetryBudget {
+
+  private final double ratio;
+  private final double minRetriesPerSecond;
+  private final double maxTokens;
+
+  private double tokens;
+  private long lastRefill;
+
+  /**
+   * Create a retry budget.
+   *
+   * @param ratio               fraction of requests that may be retried, such as 0.1 for ten percent.
+   * @param minRetriesPerSecond retries allowed per second regardless of the number of requests.
+   * @param maxTokens           maximum number of retries that can be saved up.
+   */
+  public RetryBudget(double ratio, double minRetriesPerSecond, int maxTokens) {
+    if (ratio < 0 || minRetriesPerSecond < 0 || maxTokens < 1) {
+      throw new IllegalArgumentException("Invalid retry budget.");
+    }
+    this.ratio = ratio;
+    this.minRetriesPerSecond = minRetriesPerSecond;
+    this.maxTokens = maxTokens;
+    this.tokens = maxTokens;
+    this.lastRefill = System.nanoTime();
+  }
+
+  /**
+   * Record a request. This adds to the budget.
+   */
+  public synchronized void onRequest() {
+    refill();
+    tokens = Math.min(maxTokens, tokens + ratio);
+  }
+
+  /**
+   * Take a retry from the budget.
+   *
+   * @return true if a retry is allowed.
+   */
+  public synchronized boolean tryRetry() {
+    refill();
+    if (tokens >= 1) {
+      tokens -= 1;
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * @return number of retries currently available.
+   */
+  public synchronized double getAvailable() {
+    refill();
+    return tokens;
+  }
+
+  private void refill() {
+    long now = System.nanoTime();
+    tokens = Math.min(maxTokens, tokens + (now - lastRefill) * minRetriesPerSecond / TimeUnit.SECONDS.toNanos(1));
+    lastRefill = now;
+  }
+}
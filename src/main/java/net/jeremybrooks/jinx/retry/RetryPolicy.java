@@ -0,0 +1,300 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.retry;
+
+import net.jeremybrooks.jinx.JinxConstants;
+import net.jeremybrooks.jinx.JinxException;
+import net.jeremybrooks.jinx.JinxUtils;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides when a failed call to Flickr is retried, and how long to wait first.
+ * <br>
+ * Retries are disabled by default. To enable them, create a policy and set it on Jinx:
+ * {@code
+ * jinx.setRetryPolicy(new RetryPolicy(4, 200, 10000, TimeUnit.MILLISECONDS));
+ * }
+ * A call is only retried if:
+ * <ul>
+ * <li>the Flickr method is idempotent. Methods called with http GET are idempotent. Methods called with http POST
+ * are only idempotent if they are known to read data (get, search, find and so on); any other method, such as
+ * flickr.photos.delete or flickr.blogs.postPhoto, is not, since retrying it could apply the change twice. This
+ * can be overridden for individual methods with {@link #setIdempotent(String, boolean)}.</li>
+ * <li>the failure is transient: a network error, an empty response, HTTP 429 or 5xx, or one of the retryable
+ * Flickr error codes (105, "Service currently unavailable", by default).</li>
+ * <li>the maximum number of attempts has not been reached.</li>
+ * <li>the {@link RetryBudget} allows it.</li>
+ * </ul>
+ * The delay before each retry grows exponentially from the base delay up to the maximum delay, with full
+ * jitter so that many clients failing at once do not retry in lockstep.
+ * <br>
+ * Instances of this class are thread safe and can be shared by multiple Jinx instances.
+ *
+ * @author Jeremy Brooks
+ */
+public class RetryPolicy {
+
+  /**
+   * Flickr error codes that are retried by default.
+   * 105 is "Service currently unavailable".
+   */
+  public static final Set<Integer> DEFAULT_RETRYABLE_CODES = Collections.singleton(105);
+
+  /*
+   * A method sent with POST is idempotent if the last part of its name starts with one of these,
+   * or if its full name is in READ_METHODS.
+   */
+  private static final String[] READ_METHOD_PREFIXES = {"browse", "check", "find", "get", "lookup", "search"};
+
+  private static final Set<String> READ_METHODS = new HashSet<>(Arrays.asList(
+      "flickr.activity.userComments", "flickr.activity.userPhotos", "flickr.photos.geo.photosForLocation",
+      "flickr.photos.recentlyUpdated", "flickr.places.placesForBoundingBox", "flickr.places.placesForContacts",
+      "flickr.places.placesForTags", "flickr.places.placesForUser", "flickr.places.tagsForPlace",
+      "flickr.test.echo", "flickr.test.login", "flickr.test.null"));
+
+  private final int maxAttempts;
+  private final long baseDelayMillis;
+  private final long maxDelayMillis;
+
+  private RetryBudget budget = new RetryBudget(0.1, 1, 10);
+  private Set<Integer> retryableCodes = DEFAULT_RETRYABLE_CODES;
+  private final Map<String, Boolean> idempotentOverrides = new ConcurrentHashMap<>();
+
+  private final AtomicLong retries = new AtomicLong();
+  private final AtomicLong budgetExhausted = new AtomicLong();
+  private final AtomicLong attemptsExhausted = new AtomicLong();
+
+  /**
+   * Create a retry policy.
+   *
+   * @param maxAttempts maximum number of attempts, including the first one. Must be at least 1.
+   * @param baseDelay   delay before the first retry.
+   * @param maxDelay    longest delay before any retry.
+   * @param unit        unit of the delays.
+   */
+  public RetryPolicy(int maxAttempts, long baseDelay, long maxDelay, TimeUnit unit) {
+    if (maxAttempts < 1) {
+      throw new IllegalArgumentException("maxAttempts must be at least 1.");
+    }
+    if (baseDelay < 0 || maxDelay < baseDelay) {
+      throw new IllegalArgumentException("Delays must not be negative, and maxDelay must not be less than baseDelay.");
+    }
+    this.maxAttempts = maxAttempts;
+    this.baseDelayMillis = unit.toMillis(baseDelay);
+    this.maxDelayMillis = unit.toMillis(maxDelay);
+  }
+
+  /**
+   * Indicates if a Flickr method can safely be sent more than once.
+   *
+   * @param method     the Flickr method name, such as flickr.photos.getInfo.
+   * @param httpMethod the http method used to call Flickr.
+   * @return true if the method is idempotent.
+   */
+  public boolean isIdempotent(String method, JinxConstants.Method httpMethod) {
+    if (method != null) {
+      Boolean override = idempotentOverrides.get(method);
+      if (override != null) {
+        return override;
+      }
+    }
+    return httpMethod == JinxConstants.Method.GET || isReadMethod(method);
+  }
+
+  /*
+   * Only methods known to read data are safe to send twice; anything else might change data.
+   */
+  private static boolean isReadMethod(String method) {
+    if (method == null || JinxUtils.isWriteMethod(method)) {
+      return false;
+    }
+    if (READ_METHODS.contains(method)) {
+      return true;
+    }
+    String name = method.substring(method.lastIndexOf('.') + 1);
+    for (String prefix : READ_METHOD_PREFIXES) {
+      if (name.startsWith(prefix)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Indicates if a failure is transient, and might succeed if tried again.
+   *
+   * @param e the exception.
+   * @return true if the failure is transient.
+   */
+  public boolean isTransient(JinxException e) {
+    int status = e.getHttpStatus();
+    return e.getCause() instanceof IOException
+        || status == 429
+        || status >= 500
+        || isRetryableCode(e.getFlickrErrorCode());
+  }
+
+  /**
+   * Indicates if a Flickr error code should be retried.
+   *
+   * @param code the error code.
+   * @return true if the code is retryable.
+   */
+  public boolean isRetryableCode(int code) {
+    return code != 0 && retryableCodes.contains(code);
+  }
+
+  /**
+   * Decide if a call should be retried. If this returns true, a retry has been taken from the budget.
+   *
+   * @param method     the Flickr method name.
+   * @param httpMethod the http method used to call Flickr.
+   * @param attempt    the attempt that just failed. The first attempt is 1.
+   * @param e          the failure.
+   * @return true if the call should be retried.
+   */
+  public boolean shouldRetry(String method, JinxConstants.Method httpMethod, int attempt, JinxException e) {
+    if (!isIdempotent(method, httpMethod) || !isTransient(e)) {
+      return false;
+    }
+    if (attempt >= maxAttempts) {
+      attemptsExhausted.incrementAndGet();
+      return false;
+    }
+    if (!budget.tryRetry()) {
+      budgetExhausted.incrementAndGet();
+      return false;
+    }
+    retries.incrementAndGet();
+    return true;
+  }
+
+  /**
+   * Record a request, adding to the retry budget.
+   */
+  public void onRequest() {
+    budget.onRequest();
+  }
+
+  /**
+   * Get the delay before the next attempt.
+   *
+   * @param attempt the attempt that just failed. The first attempt is 1.
+   * @return delay in milliseconds.
+   */
+  public long getDelayMillis(int attempt) {
+    long ceiling = baseDelayMillis << Math.min(attempt - 1, 30);
+    if (ceiling <= 0 || ceiling > maxDelayMillis) {
+      ceiling = maxDelayMillis;
+    }
+    return ceiling == 0 ? 0 : ThreadLocalRandom.current().nextLong(ceiling + 1);
+  }
+
+  /**
+   * Override the idempotency of a Flickr method.
+   *
+   * @param method     the Flickr method name.
+   * @param idempotent true if the method can safely be retried.
+   * @return this policy.
+   */
+  public RetryPolicy setIdempotent(String method, boolean idempotent) {
+    idempotentOverrides.put(method, idempotent);
+    return this;
+  }
+
+  public RetryBudget getBudget() {
+    return budget;
+  }
+
+  /**
+   * Set the retry budget. Policies used by different Jinx instances can share a budget.
+   *
+   * @param budget the budget to use.
+   * @return this policy.
+   */
+  public RetryPolicy setBudget(RetryBudget budget) {
+    if (budget == null) {
+      throw new IllegalArgumentException("budget cannot be null.");
+    }
+    this.budget = budget;
+    return this;
+  }
+
+  public Set<Integer> getRetryableCodes() {
+    return retryableCodes;
+  }
+
+  /**
+   * Set the Flickr error codes that are retried.
+   *
+   * @param retryableCodes error codes; null or empty means no Flickr error codes are retried.
+   * @return this policy.
+   */
+  public RetryPolicy setRetryableCodes(Set<Integer> retryableCodes) {
+    this.retryableCodes = retryableCodes == null ? Collections.emptySet() : Collections.unmodifiableSet(new HashSet<>(retryableCodes));
+    return this;
+  }
+
+  public int getMaxAttempts() {
+    return maxAttempts;
+  }
+
+  /**
+   * @return number of retries made.
+   */
+  public long getRetryCount() {
+    return retries.get();
+  }
+
+  /**
+   * @return number of times a retry was not made because the retry budget was exhausted.
+   */
+  public long getBudgetExhaustedCount() {
+    return budgetExhausted.get();
+  }
+
+  /**
+   * @return number of times a call failed after using all of its attempts.
+   */
+  public long getAttemptsExhaustedCount() {
+    return attemptsExhausted.get();
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder("RetryPolicy{");
+    sb.append("maxAttempts=").append(maxAttempts);
+    sb.append(", baseDelayMillis=").append(baseDelayMillis);
+    sb.append(", maxDelayMillis=").append(maxDelayMillis);
+    sb.append(", retries=").append(retries.get());
+    sb.append(", budgetExhausted=").append(budgetExhausted.get());
+    sb.append(", attemptsExhausted=").append(attemptsExhausted.get());
+    sb.append('}');
+    return sb.toString();
+  }
+}
@@ -0,0 +1,219 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.stats;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * A streaming CSV reader.
+ * <br>
+ * Rows are read one at a time through a fixed size character buffer, so memory use does not depend on the size of
+ * the file. Quoted fields, doubled quotes inside quoted fields, line breaks inside quoted fields, and both LF and
+ * CRLF line endings are supported. A byte order mark at the start of the input is skipped.
+ * <br>
+ * The field array is reused from row to row, so values must be copied out before calling {@link #next()} again.
+ * Instances of this class are not thread safe.
+ *
+ * @author Jeremy Brooks
+ */
+public class CsvReader implements Closeable {
+
+  /**
+   * Default size of the read buffer, in characters.
+   */
+  public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+  /**
+   * Default maximum length of a single field, in characters.
+   */
+  public static final int DEFAULT_MAX_FIELD_LENGTH = 1 << 20;
+
+  private final Reader reader;
+  private final char[] buffer;
+  private final int maxFieldLength;
+  private final StringBuilder field = new StringBuilder();
+  private String[] fields = new String[16];
+  private int fieldCount;
+  private int position;
+  private int limit;
+  private long row;
+  private boolean started;
+  private boolean eof;
+
+  /**
+   * Create a reader with the default buffer size and maximum field length.
+   *
+   * @param reader the source of the CSV data.
+   */
+  public CsvReader(Reader reader) {
+    this(reader, DEFAULT_BUFFER_SIZE, DEFAULT_MAX_FIELD_LENGTH);
+  }
+
+  /**
+   * Create a reader.
+   *
+   * @param reader         the source of the CSV data.
+   * @param bufferSize     size of the read buffer, in characters.
+   * @param maxFieldLength fields longer than this cause an IOException, which protects against a missing closing
+   *                       quote pulling the rest of the file into memory.
+   */
+  public CsvReader(Reader reader, int bufferSize, int maxFieldLength) {
+    if (reader == null) {
+      throw new IllegalArgumentException("reader is required.");
+    }
+    if (bufferSize < 1 || maxFieldLength < 1) {
+      throw new IllegalArgumentException("bufferSize and maxFieldLength must be greater than zero.");
+    }
+    this.reader = reader;
+    this.buffer = new char[bufferSize];
+    this.maxFieldLength = maxFieldLength;
+  }
+
+  /**
+   * Read the next row.
+   *
+   * @return true if a row was read, false at the end of the input.
+   * @throws IOException if the input cannot be read or a field is too long.
+   */
+  public boolean next() throws IOException {
+    fieldCount = 0;
+    if (!started) {
+      started = true;
+      if (fill() && buffer[position] == '\uFEFF') {
+        position++;
+      }
+    }
+    if (!fill()) {
+      return false;
+    }
+    row++;
+    field.setLength(0);
+    boolean quoted = false;
+    boolean wasQuoted = false;
+    while (fill()) {
+      char c = buffer[position++];
+      if (quoted) {
+        if (c == '"') {
+          if (fill() && buffer[position] == '"') {
+            position++;
+            append(c);
+          } else {
+            quoted = false;
+          }
+        } else {
+          append(c);
+        }
+      } else if (c == ',') {
+        endField();
+        wasQuoted = false;
+      } else if (c == '\n') {
+        endField();
+        return true;
+      } else if (c == '\r') {
+        if (fill() && buffer[position] == '\n') {
+          position++;
+        }
+        endField();
+        return true;
+      } else if (c == '"' && field.length() == 0 && !wasQuoted) {
+        quoted = true;
+        wasQuoted = true;
+      } else {
+        append(c);
+      }
+    }
+    if (quoted) {
+      throw new IOException("Unterminated quoted field in row " + row);
+    }
+    endField();
+    return true;
+  }
+
+  /**
+   * @return number of fields in the current row.
+   */
+  public int getFieldCount() {
+    return fieldCount;
+  }
+
+  /**
+   * @param index index of the field.
+   * @return the field value, or an empty string if the row has fewer fields.
+   */
+  public String getField(int index) {
+    return index < fieldCount ? fields[index] : "";
+  }
+
+  /**
+   * @return a copy of the fields in the current row.
+   */
+  public String[] getFields() {
+    return Arrays.copyOf(fields, fieldCount);
+  }
+
+  /**
+   * @return number of the current row, starting at 1.
+   */
+  public long getRow() {
+    return row;
+  }
+
+  @Override
+  public void close() throws IOException {
+    reader.close();
+  }
+
+  /* Make sure there is at least one character in the buffer. Returns false at the end of the input. */
+  private boolean fill() throws IOException {
+    if (position < limit) {
+      return true;
+    }
+    if (eof) {
+      return false;
+    }
+    int n;
+    do {
+      n = reader.read(buffer, 0, buffer.length);
+    } while (n == 0);
+    if (n < 0) {
+      eof = true;
+      return false;
+    }
+    position = 0;
+    limit = n;
+    return true;
+  }
+
+  private void append(char c) throws IOException {
+    if (field.length() >= maxFieldLength) {
+      throw new IOException("Field longer than " + maxFieldLength + " characters in row " + row);
+    }
+    field.append(c);
+  }
+
+  private void endField() {
+    if (fieldCount == fields.length) {
+      fields = Arrays.copyOf(fields, fieldCount * 2);
+    }
+    fields[fieldCount++] = field.toString();
+    field.setLength(0);
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.stats;
+
+import net.jeremybrooks.jinx.JinxException;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * The outcome of a harvest.
+ *
+ * @author Jeremy Brooks
+ */
+public class HarvestResult {
+
+  private final StatsTable table;
+  private final int harvested;
+  private final int skipped;
+  private final long calls;
+  private final Map<String, JinxException> failures;
+
+  HarvestResult(StatsTable table, int harvested, int skipped, long calls, Map<String, JinxException> failures) {
+    this.table = table;
+    this.harvested = harvested;
+    this.skipped = skipped;
+    this.calls = calls;
+    this.failures = Collections.unmodifiableMap(failures);
+  }
+
+  /**
+   * @return the table the stats were written to.
+   */
+  public StatsTable getTable() {
+    return table;
+  }
+
+  /**
+   * @return number of object and day pairs added to the table.
+   */
+  public int getHarvested() {
+    return harvested;
+  }
+
+  /**
+   * @return number of object and day pairs skipped because they were already in the table.
+   */
+  public int getSkipped() {
+    return skipped;
+  }
+
+  /**
+   * @return number of calls made to Flickr.
+   */
+  public long getCalls() {
+    return calls;
+  }
+
+  /**
+   * Get the object and day pairs that could not be harvested. Nothing is added to the table for these pairs, so
+   * harvesting into the same table again will retry them.
+   *
+   * @return map of "type:id:date" to the first error.
+   */
+  public Map<String, JinxException> getFailures() {
+    return failures;
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder("HarvestResult{");
+    sb.append("harvested=").append(harvested);
+    sb.append(", skipped=").append(skipped);
+    sb.append(", calls=").append(calls);
+    sb.append(", failures=").append(failures.size());
+    sb.append('}');
+    return sb.toString();
+  }
+}
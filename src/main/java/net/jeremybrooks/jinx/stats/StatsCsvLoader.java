@@ -0,0 +1,137 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.stats;
+
+import net.jeremybrooks.jinx.Jinx;
+import net.jeremybrooks.jinx.JinxConstants;
+import net.jeremybrooks.jinx.JinxException;
+import net.jeremybrooks.jinx.response.stats.CSV;
+import net.jeremybrooks.jinx.transport.TransportRequest;
+import net.jeremybrooks.jinx.transport.TransportResponse;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Downloads and parses the stats files returned by
+ * {@link net.jeremybrooks.jinx.api.StatsApi#getCSVFiles()}.
+ * <br>
+ * Each file is parsed as it is downloaded, so only the read buffer is held in memory no matter how large the file
+ * is. Files are downloaded with the transport of the Jinx instance. For example, to load all daily stats:
+ * {@code
+ * ViewSeries series = new ViewSeries();
+ * new StatsCsvLoader(jinx).load(statsApi.getCSVFiles().getCsvFiles(), "daily", series);
+ * }
+ *
+ * @author Jeremy Brooks
+ */
+public class StatsCsvLoader {
+
+  private final Jinx jinx;
+  private final StatsCsvParser parser = new StatsCsvParser();
+
+  /**
+   * Create a loader.
+   *
+   * @param jinx the Jinx instance used to download the files.
+   */
+  public StatsCsvLoader(Jinx jinx) {
+    if (jinx == null) {
+      throw new IllegalArgumentException("jinx is required.");
+    }
+    this.jinx = jinx;
+  }
+
+  /**
+   * @return the parser used for each file, which can be used to change the buffer size.
+   */
+  public StatsCsvParser getParser() {
+    return parser;
+  }
+
+  /**
+   * Download and parse every file in a list.
+   *
+   * @param files    the files to load.
+   * @param consumer receives every record.
+   * @return number of records sent to the consumer.
+   * @throws JinxException if any file cannot be downloaded or parsed.
+   */
+  public long load(List<CSV> files, Consumer<ViewRecord> consumer) throws JinxException {
+    return load(files, null, consumer);
+  }
+
+  /**
+   * Download and parse the files in a list that have a given type.
+   *
+   * @param files    the files to load.
+   * @param type     type of file to load, such as "daily" or "monthly". Null loads all files.
+   * @param consumer receives every record.
+   * @return number of records sent to the consumer.
+   * @throws JinxException if any file cannot be downloaded or parsed.
+   */
+  public long load(List<CSV> files, String type, Consumer<ViewRecord> consumer) throws JinxException {
+    long records = 0;
+    if (files != null) {
+      for (CSV csv : files) {
+        if (type == null || type.equals(csv.getType())) {
+          records += load(csv, consumer);
+        }
+      }
+    }
+    return records;
+  }
+
+  /**
+   * Download and parse one file.
+   *
+   * @param csv      the file to load.
+   * @param consumer receives every record.
+   * @return number of records sent to the consumer.
+   * @throws JinxException if the file cannot be downloaded or parsed.
+   */
+  public long load(CSV csv, Consumer<ViewRecord> consumer) throws JinxException {
+    if (csv == null || csv.getHref() == null) {
+      throw new JinxException("A CSV with an href is required.");
+    }
+    LocalDate fileDate = null;
+    if (csv.getDate() != null) {
+      try {
+        fileDate = LocalDate.parse(csv.getDate());
+      } catch (DateTimeParseException e) {
+        throw new JinxException("Invalid date " + csv.getDate() + " for " + csv.getHref(), e);
+      }
+    }
+    try (TransportResponse response = jinx.getTransport().execute(
+        new TransportRequest(JinxConstants.Method.GET, csv.getHref(), null, null))) {
+      if (!response.isSuccessful() || response.getBody() == null) {
+        throw new JinxException("Unable to get " + csv.getHref() + ": HTTP status " + response.getCode());
+      }
+      Reader reader = new InputStreamReader(response.getBody(), StandardCharsets.UTF_8);
+      return parser.parse(reader, fileDate, consumer);
+    } catch (IOException e) {
+      throw new JinxException("Unable to load " + csv.getHref(), e);
+    }
+  }
+}
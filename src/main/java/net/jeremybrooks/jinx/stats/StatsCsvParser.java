@@ -0,0 +1,184 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.stats;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+/**
+ * Parses Flickr stats CSV files into {@link ViewRecord} objects.
+ * <br>
+ * The first row of the file is a header, and columns are found by name, so the parser does not depend on the
+ * column order. Two layouts are supported:
+ * <ul>
+ * <li>One row per item per day, with a date column and a views column.</li>
+ * <li>One row per item, with one column per day. The header of each day column is the date, in yyyy-MM-dd form.</li>
+ * </ul>
+ * If there is no date column and no day columns, the views are for the date of the file, which is passed to
+ * {@link #parse(Reader, LocalDate, Consumer)}. Empty view counts are skipped, and thousands separators are ignored.
+ * <br>
+ * The file is read one row at a time, so files of any size can be parsed.
+ *
+ * @author Jeremy Brooks
+ */
+public class StatsCsvParser {
+
+  private int bufferSize = CsvReader.DEFAULT_BUFFER_SIZE;
+
+  /**
+   * Set the size of the read buffer. The default is {@link CsvReader#DEFAULT_BUFFER_SIZE} characters.
+   *
+   * @param bufferSize size of the read buffer, in characters.
+   */
+  public void setBufferSize(int bufferSize) {
+    if (bufferSize < 1) {
+      throw new IllegalArgumentException("bufferSize must be greater than zero.");
+    }
+    this.bufferSize = bufferSize;
+  }
+
+  public int getBufferSize() {
+    return bufferSize;
+  }
+
+  /**
+   * Parse a stats CSV file.
+   * <br>
+   * The reader is not closed.
+   *
+   * @param reader   the CSV data.
+   * @param fileDate date of the file, used when rows do not have a date. May be null if every row has a date.
+   * @param consumer receives each record, in file order.
+   * @return number of records sent to the consumer.
+   * @throws IOException if the data cannot be read, or is not a stats file.
+   */
+  public long parse(Reader reader, LocalDate fileDate, Consumer<ViewRecord> consumer) throws IOException {
+    CsvReader csv = new CsvReader(reader, bufferSize, CsvReader.DEFAULT_MAX_FIELD_LENGTH);
+    if (!csv.next()) {
+      return 0;
+    }
+    int idColumn = -1;
+    int titleColumn = -1;
+    int dateColumn = -1;
+    int viewsColumn = -1;
+    int count = csv.getFieldCount();
+    LocalDate[] dayColumns = new LocalDate[count];
+    boolean wide = false;
+    for (int i = 0; i < count; i++) {
+      String name = csv.getField(i).trim().toLowerCase(Locale.ROOT);
+      LocalDate day = parseDate(name);
+      if (day != null) {
+        dayColumns[i] = day;
+        wide = true;
+      } else if (idColumn < 0 && (name.equals("id") || name.endsWith(" id") || name.endsWith("_id"))) {
+        idColumn = i;
+      } else if (titleColumn < 0 && (name.contains("title") || name.equals("name"))) {
+        titleColumn = i;
+      } else if (dateColumn < 0 && (name.equals("date") || name.equals("day"))) {
+        dateColumn = i;
+      } else if (viewsColumn < 0 && (name.contains("views") || name.equals("count"))) {
+        viewsColumn = i;
+      }
+    }
+    if (!wide && viewsColumn < 0) {
+      throw new IOException("Not a stats file: no views column or date columns in header.");
+    }
+    if (!wide && dateColumn < 0 && fileDate == null) {
+      throw new IOException("The file has no date column, so a file date is required.");
+    }
+
+    long records = 0;
+    String lastDateText = null;
+    LocalDate lastDate = null;
+    while (csv.next()) {
+      if (csv.getFieldCount() == 1 && csv.getField(0).isEmpty()) {
+        continue;
+      }
+      String id = idColumn < 0 ? null : emptyToNull(csv.getField(idColumn).trim());
+      String title = titleColumn < 0 ? null : emptyToNull(csv.getField(titleColumn));
+      if (wide) {
+        for (int i = 0; i < count; i++) {
+          if (dayColumns[i] != null) {
+            long views = parseViews(csv.getField(i), csv.getRow());
+            if (views >= 0) {
+              consumer.accept(new ViewRecord(id, title, dayColumns[i], views));
+              records++;
+            }
+          }
+        }
+      } else {
+        long views = parseViews(csv.getField(viewsColumn), csv.getRow());
+        if (views < 0) {
+          continue;
+        }
+        LocalDate date = fileDate;
+        if (dateColumn >= 0) {
+          // rows are usually grouped by date, so only parse the date when it changes
+          String text = csv.getField(dateColumn).trim();
+          if (!text.equals(lastDateText)) {
+            lastDate = parseDate(text);
+            if (lastDate == null) {
+              throw new IOException("Invalid date '" + text + "' in row " + csv.getRow());
+            }
+            lastDateText = text;
+          }
+          date = lastDate;
+        }
+        consumer.accept(new ViewRecord(id, title, date, views));
+        records++;
+      }
+    }
+    return records;
+  }
+
+  /* Parse a yyyy-MM-dd date, returning null if the text is not a date. */
+  private static LocalDate parseDate(String text) {
+    if (text.length() != 10 || text.charAt(4) != '-' || text.charAt(7) != '-') {
+      return null;
+    }
+    try {
+      return LocalDate.parse(text);
+    } catch (DateTimeParseException e) {
+      return null;
+    }
+  }
+
+  /* Parse a view count without creating any objects. Returns -1 for an empty value. */
+  private static long parseViews(String text, long row) throws IOException {
+    long value = 0;
+    boolean digits = false;
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      if (c >= '0' && c <= '9') {
+        value = value * 10 + (c - '0');
+        digits = true;
+      } else if (c != ',' && c != ' ') {
+        throw new IOException("Invalid view count '" + text + "' in row " + row);
+      }
+    }
+    return digits ? value : -1;
+  }
+
+  private static String emptyToNull(String value) {
+    return value.isEmpty() ? null : value;
+  }
+}
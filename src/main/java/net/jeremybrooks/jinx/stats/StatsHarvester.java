@@ -0,0 +1,418 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.stats;
+
+import net.jeremybrooks.jinx.Jinx;
+import net.jeremybrooks.jinx.JinxException;
+import net.jeremybrooks.jinx.api.StatsApi;
+import net.jeremybrooks.jinx.concurrent.StepScheduler;
+import net.jeremybrooks.jinx.logger.JinxLogger;
+import net.jeremybrooks.jinx.logger.LogLevel;
+import net.jeremybrooks.jinx.ratelimit.RateLimiter;
+import net.jeremybrooks.jinx.response.stats.Domain;
+import net.jeremybrooks.jinx.response.stats.Domains;
+import net.jeremybrooks.jinx.response.stats.Referrer;
+import net.jeremybrooks.jinx.response.stats.Referrers;
+import net.jeremybrooks.jinx.response.stats.Stats;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects stats for many objects over a range of days.
+ * <br>
+ * For each object and day, the harvester gets the views (and comments and favorites, where Flickr has them), then
+ * optionally every page of domains and every page of referrers within each domain. Every call is a separate unit of
+ * work, and up to parallelism calls are made at the same time, using the executor returned by
+ * {@link Jinx#getExecutor()}. Domain and referrer pages are queued ahead of other work, so each object and day is
+ * finished quickly and little is held in memory.
+ * <br>
+ * Calls go through the Jinx instance, so they are limited by its REST rate limiter if it has one. A separate limiter
+ * can be set with {@link #setRateLimiter(RateLimiter)} to give the harvest a smaller share of the API key.
+ * <br>
+ * The results for an object and day are added to the {@link StatsTable} only when all of its calls have succeeded.
+ * Pairs that are already in the table are skipped, so a failed or interrupted backfill can be finished by harvesting
+ * into the same table again.
+ * <br>
+ * {@code
+ * StatsHarvester harvester = new StatsHarvester(jinx, 4);
+ * harvester.setDomains(true);
+ * StatsTable table = StatsTable.read(file);
+ * harvester.harvest(ObjectType.PHOTO, photoIds, LocalDate.now().minusDays(30), LocalDate.now().minusDays(1), table).join();
+ * table.write(file);
+ * }
+ * <br>
+ * Flickr only keeps stats for the last 28 days.
+ *
+ * @author Jeremy Brooks
+ */
+public class StatsHarvester {
+
+  /**
+   * Default number of domains or referrers requested in each page. This is the maximum Flickr allows.
+   */
+  public static final int DEFAULT_PER_PAGE = 100;
+
+  private final Jinx jinx;
+  private final StatsApi statsApi;
+  private final int parallelism;
+  private RateLimiter rateLimiter;
+  private boolean domains;
+  private boolean referrers;
+  private int perPage = DEFAULT_PER_PAGE;
+
+  /**
+   * Create a new harvester.
+   *
+   * @param jinx        the Jinx instance to use.
+   * @param parallelism maximum number of calls to make at the same time.
+   */
+  public StatsHarvester(Jinx jinx, int parallelism) {
+    if (jinx == null) {
+      throw new IllegalArgumentException("jinx is required.");
+    }
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("parallelism must be at least 1.");
+    }
+    this.jinx = jinx;
+    this.statsApi = new StatsApi(jinx);
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * Harvest stats into a new table.
+   *
+   * @param type type of the objects.
+   * @param ids  ids of the objects. Ignored for {@link ObjectType#PHOTOSTREAM}.
+   * @param from first day, inclusive.
+   * @param to   last day, inclusive.
+   * @return future that completes when the harvest has finished.
+   */
+  public CompletableFuture<HarvestResult> harvest(ObjectType type, Collection<String> ids, LocalDate from, LocalDate to) {
+    return harvest(type, ids, from, to, new StatsTable());
+  }
+
+  /**
+   * Harvest stats into a table.
+   * <br>
+   * The returned future does not complete exceptionally because of failed calls, which are reported in
+   * {@link HarvestResult#getFailures()}. Cancelling the future stops the harvest after the calls in progress.
+   *
+   * @param type  type of the objects.
+   * @param ids   ids of the objects. Ignored for {@link ObjectType#PHOTOSTREAM}.
+   * @param from  first day, inclusive.
+   * @param to    last day, inclusive.
+   * @param table the table to add the stats to.
+   * @return future that completes when the harvest has finished.
+   */
+  public CompletableFuture<HarvestResult> harvest(ObjectType type, Collection<String> ids, LocalDate from, LocalDate to,
+                                                  StatsTable table) {
+    if (type == null || from == null || to == null || table == null) {
+      throw new IllegalArgumentException("type, from, to and table are required.");
+    }
+    if (to.isBefore(from)) {
+      throw new IllegalArgumentException("to must not be before from.");
+    }
+    if (type != ObjectType.PHOTOSTREAM && ids == null) {
+      throw new IllegalArgumentException("ids are required.");
+    }
+    Collection<String> objects = type == ObjectType.PHOTOSTREAM ? Collections.singletonList("") : ids;
+    Job job = new Job(type, table);
+    job.start(objects, from, to);
+    return job.getFuture();
+  }
+
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  public RateLimiter getRateLimiter() {
+    return rateLimiter;
+  }
+
+  /**
+   * @param rateLimiter limiter acquired before each call, in addition to the Jinx REST rate limiter. May be null.
+   */
+  public void setRateLimiter(RateLimiter rateLimiter) {
+    this.rateLimiter = rateLimiter;
+  }
+
+  public boolean isDomains() {
+    return domains;
+  }
+
+  /**
+   * @param domains if true, the domains that sent views to each object are harvested. The default is false.
+   */
+  public void setDomains(boolean domains) {
+    this.domains = domains;
+  }
+
+  public boolean isReferrers() {
+    return referrers;
+  }
+
+  /**
+   * @param referrers if true, the referrers within each domain are harvested. This also turns on domains.
+   *                  The default is false.
+   */
+  public void setReferrers(boolean referrers) {
+    this.referrers = referrers;
+    if (referrers) {
+      this.domains = true;
+    }
+  }
+
+  public int getPerPage() {
+    return perPage;
+  }
+
+  /**
+   * @param perPage number of domains or referrers requested in each page, from 1 to 100.
+   */
+  public void setPerPage(int perPage) {
+    if (perPage < 1 || perPage > 100) {
+      throw new IllegalArgumentException("perPage must be between 1 and 100.");
+    }
+    this.perPage = perPage;
+  }
+
+
+  /*
+   * Progress of one object on one day.
+   */
+  private static class Pair {
+    private final String id;
+    private final LocalDate date;
+    private final AtomicInteger remaining = new AtomicInteger(1);
+    private final AtomicBoolean failed = new AtomicBoolean();
+    private final List<StatsTable.Traffic> traffic = Collections.synchronizedList(new ArrayList<>());
+    private volatile Stats stats;
+
+    Pair(String id, LocalDate date) {
+      this.id = id;
+      this.date = date;
+    }
+  }
+
+  /*
+   * State for a single call to harvest.
+   */
+  private class Job extends StepScheduler<HarvestResult> {
+    private final ObjectType type;
+    private final StatsTable table;
+    private final AtomicInteger harvested = new AtomicInteger();
+    private final AtomicInteger skipped = new AtomicInteger();
+    private final AtomicLong calls = new AtomicLong();
+    private final Map<String, JinxException> failures = new ConcurrentHashMap<>();
+
+    Job(ObjectType type, StatsTable table) {
+      super(jinx.getExecutor(), parallelism, "harvest");
+      this.type = type;
+      this.table = table;
+    }
+
+    void start(Collection<String> ids, LocalDate from, LocalDate to) {
+      for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+        for (String id : ids) {
+          if (table.contains(type, id, date)) {
+            skipped.incrementAndGet();
+          } else {
+            Pair pair = new Pair(id, date);
+            schedule(false, () -> stats(pair));
+          }
+        }
+      }
+      queued();
+    }
+
+    @Override
+    protected HarvestResult result() {
+      return new HarvestResult(table, harvested.get(), skipped.get(), calls.get(), new LinkedHashMap<>(failures));
+    }
+
+    @Override
+    protected void failed(JinxException e) {
+      failures.putIfAbsent("harvest", e);
+    }
+
+    private void stats(Pair pair) {
+      try {
+        acquire();
+        pair.stats = getStats(pair);
+        if (domains) {
+          pair.remaining.incrementAndGet();
+          schedule(true, () -> domains(pair, 1));
+        }
+        done(pair);
+      } catch (JinxException e) {
+        fail(pair, e);
+      } catch (RuntimeException e) {
+        fail(pair, new JinxException("Unable to get stats for " + key(pair), e));
+      }
+    }
+
+    private void domains(Pair pair, int page) {
+      if (pair.failed.get()) {
+        return;
+      }
+      try {
+        acquire();
+        Domains result = getDomains(pair, page);
+        if (page == 1) {
+          int pages = result.getPages() == null ? 1 : Math.max(1, result.getPages());
+          pair.remaining.addAndGet(pages - 1);
+          for (int i = pages; i >= 2; i--) {
+            int next = i;
+            schedule(true, () -> domains(pair, next));
+          }
+        }
+        if (result.getDomainList() != null) {
+          for (Domain domain : result.getDomainList()) {
+            pair.traffic.add(new StatsTable.Traffic(domain.getName(), null, null, domain.getViews()));
+            if (referrers && domain.getName() != null) {
+              pair.remaining.incrementAndGet();
+              schedule(true, () -> referrers(pair, domain.getName(), 1));
+            }
+          }
+        }
+        done(pair);
+      } catch (JinxException e) {
+        fail(pair, e);
+      } catch (RuntimeException e) {
+        fail(pair, new JinxException("Unable to get domains for " + key(pair), e));
+      }
+    }
+
+    private void referrers(Pair pair, String domain, int page) {
+      if (pair.failed.get()) {
+        return;
+      }
+      try {
+        acquire();
+        Referrers result = getReferrers(pair, domain, page);
+        if (page == 1) {
+          int pages = result.getPages() == null ? 1 : Math.max(1, result.getPages());
+          pair.remaining.addAndGet(pages - 1);
+          for (int i = pages; i >= 2; i--) {
+            int next = i;
+            schedule(true, () -> referrers(pair, domain, next));
+          }
+        }
+        if (result.getReferrerList() != null) {
+          for (Referrer referrer : result.getReferrerList()) {
+            pair.traffic.add(new StatsTable.Traffic(domain, referrer.getUrl() == null ? "" : referrer.getUrl(),
+                referrer.getSearchTerm(), referrer.getViews()));
+          }
+        }
+        done(pair);
+      } catch (JinxException e) {
+        fail(pair, e);
+      } catch (RuntimeException e) {
+        fail(pair, new JinxException("Unable to get referrers for " + key(pair), e));
+      }
+    }
+
+    /* Count down a finished call, and add the pair to the table when it was the last one. */
+    private void done(Pair pair) {
+      if (pair.remaining.decrementAndGet() == 0 && !pair.failed.get()) {
+        Stats stats = pair.stats;
+        List<StatsTable.Traffic> traffic;
+        synchronized (pair.traffic) {
+          traffic = new ArrayList<>(pair.traffic);
+        }
+        table.put(type, pair.id, pair.date, stats.getViews(), stats.getComments(), stats.getFavorites(), traffic);
+        harvested.incrementAndGet();
+      }
+    }
+
+    private void fail(Pair pair, JinxException e) {
+      if (pair.failed.compareAndSet(false, true)) {
+        failures.putIfAbsent(key(pair), e);
+        if (jinx.isVerboseLogging()) {
+          JinxLogger.log(LogLevel.WARN, "Unable to harvest " + key(pair), e);
+        }
+      }
+    }
+
+    private String key(Pair pair) {
+      return type + ":" + pair.id + ":" + pair.date;
+    }
+
+    private void acquire() throws JinxException {
+      calls.incrementAndGet();
+      if (rateLimiter != null) {
+        try {
+          rateLimiter.acquire();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new JinxException("Interrupted while waiting for the rate limiter.", e);
+        }
+      }
+    }
+
+    private Stats getStats(Pair pair) throws JinxException {
+      switch (type) {
+        case PHOTO:
+          return statsApi.getPhotoStats(pair.date, pair.id);
+        case PHOTOSET:
+          return statsApi.getPhotosetStats(pair.date, pair.id);
+        case COLLECTION:
+          return statsApi.getCollectionStats(pair.date, pair.id);
+        default:
+          return statsApi.getPhotostreamStats(pair.date);
+      }
+    }
+
+    private Domains getDomains(Pair pair, int page) throws JinxException {
+      switch (type) {
+        case PHOTO:
+          return statsApi.getPhotoDomains(pair.date, pair.id, perPage, page);
+        case PHOTOSET:
+          return statsApi.getPhotosetDomains(pair.date, pair.id, perPage, page);
+        case COLLECTION:
+          return statsApi.getCollectionDomains(pair.date, pair.id, perPage, page);
+        default:
+          return statsApi.getPhotostreamDomains(pair.date, perPage, page);
+      }
+    }
+
+    private Referrers getReferrers(Pair pair, String domain, int page) throws JinxException {
+      switch (type) {
+        case PHOTO:
+          return statsApi.getPhotoReferrers(pair.date, domain, pair.id, perPage, page);
+        case PHOTOSET:
+          return statsApi.getPhotosetReferrers(pair.date, domain, pair.id, perPage, page);
+        case COLLECTION:
+          return statsApi.getCollectionReferrers(pair.date, domain, pair.id, perPage, page);
+        default:
+          return statsApi.getPhotostreamReferrers(pair.date, domain, perPage, page);
+      }
+    }
+  }
+}
@@ -0,0 +1,430 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.stats;
+
+import net.jeremybrooks.jinx.JinxException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compact, columnar table of stats collected by a {@link StatsHarvester}.
+ * <br>
+ * The table has two parts. The counts part has one row for each object and day, with the views, comments and
+ * favorites. The traffic part has one row for each domain that sent views to an object on a day, and one row for
+ * each referrer within a domain. Every column is a primitive array, and strings such as object ids, domains and
+ * URLs are stored once in a shared dictionary and referred to by number, so a month of stats for thousands of
+ * photos takes a few megabytes.
+ * <br>
+ * The table can be saved with {@link #write(Path)} and loaded with {@link #read(Path)}, so a backfill can be spread
+ * over several runs: the harvester skips objects and days that are already in the table.
+ * <br>
+ * Counts that Flickr does not return, such as comments for a collection, are null. Instances of this class are
+ * thread safe.
+ *
+ * @author Jeremy Brooks
+ */
+public class StatsTable {
+
+  private static final int MAGIC = 0x4A535454;
+  private static final int VERSION = 1;
+  private static final int NONE = -1;
+  private static final ObjectType[] TYPES = ObjectType.values();
+
+  /* dictionary */
+  private final List<String> strings = new ArrayList<>();
+  private final Map<String, Integer> stringIds = new HashMap<>();
+
+  /* counts */
+  private int countSize;
+  private byte[] countType = new byte[16];
+  private int[] countObject = new int[16];
+  private int[] countDay = new int[16];
+  private int[] countViews = new int[16];
+  private int[] countComments = new int[16];
+  private int[] countFavorites = new int[16];
+  private final Map<Long, Integer> countIndex = new HashMap<>();
+
+  /* traffic */
+  private int trafficSize;
+  private byte[] trafficType = new byte[16];
+  private int[] trafficObject = new int[16];
+  private int[] trafficDay = new int[16];
+  private int[] trafficDomain = new int[16];
+  private int[] trafficUrl = new int[16];
+  private int[] trafficSearchTerm = new int[16];
+  private int[] trafficViews = new int[16];
+
+  /**
+   * Read a table written by {@link #write(Path)}.
+   *
+   * @param file the file.
+   * @return the table.
+   * @throws JinxException if the file cannot be read or is not a stats table.
+   */
+  public static StatsTable read(Path file) throws JinxException {
+    StatsTable table = new StatsTable();
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+        throw new JinxException(file + " is not a stats table.");
+      }
+      int stringCount = in.readInt();
+      for (int i = 0; i < stringCount; i++) {
+        table.intern(in.readUTF());
+      }
+      int count = in.readInt();
+      table.countSize = count;
+      table.countType = readBytes(in, count);
+      table.countObject = readInts(in, count);
+      table.countDay = readInts(in, count);
+      table.countViews = readInts(in, count);
+      table.countComments = readInts(in, count);
+      table.countFavorites = readInts(in, count);
+      for (int row = 0; row < count; row++) {
+        table.countIndex.put(key(table.countType[row], table.countObject[row], table.countDay[row]), row);
+      }
+      int traffic = in.readInt();
+      table.trafficSize = traffic;
+      table.trafficType = readBytes(in, traffic);
+      table.trafficObject = readInts(in, traffic);
+      table.trafficDay = readInts(in, traffic);
+      table.trafficDomain = readInts(in, traffic);
+      table.trafficUrl = readInts(in, traffic);
+      table.trafficSearchTerm = readInts(in, traffic);
+      table.trafficViews = readInts(in, traffic);
+    } catch (IOException e) {
+      throw new JinxException("Unable to read stats table from " + file, e);
+    }
+    return table;
+  }
+
+  /**
+   * Write this table to a file.
+   * <br>
+   * The table is written to a temporary file which is then moved over the old file, so a crash while writing
+   * leaves the old file intact.
+   *
+   * @param file the file.
+   * @throws JinxException if the file cannot be written.
+   */
+  public synchronized void write(Path file) throws JinxException {
+    Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+    try {
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(strings.size());
+        for (String s : strings) {
+          out.writeUTF(s);
+        }
+        out.writeInt(countSize);
+        out.write(countType, 0, countSize);
+        writeInts(out, countObject, countSize);
+        writeInts(out, countDay, countSize);
+        writeInts(out, countViews, countSize);
+        writeInts(out, countComments, countSize);
+        writeInts(out, countFavorites, countSize);
+        out.writeInt(trafficSize);
+        out.write(trafficType, 0, trafficSize);
+        writeInts(out, trafficObject, trafficSize);
+        writeInts(out, trafficDay, trafficSize);
+        writeInts(out, trafficDomain, trafficSize);
+        writeInts(out, trafficUrl, trafficSize);
+        writeInts(out, trafficSearchTerm, trafficSize);
+        writeInts(out, trafficViews, trafficSize);
+      }
+      try {
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } catch (IOException e) {
+      throw new JinxException("Unable to write stats table to " + file, e);
+    }
+  }
+
+  /**
+   * @return number of rows in the counts part of the table.
+   */
+  public synchronized int getCountRows() {
+    return countSize;
+  }
+
+  /**
+   * @return number of rows in the traffic part of the table.
+   */
+  public synchronized int getTrafficRows() {
+    return trafficSize;
+  }
+
+  /**
+   * @param type type of object.
+   * @param id   id of the object. Ignored for {@link ObjectType#PHOTOSTREAM}.
+   * @param date the day.
+   * @return true if the table has counts for the object on the day.
+   */
+  public synchronized boolean contains(ObjectType type, String id, LocalDate date) {
+    return row(type, id, date) >= 0;
+  }
+
+  /**
+   * @param type type of object.
+   * @param id   id of the object. Ignored for {@link ObjectType#PHOTOSTREAM}.
+   * @param date the day.
+   * @return views of the object on the day, or null if they are not in the table.
+   */
+  public synchronized Integer getViews(ObjectType type, String id, LocalDate date) {
+    int row = row(type, id, date);
+    return row < 0 ? null : value(countViews[row]);
+  }
+
+  /**
+   * @param type type of object.
+   * @param id   id of the object. Ignored for {@link ObjectType#PHOTOSTREAM}.
+   * @param date the day.
+   * @return comments on the object on the day, or null if they are not in the table.
+   */
+  public synchronized Integer getComments(ObjectType type, String id, LocalDate date) {
+    int row = row(type, id, date);
+    return row < 0 ? null : value(countComments[row]);
+  }
+
+  /**
+   * @param type type of object.
+   * @param id   id of the object. Ignored for {@link ObjectType#PHOTOSTREAM}.
+   * @param date the day.
+   * @return favorites of the object on the day, or null if they are not in the table.
+   */
+  public synchronized Integer getFavorites(ObjectType type, String id, LocalDate date) {
+    int row = row(type, id, date);
+    return row < 0 ? null : value(countFavorites[row]);
+  }
+
+  /**
+   * Get the domains that sent views to an object on a day.
+   *
+   * @param type type of object.
+   * @param id   id of the object. Ignored for {@link ObjectType#PHOTOSTREAM}.
+   * @param date the day.
+   * @return map of domain name to views, in the order Flickr returned them.
+   */
+  public synchronized Map<String, Integer> getDomainViews(ObjectType type, String id, LocalDate date) {
+    return traffic(type, id, date, null);
+  }
+
+  /**
+   * Get the referrers within a domain that sent views to an object on a day.
+   *
+   * @param type   type of object.
+   * @param id     id of the object. Ignored for {@link ObjectType#PHOTOSTREAM}.
+   * @param date   the day.
+   * @param domain the domain.
+   * @return map of referrer URL to views, in the order Flickr returned them.
+   */
+  public synchronized Map<String, Integer> getReferrerViews(ObjectType type, String id, LocalDate date, String domain) {
+    if (domain == null) {
+      throw new IllegalArgumentException("domain is required.");
+    }
+    return traffic(type, id, date, domain);
+  }
+
+  /**
+   * Copy the daily views of every object of a type into a {@link ViewSeries}.
+   *
+   * @param type type of object.
+   * @return daily views of each object.
+   */
+  public synchronized ViewSeries toViewSeries(ObjectType type) {
+    ViewSeries series = new ViewSeries();
+    for (int row = 0; row < countSize; row++) {
+      if (countType[row] == type.ordinal() && countViews[row] != NONE) {
+        series.add(strings.get(countObject[row]), LocalDate.ofEpochDay(countDay[row]), countViews[row]);
+      }
+    }
+    return series;
+  }
+
+  /**
+   * Add the stats for an object on a day, replacing the counts if they are already in the table.
+   * The traffic rows are added as they are.
+   */
+  synchronized void put(ObjectType type, String id, LocalDate date, Integer views, Integer comments,
+                        Integer favorites, List<Traffic> traffic) {
+    int object = intern(objectId(type, id));
+    int day = Math.toIntExact(date.toEpochDay());
+    long key = key((byte) type.ordinal(), object, day);
+    Integer existing = countIndex.get(key);
+    int row;
+    if (existing == null) {
+      row = countSize++;
+      if (row == countType.length) {
+        int capacity = row + (row >> 1);
+        countType = Arrays.copyOf(countType, capacity);
+        countObject = Arrays.copyOf(countObject, capacity);
+        countDay = Arrays.copyOf(countDay, capacity);
+        countViews = Arrays.copyOf(countViews, capacity);
+        countComments = Arrays.copyOf(countComments, capacity);
+        countFavorites = Arrays.copyOf(countFavorites, capacity);
+      }
+      countType[row] = (byte) type.ordinal();
+      countObject[row] = object;
+      countDay[row] = day;
+      countIndex.put(key, row);
+    } else {
+      row = existing;
+    }
+    countViews[row] = views == null ? NONE : views;
+    countComments[row] = comments == null ? NONE : comments;
+    countFavorites[row] = favorites == null ? NONE : favorites;
+
+    for (Traffic t : traffic) {
+      int r = trafficSize++;
+      if (r == trafficType.length) {
+        int capacity = r + (r >> 1);
+        trafficType = Arrays.copyOf(trafficType, capacity);
+        trafficObject = Arrays.copyOf(trafficObject, capacity);
+        trafficDay = Arrays.copyOf(trafficDay, capacity);
+        trafficDomain = Arrays.copyOf(trafficDomain, capacity);
+        trafficUrl = Arrays.copyOf(trafficUrl, capacity);
+        trafficSearchTerm = Arrays.copyOf(trafficSearchTerm, capacity);
+        trafficViews = Arrays.copyOf(trafficViews, capacity);
+      }
+      trafficType[r] = (byte) type.ordinal();
+      trafficObject[r] = object;
+      trafficDay[r] = day;
+      trafficDomain[r] = intern(t.domain);
+      trafficUrl[r] = t.url == null ? NONE : intern(t.url);
+      trafficSearchTerm[r] = t.searchTerm == null ? NONE : intern(t.searchTerm);
+      trafficViews[r] = t.views == null ? NONE : t.views;
+    }
+  }
+
+  @Override
+  public synchronized String toString() {
+    final StringBuilder sb = new StringBuilder("StatsTable{");
+    sb.append("countRows=").append(countSize);
+    sb.append(", trafficRows=").append(trafficSize);
+    sb.append(", strings=").append(strings.size());
+    sb.append('}');
+    return sb.toString();
+  }
+
+  /*
+   * One domain or referrer, waiting to be added to the table.
+   */
+  static final class Traffic {
+    private final String domain;
+    private final String url;
+    private final String searchTerm;
+    private final Integer views;
+
+    Traffic(String domain, String url, String searchTerm, Integer views) {
+      this.domain = domain == null ? "" : domain;
+      this.url = url;
+      this.searchTerm = searchTerm;
+      this.views = views;
+    }
+  }
+
+  private Map<String, Integer> traffic(ObjectType type, String id, LocalDate date, String domain) {
+    Map<String, Integer> map = new LinkedHashMap<>();
+    Integer object = stringIds.get(objectId(type, id));
+    Integer domainId = domain == null ? null : stringIds.get(domain);
+    if (object == null || (domain != null && domainId == null)) {
+      return map;
+    }
+    int day = Math.toIntExact(date.toEpochDay());
+    for (int r = 0; r < trafficSize; r++) {
+      if (trafficObject[r] == object && trafficDay[r] == day && trafficType[r] == type.ordinal()) {
+        if (domain == null && trafficUrl[r] == NONE) {
+          map.put(strings.get(trafficDomain[r]), value(trafficViews[r]));
+        } else if (domain != null && trafficUrl[r] != NONE && trafficDomain[r] == domainId) {
+          map.put(strings.get(trafficUrl[r]), value(trafficViews[r]));
+        }
+      }
+    }
+    return map;
+  }
+
+  private int row(ObjectType type, String id, LocalDate date) {
+    Integer object = stringIds.get(objectId(type, id));
+    if (object == null) {
+      return -1;
+    }
+    Integer row = countIndex.get(key((byte) type.ordinal(), object, Math.toIntExact(date.toEpochDay())));
+    return row == null ? -1 : row;
+  }
+
+  private int intern(String s) {
+    Integer id = stringIds.get(s);
+    if (id == null) {
+      id = strings.size();
+      strings.add(s);
+      stringIds.put(s, id);
+    }
+    return id;
+  }
+
+  /* The photostream is stored with an empty id, so callers do not need to know the user id. */
+  private static String objectId(ObjectType type, String id) {
+    return type == ObjectType.PHOTOSTREAM || id == null ? "" : id;
+  }
+
+  /* Type in the top byte, dictionary id in the middle, and the low 24 bits of the epoch day. */
+  private static long key(byte type, int object, int day) {
+    return ((long) type << 56) | ((long) object << 24) | (day & 0xFFFFFFL);
+  }
+
+  private static Integer value(int v) {
+    return v == NONE ? null : v;
+  }
+
+  private static void writeInts(DataOutputStream out, int[] values, int size) throws IOException {
+    for (int i = 0; i < size; i++) {
+      out.writeInt(values[i]);
+    }
+  }
+
+  private static byte[] readBytes(DataInputStream in, int size) throws IOException {
+    byte[] values = new byte[Math.max(16, size)];
+    in.readFully(values, 0, size);
+    return values;
+  }
+
+  private static int[] readInts(DataInputStream in, int size) throws IOException {
+    int[] values = new int[Math.max(16, size)];
+    for (int i = 0; i < size; i++) {
+      values[i] = in.readInt();
+    }
+    return values;
+  }
+}
@@ -0,0 +1,80 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.stats;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * The number of views of one item on one day, read from a Flickr stats CSV file.
+ * <br>
+ * For monthly files, the date is the first day of the month and the views are for the whole month.
+ *
+ * @author Jeremy Brooks
+ */
+public class ViewRecord implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private final String id;
+  private final String title;
+  private final LocalDate date;
+  private final long views;
+
+  /**
+   * Create a view record.
+   *
+   * @param id    id of the photo or other item. May be null for rows that are not about a single item.
+   * @param title title of the item. May be null.
+   * @param date  day the views are for.
+   * @param views number of views.
+   */
+  public ViewRecord(String id, String title, LocalDate date, long views) {
+    this.id = id;
+    this.title = title;
+    this.date = date;
+    this.views = views;
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  public String getTitle() {
+    return title;
+  }
+
+  public LocalDate getDate() {
+    return date;
+  }
+
+  public long getViews() {
+    return views;
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder("ViewRecord{");
+    sb.append("id='").append(id).append('\'');
+    sb.append(", title='").append(title).append('\'');
+    sb.append(", date=").append(date);
+    sb.append(", views=").append(views);
+    sb.append('}');
+    return sb.toString();
+  }
+}
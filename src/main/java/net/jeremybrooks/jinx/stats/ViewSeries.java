@@ -0,0 +1,227 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.stats;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Daily view counts for many items, stored as one primitive array per item.
+ * <br>
+ * Each item's series is an int array indexed by day, starting at the first day seen for the item, so years of
+ * daily stats for a photo take a few kilobytes instead of one object per day. The array grows in either direction
+ * as records for earlier or later days arrive. Records for the same item and day are added together.
+ * <br>
+ * This class is a {@link Consumer} of {@link ViewRecord}, so it can be passed directly to
+ * {@link StatsCsvParser#parse(java.io.Reader, LocalDate, java.util.function.Consumer)} or
+ * {@link StatsCsvLoader#load(java.util.List, java.util.function.Consumer)}. Records without an id are ignored.
+ * Do not load daily and monthly files into the same series, since that would count the views twice.
+ * <br>
+ * Instances of this class are thread safe.
+ *
+ * @author Jeremy Brooks
+ */
+public class ViewSeries implements Consumer<ViewRecord> {
+
+  private final Map<String, Series> series = new HashMap<>();
+
+  @Override
+  public void accept(ViewRecord record) {
+    if (record.getId() != null && record.getDate() != null) {
+      add(record.getId(), record.getDate(), record.getViews());
+    }
+  }
+
+  /**
+   * Add views for an item on a day.
+   *
+   * @param id    id of the item.
+   * @param date  the day.
+   * @param views number of views.
+   */
+  public synchronized void add(String id, LocalDate date, long views) {
+    series.computeIfAbsent(id, k -> new Series()).add(Math.toIntExact(date.toEpochDay()), views);
+  }
+
+  /**
+   * @return ids of the items in this series, in no particular order.
+   */
+  public synchronized List<String> getIds() {
+    return new ArrayList<>(series.keySet());
+  }
+
+  /**
+   * @return number of items.
+   */
+  public synchronized int size() {
+    return series.size();
+  }
+
+  /**
+   * @param id   id of the item.
+   * @param date the day.
+   * @return views of the item on the day, or zero if there are none.
+   */
+  public synchronized int getViews(String id, LocalDate date) {
+    Series s = series.get(id);
+    return s == null ? 0 : s.get(Math.toIntExact(date.toEpochDay()));
+  }
+
+  /**
+   * Get the daily views for an item over a range of days.
+   *
+   * @param id   id of the item.
+   * @param from first day, inclusive.
+   * @param to   last day, inclusive.
+   * @return views for each day in the range. Days without views are zero.
+   */
+  public synchronized int[] getViews(String id, LocalDate from, LocalDate to) {
+    int start = Math.toIntExact(from.toEpochDay());
+    int end = Math.toIntExact(to.toEpochDay());
+    if (end < start) {
+      throw new IllegalArgumentException("to must not be before from.");
+    }
+    int[] result = new int[end - start + 1];
+    Series s = series.get(id);
+    if (s != null) {
+      s.copy(start, result);
+    }
+    return result;
+  }
+
+  /**
+   * Get the views for all items added together, for each day in a range.
+   *
+   * @param from first day, inclusive.
+   * @param to   last day, inclusive.
+   * @return total views for each day in the range.
+   */
+  public synchronized long[] getDailyTotals(LocalDate from, LocalDate to) {
+    int start = Math.toIntExact(from.toEpochDay());
+    int end = Math.toIntExact(to.toEpochDay());
+    if (end < start) {
+      throw new IllegalArgumentException("to must not be before from.");
+    }
+    long[] result = new long[end - start + 1];
+    for (Series s : series.values()) {
+      int lo = Math.max(start, s.start);
+      int hi = Math.min(end, s.start + s.length - 1);
+      for (int day = lo; day <= hi; day++) {
+        result[day - start] += s.views[day - s.start];
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @param id id of the item.
+   * @return all views of the item.
+   */
+  public synchronized long getTotal(String id) {
+    Series s = series.get(id);
+    return s == null ? 0 : s.total;
+  }
+
+  /**
+   * @param id id of the item.
+   * @return first day with views for the item, or null if the item is not in this series.
+   */
+  public synchronized LocalDate getFirstDate(String id) {
+    Series s = series.get(id);
+    return s == null ? null : LocalDate.ofEpochDay(s.start);
+  }
+
+  /**
+   * @param id id of the item.
+   * @return last day with views for the item, or null if the item is not in this series.
+   */
+  public synchronized LocalDate getLastDate(String id) {
+    Series s = series.get(id);
+    return s == null ? null : LocalDate.ofEpochDay(s.start + s.length - 1);
+  }
+
+  /**
+   * Release unused space at the end of each item's array.
+   */
+  public synchronized void trimToSize() {
+    for (Series s : series.values()) {
+      if (s.views.length > s.length) {
+        s.views = Arrays.copyOf(s.views, s.length);
+      }
+    }
+  }
+
+  @Override
+  public synchronized String toString() {
+    final StringBuilder sb = new StringBuilder("ViewSeries{");
+    sb.append("items=").append(series.size());
+    sb.append('}');
+    return sb.toString();
+  }
+
+  /*
+   * Views for one item. views[0] is the day start, and days from start to start + length - 1 are in use.
+   */
+  private static final class Series {
+    private int start;
+    private int length;
+    private int[] views = new int[0];
+    private long total;
+
+    private void add(int day, long count) {
+      if (length == 0) {
+        start = day;
+        views = new int[8];
+        length = 1;
+      } else if (day < start) {
+        int shift = start - day;
+        int[] grown = new int[Math.max(length + shift, views.length + (views.length >> 1))];
+        System.arraycopy(views, 0, grown, shift, length);
+        views = grown;
+        start = day;
+        length += shift;
+      } else if (day >= start + length) {
+        int needed = day - start + 1;
+        if (needed > views.length) {
+          views = Arrays.copyOf(views, Math.max(needed, views.length + (views.length >> 1)));
+        }
+        length = needed;
+      }
+      long sum = views[day - start] + count;
+      views[day - start] = sum > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) sum;
+      total += count;
+    }
+
+    private int get(int day) {
+      return day < start || day >= start + length ? 0 : views[day - start];
+    }
+
+    private void copy(int from, int[] into) {
+      int lo = Math.max(from, start);
+      int hi = Math.min(from + into.length, start + length);
+      if (lo < hi) {
+        System.arraycopy(views, lo - start, into, lo - from, hi - lo);
+      }
+    }
+  }
+}
@@ -0,0 +1,904 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.store;
+
+import com.google.gson.Gson;
+import net.jeremybrooks.jinx.JinxException;
+import net.jeremybrooks.jinx.JinxUtils;
+import net.jeremybrooks.jinx.response.photos.Photo;
+import net.jeremybrooks.jinx.response.photos.PhotoInfo;
+import net.jeremybrooks.jinx.response.photos.Tag;
+import net.jeremybrooks.jinx.sync.SyncCheckpoint;
+import net.jeremybrooks.jinx.sync.SyncStore;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * An embedded store for photo metadata, keyed by photo id, with indexes for offline queries.
+ * <br>
+ * {@link Photo} and {@link PhotoInfo} objects are kept in a single file, as an append only log of JSON records. The
+ * file is memory mapped, so reading a photo back is a copy from the page cache and a JSON parse, with no system
+ * call. Changes are appended; a photo that is saved again or deleted leaves its old record in the file until
+ * {@link #compact()} is called. Each record carries a CRC, and when the file is opened the log is replayed up to the
+ * first incomplete or damaged record, so a crash while writing loses at most the record being written.
+ * <br>
+ * The indexes are held in memory and rebuilt when the file is opened. Photos can be found by:
+ * <ul>
+ * <li>tag, using the normalized tag text Flickr returns ({@link Tag#getTag()}, or the tags extra);</li>
+ * <li>owner user id;</li>
+ * <li>date taken, as a range;</li>
+ * <li>location, as a latitude and longitude box. Photos are grouped into cells of a tenth of a degree, and only
+ * the cells that overlap the box are checked.</li>
+ * </ul>
+ * Values are taken from the PhotoInfo if the store has one for a photo, since it is complete; otherwise they are taken
+ * from the Photo, which only has the values for the extras that were requested. Photos without a value are not in
+ * that index.
+ * <br>
+ * PhotoStore is also a {@link SyncStore}, so {@link net.jeremybrooks.jinx.sync.AccountSync} can keep it up to date.
+ * Changes are written to the mapped file immediately, and reach the disk when the operating system writes the pages
+ * out; call {@link #flush()} to force them to disk. The file can grow to 2GB.
+ * <br>
+ * Instances of this class are thread safe. Only one instance should open a file at a time.
+ *
+ * @author Jeremy Brooks
+ */
+public class PhotoStore implements SyncStore, AutoCloseable {
+
+  /**
+   * Number of geo cells per degree of latitude and longitude.
+   */
+  public static final int CELLS_PER_DEGREE = 10;
+
+  private static final int MAGIC = 0x4a4e5853;
+  private static final int VERSION = 1;
+  private static final int FILE_HEADER = 8;
+  /* record header: payload length, CRC of type and payload, type */
+  private static final int RECORD_HEADER = 9;
+  /* a zero length after the last record marks the end of the log */
+  private static final int END_MARKER = 4;
+  private static final int MIN_CAPACITY = 1 << 20;
+
+  private static final byte PHOTO = 1;
+  private static final byte INFO = 2;
+  private static final byte DELETE = 3;
+  private static final byte CHECKPOINT = 4;
+
+  private static final Gson GSON = new Gson();
+  private static final DateTimeFormatter DATE_TAKEN = DateTimeFormatter.ofPattern("uuuu-MM-dd HH:mm:ss");
+  private static final int LAT_CELLS = 180 * CELLS_PER_DEGREE;
+  private static final int LON_CELLS = 360 * CELLS_PER_DEGREE;
+
+  private final Path file;
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private FileChannel channel;
+  private MappedByteBuffer buffer;
+  private int end;
+  private int garbage;
+  private boolean closed;
+
+  private final Map<String, Entry> entries = new HashMap<>();
+  private final Map<String, Set<String>> byTag = new HashMap<>();
+  private final Map<String, Set<String>> byOwner = new HashMap<>();
+  private final TreeMap<String, Set<String>> byDateTaken = new TreeMap<>();
+  private final Map<Integer, Set<String>> byCell = new HashMap<>();
+  private SyncCheckpoint checkpoint;
+  private int checkpointOffset = -1;
+
+  /**
+   * Open a store, creating the file if it does not exist.
+   *
+   * @param file the store file.
+   * @throws JinxException if the file cannot be opened, or is not a photo store.
+   */
+  public PhotoStore(Path file) throws JinxException {
+    if (file == null) {
+      throw new IllegalArgumentException("file is required.");
+    }
+    this.file = file;
+    try {
+      open();
+    } catch (IOException e) {
+      throw new JinxException("Unable to open photo store " + file, e);
+    }
+  }
+
+  /**
+   * Add or replace a photo.
+   *
+   * @param photo the photo.
+   * @throws JinxException if the photo has no id, or it cannot be written.
+   */
+  public void put(Photo photo) throws JinxException {
+    JinxUtils.validateParams(photo);
+    String photoId = photo.getPhotoId();
+    if (JinxUtils.isNullOrEmpty(photoId)) {
+      throw new JinxException("Photo id is required.");
+    }
+    byte[] json = GSON.toJson(photo).getBytes(UTF_8);
+    lock.writeLock().lock();
+    try {
+      applyPhoto(photoId, append(PHOTO, json), new Attributes(photo));
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Add or replace the info for a photo.
+   *
+   * @param info the photo info.
+   * @throws JinxException if the info has no photo id, or it cannot be written.
+   */
+  public void put(PhotoInfo info) throws JinxException {
+    JinxUtils.validateParams(info);
+    String photoId = info.getPhotoId();
+    if (JinxUtils.isNullOrEmpty(photoId)) {
+      throw new JinxException("Photo id is required.");
+    }
+    byte[] json = GSON.toJson(info).getBytes(UTF_8);
+    lock.writeLock().lock();
+    try {
+      applyInfo(photoId, append(INFO, json), new Attributes(info));
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Get a photo.
+   *
+   * @param photoId id of the photo.
+   * @return the photo, or null if the store does not have a Photo for the id.
+   */
+  public Photo getPhoto(String photoId) {
+    lock.readLock().lock();
+    try {
+      Entry entry = entries.get(photoId);
+      return entry == null || entry.photo < 0 ? null : GSON.fromJson(readString(entry.photo), Photo.class);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Get the info for a photo.
+   *
+   * @param photoId id of the photo.
+   * @return the info, or null if the store does not have a PhotoInfo for the id.
+   */
+  public PhotoInfo getInfo(String photoId) {
+    lock.readLock().lock();
+    try {
+      Entry entry = entries.get(photoId);
+      return entry == null || entry.info < 0 ? null : GSON.fromJson(readString(entry.info), PhotoInfo.class);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * @param photoId id of the photo.
+   * @return true if the store has a Photo or PhotoInfo for the id.
+   */
+  public boolean contains(String photoId) {
+    lock.readLock().lock();
+    try {
+      return entries.containsKey(photoId);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * @return number of photos in the store.
+   */
+  public int size() {
+    lock.readLock().lock();
+    try {
+      return entries.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Find photos with a tag.
+   *
+   * @param tag the normalized tag. Case is ignored.
+   * @return ids of the photos with the tag.
+   */
+  public Set<String> findByTag(String tag) {
+    if (tag == null) {
+      return Collections.emptySet();
+    }
+    return find(byTag, tag.toLowerCase(Locale.ROOT));
+  }
+
+  /**
+   * Find photos by owner.
+   *
+   * @param userId user id of the owner.
+   * @return ids of the photos owned by the user.
+   */
+  public Set<String> findByOwner(String userId) {
+    return find(byOwner, userId);
+  }
+
+  /**
+   * Find photos taken in a range of dates.
+   * <br>
+   * Dates taken are local to where the photo was taken, as Flickr returns them.
+   *
+   * @param from earliest date taken, inclusive. Null for no lower limit.
+   * @param to   latest date taken, inclusive. Null for no upper limit.
+   * @return ids of the photos taken in the range.
+   */
+  public Set<String> findByDateTaken(LocalDateTime from, LocalDateTime to) {
+    lock.readLock().lock();
+    try {
+      NavigableMap<String, Set<String>> range = byDateTaken;
+      if (from != null) {
+        range = range.tailMap(DATE_TAKEN.format(from), true);
+      }
+      if (to != null) {
+        range = range.headMap(DATE_TAKEN.format(to), true);
+      }
+      Set<String> ids = new HashSet<>();
+      for (Set<String> set : range.values()) {
+        ids.addAll(set);
+      }
+      return ids;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Find photos inside a latitude and longitude box.
+   *
+   * @param minLatitude  southern edge, inclusive.
+   * @param minLongitude western edge, inclusive.
+   * @param maxLatitude  northern edge, inclusive.
+   * @param maxLongitude eastern edge, inclusive. Boxes that cross the 180th meridian must be split in two.
+   * @return ids of the photos inside the box.
+   */
+  public Set<String> findWithin(double minLatitude, double minLongitude, double maxLatitude, double maxLongitude) {
+    if (minLatitude > maxLatitude || minLongitude > maxLongitude) {
+      throw new IllegalArgumentException("The minimum latitude and longitude must not be greater than the maximum.");
+    }
+    int lat0 = latCell(minLatitude);
+    int lat1 = latCell(maxLatitude);
+    int lon0 = lonCell(minLongitude);
+    int lon1 = lonCell(maxLongitude);
+    lock.readLock().lock();
+    try {
+      Set<String> ids = new HashSet<>();
+      long cells = (long) (lat1 - lat0 + 1) * (lon1 - lon0 + 1);
+      if (cells > byCell.size()) {
+        // large box: check the occupied cells instead of every cell in the box
+        for (Map.Entry<Integer, Set<String>> cell : byCell.entrySet()) {
+          int lat = cell.getKey() / LON_CELLS;
+          int lon = cell.getKey() % LON_CELLS;
+          if (lat >= lat0 && lat <= lat1 && lon >= lon0 && lon <= lon1) {
+            addWithin(cell.getValue(), minLatitude, minLongitude, maxLatitude, maxLongitude, ids);
+          }
+        }
+      } else {
+        for (int lat = lat0; lat <= lat1; lat++) {
+          for (int lon = lon0; lon <= lon1; lon++) {
+            Set<String> cell = byCell.get(lat * LON_CELLS + lon);
+            if (cell != null) {
+              addWithin(cell, minLatitude, minLongitude, maxLatitude, maxLongitude, ids);
+            }
+          }
+        }
+      }
+      return ids;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public void save(Photo photo) throws JinxException {
+    put(photo);
+  }
+
+  /**
+   * Remove a photo and its info.
+   *
+   * @param photoId id of the photo to remove.
+   * @throws JinxException if the change cannot be written.
+   */
+  @Override
+  public void delete(String photoId) throws JinxException {
+    JinxUtils.validateParams(photoId);
+    lock.writeLock().lock();
+    try {
+      if (entries.containsKey(photoId)) {
+        applyDelete(photoId, append(DELETE, photoId.getBytes(UTF_8)));
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public Set<String> getPhotoIds() {
+    lock.readLock().lock();
+    try {
+      return new HashSet<>(entries.keySet());
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public SyncCheckpoint getCheckpoint() {
+    lock.readLock().lock();
+    try {
+      return checkpoint;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public void setCheckpoint(SyncCheckpoint checkpoint) throws JinxException {
+    JinxUtils.validateParams(checkpoint);
+    String text = format(checkpoint.getLastUpdate()) + ' ' + format(checkpoint.getLastFullSync());
+    lock.writeLock().lock();
+    try {
+      applyCheckpoint(append(CHECKPOINT, text.getBytes(UTF_8)), checkpoint);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * @return number of bytes used by the log, including records that have been replaced or deleted.
+   */
+  public long getLogSize() {
+    lock.readLock().lock();
+    try {
+      return end;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * @return number of bytes used by records that have been replaced or deleted. {@link #compact()} frees them.
+   */
+  public long getGarbageSize() {
+    lock.readLock().lock();
+    try {
+      return garbage;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Force all changes to disk.
+   */
+  public void flush() {
+    lock.writeLock().lock();
+    try {
+      checkOpen();
+      buffer.force();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Rewrite the file without the records that have been replaced or deleted.
+   * <br>
+   * The live records are copied to a new file, which then replaces the old one. Readers and writers wait until the
+   * copy is finished.
+   *
+   * @throws JinxException if the new file cannot be written. The old file is left unchanged.
+   */
+  public void compact() throws JinxException {
+    lock.writeLock().lock();
+    try {
+      checkOpen();
+      Path temp = file.resolveSibling(file.getFileName() + ".compact");
+      Map<Integer, Integer> moved = new HashMap<>();
+      int newEnd;
+      try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+          StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+        int size = end - garbage + END_MARKER;
+        MappedByteBuffer target = out.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        target.putInt(0, MAGIC).putInt(4, VERSION);
+        int position = FILE_HEADER;
+        for (Entry entry : entries.values()) {
+          position = copy(entry.photo, target, position, moved);
+          position = copy(entry.info, target, position, moved);
+        }
+        position = copy(checkpointOffset, target, position, moved);
+        target.putInt(position, 0);
+        target.force();
+        newEnd = position;
+      } catch (IOException e) {
+        throw new JinxException("Unable to compact photo store " + file, e);
+      }
+      try {
+        channel.close();
+        try {
+          Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+          Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+        channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        map(Math.max(MIN_CAPACITY, newEnd + END_MARKER));
+      } catch (IOException e) {
+        closed = true;
+        throw new JinxException("Unable to reopen photo store " + file + " after compacting", e);
+      }
+      for (Entry entry : entries.values()) {
+        entry.photo = moved.getOrDefault(entry.photo, -1);
+        entry.info = moved.getOrDefault(entry.info, -1);
+      }
+      checkpointOffset = moved.getOrDefault(checkpointOffset, -1);
+      end = newEnd;
+      garbage = 0;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Write all changes to disk and close the file.
+   *
+   * @throws JinxException if the file cannot be closed.
+   */
+  @Override
+  public void close() throws JinxException {
+    lock.writeLock().lock();
+    try {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      buffer.force();
+      try {
+        // release the unused space mapped ahead of the log
+        channel.truncate(end + END_MARKER);
+      } catch (IOException e) {
+        // some platforms do not allow a mapped file to be truncated; the space is reused when the file is reopened
+      }
+      channel.close();
+    } catch (IOException e) {
+      throw new JinxException("Unable to close photo store " + file, e);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder("PhotoStore{");
+    sb.append("file=").append(file);
+    sb.append(", photos=").append(entries.size());
+    sb.append(", logSize=").append(end);
+    sb.append(", garbageSize=").append(garbage);
+    sb.append('}');
+    return sb.toString();
+  }
+
+  /*
+   * Map the file, and either write a new header or replay the existing log.
+   */
+  private void open() throws IOException, JinxException {
+    channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    long size = channel.size();
+    if (size > Integer.MAX_VALUE) {
+      channel.close();
+      throw new JinxException("Photo store " + file + " is too large.");
+    }
+    if (size != 0 && size < FILE_HEADER + END_MARKER) {
+      channel.close();
+      throw new JinxException(file + " is not a photo store.");
+    }
+    map(Math.max(MIN_CAPACITY, (int) size));
+    if (size == 0) {
+      buffer.putInt(0, MAGIC).putInt(4, VERSION).putInt(FILE_HEADER, 0);
+      end = FILE_HEADER;
+      return;
+    }
+    if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+      channel.close();
+      throw new JinxException(file + " is not a photo store, or was written by a newer version of Jinx.");
+    }
+    replay();
+  }
+
+  /*
+   * Read every record and rebuild the indexes. Stops at the end marker, or at the first record that is incomplete
+   * or fails its CRC check. Photo records without a photo id are skipped.
+   */
+  private void replay() {
+    int position = FILE_HEADER;
+    int capacity = buffer.capacity();
+    while (position + RECORD_HEADER <= capacity - END_MARKER) {
+      int length = buffer.getInt(position);
+      if (length <= 0 || length > capacity - END_MARKER - position - RECORD_HEADER) {
+        break;
+      }
+      byte type = buffer.get(position + 8);
+      byte[] payload = readBytes(position);
+      if ((int) crc(type, payload) != buffer.getInt(position + 4)) {
+        break;
+      }
+      String text = new String(payload, UTF_8);
+      switch (type) {
+        case PHOTO:
+          Photo photo = GSON.fromJson(text, Photo.class);
+          if (photo == null || JinxUtils.isNullOrEmpty(photo.getPhotoId())) {
+            garbage += RECORD_HEADER + length;
+          } else {
+            applyPhoto(photo.getPhotoId(), position, new Attributes(photo));
+          }
+          break;
+        case INFO:
+          PhotoInfo info = GSON.fromJson(text, PhotoInfo.class);
+          if (info == null || JinxUtils.isNullOrEmpty(info.getPhotoId())) {
+            garbage += RECORD_HEADER + length;
+          } else {
+            applyInfo(info.getPhotoId(), position, new Attributes(info));
+          }
+          break;
+        case DELETE:
+          applyDelete(text, position);
+          break;
+        case CHECKPOINT:
+          String[] values = text.split(" ");
+          applyCheckpoint(position, new SyncCheckpoint(parse(values[0]), parse(values[1])));
+          break;
+        default:
+          garbage += RECORD_HEADER + length;
+      }
+      position += RECORD_HEADER + length;
+    }
+    end = position;
+    // anything after a damaged record is overwritten by the next change
+    buffer.putInt(end, 0);
+  }
+
+  /*
+   * Append a record and return its offset.
+   */
+  private int append(byte type, byte[] payload) throws JinxException {
+    checkOpen();
+    long required = (long) end + RECORD_HEADER + payload.length + END_MARKER;
+    if (required > Integer.MAX_VALUE) {
+      throw new JinxException("Photo store " + file + " is full.");
+    }
+    if (required > buffer.capacity()) {
+      try {
+        map((int) Math.min(Integer.MAX_VALUE, Math.max(required, 2L * buffer.capacity())));
+      } catch (IOException e) {
+        throw new JinxException("Unable to grow photo store " + file, e);
+      }
+    }
+    int offset = end;
+    ByteBuffer target = buffer.duplicate();
+    target.position(offset + RECORD_HEADER);
+    target.put(payload);
+    buffer.put(offset + 8, type);
+    buffer.putInt(offset + 4, (int) crc(type, payload));
+    buffer.putInt(offset + RECORD_HEADER + payload.length, 0);
+    // the length is written last, so the record is not visible until it is complete
+    buffer.putInt(offset, payload.length);
+    end = offset + RECORD_HEADER + payload.length;
+    return offset;
+  }
+
+  private void map(int capacity) throws IOException {
+    if (buffer != null) {
+      buffer.force();
+    }
+    buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+  }
+
+  private void applyPhoto(String photoId, int offset, Attributes attributes) {
+    Entry entry = entries.computeIfAbsent(photoId, k -> new Entry());
+    unindex(photoId, entry);
+    discard(entry.photo);
+    entry.photo = offset;
+    entry.photoAttributes = attributes;
+    index(photoId, entry);
+  }
+
+  private void applyInfo(String photoId, int offset, Attributes attributes) {
+    Entry entry = entries.computeIfAbsent(photoId, k -> new Entry());
+    unindex(photoId, entry);
+    discard(entry.info);
+    entry.info = offset;
+    entry.infoAttributes = attributes;
+    index(photoId, entry);
+  }
+
+  private void applyDelete(String photoId, int offset) {
+    Entry entry = entries.remove(photoId);
+    if (entry != null) {
+      unindex(photoId, entry);
+      discard(entry.photo);
+      discard(entry.info);
+    }
+    discard(offset);
+  }
+
+  private void applyCheckpoint(int offset, SyncCheckpoint checkpoint) {
+    discard(checkpointOffset);
+    checkpointOffset = offset;
+    this.checkpoint = checkpoint;
+  }
+
+  private void discard(int offset) {
+    if (offset >= 0) {
+      garbage += RECORD_HEADER + buffer.getInt(offset);
+    }
+  }
+
+  private void index(String photoId, Entry entry) {
+    for (String tag : entry.tags()) {
+      byTag.computeIfAbsent(tag, k -> new HashSet<>()).add(photoId);
+    }
+    String owner = entry.owner();
+    if (owner != null) {
+      byOwner.computeIfAbsent(owner, k -> new HashSet<>()).add(photoId);
+    }
+    String dateTaken = entry.dateTaken();
+    if (dateTaken != null) {
+      byDateTaken.computeIfAbsent(dateTaken, k -> new HashSet<>()).add(photoId);
+    }
+    Attributes geo = entry.geo();
+    if (geo != null) {
+      byCell.computeIfAbsent(cell(geo.latitude, geo.longitude), k -> new HashSet<>()).add(photoId);
+    }
+  }
+
+  private void unindex(String photoId, Entry entry) {
+    for (String tag : entry.tags()) {
+      remove(byTag, tag, photoId);
+    }
+    remove(byOwner, entry.owner(), photoId);
+    remove(byDateTaken, entry.dateTaken(), photoId);
+    Attributes geo = entry.geo();
+    if (geo != null) {
+      remove(byCell, cell(geo.latitude, geo.longitude), photoId);
+    }
+  }
+
+  private static <K> void remove(Map<K, Set<String>> index, K key, String photoId) {
+    if (key != null) {
+      Set<String> ids = index.get(key);
+      if (ids != null && ids.remove(photoId) && ids.isEmpty()) {
+        index.remove(key);
+      }
+    }
+  }
+
+  private Set<String> find(Map<String, Set<String>> index, String key) {
+    lock.readLock().lock();
+    try {
+      Set<String> ids = index.get(key);
+      return ids == null ? new HashSet<>() : new HashSet<>(ids);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private void addWithin(Set<String> cell, double minLatitude, double minLongitude, double maxLatitude,
+                         double maxLongitude, Set<String> ids) {
+    for (String photoId : cell) {
+      Attributes geo = entries.get(photoId).geo();
+      if (geo.latitude >= minLatitude && geo.latitude <= maxLatitude &&
+          geo.longitude >= minLongitude && geo.longitude <= maxLongitude) {
+        ids.add(photoId);
+      }
+    }
+  }
+
+  /*
+   * Copy a record to the compacted file, recording where it moved to.
+   */
+  private int copy(int offset, MappedByteBuffer target, int position, Map<Integer, Integer> moved) {
+    if (offset < 0) {
+      return position;
+    }
+    int size = RECORD_HEADER + buffer.getInt(offset);
+    ByteBuffer source = buffer.duplicate();
+    source.position(offset).limit(offset + size);
+    ByteBuffer destination = target.duplicate();
+    destination.position(position);
+    destination.put(source);
+    moved.put(offset, position);
+    return position + size;
+  }
+
+  private byte[] readBytes(int offset) {
+    ByteBuffer source = buffer.duplicate();
+    byte[] bytes = new byte[source.getInt(offset)];
+    source.position(offset + RECORD_HEADER);
+    source.get(bytes);
+    return bytes;
+  }
+
+  private String readString(int offset) {
+    checkOpen();
+    return new String(readBytes(offset), UTF_8);
+  }
+
+  private void checkOpen() {
+    if (closed) {
+      throw new IllegalStateException("Photo store " + file + " is closed.");
+    }
+  }
+
+  private static long crc(byte type, byte[] payload) {
+    CRC32 crc = new CRC32();
+    crc.update(type);
+    crc.update(payload);
+    return crc.getValue();
+  }
+
+  private static int cell(double latitude, double longitude) {
+    return latCell(latitude) * LON_CELLS + lonCell(longitude);
+  }
+
+  private static int latCell(double latitude) {
+    return Math.max(0, Math.min(LAT_CELLS - 1, (int) Math.floor((latitude + 90) * CELLS_PER_DEGREE)));
+  }
+
+  private static int lonCell(double longitude) {
+    return Math.max(0, Math.min(LON_CELLS - 1, (int) Math.floor((longitude + 180) * CELLS_PER_DEGREE)));
+  }
+
+  private static String format(Instant instant) {
+    return instant == null ? "-" : Long.toString(instant.getEpochSecond());
+  }
+
+  private static Instant parse(String value) {
+    return value.equals("-") ? null : Instant.ofEpochSecond(Long.parseLong(value));
+  }
+
+
+  /*
+   * The records and indexed values for a photo.
+   */
+  private static class Entry {
+    private int photo = -1;
+    private int info = -1;
+    private Attributes photoAttributes;
+    private Attributes infoAttributes;
+
+    Set<String> tags() {
+      if (infoAttributes != null && infoAttributes.tags != null) {
+        return infoAttributes.tags;
+      }
+      return photoAttributes == null || photoAttributes.tags == null ? Collections.emptySet() : photoAttributes.tags;
+    }
+
+    String owner() {
+      if (infoAttributes != null && infoAttributes.owner != null) {
+        return infoAttributes.owner;
+      }
+      return photoAttributes == null ? null : photoAttributes.owner;
+    }
+
+    String dateTaken() {
+      if (infoAttributes != null && infoAttributes.dateTaken != null) {
+        return infoAttributes.dateTaken;
+      }
+      return photoAttributes == null ? null : photoAttributes.dateTaken;
+    }
+
+    Attributes geo() {
+      if (infoAttributes != null && infoAttributes.hasLocation) {
+        return infoAttributes;
+      }
+      return photoAttributes != null && photoAttributes.hasLocation ? photoAttributes : null;
+    }
+  }
+
+  /*
+   * The indexed values from a Photo or PhotoInfo.
+   */
+  private static class Attributes {
+    private final Set<String> tags;
+    private final String owner;
+    private final String dateTaken;
+    private final boolean hasLocation;
+    private final float latitude;
+    private final float longitude;
+
+    Attributes(Photo photo) {
+      this.owner = photo.getOwner();
+      this.dateTaken = photo.getDateTaken();
+      String text = photo.getTags();
+      if (text == null) {
+        this.tags = null;
+      } else {
+        Set<String> set = new HashSet<>();
+        for (String tag : text.trim().split("\\s+")) {
+          if (!tag.isEmpty()) {
+            set.add(tag.toLowerCase(Locale.ROOT));
+          }
+        }
+        this.tags = set;
+      }
+      this.hasLocation = hasLocation(photo.getLatitude(), photo.getLongitude());
+      this.latitude = hasLocation ? photo.getLatitude() : 0;
+      this.longitude = hasLocation ? photo.getLongitude() : 0;
+    }
+
+    Attributes(PhotoInfo info) {
+      this.owner = info.getOwnerUserId();
+      this.dateTaken = info.getDateTaken();
+      List<Tag> list = info.getTags();
+      if (list == null) {
+        this.tags = null;
+      } else {
+        Set<String> set = new HashSet<>();
+        for (Tag tag : list) {
+          if (tag.getTag() != null) {
+            set.add(tag.getTag().toLowerCase(Locale.ROOT));
+          }
+        }
+        this.tags = set;
+      }
+      this.hasLocation = hasLocation(info.getLatitude(), info.getLongitude());
+      this.latitude = hasLocation ? info.getLatitude() : 0;
+      this.longitude = hasLocation ? info.getLongitude() : 0;
+    }
+
+    /* Flickr returns 0, 0 for photos that are not geotagged */
+    private static boolean hasLocation(Float latitude, Float longitude) {
+      return latitude != null && longitude != null && (latitude != 0 || longitude != 0);
+    }
+  }
+}
@@ -0,0 +1,387 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.sync;
+
+import net.jeremybrooks.jinx.Jinx;
+import net.jeremybrooks.jinx.JinxConstants;
+import net.jeremybrooks.jinx.JinxException;
+import net.jeremybrooks.jinx.JinxUtils;
+import net.jeremybrooks.jinx.UncheckedJinxException;
+import net.jeremybrooks.jinx.api.PeopleApi;
+import net.jeremybrooks.jinx.api.PhotosApi;
+import net.jeremybrooks.jinx.logger.JinxLogger;
+import net.jeremybrooks.jinx.logger.LogLevel;
+import net.jeremybrooks.jinx.paging.PagedIterator;
+import net.jeremybrooks.jinx.paging.Paging;
+import net.jeremybrooks.jinx.response.photos.Photo;
+import net.jeremybrooks.jinx.response.photos.Photos;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Keeps a local copy of the calling user's photos up to date.
+ * <br>
+ * An incremental sync calls flickr.photos.recentlyUpdated with the last update time from the store's
+ * {@link SyncCheckpoint}, saves the photos that changed, and moves the checkpoint forward. The cost of an incremental
+ * sync depends on the number of photos that changed, not on the size of the account. A full sync walks every photo
+ * with flickr.people.getPhotos. It is used the first time a store is synced, when more photos have changed than an
+ * incremental sync can return, and when the full sync interval has passed.
+ * <br>
+ * flickr.photos.recentlyUpdated does not report deleted photos. Full syncs remove stored photos that were not
+ * returned, and {@link #reconcile()} does the same using only photo ids. Before a photo is removed, Flickr is asked
+ * for it directly, so a photo that was skipped because the account changed while it was being walked is not
+ * deleted.
+ * <br>
+ * Typical use is to call {@link #sync()} on a schedule:
+ * {@code
+ * AccountSync sync = new AccountSync(jinx, store, EnumSet.of(PhotoExtras.date_taken, PhotoExtras.tags));
+ * SyncResult result = sync.sync();
+ * }
+ * The Jinx instance must have an access token with 'read' permission. This class is not thread safe; run one sync
+ * at a time for each store.
+ *
+ * @author Jeremy Brooks
+ */
+public class AccountSync {
+
+  /**
+   * Default number of photos requested in each page.
+   */
+  public static final int DEFAULT_PER_PAGE = 500;
+
+  /**
+   * Default number of changed photos above which an incremental sync becomes a full sync.
+   * Flickr does not return more than about 4000 results for a query, regardless of paging.
+   */
+  public static final int DEFAULT_MAX_INCREMENTAL_PHOTOS = 4000;
+
+  /* flickr.photos.recentlyUpdated requires a minimum date; this is earlier than any photo */
+  private static final Instant BEGINNING = Instant.ofEpochSecond(1);
+  /* Flickr error code for a photo that does not exist */
+  private static final int PHOTO_NOT_FOUND = 1;
+
+  private final Jinx jinx;
+  private final SyncStore store;
+  private final EnumSet<JinxConstants.PhotoExtras> extras;
+  private final EnumSet<JinxConstants.PhotoExtras> incrementalExtras;
+  private final PhotosApi photosApi;
+  private final PeopleApi peopleApi;
+  private int perPage = DEFAULT_PER_PAGE;
+  private int prefetch = 1;
+  private int maxIncrementalPhotos = DEFAULT_MAX_INCREMENTAL_PHOTOS;
+  private Duration overlap = Duration.ofMinutes(5);
+  private Duration fullSyncInterval = Duration.ofDays(30);
+
+  /**
+   * Create a new sync.
+   *
+   * @param jinx   the Jinx instance to use.
+   * @param store  the local store.
+   * @param extras extras to fetch for each photo. May be null.
+   */
+  public AccountSync(Jinx jinx, SyncStore store, Set<JinxConstants.PhotoExtras> extras) {
+    if (jinx == null || store == null) {
+      throw new IllegalArgumentException("jinx and store are required.");
+    }
+    this.jinx = jinx;
+    this.store = store;
+    this.extras = JinxUtils.isNullOrEmpty(extras) ? EnumSet.noneOf(JinxConstants.PhotoExtras.class) : EnumSet.copyOf(extras);
+    this.incrementalExtras = EnumSet.copyOf(this.extras);
+    this.incrementalExtras.add(JinxConstants.PhotoExtras.last_update);
+    this.photosApi = new PhotosApi(jinx);
+    this.peopleApi = new PeopleApi(jinx);
+  }
+
+  /**
+   * Bring the store up to date, using an incremental sync if possible.
+   * <br>
+   * A full sync is run if the store has no checkpoint, or if the full sync interval has passed since the last
+   * full sync.
+   *
+   * @return the outcome of the sync.
+   * @throws JinxException if there are any errors. The checkpoint is not moved, so the next sync starts again from
+   *                       the same place.
+   */
+  public SyncResult sync() throws JinxException {
+    SyncCheckpoint checkpoint = store.getCheckpoint();
+    if (checkpoint == null || isFullSyncDue(checkpoint)) {
+      return fullSync();
+    }
+    return incrementalSync(checkpoint);
+  }
+
+  /**
+   * Fetch the photos that have changed since the checkpoint.
+   * <br>
+   * If the store has no checkpoint, or more than the maximum number of photos have changed, a full sync is run
+   * instead.
+   *
+   * @return the outcome of the sync.
+   * @throws JinxException if there are any errors.
+   */
+  public SyncResult incrementalSync() throws JinxException {
+    SyncCheckpoint checkpoint = store.getCheckpoint();
+    if (checkpoint == null) {
+      return fullSync();
+    }
+    return incrementalSync(checkpoint);
+  }
+
+  /**
+   * Fetch every photo in the account, and remove stored photos that have been deleted from Flickr.
+   *
+   * @return the outcome of the sync.
+   * @throws JinxException if there are any errors.
+   */
+  public SyncResult fullSync() throws JinxException {
+    SyncResult result = new SyncResult(SyncResult.Type.FULL);
+    // read the high water mark first; anything that changes during the walk is newer, so the next
+    // incremental sync will fetch it even if the walk missed it
+    Instant lastUpdate = newestUpdate(result);
+    Set<String> missing = walk(extras, true, result);
+    removeDeleted(missing, result);
+    return finish(result, new SyncCheckpoint(lastUpdate, Instant.now()));
+  }
+
+  /**
+   * Remove stored photos that have been deleted from Flickr, without fetching or saving any photos.
+   * <br>
+   * This walks the account fetching only photo ids, so it is cheaper than a full sync. The checkpoint is not changed.
+   *
+   * @return the outcome of the reconciliation.
+   * @throws JinxException if there are any errors.
+   */
+  public SyncResult reconcile() throws JinxException {
+    SyncResult result = new SyncResult(SyncResult.Type.RECONCILE);
+    Set<String> missing = walk(null, false, result);
+    removeDeleted(missing, result);
+    result.setCheckpoint(store.getCheckpoint());
+    return result;
+  }
+
+  public SyncStore getStore() {
+    return store;
+  }
+
+  public int getPerPage() {
+    return perPage;
+  }
+
+  /**
+   * @param perPage number of photos requested in each page, from 1 to 500.
+   */
+  public void setPerPage(int perPage) {
+    if (perPage < 1 || perPage > 500) {
+      throw new IllegalArgumentException("perPage must be between 1 and 500.");
+    }
+    this.perPage = perPage;
+  }
+
+  public int getPrefetch() {
+    return prefetch;
+  }
+
+  /**
+   * @param prefetch number of pages to request ahead of the current page during a full sync or reconciliation.
+   */
+  public void setPrefetch(int prefetch) {
+    if (prefetch < 0) {
+      throw new IllegalArgumentException("prefetch cannot be negative.");
+    }
+    this.prefetch = prefetch;
+  }
+
+  public int getMaxIncrementalPhotos() {
+    return maxIncrementalPhotos;
+  }
+
+  /**
+   * @param maxIncrementalPhotos number of changed photos above which an incremental sync becomes a full sync.
+   */
+  public void setMaxIncrementalPhotos(int maxIncrementalPhotos) {
+    if (maxIncrementalPhotos < 1) {
+      throw new IllegalArgumentException("maxIncrementalPhotos must be at least 1.");
+    }
+    this.maxIncrementalPhotos = maxIncrementalPhotos;
+  }
+
+  public Duration getOverlap() {
+    return overlap;
+  }
+
+  /**
+   * Set how far before the checkpoint an incremental sync starts. Photos in the overlap are fetched again, which
+   * covers updates that Flickr records a little out of order.
+   *
+   * @param overlap the overlap.
+   */
+  public void setOverlap(Duration overlap) {
+    if (overlap == null || overlap.isNegative()) {
+      throw new IllegalArgumentException("overlap cannot be null or negative.");
+    }
+    this.overlap = overlap;
+  }
+
+  public Duration getFullSyncInterval() {
+    return fullSyncInterval;
+  }
+
+  /**
+   * @param fullSyncInterval time between full syncs run by {@link #sync()}. Null means a full sync is only run
+   *                         when it is needed.
+   */
+  public void setFullSyncInterval(Duration fullSyncInterval) {
+    this.fullSyncInterval = fullSyncInterval;
+  }
+
+  private boolean isFullSyncDue(SyncCheckpoint checkpoint) {
+    return fullSyncInterval != null &&
+        (checkpoint.getLastFullSync() == null ||
+            checkpoint.getLastFullSync().plus(fullSyncInterval).isBefore(Instant.now()));
+  }
+
+  /*
+   * Fetch the photos that changed since the checkpoint, newest first. Photos that change while the pages are being
+   * read move to the front of the list, so they can be repeated but not skipped. If one is missed on a page that has
+   * already been read, its update time is newer than the new checkpoint, and the next sync fetches it.
+   */
+  private SyncResult incrementalSync(SyncCheckpoint checkpoint) throws JinxException {
+    SyncResult result = new SyncResult(SyncResult.Type.INCREMENTAL);
+    Instant minDate = checkpoint.getLastUpdate() == null ? BEGINNING : checkpoint.getLastUpdate().minus(overlap);
+    if (minDate.isBefore(BEGINNING)) {
+      minDate = BEGINNING;
+    }
+    Photos photos = recentlyUpdated(minDate, perPage, 1, result);
+    Integer total = photos.getTotal();
+    if (total != null && total > maxIncrementalPhotos) {
+      if (jinx.isVerboseLogging()) {
+        JinxLogger.log(LogLevel.INFO, "{} photos changed since {}; running a full sync.", total, minDate);
+      }
+      return fullSync();
+    }
+    Instant lastUpdate = checkpoint.getLastUpdate();
+    int pages = photos.getPages() == null ? 1 : photos.getPages();
+    for (int page = 1; ; ) {
+      List<Photo> list = photos.getPhotoList();
+      if (list == null || list.isEmpty()) {
+        break;
+      }
+      for (Photo photo : list) {
+        store.save(photo);
+        result.saved();
+        lastUpdate = newer(lastUpdate, lastUpdate(photo));
+      }
+      if (++page > pages) {
+        break;
+      }
+      photos = recentlyUpdated(minDate, perPage, page, result);
+    }
+    return finish(result, new SyncCheckpoint(lastUpdate, checkpoint.getLastFullSync()));
+  }
+
+  /*
+   * Walk every photo in the account. If save is true, each photo is saved to the store.
+   * Returns the ids of stored photos that were not returned.
+   */
+  private Set<String> walk(Set<JinxConstants.PhotoExtras> walkExtras, boolean save, SyncResult result) throws JinxException {
+    Set<String> missing = new HashSet<>(store.getPhotoIds());
+    EnumSet<JinxConstants.PhotoExtras> requested = JinxUtils.isNullOrEmpty(walkExtras) ?
+        null : EnumSet.copyOf(walkExtras);
+    try (PagedIterator<Photos, Photo> photos = Paging.photos(jinx, page -> {
+      result.page();
+      return peopleApi.getPhotos("me", null, null, null, null, null, null, null, requested, perPage, page, true);
+    }, prefetch)) {
+      while (photos.hasNext()) {
+        Photo photo = photos.next();
+        missing.remove(photo.getPhotoId());
+        if (save) {
+          store.save(photo);
+          result.saved();
+        }
+      }
+    } catch (UncheckedJinxException e) {
+      throw e.getCause();
+    }
+    return missing;
+  }
+
+  /*
+   * Delete photos that were not returned by a walk, after checking that Flickr no longer has them.
+   */
+  private void removeDeleted(Set<String> missing, SyncResult result) throws JinxException {
+    for (String photoId : missing) {
+      try {
+        photosApi.getInfo(photoId, null);
+        // still exists; it was skipped because the account changed during the walk
+      } catch (JinxException e) {
+        if (e.getFlickrErrorCode() != PHOTO_NOT_FOUND) {
+          throw e;
+        }
+        store.delete(photoId);
+        result.deleted();
+      }
+    }
+  }
+
+  /*
+   * The newest update time of any photo in the account.
+   */
+  private Instant newestUpdate(SyncResult result) throws JinxException {
+    Photos photos = recentlyUpdated(BEGINNING, 1, 1, result);
+    List<Photo> list = photos.getPhotoList();
+    return list == null || list.isEmpty() ? null : lastUpdate(list.get(0));
+  }
+
+  private Photos recentlyUpdated(Instant minDate, int count, int page, SyncResult result) throws JinxException {
+    result.page();
+    return photosApi.recentlyUpdated(minDate, incrementalExtras, count, page);
+  }
+
+  private SyncResult finish(SyncResult result, SyncCheckpoint checkpoint) throws JinxException {
+    store.setCheckpoint(checkpoint);
+    result.setCheckpoint(checkpoint);
+    if (jinx.isVerboseLogging()) {
+      JinxLogger.log(LogLevel.INFO, "Sync finished: {}", result);
+    }
+    return result;
+  }
+
+  private static Instant lastUpdate(Photo photo) {
+    String value = photo.getLastUpdate();
+    if (JinxUtils.isNullOrEmpty(value)) {
+      return null;
+    }
+    try {
+      return Instant.ofEpochSecond(Long.parseLong(value));
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  private static Instant newer(Instant a, Instant b) {
+    if (a == null) {
+      return b;
+    }
+    return b == null || a.isAfter(b) ? a : b;
+  }
+}
@@ -0,0 +1,156 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.sync;
+
+import net.jeremybrooks.jinx.JinxException;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Serializable;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.Properties;
+
+/**
+ * The high water mark of a sync.
+ * <br>
+ * The last update time is the newest last update time Flickr reported for any photo in the account when the sync
+ * started. The next incremental sync asks Flickr for photos updated since then. The time comes from Flickr, not
+ * the local clock, so clock differences between this machine and Flickr do not cause changes to be missed.
+ * <br>
+ * Instances are immutable. {@link #write(Path)} and {@link #read(Path)} can be used by stores that keep the
+ * checkpoint in a file.
+ *
+ * @author Jeremy Brooks
+ */
+public class SyncCheckpoint implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+  private static final String LAST_UPDATE = "lastUpdate";
+  private static final String LAST_FULL_SYNC = "lastFullSync";
+
+  private final Instant lastUpdate;
+  private final Instant lastFullSync;
+
+  /**
+   * Create a checkpoint.
+   *
+   * @param lastUpdate   newest last update time reported by Flickr. Null if the account has no photos.
+   * @param lastFullSync local time the last full sync finished. Null if there has never been a full sync.
+   */
+  public SyncCheckpoint(Instant lastUpdate, Instant lastFullSync) {
+    this.lastUpdate = lastUpdate;
+    this.lastFullSync = lastFullSync;
+  }
+
+  public Instant getLastUpdate() {
+    return lastUpdate;
+  }
+
+  public Instant getLastFullSync() {
+    return lastFullSync;
+  }
+
+  /**
+   * Read a checkpoint from a file written by {@link #write(Path)}.
+   *
+   * @param file the file.
+   * @return the checkpoint, or null if the file does not exist.
+   * @throws JinxException if the file cannot be read.
+   */
+  public static SyncCheckpoint read(Path file) throws JinxException {
+    if (!Files.exists(file)) {
+      return null;
+    }
+    Properties properties = new Properties();
+    try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+      properties.load(reader);
+      return new SyncCheckpoint(parse(properties.getProperty(LAST_UPDATE)), parse(properties.getProperty(LAST_FULL_SYNC)));
+    } catch (IOException | RuntimeException e) {
+      throw new JinxException("Unable to read checkpoint from " + file, e);
+    }
+  }
+
+  /**
+   * Write this checkpoint to a file.
+   * <br>
+   * The checkpoint is written to a temporary file which is then moved over the old file, so a crash while writing
+   * leaves the old checkpoint in place.
+   *
+   * @param file the file.
+   * @throws JinxException if the file cannot be written.
+   */
+  public void write(Path file) throws JinxException {
+    Properties properties = new Properties();
+    if (lastUpdate != null) {
+      properties.setProperty(LAST_UPDATE, lastUpdate.toString());
+    }
+    if (lastFullSync != null) {
+      properties.setProperty(LAST_FULL_SYNC, lastFullSync.toString());
+    }
+    Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+    try {
+      try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+        properties.store(writer, "Jinx sync checkpoint");
+      }
+      try {
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } catch (IOException e) {
+      throw new JinxException("Unable to write checkpoint to " + file, e);
+    }
+  }
+
+  private static Instant parse(String value) {
+    return value == null || value.isEmpty() ? null : Instant.parse(value);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof SyncCheckpoint)) {
+      return false;
+    }
+    SyncCheckpoint that = (SyncCheckpoint) o;
+    return Objects.equals(lastUpdate, that.lastUpdate) && Objects.equals(lastFullSync, that.lastFullSync);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(lastUpdate, lastFullSync);
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder("SyncCheckpoint{");
+    sb.append("lastUpdate=").append(lastUpdate);
+    sb.append(", lastFullSync=").append(lastFullSync);
+    sb.append('}');
+    return sb.toString();
+  }
+}
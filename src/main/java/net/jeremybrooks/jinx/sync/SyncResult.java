@@ -0,0 +1,116 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.sync;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The outcome of a sync.
+ *
+ * @author Jeremy Brooks
+ */
+public class SyncResult {
+
+  /**
+   * The kind of sync that was run.
+   */
+  public enum Type {
+    /**
+     * Only photos updated since the checkpoint were fetched.
+     */
+    INCREMENTAL,
+    /**
+     * Every photo in the account was fetched, and deleted photos were removed.
+     */
+    FULL,
+    /**
+     * Only photo ids were fetched, to remove deleted photos.
+     */
+    RECONCILE
+  }
+
+  private final Type type;
+  private final AtomicInteger saved = new AtomicInteger();
+  private final AtomicInteger deleted = new AtomicInteger();
+  private final AtomicInteger pages = new AtomicInteger();
+  private volatile SyncCheckpoint checkpoint;
+
+  SyncResult(Type type) {
+    this.type = type;
+  }
+
+  void saved() {
+    saved.incrementAndGet();
+  }
+
+  void deleted() {
+    deleted.incrementAndGet();
+  }
+
+  void page() {
+    pages.incrementAndGet();
+  }
+
+  void setCheckpoint(SyncCheckpoint checkpoint) {
+    this.checkpoint = checkpoint;
+  }
+
+  public Type getType() {
+    return type;
+  }
+
+  /**
+   * @return number of photos saved to the store. Photos that changed while the sync was running may be counted twice.
+   */
+  public int getSaved() {
+    return saved.get();
+  }
+
+  /**
+   * @return number of photos deleted from the store.
+   */
+  public int getDeleted() {
+    return deleted.get();
+  }
+
+  /**
+   * @return number of pages requested from Flickr.
+   */
+  public int getPages() {
+    return pages.get();
+  }
+
+  /**
+   * @return the checkpoint saved at the end of the sync.
+   */
+  public SyncCheckpoint getCheckpoint() {
+    return checkpoint;
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder("SyncResult{");
+    sb.append("type=").append(type);
+    sb.append(", saved=").append(saved);
+    sb.append(", deleted=").append(deleted);
+    sb.append(", pages=").append(pages);
+    sb.append(", checkpoint=").append(checkpoint);
+    sb.append('}');
+    return sb.toString();
+  }
+}
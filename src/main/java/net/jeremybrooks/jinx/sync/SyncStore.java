@@ -0,0 +1,75 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.sync;
+
+import net.jeremybrooks.jinx.JinxException;
+import net.jeremybrooks.jinx.response.photos.Photo;
+
+import java.util.Set;
+
+/**
+ * The local copy of an account, kept up to date by {@link AccountSync}.
+ * <br>
+ * The store is responsible for saving the checkpoint as well as the photos. If the store is transactional, the
+ * checkpoint should be saved in the same transaction as the last photos of a sync, so that a crash never leaves a
+ * checkpoint that is newer than the photos it describes.
+ *
+ * @author Jeremy Brooks
+ */
+public interface SyncStore {
+
+  /**
+   * Add a photo, or replace the stored copy of a photo with the same id.
+   *
+   * @param photo the photo returned by Flickr.
+   * @throws JinxException if the photo cannot be saved.
+   */
+  void save(Photo photo) throws JinxException;
+
+  /**
+   * Remove a photo that no longer exists on Flickr.
+   *
+   * @param photoId id of the photo to remove.
+   * @throws JinxException if the photo cannot be removed.
+   */
+  void delete(String photoId) throws JinxException;
+
+  /**
+   * Get the ids of every stored photo. This is used to find photos that have been deleted from Flickr.
+   *
+   * @return ids of the stored photos.
+   * @throws JinxException if the ids cannot be read.
+   */
+  Set<String> getPhotoIds() throws JinxException;
+
+  /**
+   * Get the checkpoint saved by the last sync.
+   *
+   * @return the checkpoint, or null if the store has never been synced.
+   * @throws JinxException if the checkpoint cannot be read.
+   */
+  SyncCheckpoint getCheckpoint() throws JinxException;
+
+  /**
+   * Save the checkpoint at the end of a sync.
+   *
+   * @param checkpoint the checkpoint.
+   * @throws JinxException if the checkpoint cannot be saved.
+   */
+  void setCheckpoint(SyncCheckpoint checkpoint) throws JinxException;
+}
@@ -0,0 +1,48 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.transport;
+
+import java.io.IOException;
+
+/**
+ * Defines the interface that Jinx uses to send HTTP requests to Flickr.
+ * <br>
+ * By default, Jinx uses a {@link PooledHttpTransport}. If you need different behavior, such as a
+ * different HTTP client library or a stub that returns canned responses for testing, you can implement
+ * this interface and tell Jinx what transport to use by calling {@code jinx.setTransport(your class instance)}.
+ * <br>
+ * Requests arrive here fully built and signed. Implementations must not modify the URL, headers, or body,
+ * since doing so would invalidate the OAuth signature.
+ * <br>
+ * Implementations must be safe to use from multiple threads.
+ *
+ * @author Jeremy Brooks
+ */
+public interface JinxTransport {
+
+  /**
+   * Send a request and return the response.
+   * <br>
+   * The caller is responsible for closing the returned response.
+   *
+   * @param request the request to send.
+   * @return the response from the server.
+   * @throws IOException if the request could not be sent or the response could not be read.
+   */
+  TransportResponse execute(TransportRequest request) throws IOException;
+}
@@ -0,0 +1,89 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.transport;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A multipart/form-data body containing form fields followed by a single file part.
+ * <br>
+ * Only the form fields and part headers are held in memory; the file content is written from its own
+ * {@link RequestBody}, so it can be streamed from disk. If the length of the content is known, the length of the
+ * entire body is known, and it can be sent with a fixed Content-Length.
+ *
+ * @author Jeremy Brooks
+ */
+public class MultipartBody implements RequestBody {
+
+  private final byte[] head;
+  private final byte[] tail;
+  private final RequestBody content;
+
+  /**
+   * Create a new multipart body.
+   *
+   * @param boundary the multipart boundary.
+   * @param fields   form fields to send before the file part.
+   * @param name     name of the file part.
+   * @param filename file name to send in the file part.
+   * @param mimeType content type of the file part.
+   * @param content  content of the file part.
+   */
+  public MultipartBody(String boundary, Map<String, String> fields, String name, String filename, String mimeType,
+                       RequestBody content) {
+    StringBuilder sb = new StringBuilder();
+    sb.append("--").append(boundary).append("\r\n");
+    for (Map.Entry<String, String> entry : fields.entrySet()) {
+      sb.append("Content-Disposition: form-data; name=\"").append(entry.getKey()).append("\"\r\n\r\n");
+      sb.append(entry.getValue());
+      sb.append("\r\n--").append(boundary).append("\r\n");
+    }
+    sb.append("Content-Disposition: form-data; name=\"").append(name).append("\"; filename=\"").append(filename).append("\";\r\n");
+    sb.append("Content-Type: ").append(mimeType).append("\r\n\r\n");
+    this.head = sb.toString().getBytes(UTF_8);
+    // NOTE: last boundary has -- suffix
+    this.tail = ("\r\n--" + boundary + "--\r\n").getBytes(UTF_8);
+    this.content = content;
+  }
+
+  @Override
+  public long getContentLength() {
+    long length = content.getContentLength();
+    return length < 0 ? -1 : head.length + length + tail.length;
+  }
+
+  @Override
+  public void writeTo(OutputStream out) throws IOException {
+    out.write(head);
+    content.writeTo(out);
+    out.write(tail);
+  }
+
+  /**
+   * Get the form fields and part headers that precede the file content.
+   *
+   * @return the multipart head, as a String.
+   */
+  public String getHead() {
+    return new String(head, UTF_8);
+  }
+}
@@ -0,0 +1,295 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.transport;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The default {@link JinxTransport}, which sends requests using persistent HTTP/1.1 connections.
+ * <br>
+ * Connections are reused through the JDK keep-alive cache. For a connection to be reused, the response
+ * body must be read completely; this transport drains up to {@link #MAX_DRAIN_BYTES} of whatever is left
+ * of the body when the response is closed, so callers only need to close the response. A connection with
+ * more than that left unread is disconnected instead. Idle connections are evicted by the JDK keep-alive
+ * cache after the keep-alive timeout advertised by the server.
+ * <br>
+ * The number of concurrent requests to each route (scheme, host and port) is limited. When the limit is reached,
+ * callers wait until a connection is released or the acquire timeout expires. The JDK keeps at most
+ * {@code http.maxConnections} idle connections per route (default 5), and closes any connection released beyond
+ * that, so the next request pays for a new connection and TLS handshake. The default limit is therefore the
+ * value of {@code http.maxConnections}, so that every connection is kept alive. To make more requests at the same
+ * time, raise both, for example by starting the JVM with {@code -Dhttp.maxConnections=20}; the default limit
+ * follows the property. A transport created with {@link #UNLIMITED} does not wait, but connections above the
+ * keep-alive capacity are not reused.
+ * <br>
+ * Instances of this class are thread safe and can be shared by multiple Jinx instances.
+ *
+ * @author Jeremy Brooks
+ */
+public class PooledHttpTransport implements JinxTransport {
+
+  /**
+   * Value for maxConnectionsPerRoute that does not limit the number of concurrent requests.
+   */
+  public static final int UNLIMITED = 0;
+
+  /**
+   * Default number of concurrent requests allowed to a single route. This is the number of idle connections per
+   * route that the JDK keeps alive: the {@code http.maxConnections} system property, or 5 if it is not set.
+   */
+  public static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = keepAliveCapacity();
+
+  /**
+   * Default connect timeout, in milliseconds.
+   */
+  public static final int DEFAULT_CONNECT_TIMEOUT = 30000;
+
+  /**
+   * Default read timeout, in milliseconds.
+   */
+  public static final int DEFAULT_READ_TIMEOUT = 60000;
+
+  /**
+   * Default time to wait for a connection when the route limit is reached, in milliseconds. Zero means
+   * wait until a connection is released.
+   */
+  public static final int DEFAULT_ACQUIRE_TIMEOUT = 0;
+
+  /**
+   * The most bytes of an unread response body that will be drained to keep the connection alive.
+   */
+  public static final int MAX_DRAIN_BYTES = 64 * 1024;
+
+  private final Map<String, Semaphore> routes = new ConcurrentHashMap<>();
+  private final int maxConnectionsPerRoute;
+  private final int connectTimeout;
+  private final int readTimeout;
+  private final int acquireTimeout;
+
+  /**
+   * Create a transport using the default limit and timeouts.
+   */
+  public PooledHttpTransport() {
+    this(DEFAULT_MAX_CONNECTIONS_PER_ROUTE, DEFAULT_CONNECT_TIMEOUT, DEFAULT_READ_TIMEOUT);
+  }
+
+  /**
+   * Create a transport that waits for a connection until one is released when the route limit is reached.
+   *
+   * @param maxConnectionsPerRoute maximum number of concurrent requests to a single route, or {@link #UNLIMITED}.
+   * @param connectTimeout         connect timeout in milliseconds. Zero means wait forever.
+   * @param readTimeout            read timeout in milliseconds. Zero means wait forever.
+   */
+  public PooledHttpTransport(int maxConnectionsPerRoute, int connectTimeout, int readTimeout) {
+    this(maxConnectionsPerRoute, connectTimeout, readTimeout, DEFAULT_ACQUIRE_TIMEOUT);
+  }
+
+  /**
+   * Create a transport.
+   *
+   * @param maxConnectionsPerRoute maximum number of concurrent requests to a single route, or {@link #UNLIMITED}.
+   * @param connectTimeout         connect timeout in milliseconds. Zero means wait forever.
+   * @param readTimeout            read timeout in milliseconds. Zero means wait forever.
+   * @param acquireTimeout         maximum time to wait for a connection to the route to become available when
+   *                               the limit is reached, in milliseconds. Zero means wait forever.
+   */
+  public PooledHttpTransport(int maxConnectionsPerRoute, int connectTimeout, int readTimeout, int acquireTimeout) {
+    if (maxConnectionsPerRoute < 0) {
+      throw new IllegalArgumentException("maxConnectionsPerRoute cannot be negative.");
+    }
+    if (connectTimeout < 0 || readTimeout < 0 || acquireTimeout < 0) {
+      throw new IllegalArgumentException("Timeouts cannot be negative.");
+    }
+    this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+    this.connectTimeout = connectTimeout;
+    this.readTimeout = readTimeout;
+    this.acquireTimeout = acquireTimeout;
+  }
+
+  public int getMaxConnectionsPerRoute() {
+    return maxConnectionsPerRoute;
+  }
+
+  public int getConnectTimeout() {
+    return connectTimeout;
+  }
+
+  public int getReadTimeout() {
+    return readTimeout;
+  }
+
+  public int getAcquireTimeout() {
+    return acquireTimeout;
+  }
+
+  /*
+   * The JDK keep-alive cache reads http.maxConnections once, and uses 5 if it is missing or not positive.
+   */
+  private static int keepAliveCapacity() {
+    int max;
+    try {
+      max = Integer.getInteger("http.maxConnections", 5);
+    } catch (SecurityException e) {
+      max = 5;
+    }
+    return max > 0 ? max : 5;
+  }
+
+  @Override
+  public TransportResponse execute(TransportRequest request) throws IOException {
+    URL url = new URL(request.getUrl());
+    Semaphore permits = null;
+    if (maxConnectionsPerRoute != UNLIMITED) {
+      permits = routes.computeIfAbsent(routeKey(url), k -> new Semaphore(maxConnectionsPerRoute, true));
+      acquire(permits, url);
+    }
+    HttpURLConnection connection = null;
+    try {
+      connection = (HttpURLConnection) url.openConnection();
+      connection.setConnectTimeout(connectTimeout);
+      connection.setReadTimeout(readTimeout);
+      connection.setUseCaches(false);
+      connection.setInstanceFollowRedirects(false);
+      connection.setRequestMethod(request.getMethod().name());
+      for (Map.Entry<String, String> header : request.getHeaders().entrySet()) {
+        connection.setRequestProperty(header.getKey(), header.getValue());
+      }
+      RequestBody body = request.getBody();
+      if (body != null) {
+        connection.setDoOutput(true);
+        // stream the body rather than letting the connection buffer it
+        long length = body.getContentLength();
+        if (length >= 0) {
+          connection.setFixedLengthStreamingMode(length);
+        } else {
+          connection.setChunkedStreamingMode(0);
+        }
+        try (OutputStream out = connection.getOutputStream()) {
+          body.writeTo(out);
+        }
+      }
+
+      int code = connection.getResponseCode();
+      InputStream in = code >= HttpURLConnection.HTTP_BAD_REQUEST ? connection.getErrorStream() : connection.getInputStream();
+      Map<String, String> headers = new HashMap<>();
+      for (Map.Entry<String, List<String>> entry : connection.getHeaderFields().entrySet()) {
+        // the status line is returned with a null key
+        if (entry.getKey() != null && !entry.getValue().isEmpty()) {
+          headers.put(entry.getKey(), entry.getValue().get(0));
+        }
+      }
+      if (in == null) {
+        release(permits);
+        return new TransportResponse(code, headers, null);
+      }
+      return new TransportResponse(code, headers, new ReleasingInputStream(in, connection, permits));
+    } catch (IOException | RuntimeException e) {
+      if (connection != null) {
+        connection.disconnect();
+      }
+      release(permits);
+      throw e;
+    }
+  }
+
+  private void acquire(Semaphore permits, URL url) throws IOException {
+    try {
+      if (acquireTimeout == 0) {
+        permits.acquire();
+      } else if (!permits.tryAcquire(acquireTimeout, TimeUnit.MILLISECONDS)) {
+        throw new IOException("Timed out waiting for a connection to " + url.getHost());
+      }
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for a connection to " + url.getHost());
+    }
+  }
+
+  private static void release(Semaphore permits) {
+    if (permits != null) {
+      permits.release();
+    }
+  }
+
+  private String routeKey(URL url) {
+    int port = url.getPort() == -1 ? url.getDefaultPort() : url.getPort();
+    return url.getProtocol() + "://" + url.getHost() + ':' + port;
+  }
+
+
+  /*
+   * Drains a bounded amount of the response body on close so the connection can be kept alive,
+   * disconnects it if more is left, then releases the route permit exactly once.
+   */
+  private static class ReleasingInputStream extends FilterInputStream {
+    private final HttpURLConnection connection;
+    private final Semaphore permits;
+    private final AtomicBoolean released = new AtomicBoolean(false);
+
+    ReleasingInputStream(InputStream in, HttpURLConnection connection, Semaphore permits) {
+      super(in);
+      this.connection = connection;
+      this.permits = permits;
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (released.compareAndSet(false, true)) {
+        boolean drained = false;
+        try {
+          byte[] buffer = new byte[4096];
+          long remaining = MAX_DRAIN_BYTES;
+          int count;
+          while ((count = in.read(buffer, 0, (int) Math.min(buffer.length, remaining + 1))) != -1) {
+            remaining -= count;
+            if (remaining < 0) {
+              break;
+            }
+          }
+          drained = count == -1;
+        } catch (IOException e) {
+          // the connection will not be reused
+        } finally {
+          try {
+            if (drained) {
+              in.close();
+            } else {
+              // reading the rest would cost more than a new connection
+              connection.disconnect();
+            }
+          } finally {
+            release(permits);
+          }
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,147 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The body of a request.
+ * <br>
+ * A request body writes itself to the connection when the request is sent, so that large photos and videos can be
+ * streamed from disk without loading them into memory.
+ *
+ * @author Jeremy Brooks
+ */
+public interface RequestBody {
+
+  /**
+   * Size of the buffer used to copy streamed content.
+   */
+  int BUFFER_SIZE = 64 * 1024;
+
+  /**
+   * Get the number of bytes that will be written by {@link #writeTo(OutputStream)}.
+   *
+   * @return content length, or -1 if the length is not known in advance.
+   */
+  long getContentLength();
+
+  /**
+   * Write the body.
+   *
+   * @param out the stream to write to. The body must not close the stream.
+   * @throws IOException if the body cannot be written.
+   */
+  void writeTo(OutputStream out) throws IOException;
+
+  /**
+   * Create a body from a byte array.
+   *
+   * @param data the data to send. The array is not copied.
+   * @return body that writes the data.
+   */
+  static RequestBody of(byte[] data) {
+    return new RequestBody() {
+      @Override
+      public long getContentLength() {
+        return data.length;
+      }
+
+      @Override
+      public void writeTo(OutputStream out) throws IOException {
+        out.write(data);
+      }
+    };
+  }
+
+  /**
+   * Create a body from a file.
+   * <br>
+   * The file is read through a direct buffer each time the body is written, so the body can be sent more than once.
+   *
+   * @param file the file to send.
+   * @return body that streams the file.
+   * @throws IOException if the size of the file cannot be read.
+   */
+  static RequestBody of(Path file) throws IOException {
+    long length = Files.size(file);
+    return new RequestBody() {
+      @Override
+      public long getContentLength() {
+        return length;
+      }
+
+      @Override
+      public void writeTo(OutputStream out) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+          WritableByteChannel target = Channels.newChannel(out);
+          ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+          while (channel.read(buffer) != -1) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+              target.write(buffer);
+            }
+            buffer.clear();
+          }
+        }
+      }
+    };
+  }
+
+  /**
+   * Create a body from a stream.
+   * <br>
+   * The stream is read once, when the body is written, and is not closed.
+   *
+   * @param in     the stream to send.
+   * @param length the number of bytes in the stream, or -1 if the length is not known. If the length is not known,
+   *               the body is sent using chunked transfer encoding.
+   * @return body that streams the data.
+   */
+  static RequestBody of(InputStream in, long length) {
+    return new RequestBody() {
+      @Override
+      public long getContentLength() {
+        return length;
+      }
+
+      @Override
+      public void writeTo(OutputStream out) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long remaining = length < 0 ? Long.MAX_VALUE : length;
+        int count;
+        while (remaining > 0 && (count = in.read(buffer, 0, (int) Math.min(buffer.length, remaining))) != -1) {
+          out.write(buffer, 0, count);
+          remaining -= count;
+        }
+        if (length >= 0 && remaining > 0) {
+          throw new IOException("Stream ended " + remaining + " bytes before the expected length of " + length);
+        }
+      }
+    };
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.transport;
+
+import net.jeremybrooks.jinx.JinxConstants;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A fully built and signed HTTP request, ready to be sent by a {@link JinxTransport}.
+ *
+ * @author Jeremy Brooks
+ */
+public class TransportRequest {
+
+  private final JinxConstants.Method method;
+  private final String url;
+  private final Map<String, String> headers;
+  private final RequestBody body;
+
+  /**
+   * Create a new request.
+   *
+   * @param method  http method to use.
+   * @param url     complete URL, including the query string.
+   * @param headers request headers. May be null.
+   * @param body    request body. May be null if the request has no body.
+   */
+  public TransportRequest(JinxConstants.Method method, String url, Map<String, String> headers, RequestBody body) {
+    this.method = method;
+    this.url = url;
+    this.headers = headers == null ? Collections.emptyMap() : Collections.unmodifiableMap(new LinkedHashMap<>(headers));
+    this.body = body;
+  }
+
+  public JinxConstants.Method getMethod() {
+    return method;
+  }
+
+  public String getUrl() {
+    return url;
+  }
+
+  public Map<String, String> getHeaders() {
+    return headers;
+  }
+
+  /**
+   * Get the request body.
+   *
+   * @return request body, or null if the request has no body.
+   */
+  public RequestBody getBody() {
+    return body;
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder("TransportRequest{");
+    sb.append("method=").append(method);
+    sb.append(", url='").append(url).append('\'');
+    sb.append(", bodyLength=").append(body == null ? 0 : body.getContentLength());
+    sb.append('}');
+    return sb.toString();
+  }
+}
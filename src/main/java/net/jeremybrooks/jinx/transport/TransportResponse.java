@@ -0,0 +1,106 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.transport;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The response to a {@link TransportRequest}.
+ * <br>
+ * The body is exposed as a stream so that it can be consumed without buffering the entire response.
+ * Callers must close the response when they are done with it; transports may use this to return the
+ * underlying connection to a pool.
+ *
+ * @author Jeremy Brooks
+ */
+public class TransportResponse implements Closeable {
+
+  private final int code;
+  private final Map<String, String> headers;
+  private final InputStream body;
+
+  /**
+   * Create a new response.
+   *
+   * @param code    the HTTP status code.
+   * @param headers response headers. May be null.
+   * @param body    response body. May be null if the server did not return a body.
+   */
+  public TransportResponse(int code, Map<String, String> headers, InputStream body) {
+    this.code = code;
+    Map<String, String> map = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    if (headers != null) {
+      map.putAll(headers);
+    }
+    this.headers = Collections.unmodifiableMap(map);
+    this.body = body;
+  }
+
+  public int getCode() {
+    return code;
+  }
+
+  /**
+   * Indicates if the HTTP status code is in the 2xx range.
+   *
+   * @return true if the status code indicates success.
+   */
+  public boolean isSuccessful() {
+    return code >= 200 && code < 300;
+  }
+
+  /**
+   * Get the response headers. Header names are case insensitive.
+   *
+   * @return response headers.
+   */
+  public Map<String, String> getHeaders() {
+    return headers;
+  }
+
+  /**
+   * Get a response header.
+   *
+   * @param name header name; case insensitive.
+   * @return header value, or null if the header was not returned.
+   */
+  public String getHeader(String name) {
+    return headers.get(name);
+  }
+
+  /**
+   * Get the response body.
+   *
+   * @return response body, or null if the server did not return a body.
+   */
+  public InputStream getBody() {
+    return body;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (body != null) {
+      body.close();
+    }
+  }
+}
@@ -0,0 +1,71 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.upload;
+
+import net.jeremybrooks.jinx.JinxException;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The outcome of a bulk upload.
+ *
+ * @author Jeremy Brooks
+ */
+public class BulkUploadResult {
+
+  private final Map<File, String> photoIds = new ConcurrentHashMap<>();
+  private final Map<File, JinxException> failures = new ConcurrentHashMap<>();
+
+  void complete(File file, String photoId) {
+    photoIds.put(file, photoId);
+  }
+
+  void fail(File file, JinxException e) {
+    failures.put(file, e);
+  }
+
+  /**
+   * Get the photo id of each file that was uploaded successfully.
+   *
+   * @return map of file to photo id.
+   */
+  public Map<File, String> getPhotoIds() {
+    return Collections.unmodifiableMap(photoIds);
+  }
+
+  /**
+   * Get the reason for each file that could not be uploaded.
+   *
+   * @return map of file to failure.
+   */
+  public Map<File, JinxException> getFailures() {
+    return Collections.unmodifiableMap(failures);
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder("BulkUploadResult{");
+    sb.append("completed=").append(photoIds.size());
+    sb.append(", failed=").append(failures.size());
+    sb.append('}');
+    return sb.toString();
+  }
+}
@@ -0,0 +1,502 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.upload;
+
+import net.jeremybrooks.jinx.Jinx;
+import net.jeremybrooks.jinx.JinxConstants;
+import net.jeremybrooks.jinx.JinxException;
+import net.jeremybrooks.jinx.JinxUtils;
+import net.jeremybrooks.jinx.api.PhotosUploadApi;
+import net.jeremybrooks.jinx.logger.JinxLogger;
+import net.jeremybrooks.jinx.logger.LogLevel;
+import net.jeremybrooks.jinx.response.photos.upload.CheckTicketsResponse;
+import net.jeremybrooks.jinx.response.photos.upload.UploadResponse;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Uploads many files to Flickr in parallel, using the Flickr async upload API.
+ * <br>
+ * Up to maxConcurrentUploads files are sent at the same time, using the executor returned by
+ * {@link Jinx#getExecutor()}. As each upload returns a ticket, the ticket is added to the set of outstanding tickets.
+ * Outstanding tickets are checked in batches, with up to maxTicketsPerCheck tickets in each call to
+ * flickr.photos.upload.checkTickets. The poll interval starts at the minimum interval, and doubles up to the maximum
+ * interval each time a poll finds no finished tickets. It drops back to the minimum as soon as tickets start finishing.
+ * <br>
+ * Progress is reported to an {@link UploadListener}, and the returned future completes when every file has either
+ * completed or failed. A ticket that Flickr has not finished processing within the ticket timeout is failed, so the
+ * future completes even if Flickr never resolves a ticket. Cancelling the future stops any uploads that have not
+ * started yet and stops polling.
+ * <br>
+ * The upload settings (description, tags, permissions, etc.) apply to every file. The title of each photo is taken
+ * from its file name.
+ *
+ * @author Jeremy Brooks
+ */
+public class BulkUploader {
+
+  /**
+   * Default number of tickets sent in each call to checkTickets.
+   */
+  public static final int DEFAULT_MAX_TICKETS_PER_CHECK = 100;
+
+  /**
+   * Default time Flickr has to finish processing an uploaded file, in milliseconds.
+   */
+  public static final long DEFAULT_TICKET_TIMEOUT = TimeUnit.MINUTES.toMillis(30);
+
+  private final Jinx jinx;
+  private final PhotosUploadApi uploadApi;
+  private final int maxConcurrentUploads;
+  private long minPollInterval = 1000;
+  private long maxPollInterval = 30000;
+  private int maxTicketsPerCheck = DEFAULT_MAX_TICKETS_PER_CHECK;
+  private long ticketTimeout = DEFAULT_TICKET_TIMEOUT;
+
+  private String description;
+  private List<String> tags;
+  private Boolean isPublic;
+  private Boolean isFriend;
+  private Boolean isFamily;
+  private JinxConstants.SafetyLevel safetyLevel;
+  private JinxConstants.ContentType contentType;
+  private Boolean hidden;
+
+  /**
+   * Create a new bulk uploader.
+   *
+   * @param jinx                 the Jinx instance to use. It must have an access token with 'write' permission.
+   * @param maxConcurrentUploads maximum number of files to send at the same time.
+   */
+  public BulkUploader(Jinx jinx, int maxConcurrentUploads) {
+    if (jinx == null) {
+      throw new IllegalArgumentException("jinx is required.");
+    }
+    if (maxConcurrentUploads < 1) {
+      throw new IllegalArgumentException("maxConcurrentUploads must be at least 1.");
+    }
+    this.jinx = jinx;
+    this.uploadApi = new PhotosUploadApi(jinx);
+    this.maxConcurrentUploads = maxConcurrentUploads;
+  }
+
+  /**
+   * Upload all regular, non-hidden files in a directory. Subdirectories are not included.
+   *
+   * @param directory the directory containing the files to upload.
+   * @param listener  receives progress. May be null.
+   * @return future that completes when all files have completed or failed.
+   * @throws JinxException if the directory cannot be read.
+   */
+  public CompletableFuture<BulkUploadResult> upload(Path directory, UploadListener listener) throws JinxException {
+    JinxUtils.validateParams(directory);
+    List<File> files;
+    try (Stream<Path> paths = Files.list(directory)) {
+      files = paths.filter(Files::isRegularFile)
+          .filter(p -> !p.getFileName().toString().startsWith("."))
+          .sorted()
+          .map(Path::toFile)
+          .collect(Collectors.toList());
+    } catch (IOException e) {
+      throw new JinxException("Unable to list files in " + directory, e);
+    }
+    return upload(files, listener);
+  }
+
+  /**
+   * Upload a list of files.
+   *
+   * @param files    the files to upload.
+   * @param listener receives progress. May be null.
+   * @return future that completes when all files have completed or failed.
+   */
+  public CompletableFuture<BulkUploadResult> upload(List<File> files, UploadListener listener) {
+    if (files == null) {
+      throw new IllegalArgumentException("files is required.");
+    }
+    Job job = new Job(files, listener);
+    job.start();
+    return job.future;
+  }
+
+  /**
+   * Set the minimum and maximum time between ticket checks.
+   *
+   * @param min  minimum time between checks.
+   * @param max  maximum time between checks.
+   * @param unit time unit of min and max.
+   */
+  public void setPollInterval(long min, long max, TimeUnit unit) {
+    if (min < 1 || max < min) {
+      throw new IllegalArgumentException("Invalid poll interval.");
+    }
+    this.minPollInterval = unit.toMillis(min);
+    this.maxPollInterval = unit.toMillis(max);
+  }
+
+  public long getMinPollInterval() {
+    return minPollInterval;
+  }
+
+  public long getMaxPollInterval() {
+    return maxPollInterval;
+  }
+
+  public int getMaxTicketsPerCheck() {
+    return maxTicketsPerCheck;
+  }
+
+  public void setMaxTicketsPerCheck(int maxTicketsPerCheck) {
+    if (maxTicketsPerCheck < 1) {
+      throw new IllegalArgumentException("maxTicketsPerCheck must be at least 1.");
+    }
+    this.maxTicketsPerCheck = maxTicketsPerCheck;
+  }
+
+  public long getTicketTimeout() {
+    return ticketTimeout;
+  }
+
+  /**
+   * Set how long Flickr has to finish processing a file after it has been uploaded. When the time runs out, the
+   * file is reported as failed; the photo may still appear on Flickr later.
+   *
+   * @param timeout time allowed for each ticket.
+   * @param unit    time unit of the timeout.
+   */
+  public void setTicketTimeout(long timeout, TimeUnit unit) {
+    if (timeout < 1) {
+      throw new IllegalArgumentException("Invalid ticket timeout.");
+    }
+    this.ticketTimeout = unit.toMillis(timeout);
+  }
+
+  public int getMaxConcurrentUploads() {
+    return maxConcurrentUploads;
+  }
+
+  public String getDescription() {
+    return description;
+  }
+
+  public void setDescription(String description) {
+    this.description = description;
+  }
+
+  public List<String> getTags() {
+    return tags;
+  }
+
+  public void setTags(List<String> tags) {
+    this.tags = tags;
+  }
+
+  public Boolean getPublic() {
+    return isPublic;
+  }
+
+  public void setPublic(Boolean isPublic) {
+    this.isPublic = isPublic;
+  }
+
+  public Boolean getFriend() {
+    return isFriend;
+  }
+
+  public void setFriend(Boolean isFriend) {
+    this.isFriend = isFriend;
+  }
+
+  public Boolean getFamily() {
+    return isFamily;
+  }
+
+  public void setFamily(Boolean isFamily) {
+    this.isFamily = isFamily;
+  }
+
+  public JinxConstants.SafetyLevel getSafetyLevel() {
+    return safetyLevel;
+  }
+
+  public void setSafetyLevel(JinxConstants.SafetyLevel safetyLevel) {
+    this.safetyLevel = safetyLevel;
+  }
+
+  public JinxConstants.ContentType getContentType() {
+    return contentType;
+  }
+
+  public void setContentType(JinxConstants.ContentType contentType) {
+    this.contentType = contentType;
+  }
+
+  public Boolean getHidden() {
+    return hidden;
+  }
+
+  public void setHidden(Boolean hidden) {
+    this.hidden = hidden;
+  }
+
+
+  /*
+   * State for a single call to upload.
+   */
+  private class Job {
+    private final Queue<File> queue;
+    private final Map<String, Ticket> tickets = new ConcurrentHashMap<>();
+    private final AtomicInteger remaining;
+    private final UploadListener listener;
+    private final BulkUploadResult result = new BulkUploadResult();
+    private final CompletableFuture<BulkUploadResult> future = new CompletableFuture<>();
+    private ScheduledExecutorService scheduler;
+    private long pollInterval = minPollInterval;
+
+    Job(List<File> files, UploadListener listener) {
+      this.queue = new ConcurrentLinkedQueue<>(files);
+      this.remaining = new AtomicInteger(files.size());
+      this.listener = listener;
+    }
+
+    void start() {
+      if (remaining.get() == 0) {
+        future.complete(result);
+        return;
+      }
+      scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "jinx-upload-poller");
+        t.setDaemon(true);
+        return t;
+      });
+      future.whenComplete((r, t) -> scheduler.shutdownNow());
+      schedulePoll();
+
+      Executor executor = jinx.getExecutor();
+      int workers = Math.min(maxConcurrentUploads, remaining.get());
+      for (int i = 0; i < workers; i++) {
+        try {
+          executor.execute(this::uploadAll);
+        } catch (RejectedExecutionException e) {
+          // also stops the poller, and the workers already started
+          future.completeExceptionally(new JinxException("Unable to start upload worker.", e));
+          return;
+        }
+      }
+    }
+
+    /*
+     * Upload files until the queue is empty.
+     */
+    private void uploadAll() {
+      File file;
+      while (!future.isDone() && (file = queue.poll()) != null) {
+        try {
+          UploadResponse response = uploadApi.upload(file, null, description, tags, isPublic, isFriend, isFamily,
+              safetyLevel, contentType, hidden, true);
+          if (response.getCode() != 0) {
+            throw new JinxException("Flickr returned non-zero status.", null, response);
+          }
+          String ticketId = response.getTicketId();
+          if (JinxUtils.isNullOrEmpty(ticketId)) {
+            if (JinxUtils.isNullOrEmpty(response.getPhotoId())) {
+              throw new JinxException("Flickr did not return a ticket id.");
+            }
+            complete(file, response.getPhotoId());
+          } else {
+            // track the ticket first, so a listener error cannot lose a file that is already on Flickr
+            tickets.put(ticketId, new Ticket(file, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ticketTimeout)));
+            uploaded(file, ticketId);
+          }
+        } catch (JinxException e) {
+          fail(file, e);
+        } catch (RuntimeException e) {
+          fail(file, new JinxException("Unable to upload " + file.getAbsolutePath(), e));
+        }
+      }
+    }
+
+    /*
+     * Check outstanding tickets, in batches, then schedule the next check.
+     */
+    private void poll() {
+      boolean progress = false;
+      try {
+        List<String> ids = new ArrayList<>(tickets.keySet());
+        for (int i = 0; i < ids.size() && !future.isDone(); i += maxTicketsPerCheck) {
+          progress |= check(ids.subList(i, Math.min(ids.size(), i + maxTicketsPerCheck)));
+        }
+        if (ids.isEmpty()) {
+          // nothing to check yet, so keep polling quickly until uploads start returning tickets
+          progress = true;
+        }
+        progress |= expire();
+      } catch (RuntimeException e) {
+        if (jinx.isVerboseLogging()) {
+          JinxLogger.log(LogLevel.WARN, "Error checking upload tickets.", e);
+        }
+      } finally {
+        pollInterval = progress ? minPollInterval : Math.min(pollInterval * 2, maxPollInterval);
+        schedulePoll();
+      }
+    }
+
+    /*
+     * Check a batch of tickets. Returns true if any of the tickets have finished.
+     */
+    private boolean check(List<String> ids) {
+      CheckTicketsResponse response;
+      try {
+        response = uploadApi.checkTickets(ids);
+      } catch (JinxException e) {
+        if (jinx.isVerboseLogging()) {
+          JinxLogger.log(LogLevel.WARN, "Error checking upload tickets.", e);
+        }
+        return false;
+      }
+      boolean progress = false;
+      if (response.getTicketList() != null) {
+        for (CheckTicketsResponse.Ticket ticket : response.getTicketList()) {
+          JinxConstants.TicketStatus status = ticket.getTicketStatus();
+          if (status == JinxConstants.TicketStatus.completed ||
+              status == JinxConstants.TicketStatus.failed ||
+              status == JinxConstants.TicketStatus.invalid) {
+            Ticket pending = tickets.remove(ticket.getTicketId());
+            if (pending != null) {
+              progress = true;
+              if (status == JinxConstants.TicketStatus.completed) {
+                complete(pending.file, ticket.getPhotoId());
+              } else {
+                fail(pending.file, new JinxException("Flickr could not process ticket " + ticket.getTicketId() + " (" + status + ")."));
+              }
+            }
+          }
+        }
+      }
+      return progress;
+    }
+
+    /*
+     * Fail tickets that Flickr has not finished within the ticket timeout. Returns true if any were failed.
+     */
+    private boolean expire() {
+      boolean expired = false;
+      long now = System.nanoTime();
+      for (Map.Entry<String, Ticket> entry : tickets.entrySet()) {
+        Ticket ticket = entry.getValue();
+        if (now - ticket.deadline >= 0 && tickets.remove(entry.getKey(), ticket)) {
+          expired = true;
+          fail(ticket.file, new JinxException("Flickr did not finish processing ticket " + entry.getKey() +
+              " within " + ticketTimeout + "ms."));
+        }
+      }
+      return expired;
+    }
+
+    private void schedulePoll() {
+      if (!future.isDone()) {
+        try {
+          scheduler.schedule(this::poll, pollInterval, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+          // the job finished while the poll was being scheduled
+        }
+      }
+    }
+
+    private void uploaded(File file, String ticketId) {
+      try {
+        if (listener != null) {
+          listener.onUploaded(file, ticketId);
+        }
+      } catch (RuntimeException e) {
+        // a listener error must not stop the ticket from being checked
+        if (jinx.isVerboseLogging()) {
+          JinxLogger.log(LogLevel.WARN, "Upload listener threw an exception.", e);
+        }
+      }
+    }
+
+    private void complete(File file, String photoId) {
+      result.complete(file, photoId);
+      try {
+        if (listener != null) {
+          listener.onComplete(file, photoId);
+        }
+      } catch (RuntimeException e) {
+        // a listener error must not stop the job from finishing
+        if (jinx.isVerboseLogging()) {
+          JinxLogger.log(LogLevel.WARN, "Upload listener threw an exception.", e);
+        }
+      }
+      finished();
+    }
+
+    private void fail(File file, JinxException e) {
+      result.fail(file, e);
+      try {
+        if (listener != null) {
+          listener.onFailure(file, e);
+        }
+      } catch (RuntimeException ex) {
+        // a listener error must not stop the job from finishing
+        if (jinx.isVerboseLogging()) {
+          JinxLogger.log(LogLevel.WARN, "Upload listener threw an exception.", ex);
+        }
+      }
+      finished();
+    }
+
+    private void finished() {
+      if (remaining.decrementAndGet() == 0) {
+        future.complete(result);
+      }
+    }
+  }
+
+
+  /*
+   * A file that Flickr is still processing.
+   */
+  private static class Ticket {
+    private final File file;
+    private final long deadline;
+
+    Ticket(File file, long deadline) {
+      this.file = file;
+      this.deadline = deadline;
+    }
+  }
+}
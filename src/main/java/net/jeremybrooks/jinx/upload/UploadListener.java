@@ -0,0 +1,59 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.upload;
+
+import net.jeremybrooks.jinx.JinxException;
+
+import java.io.File;
+
+/**
+ * Receives progress from a {@link BulkUploader}.
+ * <br>
+ * Methods are called from the threads doing the work, so implementations must be thread safe.
+ *
+ * @author Jeremy Brooks
+ */
+public interface UploadListener {
+
+  /**
+   * Called when a file has been sent to Flickr, and Flickr has returned a ticket for it.
+   * The photo is not available until {@link #onComplete(File, String)} is called. The ticket is already being
+   * checked, so if Flickr finishes very quickly, onComplete may be called first.
+   *
+   * @param file     the file that was uploaded.
+   * @param ticketId the ticket id returned by Flickr.
+   */
+  default void onUploaded(File file, String ticketId) {
+  }
+
+  /**
+   * Called when Flickr has finished processing a file.
+   *
+   * @param file    the file that was uploaded.
+   * @param photoId id of the new photo or video.
+   */
+  void onComplete(File file, String photoId);
+
+  /**
+   * Called when a file could not be uploaded, or Flickr could not process it.
+   *
+   * @param file the file that failed.
+   * @param e    the reason for the failure.
+   */
+  void onFailure(File file, JinxException e);
+}
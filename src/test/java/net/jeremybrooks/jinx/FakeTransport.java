@@ -0,0 +1,207 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx;
+
+import net.jeremybrooks.jinx.transport.JinxTransport;
+import net.jeremybrooks.jinx.transport.TransportRequest;
+import net.jeremybrooks.jinx.transport.TransportResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * A transport for tests that answers requests without a network.
+ * <br>
+ * Each request is answered with the body returned by a {@link Responder}; a null body is returned as HTTP 503.
+ * The transport counts calls and the largest number of requests in flight at once. With
+ * {@link #awaitConcurrency(int)}, the first requests are held until that many are in flight together, so tests
+ * can check a parallelism limit without sleeping.
+ *
+ * @author Jeremy Brooks
+ */
+public class FakeTransport implements JinxTransport {
+
+  /**
+   * Produces the response body for a request.
+   */
+  @FunctionalInterface
+  public interface Responder {
+    /**
+     * @param request the request.
+     * @return the response body, or null for HTTP 503.
+     * @throws IOException to simulate a transport failure.
+     */
+    String respond(TransportRequest request) throws IOException;
+  }
+
+  private final Responder responder;
+  private final AtomicInteger calls = new AtomicInteger();
+  private final AtomicInteger active = new AtomicInteger();
+  private final AtomicInteger maxActive = new AtomicInteger();
+  private Predicate<TransportRequest> tracked = request -> true;
+  private volatile CountDownLatch gate;
+
+  public FakeTransport(Responder responder) {
+    this.responder = responder;
+  }
+
+  /**
+   * Create a transport that answers with each body in turn, starting over after the last one.
+   *
+   * @param bodies response bodies. A null body is returned as HTTP 503.
+   * @return the transport.
+   */
+  public static FakeTransport of(String... bodies) {
+    AtomicInteger index = new AtomicInteger();
+    return new FakeTransport(request -> bodies[Math.floorMod(index.getAndIncrement(), bodies.length)]);
+  }
+
+  /**
+   * Create a Jinx instance with a fake access token and the default transport.
+   *
+   * @return the Jinx instance.
+   */
+  public static Jinx createJinx() {
+    OAuthAccessToken token = new OAuthAccessToken();
+    token.setOauthToken("token");
+    token.setOauthTokenSecret("secret");
+    return new Jinx("key", "secret", token);
+  }
+
+  /**
+   * Create a Jinx instance with a fake access token that sends requests to a transport.
+   *
+   * @param transport the transport.
+   * @return the Jinx instance.
+   */
+  public static Jinx createJinx(JinxTransport transport) {
+    Jinx jinx = createJinx();
+    jinx.setTransport(transport);
+    return jinx;
+  }
+
+  /**
+   * Create a Jinx instance with a fake access token that answers with each body in turn.
+   *
+   * @param bodies response bodies. A null body is returned as HTTP 503.
+   * @return the Jinx instance.
+   */
+  public static Jinx createJinx(String... bodies) {
+    return createJinx(of(bodies));
+  }
+
+  /**
+   * Read a classpath resource.
+   *
+   * @param name the resource name.
+   * @return the resource as a UTF-8 string.
+   */
+  public static String resource(String name) {
+    try (InputStream in = FakeTransport.class.getResourceAsStream(name)) {
+      if (in == null) {
+        throw new IllegalArgumentException("No resource " + name);
+      }
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[4096];
+      int count;
+      while ((count = in.read(buffer)) != -1) {
+        out.write(buffer, 0, count);
+      }
+      return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Only count and hold requests that match a predicate. By default every request is tracked.
+   *
+   * @param tracked requests to track.
+   * @return this transport.
+   */
+  public FakeTransport track(Predicate<TransportRequest> tracked) {
+    this.tracked = tracked;
+    return this;
+  }
+
+  /**
+   * Hold the first tracked requests until this many are in flight at the same time. Later requests are not held.
+   * A request that waits more than five seconds fails with an IOException.
+   *
+   * @param requests number of requests that must be in flight together.
+   * @return this transport.
+   */
+  public FakeTransport awaitConcurrency(int requests) {
+    this.gate = new CountDownLatch(requests);
+    return this;
+  }
+
+  /**
+   * @return number of requests received.
+   */
+  public int getCalls() {
+    return calls.get();
+  }
+
+  /**
+   * @return the largest number of tracked requests in flight at once.
+   */
+  public int getMaxActive() {
+    return maxActive.get();
+  }
+
+  @Override
+  public TransportResponse execute(TransportRequest request) throws IOException {
+    calls.incrementAndGet();
+    if (!tracked.test(request)) {
+      return respond(request);
+    }
+    maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+    try {
+      CountDownLatch latch = gate;
+      if (latch != null) {
+        latch.countDown();
+        if (!latch.await(5, TimeUnit.SECONDS)) {
+          throw new IOException("Only " + maxActive.get() + " requests were in flight at once.");
+        }
+      }
+      return respond(request);
+    } catch (InterruptedException e) {
+      throw new InterruptedIOException();
+    } finally {
+      active.decrementAndGet();
+    }
+  }
+
+  private TransportResponse respond(TransportRequest request) throws IOException {
+    String body = responder.respond(request);
+    if (body == null) {
+      return new TransportResponse(503, null, null);
+    }
+    return new TransportResponse(200, null, new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx;
+
+import net.jeremybrooks.jinx.api.PhotosLicensesApi;
+import net.jeremybrooks.jinx.response.photos.licenses.Licenses;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests asynchronous calls using a stub transport.
+ *
+ * @author Jeremy Brooks
+ */
+public class JinxAsyncTest {
+
+  private static final String LICENSES = "{\"licenses\":{\"license\":[{\"id\":0,\"name\":\"All Rights Reserved\",\"url\":\"\"}]},\"stat\":\"ok\"}";
+  private static final String ERROR = "{\"stat\":\"fail\",\"code\":1,\"message\":\"Photo not found\"}";
+
+  @Test
+  public void testAsync() throws Exception {
+    Jinx jinx = FakeTransport.createJinx(LICENSES);
+    PhotosLicensesApi api = new PhotosLicensesApi(jinx);
+    List<CompletableFuture<Licenses>> futures = new ArrayList<>();
+    for (int i = 0; i < 50; i++) {
+      futures.add(jinx.async(api::getInfo));
+    }
+    CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get();
+    for (CompletableFuture<Licenses> future : futures) {
+      assertEquals("All Rights Reserved", future.get().getLicenseList().get(0).getName());
+    }
+  }
+
+  @Test
+  public void testFlickrGetAsyncWithExecutor() throws Exception {
+    AtomicReference<String> thread = new AtomicReference<>();
+    Jinx jinx = FakeTransport.createJinx(new FakeTransport(request -> {
+      thread.set(Thread.currentThread().getName());
+      return LICENSES;
+    }));
+    ExecutorService executor = Executors.newSingleThreadExecutor(r -> new Thread(r, "test-executor"));
+    jinx.setExecutor(executor);
+    Map<String, String> params = new TreeMap<>();
+    params.put("method", "flickr.photos.licenses.getInfo");
+    jinx.flickrGetAsync(params, Licenses.class).get();
+    assertEquals("test-executor", thread.get());
+    executor.shutdown();
+  }
+
+  @Test
+  public void testAsyncError() throws Exception {
+    Jinx jinx = FakeTransport.createJinx(ERROR);
+    Map<String, String> params = new TreeMap<>();
+    params.put("method", "flickr.photos.getInfo");
+    try {
+      jinx.flickrGetAsync(params, Licenses.class).get();
+      fail();
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof JinxException);
+      assertEquals(1, ((JinxException) e.getCause()).getFlickrErrorCode());
+    }
+  }
+}
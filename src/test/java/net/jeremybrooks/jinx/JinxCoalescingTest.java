@@ -0,0 +1,162 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx;
+
+import net.jeremybrooks.jinx.logger.JinxLogger;
+import net.jeremybrooks.jinx.logger.LogInterface;
+import net.jeremybrooks.jinx.response.photos.licenses.Licenses;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests request coalescing using a stub transport.
+ *
+ * @author Jeremy Brooks
+ */
+public class JinxCoalescingTest {
+
+  private static final String LICENSES = "{\"licenses\":{\"license\":[{\"id\":0,\"name\":\"All Rights Reserved\",\"url\":\"\"}]},\"stat\":\"ok\"}";
+  private static final String ERROR = "{\"stat\":\"fail\",\"code\":1,\"message\":\"Photo not found\"}";
+
+  private final CountDownLatch release = new CountDownLatch(1);
+  /* counts callers that reached the transport or joined the call in flight */
+  private final CountDownLatch arrived = new CountDownLatch(8);
+  private FakeTransport transport;
+
+  @Before
+  public void setUp() {
+    JinxLogger.setLogger(new LogInterface() {
+      @Override
+      public void log(String message) {
+        if (message.startsWith("Waiting for identical request")) {
+          arrived.countDown();
+        }
+      }
+
+      @Override
+      public void log(String message, Throwable t) {
+      }
+    });
+  }
+
+  @After
+  public void tearDown() {
+    JinxLogger.setLogger(null);
+  }
+
+  private Jinx createJinx(String response) {
+    transport = new FakeTransport(request -> {
+      arrived.countDown();
+      try {
+        release.await(5, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        throw new InterruptedIOException();
+      }
+      return response;
+    });
+    Jinx jinx = FakeTransport.createJinx(transport);
+    jinx.setVerboseLogging(true);
+    return jinx;
+  }
+
+  private List<CompletableFuture<Licenses>> callConcurrently(Jinx jinx, ExecutorService executor) throws Exception {
+    Map<String, String> params = new TreeMap<>();
+    params.put("method", "flickr.photos.licenses.getInfo");
+    List<CompletableFuture<Licenses>> futures = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      futures.add(CompletableFuture.supplyAsync(() -> {
+        try {
+          return jinx.flickrGet(params, Licenses.class);
+        } catch (JinxException e) {
+          throw new RuntimeException(e);
+        }
+      }, executor));
+    }
+    assertTrue(arrived.await(5, TimeUnit.SECONDS));
+    release.countDown();
+    CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).exceptionally(t -> null).get(5, TimeUnit.SECONDS);
+    return futures;
+  }
+
+  @Test
+  public void testCoalescing() throws Exception {
+    Jinx jinx = createJinx(LICENSES);
+    assertFalse(jinx.isCoalescing());
+    jinx.setCoalescing(true);
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      for (CompletableFuture<Licenses> future : callConcurrently(jinx, executor)) {
+        assertEquals("All Rights Reserved", future.get().getLicenseList().get(0).getName());
+      }
+      assertEquals(1, transport.getCalls());
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testNoCoalescing() throws Exception {
+    Jinx jinx = createJinx(LICENSES);
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      callConcurrently(jinx, executor);
+      assertEquals(8, transport.getCalls());
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testCoalescingError() throws Exception {
+    Jinx jinx = createJinx(ERROR);
+    jinx.setCoalescing(true);
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      for (CompletableFuture<Licenses> future : callConcurrently(jinx, executor)) {
+        try {
+          future.get();
+          fail();
+        } catch (ExecutionException e) {
+          assertTrue(e.getCause().getCause() instanceof JinxException);
+          assertEquals(1, ((JinxException) e.getCause().getCause()).getFlickrErrorCode());
+        }
+      }
+      assertEquals(1, transport.getCalls());
+    } finally {
+      executor.shutdown();
+    }
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx;
+
+import net.jeremybrooks.jinx.logger.JinxLogger;
+import net.jeremybrooks.jinx.logger.LogInterface;
+import net.jeremybrooks.jinx.response.photos.Photos;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests how Jinx reads responses returned by the transport.
+ *
+ * @author Jeremy Brooks
+ */
+public class JinxResponseTest {
+
+  @After
+  public void tearDown() {
+    JinxLogger.setLogger(null);
+  }
+
+  private Map<String, String> searchParams() {
+    Map<String, String> params = new TreeMap<>();
+    params.put("method", "flickr.photos.search");
+    return params;
+  }
+
+  @Test
+  public void testParseFromStream() throws Exception {
+    Photos photos = FakeTransport.createJinx(FakeTransport.resource("/response/photos/sample_search.json")).flickrGet(searchParams(), Photos.class);
+    assertEquals(799, (int) photos.getTotal());
+    assertEquals(5, photos.getPhotoList().size());
+    assertEquals("14256698876", photos.getPhotoList().get(0).getPhotoId());
+  }
+
+  @Test
+  public void testParseWithVerboseLogging() throws Exception {
+    List<String> messages = new ArrayList<>();
+    JinxLogger.setLogger(new LogInterface() {
+      public void log(String message) {
+        messages.add(message);
+      }
+
+      public void log(String message, Throwable t) {
+        messages.add(message);
+      }
+    });
+    Jinx jinx = FakeTransport.createJinx(FakeTransport.resource("/response/photos/sample_search.json"));
+    jinx.setVerboseLogging(true);
+    Photos photos = jinx.flickrGet(searchParams(), Photos.class);
+    assertEquals(5, photos.getPhotoList().size());
+    assertTrue(messages.stream().anyMatch(m -> m.startsWith("RESPONSE is") && m.contains("14256698876")));
+  }
+
+  @Test
+  public void testEmptyResponse() throws Exception {
+    try {
+      FakeTransport.createJinx("").flickrGet(searchParams(), Photos.class);
+      fail();
+    } catch (JinxException e) {
+      assertEquals("Null return from call to Flickr.", e.getMessage());
+    }
+  }
+
+  @Test
+  public void testInvalidResponse() throws Exception {
+    try {
+      FakeTransport.createJinx("<html>Service Unavailable</html>").flickrGet(searchParams(), Photos.class);
+      fail();
+    } catch (JinxException e) {
+      assertEquals("Unable to parse response from Flickr.", e.getMessage());
+    }
+  }
+}
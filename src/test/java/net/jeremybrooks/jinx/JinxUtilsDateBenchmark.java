@@ -0,0 +1,74 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx;
+
+import java.util.Date;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures multi-threaded throughput of the date formatting and parsing methods in {@link JinxUtils}.
+ * <br>
+ * This is not run as part of the test suite. Run it from the command line after building the test classes:
+ * <br>
+ * {@code java -cp target/classes:target/test-classes net.jeremybrooks.jinx.JinxUtilsDateBenchmark [threads] [seconds]}
+ *
+ * @author Jeremy Brooks
+ */
+public class JinxUtilsDateBenchmark {
+
+  public static void main(String[] args) throws Exception {
+    int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+    int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+
+    // warm up
+    run(maxThreads, 1);
+    for (int threads = 1; threads <= maxThreads; threads *= 2) {
+      long ops = run(threads, seconds);
+      System.out.printf("threads=%-3d ops/sec=%,d%n", threads, ops / seconds);
+    }
+  }
+
+  /*
+   * Format and parse a date and time, a date, and a timestamp on each thread, until time runs out.
+   * Returns the total number of operations.
+   */
+  private static long run(int threads, int seconds) throws InterruptedException {
+    LongAdder ops = new LongAdder();
+    CountDownLatch done = new CountDownLatch(threads);
+    long end = System.nanoTime() + seconds * 1000000000L;
+    for (int t = 0; t < threads; t++) {
+      Thread thread = new Thread(() -> {
+        Date date = new Date();
+        long count = 0;
+        while (System.nanoTime() < end) {
+          String mysql = JinxUtils.formatDateAsMySqlTimestamp(date);
+          JinxUtils.parseMySqlDatetimeToDate(mysql);
+          JinxUtils.formatDateAsYMD(date);
+          JinxUtils.parseTimestampToDate(JinxUtils.formatDateAsUnixTimestamp(date));
+          count += 4;
+        }
+        ops.add(count);
+        done.countDown();
+      });
+      thread.start();
+    }
+    done.await();
+    return ops.sum();
+  }
+}
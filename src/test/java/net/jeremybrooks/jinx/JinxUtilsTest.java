@@ -19,11 +19,20 @@ package net.jeremybrooks.jinx;
 
 import org.junit.Test;
 
+import java.text.ParseException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.zone.ZoneRules;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.GregorianCalendar;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static junit.framework.TestCase.assertFalse;
 import static junit.framework.TestCase.assertTrue;
@@ -333,6 +342,83 @@ public class JinxUtilsTest {
         assertNull(JinxUtils.parseTimestampToDate(""));
     }
 
+    @Test
+    public void testJavaTime() throws Exception {
+        assertEquals("1999-04-03", JinxUtils.formatYMD(LocalDate.of(1999, 4, 3)));
+        assertEquals("", JinxUtils.formatYMD(null));
+        assertEquals(LocalDate.of(1999, 4, 3), JinxUtils.parseYMD("1999-04-03"));
+        try {
+            JinxUtils.parseYMD("April 3, 1999");
+            fail();
+        } catch (ParseException e) {
+            // expected
+        }
+
+        LocalDateTime dateTime = LocalDateTime.of(2004, 11, 29, 16, 1, 26);
+        assertEquals("2004-11-29 16:01:26", JinxUtils.formatMySqlTimestamp(dateTime));
+        assertEquals("", JinxUtils.formatMySqlTimestamp(null));
+        assertEquals(dateTime, JinxUtils.parseMySqlDatetime("2004-11-29 16:01:26"));
+        assertEquals(dateTime, JinxUtils.parseMySqlDatetime("2004-11-29 16:01:26.0"));
+        assertNull(JinxUtils.parseMySqlDatetime("not a date"));
+        assertNull(JinxUtils.parseMySqlDatetime(null));
+        assertEquals(JinxUtils.toDate(dateTime), JinxUtils.parseMySqlDatetimeToDate("2004-11-29 16:01:26"));
+
+        // out of range fields roll over, as they did with SimpleDateFormat
+        assertEquals(LocalDateTime.of(2004, 12, 1, 10, 0), JinxUtils.parseMySqlDatetime("2004-11-31 10:00:00"));
+        assertEquals(LocalDateTime.of(-1, 11, 30, 0, 0), JinxUtils.parseMySqlDatetime("0000-00-00 00:00:00"));
+        assertNotNull(JinxUtils.parseMySqlDatetimeToDate("0000-00-00 00:00:00"));
+        assertEquals(LocalDate.of(-1, 11, 30), JinxUtils.parseYMD("0000-00-00"));
+        assertNotNull(JinxUtils.parseYMDToDate("0000-00-00"));
+
+        // single digit fields parse, as they did with SimpleDateFormat
+        assertEquals(LocalDate.of(2018, 1, 5), JinxUtils.parseYMD("2018-1-5"));
+        assertEquals(JinxUtils.toDate(LocalDate.of(2018, 1, 5)), JinxUtils.parseYMDToDate("2018-1-5"));
+        assertEquals(LocalDateTime.of(2018, 1, 5, 1, 2, 3), JinxUtils.parseMySqlDatetime("2018-01-05 1:02:03"));
+        assertEquals(JinxUtils.toDate(LocalDateTime.of(2018, 1, 5, 1, 2, 3)),
+                JinxUtils.parseMySqlDatetimeToDate("2018-01-05 1:02:03"));
+        assertEquals("2018-01-05", JinxUtils.formatYMD(LocalDate.of(2018, 1, 5)));
+
+        Instant instant = Instant.ofEpochSecond(923196824);
+        assertEquals("923196824", JinxUtils.formatUnixTimestamp(instant));
+        assertEquals("", JinxUtils.formatUnixTimestamp(null));
+        assertEquals(instant, JinxUtils.parseTimestamp("923196824"));
+        assertNull(JinxUtils.parseTimestamp("fjsadkfjka"));
+        assertEquals(JinxUtils.toDate(instant), JinxUtils.parseTimestampToDate("923196824"));
+    }
+
+    @Test
+    public void testDateFormattingIsThreadSafe() throws Exception {
+        ZoneRules rules = ZoneId.systemDefault().getRules();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                final int offset = t;
+                results.add(executor.submit(() -> {
+                    for (int i = 0; i < 2000; i++) {
+                        LocalDateTime expected = LocalDateTime.of(2000 + offset, 1 + i % 12, 1 + i % 28, i % 24, i % 60, offset);
+                        if (rules.getValidOffsets(expected).isEmpty()) {
+                            // skipped by a daylight saving gap, so it cannot round trip through Date
+                            continue;
+                        }
+                        Date date = JinxUtils.toDate(expected);
+                        String formatted = JinxUtils.formatDateAsMySqlTimestamp(date);
+                        if (!expected.equals(JinxUtils.parseMySqlDatetime(formatted)) ||
+                                !date.equals(JinxUtils.parseMySqlDatetimeToDate(formatted))) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
     @Test
     public void testFlickrBooleanToBooleanInteger() {
         Integer i = null;
@@ -445,4 +531,14 @@ public class JinxUtilsTest {
         json = JinxUtils.xml2json(replaceAsyncXML);
         System.out.println(json);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testIsWriteMethod() {
+        assertTrue(JinxUtils.isWriteMethod("flickr.photos.delete"));
+        assertTrue(JinxUtils.isWriteMethod("flickr.photosets.addPhoto"));
+        assertTrue(JinxUtils.isWriteMethod("flickr.blogs.postPhoto"));
+        assertFalse(JinxUtils.isWriteMethod("flickr.photos.getInfo"));
+        assertFalse(JinxUtils.isWriteMethod("flickr.photos.search"));
+        assertFalse(JinxUtils.isWriteMethod(null));
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.cache;
+
+import net.jeremybrooks.jinx.FakeTransport;
+import net.jeremybrooks.jinx.Jinx;
+import net.jeremybrooks.jinx.api.PhotosLicensesApi;
+import net.jeremybrooks.jinx.response.Response;
+import net.jeremybrooks.jinx.response.photos.licenses.Licenses;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Jeremy Brooks
+ */
+public class ResponseCacheTest {
+
+  private static final String LICENSES = "{\"licenses\":{\"license\":[{\"id\":0,\"name\":\"All Rights Reserved\",\"url\":\"\"}]},\"stat\":\"ok\"}";
+
+  private final FakeTransport transport = FakeTransport.of(LICENSES);
+
+  @Test
+  public void testCacheableMethods() {
+    ResponseCache cache = new ResponseCache(10, 0, TimeUnit.SECONDS);
+    cache.setTtl("flickr.photos.getSizes", 1, TimeUnit.MINUTES);
+    cache.setTtl("flickr.photos.setMeta", 1, TimeUnit.MINUTES);
+    assertTrue(cache.isCacheable("flickr.photos.getSizes"));
+    assertFalse(cache.isCacheable("flickr.photos.getInfo"));
+    assertFalse(cache.isCacheable("flickr.photos.setMeta"));
+
+    cache = new ResponseCache(10, 1, TimeUnit.MINUTES);
+    assertTrue(cache.isCacheable("flickr.photos.getInfo"));
+    assertFalse(cache.isCacheable("flickr.photos.delete"));
+    assertFalse(cache.isCacheable("flickr.photosets.addPhoto"));
+    assertTrue(cache.isCacheable("flickr.photos.upload.checkTickets"));
+  }
+
+  @Test
+  public void testBuildKey() {
+    Map<String, String> params = new TreeMap<>();
+    params.put("method", "flickr.photos.getInfo");
+    params.put("photo_id", "123");
+    String key = ResponseCache.buildKey(params, Response.class, null);
+    assertEquals(key, ResponseCache.buildKey(new HashMap<>(params), Response.class, null));
+    assertNotEquals(key, ResponseCache.buildKey(params, Licenses.class, null));
+    assertNotEquals(key, ResponseCache.buildKey(params, Response.class, "token"));
+
+    // separators inside values cannot make two parameter sets collide
+    Map<String, String> injected = new TreeMap<>();
+    injected.put("method", "flickr.photos.search");
+    injected.put("text", "cats|x=y");
+    Map<String, String> split = new TreeMap<>();
+    split.put("method", "flickr.photos.search");
+    split.put("text", "cats");
+    split.put("x", "y");
+    assertNotEquals(ResponseCache.buildKey(injected, Response.class, null), ResponseCache.buildKey(split, Response.class, null));
+    Map<String, String> shifted = new TreeMap<>();
+    shifted.put("a", "1|b=2");
+    Map<String, String> pair = new TreeMap<>();
+    pair.put("a", "1");
+    pair.put("b", "2");
+    assertNotEquals(ResponseCache.buildKey(shifted, Response.class, null), ResponseCache.buildKey(pair, Response.class, null));
+  }
+
+  @Test
+  public void testLruEviction() {
+    ResponseCache cache = new ResponseCache(2, 1, TimeUnit.MINUTES);
+    Response a = new Response();
+    Response b = new Response();
+    Response c = new Response();
+    cache.put("flickr.test.echo", "a", a);
+    cache.put("flickr.test.echo", "b", b);
+    assertSame(a, cache.get("a", Response.class));
+    cache.put("flickr.test.echo", "c", c);
+    assertEquals(2, cache.size());
+    assertEquals(1, cache.getEvictionCount());
+    assertNull(cache.get("b", Response.class));
+    assertSame(a, cache.get("a", Response.class));
+    assertSame(c, cache.get("c", Response.class));
+    assertEquals(3, cache.getHitCount());
+    assertEquals(1, cache.getMissCount());
+  }
+
+  @Test
+  public void testExpiry() throws Exception {
+    ResponseCache cache = new ResponseCache(10, 0, TimeUnit.SECONDS);
+    cache.setTtl("flickr.test.echo", 20, TimeUnit.MILLISECONDS);
+    cache.put("flickr.test.echo", "a", new Response());
+    assertEquals(1, cache.size());
+    Thread.sleep(50);
+    assertNull(cache.get("a", Response.class));
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testJinxUsesCache() throws Exception {
+    Jinx jinx = FakeTransport.createJinx(transport);
+    ResponseCache cache = new ResponseCache(10, 0, TimeUnit.SECONDS);
+    cache.setTtl("flickr.photos.licenses.getInfo", 1, TimeUnit.HOURS);
+    jinx.setResponseCache(cache);
+    PhotosLicensesApi api = new PhotosLicensesApi(jinx);
+
+    Licenses first = api.getInfo();
+    Licenses second = api.getInfo();
+    assertSame(first, second);
+    assertEquals(1, transport.getCalls());
+    assertEquals(1, cache.getHitCount());
+
+    // POST is never cached
+    Map<String, String> params = new TreeMap<>();
+    params.put("method", "flickr.photos.licenses.getInfo");
+    jinx.flickrPost(params, Licenses.class);
+    params = new TreeMap<>();
+    params.put("method", "flickr.photos.licenses.getInfo");
+    jinx.flickrPost(params, Licenses.class);
+    assertEquals(3, transport.getCalls());
+  }
+}
@@ -0,0 +1,105 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.concurrent;
+
+import net.jeremybrooks.jinx.JinxException;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Jeremy Brooks
+ */
+public class StepSchedulerTest {
+
+  @Test
+  public void testOrder() throws Exception {
+    // a single worker on the calling thread runs the steps in queue order
+    Recorder recorder = new Recorder(Runnable::run);
+    recorder.schedule(false, () -> {
+      recorder.add("a");
+      recorder.schedule(false, () -> recorder.add("c"));
+      recorder.schedule(true, () -> recorder.add("b"));
+    });
+    recorder.schedule(false, () -> {
+      throw new JinxException("failed");
+    });
+    recorder.queued();
+    assertEquals(Arrays.asList("a", "b", "c"), recorder.getFuture().get(1, TimeUnit.SECONDS));
+    assertEquals(1, recorder.failures.size());
+  }
+
+  @Test
+  public void testNotDoneUntilQueued() {
+    Recorder recorder = new Recorder(Runnable::run);
+    recorder.schedule(false, () -> recorder.add("a"));
+    assertFalse(recorder.getFuture().isDone());
+    recorder.queued();
+    assertTrue(recorder.getFuture().isDone());
+  }
+
+  @Test
+  public void testExecutorRejects() throws Exception {
+    Recorder recorder = new Recorder(command -> {
+      throw new RejectedExecutionException("shut down");
+    });
+    recorder.schedule(false, () -> recorder.add("a"));
+    recorder.queued();
+    try {
+      recorder.getFuture().get(1, TimeUnit.SECONDS);
+      fail("Expected the scheduler to fail.");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof JinxException);
+    }
+  }
+
+  private static class Recorder extends StepScheduler<List<String>> {
+    private final List<String> names = Collections.synchronizedList(new ArrayList<>());
+    private final List<JinxException> failures = Collections.synchronizedList(new ArrayList<>());
+
+    Recorder(Executor executor) {
+      super(executor, 1, "test");
+    }
+
+    void add(String name) {
+      names.add(name);
+    }
+
+    @Override
+    protected List<String> result() {
+      return new ArrayList<>(names);
+    }
+
+    @Override
+    protected void failed(JinxException e) {
+      failures.add(e);
+    }
+  }
+}
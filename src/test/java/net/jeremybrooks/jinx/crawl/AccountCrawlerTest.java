@@ -0,0 +1,194 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.crawl;
+
+import net.jeremybrooks.jinx.FakeTransport;
+import net.jeremybrooks.jinx.Jinx;
+import net.jeremybrooks.jinx.JinxException;
+import net.jeremybrooks.jinx.response.collections.CollectionTree;
+import net.jeremybrooks.jinx.response.photos.Photo;
+import net.jeremybrooks.jinx.response.photosets.Photoset;
+import net.jeremybrooks.jinx.transport.TransportRequest;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Jeremy Brooks
+ */
+public class AccountCrawlerTest {
+
+  /* photoset id to number of photos; set 3 does not exist */
+  private static final int[] PHOTOS = {7, 2, -1, 0, 5};
+
+  @Test
+  public void testCrawl() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      // the first two requests run together on the two threads
+      FakeTransport transport = new FakeTransport(this::respond).awaitConcurrency(2);
+      Jinx jinx = FakeTransport.createJinx(transport);
+      // more workers than threads must not deadlock
+      jinx.setExecutor(executor);
+      AccountCrawler crawler = new AccountCrawler(jinx, 3);
+      crawler.setPerPage(2);
+      Recorder recorder = new Recorder();
+
+      CrawlResult result = crawler.crawl("me", recorder).get(10, TimeUnit.SECONDS);
+
+      assertEquals(3, result.getCollections());
+      assertEquals(Collections.singletonList("child<parent"), recorder.nested);
+      assertEquals(4, result.getPhotosets());
+      assertEquals(14, result.getPhotos());
+      assertEquals(1, result.getFailures().size());
+      assertEquals(1, result.getFailures().get("3").getFlickrErrorCode());
+      assertEquals(5, recorder.photosets.size());
+      for (int i = 1; i <= PHOTOS.length; i++) {
+        String id = Integer.toString(i);
+        if (PHOTOS[i - 1] < 0) {
+          assertNull(recorder.photos.get(id));
+          assertTrue(!recorder.completed.contains(id));
+        } else {
+          List<String> photos = recorder.photos.getOrDefault(id, Collections.emptyList());
+          Collections.sort(photos);
+          List<String> expected = new ArrayList<>();
+          for (int p = 0; p < PHOTOS[i - 1]; p++) {
+            expected.add(id + "-" + p);
+          }
+          Collections.sort(expected);
+          assertEquals(expected, photos);
+          assertTrue(recorder.completed.contains(id));
+        }
+      }
+      assertEquals(5, recorder.lastDone.get());
+      assertEquals(2, transport.getMaxActive());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testVisitorFailure() throws Exception {
+    AccountCrawler crawler = new AccountCrawler(FakeTransport.createJinx(new FakeTransport(this::respond)), 2);
+    CrawlResult result = crawler.crawl(null, (photoset, page, photos) -> {
+      if (photoset.getPhotosetId().equals("5")) {
+        throw new IllegalStateException("export failed");
+      }
+    }).get(10, TimeUnit.SECONDS);
+    assertEquals(3, result.getPhotosets());
+    assertEquals(2, result.getFailures().size());
+    assertTrue(result.getFailures().containsKey("5"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidParallelism() {
+    new AccountCrawler(FakeTransport.createJinx(new FakeTransport(this::respond)), 0);
+  }
+
+  private String respond(TransportRequest request) {
+    String url = request.getUrl();
+    int perPage = url.contains("per_page=") ? Integer.parseInt(url.replaceAll(".*per_page=([0-9]+).*", "$1")) : 500;
+    int page = url.contains("page=") ? Integer.parseInt(url.replaceAll(".*[?&]page=([0-9]+).*", "$1")) : 1;
+    String body;
+    if (url.contains("flickr.collections.getTree")) {
+      body = "{\"collections\":{\"collection\":[{\"id\":\"parent\",\"title\":\"Parent\",\"collection\":[{\"id\":\"child\","
+          + "\"title\":\"Child\",\"set\":[{\"id\":\"1\",\"title\":\"One\"}]}]},{\"id\":\"other\",\"title\":\"Other\","
+          + "\"set\":[{\"id\":\"2\",\"title\":\"Two\"}]}]},\"stat\":\"ok\"}";
+    } else if (url.contains("flickr.photosets.getList")) {
+      StringBuilder sb = new StringBuilder();
+      int pages = (PHOTOS.length + perPage - 1) / perPage;
+      for (int i = (page - 1) * perPage + 1; i <= Math.min(PHOTOS.length, page * perPage); i++) {
+        sb.append(sb.length() == 0 ? "" : ",").append("{\"id\":\"").append(i).append("\",\"title\":{\"_content\":\"Set ")
+            .append(i).append("\"}}");
+      }
+      body = "{\"photosets\":{\"page\":" + page + ",\"pages\":" + pages + ",\"perpage\":" + perPage + ",\"total\":"
+          + PHOTOS.length + ",\"photoset\":[" + sb + "]},\"stat\":\"ok\"}";
+    } else {
+      String id = url.replaceAll(".*photoset_id=([0-9]+).*", "$1");
+      int count = PHOTOS[Integer.parseInt(id) - 1];
+      if (count < 0) {
+        body = "{\"stat\":\"fail\",\"code\":1,\"message\":\"Photoset not found\"}";
+      } else {
+        StringBuilder sb = new StringBuilder();
+        int pages = Math.max(1, (count + perPage - 1) / perPage);
+        for (int p = (page - 1) * perPage; p < Math.min(count, page * perPage); p++) {
+          sb.append(sb.length() == 0 ? "" : ",").append("{\"id\":\"").append(id).append('-').append(p).append("\"}");
+        }
+        body = "{\"photoset\":{\"id\":\"" + id + "\",\"page\":" + page + ",\"pages\":" + pages + ",\"perpage\":" + perPage
+            + ",\"total\":" + count + ",\"photo\":[" + sb + "]},\"stat\":\"ok\"}";
+      }
+    }
+    return body;
+  }
+
+  private static class Recorder implements CrawlVisitor {
+    private final List<String> nested = Collections.synchronizedList(new ArrayList<>());
+    private final Set<String> photosets = ConcurrentHashMap.newKeySet();
+    private final Map<String, List<String>> photos = new ConcurrentHashMap<>();
+    private final Set<String> completed = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger lastDone = new AtomicInteger();
+
+    @Override
+    public void onCollection(CollectionTree.Collection collection, CollectionTree.Collection parent) {
+      if (parent != null) {
+        nested.add(collection.getCollectionId() + "<" + parent.getCollectionId());
+      }
+    }
+
+    @Override
+    public void onPhotoset(Photoset photoset) {
+      photosets.add(photoset.getPhotosetId());
+    }
+
+    @Override
+    public void onPhotos(Photoset photoset, int page, List<Photo> list) {
+      assertTrue(photosets.contains(photoset.getPhotosetId()));
+      List<String> ids = photos.computeIfAbsent(photoset.getPhotosetId(), k -> Collections.synchronizedList(new ArrayList<>()));
+      for (Photo photo : list) {
+        ids.add(photo.getPhotoId());
+      }
+    }
+
+    @Override
+    public void onPhotosetComplete(Photoset photoset) {
+      completed.add(photoset.getPhotosetId());
+    }
+
+    @Override
+    public void onFailure(String key, JinxException e) {
+    }
+
+    @Override
+    public void onProgress(int photosetsDone, int photosetsFound, long photos) {
+      lastDone.accumulateAndGet(photosetsDone, Math::max);
+    }
+  }
+}
@@ -0,0 +1,143 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.enrich;
+
+import net.jeremybrooks.jinx.FakeTransport;
+import net.jeremybrooks.jinx.Jinx;
+import net.jeremybrooks.jinx.JinxException;
+import net.jeremybrooks.jinx.transport.TransportRequest;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Jeremy Brooks
+ */
+public class PhotoEnricherTest {
+
+  private final Map<String, AtomicInteger> callsPerMethod = new ConcurrentHashMap<>();
+
+  @Test
+  public void testEnrich() throws Exception {
+    FakeTransport transport = new FakeTransport(this::respond).awaitConcurrency(2);
+    PhotoEnricher enricher = new PhotoEnricher(FakeTransport.createJinx(transport), 2);
+    EnrichmentResult result = enricher.enrich(Arrays.asList("1", "2", "2", "404", "3"),
+        EnumSet.of(PhotoEnricher.Facet.perms, PhotoEnricher.Facet.sizes)).get(5, TimeUnit.SECONDS);
+
+    assertEquals(Arrays.asList("1", "2", "404", "3"), Arrays.asList(result.getPhotos().keySet().toArray()));
+    assertEquals(1, result.getFailures().size());
+    assertEquals(EnumSet.of(PhotoEnricher.Facet.perms), result.getFailedFacets("404"));
+    assertEquals(1, result.getFailures().get("404").get(PhotoEnricher.Facet.perms).getFlickrErrorCode());
+    assertTrue(result.getFailedFacets("1").isEmpty());
+    for (EnrichedPhoto photo : result.getPhotos().values()) {
+      if (photo.getPhotoId().equals("404")) {
+        assertNull(photo.getPerms());
+      } else {
+        assertEquals(photo.getPhotoId(), photo.getPerms().getPhotoId());
+        assertTrue(photo.getPerms().isPublic());
+      }
+      // a failed facet does not stop the other facets of the same photo
+      assertEquals("Square", photo.getSizes().getSizeList().get(0).getLabel());
+      assertNull(photo.getInfo());
+      assertNull(photo.getLocation());
+    }
+    assertEquals(2, transport.getMaxActive());
+    assertEquals(4, callsPerMethod.get("flickr.photos.getSizes").get());
+    assertEquals(4, callsPerMethod.get("flickr.photos.getPerms").get());
+  }
+
+  @Test
+  public void testExecutorRejects() throws Exception {
+    Jinx jinx = FakeTransport.createJinx();
+    jinx.setExecutor(command -> {
+      throw new RejectedExecutionException("shut down");
+    });
+    CompletableFuture<EnrichmentResult> future = new PhotoEnricher(jinx, 2).enrich(Arrays.asList("1"),
+        EnumSet.of(PhotoEnricher.Facet.info));
+    try {
+      future.get(1, TimeUnit.SECONDS);
+      fail("Expected the enrichment to fail.");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof JinxException);
+    }
+  }
+
+  @Test
+  public void testLaterWorkerRejected() throws Exception {
+    FakeTransport transport = new FakeTransport(this::respond);
+    Jinx jinx = FakeTransport.createJinx(transport);
+    List<Runnable> accepted = new ArrayList<>();
+    jinx.setExecutor(command -> {
+      if (!accepted.isEmpty()) {
+        throw new RejectedExecutionException("saturated");
+      }
+      accepted.add(command);
+    });
+    CompletableFuture<EnrichmentResult> future = new PhotoEnricher(jinx, 2).enrich(Arrays.asList("1", "2"),
+        EnumSet.of(PhotoEnricher.Facet.perms));
+    assertTrue(future.isCompletedExceptionally());
+    // the worker that was accepted does not call Flickr for a result nobody can get
+    accepted.get(0).run();
+    assertEquals(0, transport.getCalls());
+  }
+
+  @Test
+  public void testEnrichEmpty() throws Exception {
+    EnrichmentResult result = new PhotoEnricher(FakeTransport.createJinx(), 2).enrich(Arrays.asList(),
+        EnumSet.of(PhotoEnricher.Facet.info)).get(1, TimeUnit.SECONDS);
+    assertTrue(result.getPhotos().isEmpty());
+    assertTrue(result.getFailures().isEmpty());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidParallelism() {
+    new PhotoEnricher(FakeTransport.createJinx(), 0);
+  }
+
+  private String respond(TransportRequest request) {
+    String url = request.getUrl();
+    String method = url.contains("flickr.photos.getPerms") ? "flickr.photos.getPerms" : "flickr.photos.getSizes";
+    callsPerMethod.computeIfAbsent(method, k -> new AtomicInteger()).incrementAndGet();
+    String id = url.replaceAll(".*photo_id=([0-9]+).*", "$1");
+    String body;
+    if (id.equals("404") && method.equals("flickr.photos.getPerms")) {
+      body = "{\"stat\":\"fail\",\"code\":1,\"message\":\"Photo not found\"}";
+    } else if (method.equals("flickr.photos.getPerms")) {
+      body = "{\"perms\":{\"id\":\"" + id + "\",\"ispublic\":1,\"isfriend\":0,\"isfamily\":0,\"permcomment\":3,\"permaddmeta\":2},\"stat\":\"ok\"}";
+    } else {
+      body = "{\"sizes\":{\"canblog\":0,\"canprint\":0,\"candownload\":1,\"size\":[{\"label\":\"Square\",\"width\":75,\"height\":75,"
+          + "\"source\":\"https://farm1.staticflickr.com/1/" + id + "_s.jpg\",\"url\":\"\",\"media\":\"photo\"}]},\"stat\":\"ok\"}";
+    }
+    return body;
+  }
+}
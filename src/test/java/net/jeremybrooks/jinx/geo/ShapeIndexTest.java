@@ -0,0 +1,147 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.geo;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Jeremy Brooks
+ */
+public class ShapeIndexTest {
+
+  private static Properties polylines;
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    polylines = new Properties();
+    try (InputStream in = ShapeIndexTest.class.getResourceAsStream("/response/places/polylines.properties")) {
+      polylines.load(in);
+    }
+  }
+
+  @Test
+  public void testParseMatchesParseDouble() {
+    for (String key : polylines.stringPropertyNames()) {
+      String polyline = polylines.getProperty(key);
+      Polygon polygon = Polygon.parse(polyline);
+      String[] points = polyline.trim().split("\\s+");
+      assertEquals(points.length, polygon.size());
+      for (int i = 0; i < points.length; i++) {
+        String[] coords = points[i].split(",");
+        assertEquals(Double.parseDouble(coords[0]), polygon.getLatitude(i), 0);
+        assertEquals(Double.parseDouble(coords[1]), polygon.getLongitude(i), 0);
+      }
+    }
+  }
+
+  @Test
+  public void testParseLongDecimals() {
+    Polygon polygon = Polygon.parse("1.12345678901234567890123,-2.5 -0.000000000000000000001,3 4,5e1");
+    assertEquals(Double.parseDouble("1.12345678901234567890123"), polygon.getLatitude(0), 0);
+    assertEquals(-2.5, polygon.getLongitude(0), 0);
+    assertEquals(Double.parseDouble("-0.000000000000000000001"), polygon.getLatitude(1), 0);
+    assertEquals(50, polygon.getLongitude(2), 0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testParseBadInput() {
+    Polygon.parse("1.0,2.0 3.0");
+  }
+
+  @Test
+  public void testShapeFromPolyline() {
+    Polygon ring = Polygon.parse(polylines.getProperty("test.getShapeHistory"));
+    PlaceShape shape = new PlaceShape("1", null, null, "neighbourhood", Collections.singletonList(ring));
+    assertTrue(shape.contains(37.76, -122.42));
+    assertFalse(shape.contains(40.7128, -74.0060));
+    assertFalse(shape.contains(ring.getMaxLatitude() + 0.01, ring.getMaxLongitude()));
+  }
+
+  @Test
+  public void testIndexPlaceShapes() {
+    PlaceShape california = new PlaceShape("california", null, "California", "region",
+        Collections.singletonList(Polygon.parse(polylines.getProperty("test.getInfo"))));
+    PlaceShape mission = new PlaceShape("mission", null, "Mission", "neighbourhood",
+        Collections.singletonList(Polygon.parse(polylines.getProperty("test.getShapeHistory"))));
+    ShapeIndex index = new ShapeIndex();
+    index.add(california);
+    index.add(mission);
+    assertEquals("mission", index.find(37.76, -122.42).getPlaceId());
+    assertEquals("california", index.find(37.7749, -122.4194).getPlaceId());
+    assertEquals("california", index.find(34.05, -118.24).getPlaceId());
+    assertNull(index.find(36.17, -115.14));
+  }
+
+  @Test
+  public void testHole() {
+    PlaceShape donut = new PlaceShape("donut", null, null, "region", Arrays.asList(square(0, 0, 10), square(4, 4, 2)));
+    assertTrue(donut.contains(1, 1));
+    assertFalse(donut.contains(5, 5));
+    assertFalse(donut.contains(11, 11));
+    assertEquals(96, donut.getArea(), 0.0001);
+  }
+
+  @Test
+  public void testIndex() {
+    ShapeIndex index = new ShapeIndex(2);
+    PlaceShape region = new PlaceShape("region", null, "Region", "region", Collections.singletonList(square(0, 0, 10)));
+    PlaceShape city = new PlaceShape("city", null, "City", "locality", Collections.singletonList(square(1, 1, 3)));
+    PlaceShape other = new PlaceShape("other", null, "Other", "locality", Collections.singletonList(square(-20, -20, 1)));
+    index.add(region);
+    index.add(city);
+    index.add(other);
+    assertEquals(3, index.size());
+
+    assertEquals("city", index.find(2, 2).getPlaceId());
+    assertEquals("region", index.find(2, 2, "region").getPlaceId());
+    assertEquals("region", index.find(8, 8).getPlaceId());
+    assertNull(index.find(50, 50));
+    List<PlaceShape> all = index.findAll(2, 2);
+    assertEquals(2, all.size());
+    assertEquals("city", all.get(0).getPlaceId());
+    assertEquals("region", all.get(1).getPlaceId());
+
+    // replacing a shape moves it
+    index.add(new PlaceShape("city", null, "City", "locality", Collections.singletonList(square(6, 6, 1))));
+    assertEquals(3, index.size());
+    assertEquals("region", index.find(2, 2).getPlaceId());
+    assertEquals("city", index.find(6.5, 6.5).getPlaceId());
+
+    assertTrue(index.remove("region"));
+    assertFalse(index.remove("region"));
+    assertNull(index.find(2, 2));
+    assertEquals("other", index.find(-19.5, -19.5).getPlaceId());
+  }
+
+  private static Polygon square(double lat, double lon, double size) {
+    return new Polygon(new double[]{lat, lat + size, lat + size, lat, lat},
+        new double[]{lon, lon, lon + size, lon + size, lon});
+  }
+}
@@ -0,0 +1,226 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.image;
+
+import com.google.gson.Gson;
+import net.jeremybrooks.jinx.JinxConstants;
+import net.jeremybrooks.jinx.JinxException;
+import net.jeremybrooks.jinx.PhotoUtils;
+import net.jeremybrooks.jinx.response.photos.Photo;
+import net.jeremybrooks.jinx.transport.TransportResponse;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Jeremy Brooks
+ */
+public class ImageCacheTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private final AtomicInteger fetches = new AtomicInteger();
+  private byte[] png;
+
+  @Before
+  public void setUp() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ImageIO.write(new BufferedImage(4, 3, BufferedImage.TYPE_INT_RGB), "png", out);
+    png = out.toByteArray();
+  }
+
+  @Test
+  public void testTiers() throws Exception {
+    Path dir = folder.getRoot().toPath().resolve("images");
+    ImageCache cache = createCache(dir, 1024 * 1024, 1024 * 1024);
+    Photo photo = photo("1");
+
+    byte[] bytes = cache.getBytes(JinxConstants.PhotoSize.SIZE_THUMBNAIL, photo);
+    assertArrayEquals(png, bytes);
+    assertEquals(1, fetches.get());
+    assertEquals(1, cache.getMisses());
+
+    cache.getBytes(JinxConstants.PhotoSize.SIZE_THUMBNAIL, photo);
+    assertEquals(1, fetches.get());
+    assertEquals(1, cache.getMemoryHits());
+
+    BufferedImage image = cache.getImage(JinxConstants.PhotoSize.SIZE_THUMBNAIL, photo);
+    assertEquals(4, image.getWidth());
+    assertEquals(1, fetches.get());
+
+    // a new cache on the same directory uses the files already on disk
+    ImageCache reopened = createCache(dir, 1024 * 1024, 0);
+    assertEquals(1, reopened.getDiskCount());
+    Path path = reopened.getPath(PhotoUtils.getUrlForSize(JinxConstants.PhotoSize.SIZE_THUMBNAIL, photo));
+    assertArrayEquals(png, Files.readAllBytes(path));
+    assertEquals(1, fetches.get());
+    assertEquals(1, reopened.getDiskHits());
+    assertEquals(0, reopened.getMemoryBytes());
+  }
+
+  @Test
+  public void testDiskEviction() throws Exception {
+    ImageCache cache = createCache(folder.getRoot().toPath(), png.length * 2, 0);
+    Path first = cache.getPath(JinxConstants.PhotoSize.SIZE_SMALL, photo("1"));
+    Path second = cache.getPath(JinxConstants.PhotoSize.SIZE_SMALL, photo("2"));
+    cache.getPath(JinxConstants.PhotoSize.SIZE_SMALL, photo("1"));
+    cache.getPath(JinxConstants.PhotoSize.SIZE_SMALL, photo("3"));
+
+    assertEquals(2, cache.getDiskCount());
+    assertTrue(cache.getDiskBytes() <= png.length * 2);
+    assertTrue(Files.exists(first));
+    assertFalse(Files.exists(second));
+    assertEquals(3, fetches.get());
+
+    cache.clear();
+    assertEquals(0, cache.getDiskCount());
+    assertEquals(0, cache.getDiskBytes());
+    assertFalse(Files.exists(first));
+  }
+
+  @Test
+  public void testOtherFilesKept() throws Exception {
+    Path dir = folder.getRoot().toPath();
+    Path notes = Files.write(dir.resolve("notes.txt"), new byte[png.length * 4]);
+    Path jpeg = Files.write(dir.resolve("holiday.jpg"), new byte[png.length]);
+    ImageCache cache = createCache(dir, png.length * 2, 0);
+    assertEquals(0, cache.getDiskCount());
+    for (int i = 0; i < 4; i++) {
+      cache.getPath(JinxConstants.PhotoSize.SIZE_SMALL, photo(Integer.toString(i)));
+    }
+    assertEquals(2, cache.getDiskCount());
+    assertTrue(Files.exists(notes));
+    assertTrue(Files.exists(jpeg));
+    cache.clear();
+    assertTrue(Files.exists(notes));
+    assertTrue(Files.exists(jpeg));
+  }
+
+  @Test
+  public void testFileDeleted() throws Exception {
+    ImageCache cache = createCache(folder.getRoot().toPath(), 1024 * 1024, 0);
+    Path path = cache.getPath(JinxConstants.PhotoSize.SIZE_SMALL, photo("1"));
+    Files.delete(path);
+    // the missing file is a miss, not an error
+    assertArrayEquals(png, cache.getBytes(JinxConstants.PhotoSize.SIZE_SMALL, photo("1")));
+    assertEquals(2, fetches.get());
+    assertEquals(1, cache.getDiskCount());
+    assertEquals(png.length, cache.getDiskBytes());
+  }
+
+  @Test
+  public void testSingleDownload() throws Exception {
+    ImageCache cache = createCache(folder.getRoot().toPath(), 1024 * 1024, 1024 * 1024);
+    cache.setTransport(request -> {
+      fetches.incrementAndGet();
+      try {
+        Thread.sleep(50);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return new TransportResponse(200, null, new ByteArrayInputStream(png));
+    });
+    URL url = PhotoUtils.getUrlForSize(JinxConstants.PhotoSize.SIZE_LARGE, photo("1"));
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<byte[]>> results = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        results.add(executor.submit(() -> cache.getBytes(url)));
+      }
+      for (Future<byte[]> result : results) {
+        assertArrayEquals(png, result.get(5, TimeUnit.SECONDS));
+      }
+    } finally {
+      executor.shutdown();
+    }
+    assertEquals(1, fetches.get());
+  }
+
+  @Test
+  public void testPrefetch() throws Exception {
+    ImageCache cache = createCache(folder.getRoot().toPath(), 1024 * 1024, 1024 * 1024);
+    List<Photo> photos = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      photos.add(photo(Integer.toString(i)));
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      assertEquals(Integer.valueOf(10), cache.prefetch(photos, JinxConstants.PhotoSize.SIZE_MEDIUM, executor).get(5, TimeUnit.SECONDS));
+    } finally {
+      executor.shutdown();
+    }
+    assertEquals(10, fetches.get());
+    assertEquals(10, cache.getDiskCount());
+    assertNotNull(cache.getImage(JinxConstants.PhotoSize.SIZE_MEDIUM, photos.get(5)));
+    assertEquals(10, fetches.get());
+  }
+
+  @Test
+  public void testNotFound() throws Exception {
+    ImageCache cache = createCache(folder.getRoot().toPath(), 1024, 1024);
+    cache.setTransport(request -> new TransportResponse(404, null, new ByteArrayInputStream(new byte[0])));
+    try {
+      cache.getPath(JinxConstants.PhotoSize.SIZE_MEDIUM, photo("1"));
+      fail();
+    } catch (JinxException e) {
+      // expected
+    }
+    assertEquals(0, cache.getDiskCount());
+    try (Stream<Path> files = Files.list(folder.getRoot().toPath())) {
+      assertEquals(0, files.count());
+    }
+  }
+
+  private ImageCache createCache(Path dir, long maxDiskBytes, long maxMemoryBytes) throws JinxException {
+    ImageCache cache = new ImageCache(dir, maxDiskBytes, maxMemoryBytes);
+    cache.setTransport(request -> {
+      fetches.incrementAndGet();
+      return new TransportResponse(200, null, new ByteArrayInputStream(png));
+    });
+    return cache;
+  }
+
+  private Photo photo(String id) {
+    return new Gson().fromJson("{\"id\":\"" + id + "\",\"secret\":\"abc\",\"server\":\"1234\",\"farm\":\"5\"}", Photo.class);
+  }
+}
@@ -0,0 +1,172 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.logger;
+
+import net.jeremybrooks.jinx.Jinx;
+import net.jeremybrooks.jinx.OAuthAccessToken;
+import net.jeremybrooks.jinx.response.Response;
+import net.jeremybrooks.jinx.transport.TransportResponse;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Jeremy Brooks
+ */
+public class JinxLoggerTest {
+
+    private final List<String> lines = new ArrayList<>();
+    private final List<Throwable> causes = new ArrayList<>();
+
+    @After
+    public void tearDown() {
+        JinxLogger.setLogger(null);
+        JinxLogger.setMaxBodyLength(JinxLogger.DEFAULT_MAX_BODY_LENGTH);
+    }
+
+    @Test
+    public void testDefaultLoggerDisabled() {
+        JinxLogger.setLogger(null);
+        assertFalse(JinxLogger.isEnabled(LogLevel.ERROR));
+        JinxLogger.log(LogLevel.ERROR, () -> {
+            fail("Supplier called for a disabled level.");
+            return null;
+        });
+    }
+
+    @Test
+    public void testPattern() {
+        JinxLogger.setLogger(new CapturingLogger(LogLevel.DEBUG));
+        Exception e = new Exception("boom");
+        JinxLogger.log(LogLevel.INFO, "Retrying {} in {}ms", "flickr.photos.getInfo", 100);
+        JinxLogger.log(LogLevel.WARN, "Failed {}", "upload", e);
+        JinxLogger.log(LogLevel.DEBUG, "Missing {} and {}", "one");
+        assertEquals("INFO Retrying flickr.photos.getInfo in 100ms", lines.get(0));
+        assertEquals("WARN Failed upload", lines.get(1));
+        assertEquals("DEBUG Missing one and {}", lines.get(2));
+        assertNull(causes.get(0));
+        assertSame(e, causes.get(1));
+    }
+
+    @Test
+    public void testLevel() {
+        JinxLogger.setLogger(new CapturingLogger(LogLevel.INFO));
+        JinxLogger.log(LogLevel.DEBUG, () -> {
+            fail("Supplier called for a disabled level.");
+            return null;
+        });
+        JinxLogger.event(LogLevel.DEBUG, "ignored", "key", "value");
+        JinxLogger.log(LogLevel.ERROR, () -> "logged");
+        assertEquals(1, lines.size());
+        assertEquals("ERROR logged", lines.get(0));
+        assertTrue(new StdoutLogger(LogLevel.WARN).isEnabled(LogLevel.ERROR));
+        assertFalse(new StdoutLogger(LogLevel.WARN).isEnabled(LogLevel.INFO));
+    }
+
+    @Test
+    public void testRedaction() {
+        JinxLogger.setLogger(new CapturingLogger(LogLevel.DEBUG));
+        Map<String, String> params = new TreeMap<>();
+        params.put("api_key", "my-key");
+        params.put("method", "flickr.test.echo");
+        params.put("oauth_signature", "my-signature");
+        JinxLogger.event(LogLevel.DEBUG, "Calling Flickr", "params", params, "oauth_token", "my-token");
+        String line = lines.get(0);
+        assertFalse(line.contains("my-key"));
+        assertFalse(line.contains("my-signature"));
+        assertFalse(line.contains("my-token"));
+        assertTrue(line.contains("method=flickr.test.echo"));
+        assertTrue(line.contains("api_key=" + JinxLogger.REDACTED));
+        // the caller's map is not changed
+        assertEquals("my-key", params.get("api_key"));
+    }
+
+    @Test
+    public void testTruncate() {
+        JinxLogger.setMaxBodyLength(5);
+        assertEquals("12345", JinxLogger.truncate("12345"));
+        assertEquals("12345...[8 chars]", JinxLogger.truncate("12345678"));
+        assertNull(JinxLogger.truncate(null));
+    }
+
+    @Test
+    public void testVerboseCall() throws Exception {
+        JinxLogger.setLogger(new CapturingLogger(LogLevel.DEBUG));
+        JinxLogger.setMaxBodyLength(10);
+        OAuthAccessToken token = new OAuthAccessToken();
+        token.setOauthToken("my-token");
+        token.setOauthTokenSecret("my-secret");
+        Jinx jinx = new Jinx("my-key", "secret", token);
+        jinx.setVerboseLogging(true);
+        String response = "{\"stat\":\"ok\",\"padding\":\"xxxxxxxxxxxxxxxxxxxx\"}";
+        jinx.setTransport(request ->
+                new TransportResponse(200, null, new ByteArrayInputStream(response.getBytes(StandardCharsets.UTF_8))));
+        Map<String, String> params = new TreeMap<>();
+        params.put("method", "flickr.test.login");
+        jinx.flickrGet(params, Response.class);
+
+        assertEquals(2, lines.size());
+        for (String line : lines) {
+            assertFalse(line.contains("my-key"));
+            assertFalse(line.contains("my-token"));
+        }
+        assertTrue(lines.get(1).contains("[" + response.length() + " chars]"));
+    }
+
+    private class CapturingLogger implements LogInterface {
+        private final LogLevel level;
+
+        CapturingLogger(LogLevel level) {
+            this.level = level;
+        }
+
+        @Override
+        public void log(String message) {
+            fail("Unexpected unstructured message.");
+        }
+
+        @Override
+        public void log(String message, Throwable t) {
+            fail("Unexpected unstructured message.");
+        }
+
+        @Override
+        public boolean isEnabled(LogLevel level) {
+            return level.compareTo(this.level) <= 0;
+        }
+
+        @Override
+        public void log(LogLevel level, String message, Map<String, Object> fields, Throwable t) {
+            lines.add(JinxLogger.appendFields(new StringBuilder(level.name()).append(' ').append(message), fields).toString());
+            causes.add(t);
+        }
+    }
+}
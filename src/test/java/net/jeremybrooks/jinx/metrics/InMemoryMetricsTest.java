@@ -0,0 +1,139 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.metrics;
+
+import net.jeremybrooks.jinx.FakeTransport;
+import net.jeremybrooks.jinx.Jinx;
+import net.jeremybrooks.jinx.JinxConstants;
+import net.jeremybrooks.jinx.JinxException;
+import net.jeremybrooks.jinx.response.Response;
+import net.jeremybrooks.jinx.response.photos.upload.UploadResponse;
+import net.jeremybrooks.jinx.retry.RetryPolicy;
+import net.jeremybrooks.jinx.transport.RequestBody;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Jeremy Brooks
+ */
+public class InMemoryMetricsTest {
+
+  private static final String OK = "{\"stat\":\"ok\"}";
+  private static final String ERROR = "{\"stat\":\"fail\",\"code\":1,\"message\":\"Photo not found\"}";
+  private static final String UPLOADED = "<?xml version=\"1.0\" encoding=\"utf-8\" ?>\n<rsp stat=\"ok\">\n<photoid>1234</photoid>\n</rsp>";
+
+  @Test
+  public void testHistogram() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    assertEquals(0, histogram.getPercentile(50, TimeUnit.MILLISECONDS));
+    for (int i = 1; i <= 100; i++) {
+      histogram.record(TimeUnit.MILLISECONDS.toNanos(i));
+    }
+    assertEquals(100, histogram.getCount());
+    assertEquals(100, histogram.getMax(TimeUnit.MILLISECONDS));
+    assertEquals(50, histogram.getMean(TimeUnit.MILLISECONDS));
+    long p50 = histogram.getPercentile(50, TimeUnit.MILLISECONDS);
+    assertTrue(p50 >= 50 && p50 <= 100);
+    assertEquals(100, histogram.getPercentile(100, TimeUnit.MILLISECONDS));
+    long total = 0;
+    for (long count : histogram.getBucketCounts()) {
+      total += count;
+    }
+    assertEquals(100, total);
+  }
+
+  @Test
+  public void testCalls() throws Exception {
+    InMemoryMetrics metrics = new InMemoryMetrics();
+    Jinx jinx = FakeTransport.createJinx(OK, ERROR);
+    jinx.setMetrics(metrics);
+
+    jinx.flickrGet(params("flickr.photos.getInfo"), Response.class);
+    try {
+      jinx.flickrGet(params("flickr.photos.getInfo"), Response.class);
+      fail();
+    } catch (JinxException e) {
+      assertEquals(1, e.getFlickrErrorCode());
+    }
+
+    MethodStats stats = metrics.getMethodStats("flickr.photos.getInfo");
+    assertNotNull(stats);
+    assertEquals(2, stats.getCalls());
+    assertEquals(1, stats.getErrors());
+    assertEquals(Long.valueOf(1), stats.getErrorCodes().get(1));
+    assertEquals(Long.valueOf(2), stats.getHttpStatuses().get(200));
+    assertEquals(OK.length() + ERROR.length(), stats.getBytesReceived());
+    assertEquals(0, stats.getInFlight());
+    assertEquals(0, metrics.getInFlight());
+    assertEquals(2, stats.getLatency().getCount());
+    assertNull(metrics.getMethodStats("flickr.photos.search"));
+  }
+
+  @Test
+  public void testRetries() throws Exception {
+    InMemoryMetrics metrics = new InMemoryMetrics();
+    List<CallEvent> events = new ArrayList<>();
+    Jinx jinx = FakeTransport.createJinx(null, OK);
+    jinx.setRetryPolicy(new RetryPolicy(3, 1, 1, TimeUnit.MILLISECONDS));
+    jinx.setMetrics(JinxMetrics.combine(metrics, events::add));
+
+    jinx.flickrGet(params("flickr.photos.search"), Response.class);
+
+    assertEquals(1, metrics.getMethodStats("flickr.photos.search").getRetries());
+    assertEquals(1, events.size());
+    CallEvent event = events.get(0);
+    assertEquals(2, event.getAttempts());
+    assertEquals(1, event.getRetries());
+    assertEquals(200, event.getHttpStatus());
+    assertEquals(JinxConstants.Method.GET, event.getHttpMethod());
+    assertTrue(!event.isError());
+  }
+
+  @Test
+  public void testUpload() throws Exception {
+    InMemoryMetrics metrics = new InMemoryMetrics();
+    Jinx jinx = FakeTransport.createJinx(UPLOADED);
+    jinx.setMetrics(metrics);
+    byte[] photo = new byte[1000];
+
+    Map<String, String> params = new TreeMap<>();
+    jinx.flickrUpload(params, RequestBody.of(photo), UploadResponse.class);
+
+    MethodStats stats = metrics.getMethodStats(CallEvent.UPLOAD);
+    assertEquals(1, stats.getCalls());
+    assertTrue(stats.getBytesSent() > photo.length);
+    assertEquals(UPLOADED.length(), stats.getBytesReceived());
+  }
+
+  private Map<String, String> params(String method) {
+    Map<String, String> params = new TreeMap<>();
+    params.put("method", method);
+    return params;
+  }
+}
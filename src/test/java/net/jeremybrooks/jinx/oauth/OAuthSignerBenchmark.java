@@ -0,0 +1,107 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.oauth;
+
+import net.jeremybrooks.jinx.JinxConstants;
+import org.scribe.builder.ServiceBuilder;
+import org.scribe.builder.api.FlickrApi;
+import org.scribe.model.OAuthRequest;
+import org.scribe.model.Token;
+import org.scribe.model.Verb;
+import org.scribe.oauth.OAuthService;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compares multi-threaded throughput of signing requests with {@link OAuthSigner} and with Scribe.
+ * <br>
+ * This is not run as part of the test suite. Run it from the command line after building the test classes:
+ * <br>
+ * {@code java -cp target/classes:target/test-classes:[scribe and jaxb jars] net.jeremybrooks.jinx.oauth.OAuthSignerBenchmark [threads] [seconds]}
+ *
+ * @author Jeremy Brooks
+ */
+public class OAuthSignerBenchmark {
+
+  private static final String URL = "https://api.flickr.com/services/rest/";
+
+  public static void main(String[] args) throws Exception {
+    int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+    int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+
+    // warm up
+    run(maxThreads, 1, true);
+    run(maxThreads, 1, false);
+    for (int threads = 1; threads <= maxThreads; threads *= 2) {
+      long jinx = run(threads, seconds, true);
+      long scribe = run(threads, seconds, false);
+      System.out.printf("threads=%-3d jinx ops/sec=%,d scribe ops/sec=%,d%n", threads, jinx / seconds, scribe / seconds);
+    }
+  }
+
+  /*
+   * Sign a typical search request on each thread, until time runs out.
+   * Returns the total number of requests signed.
+   */
+  private static long run(int threads, int seconds, boolean jinx) throws InterruptedException {
+    OAuthSigner signer = new OAuthSigner("consumer-key", "consumer-secret");
+    OAuthService service = new ServiceBuilder().provider(FlickrApi.class).apiKey("consumer-key").apiSecret("consumer-secret").build();
+    Token token = new Token("72157632924811715-b9b1f0bf94982fba", "d25a168a2e923649");
+    Map<String, String> params = new TreeMap<>();
+    params.put("method", "flickr.photos.search");
+    params.put("user_id", "85853333@N00");
+    params.put("text", "golden gate bridge at sunset");
+    params.put("extras", "date_taken,geo,tags,url_o,url_m");
+    params.put("per_page", "500");
+    params.put("page", "3");
+    params.put("format", "json");
+    params.put("nojsoncallback", "1");
+
+    LongAdder ops = new LongAdder();
+    CountDownLatch done = new CountDownLatch(threads);
+    long end = System.nanoTime() + seconds * 1000000000L;
+    for (int t = 0; t < threads; t++) {
+      Thread thread = new Thread(() -> {
+        long count = 0;
+        try {
+          while (System.nanoTime() < end) {
+            if (jinx) {
+              OAuthSigner.toHeader(signer.sign(JinxConstants.Method.GET, URL, params, token.getToken(), token.getSecret()));
+            } else {
+              OAuthRequest request = new OAuthRequest(Verb.GET, URL);
+              for (Map.Entry<String, String> entry : params.entrySet()) {
+                request.addQuerystringParameter(entry.getKey(), entry.getValue());
+              }
+              service.signRequest(token, request);
+            }
+            count++;
+          }
+        } finally {
+          ops.add(count);
+          done.countDown();
+        }
+      });
+      thread.start();
+    }
+    done.await();
+    return ops.sum();
+  }
+}
@@ -0,0 +1,187 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.oauth;
+
+import net.jeremybrooks.jinx.Jinx;
+import net.jeremybrooks.jinx.JinxConstants;
+import net.jeremybrooks.jinx.OAuthAccessToken;
+import net.jeremybrooks.jinx.response.Response;
+import net.jeremybrooks.jinx.transport.TransportRequest;
+import net.jeremybrooks.jinx.transport.TransportResponse;
+import org.junit.Test;
+import org.scribe.builder.ServiceBuilder;
+import org.scribe.builder.api.FlickrApi;
+import org.scribe.model.OAuthRequest;
+import org.scribe.model.Token;
+import org.scribe.model.Verb;
+import org.scribe.oauth.OAuthService;
+import org.scribe.services.TimestampService;
+
+import java.io.ByteArrayInputStream;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Jeremy Brooks
+ */
+public class OAuthSignerTest {
+
+  private static final String KEY = "consumer-key";
+  private static final String SECRET = "consumer+secret/~";
+  private static final String URL = "https://api.flickr.com/services/rest/";
+
+  @Test
+  public void testEncode() throws Exception {
+    String[] values = {"", "abcXYZ019-._~", "a b", "*+&=%/?:", "café", "日本", "smile 😀",
+        "bad \ud83d surrogate", "\u007f\u0000"};
+    for (String value : values) {
+      String expected = URLEncoder.encode(value, "UTF-8").replace("*", "%2A").replace("+", "%20").replace("%7E", "~");
+      assertEquals(value, expected, OAuthSigner.encode(value));
+    }
+  }
+
+  @Test
+  public void testMatchesScribeGet() {
+    Map<String, String> params = new TreeMap<>();
+    params.put("method", "flickr.photos.search");
+    params.put("text", "café & bar *");
+    params.put("tags", "cats,dogs");
+    params.put("extras", "url_o");
+    assertMatchesScribe(Verb.GET, params, "token-1", "token secret 1");
+  }
+
+  @Test
+  public void testMatchesScribePost() {
+    Map<String, String> params = new TreeMap<>();
+    params.put("method", "flickr.photos.setMeta");
+    params.put("title", "Sunset 🌅");
+    params.put("description", "line one\nline two ~ 100%");
+    assertMatchesScribe(Verb.POST, params, "token-2", "secret2");
+  }
+
+  @Test
+  public void testMatchesScribeWithoutToken() {
+    Map<String, String> params = new TreeMap<>();
+    params.put("method", "flickr.test.echo");
+    assertMatchesScribe(Verb.GET, params, "", "");
+  }
+
+  @Test
+  public void testTokenSecretChange() {
+    // the cached Mac must be initialized again when the token secret changes
+    Map<String, String> params = new TreeMap<>();
+    params.put("method", "flickr.test.login");
+    for (int i = 0; i < 3; i++) {
+      assertMatchesScribe(Verb.GET, params, "token", "secret-" + i);
+      assertMatchesScribe(Verb.GET, params, "token", "secret-" + i);
+    }
+  }
+
+  @Test
+  public void testJinxSignsRequests() throws Exception {
+    OAuthAccessToken token = new OAuthAccessToken();
+    token.setOauthToken("token");
+    token.setOauthTokenSecret("secret");
+    Jinx jinx = new Jinx(KEY, SECRET, token);
+    List<TransportRequest> requests = new ArrayList<>();
+    jinx.setTransport(request -> {
+      requests.add(request);
+      return new TransportResponse(200, null, new ByteArrayInputStream("{\"stat\":\"ok\"}".getBytes(StandardCharsets.UTF_8)));
+    });
+    Map<String, String> params = new TreeMap<>();
+    params.put("method", "flickr.test.login");
+    params.put("text", "a b");
+    jinx.flickrGet(params, Response.class);
+    jinx.flickrPost(params, Response.class);
+
+    for (TransportRequest request : requests) {
+      String header = request.getHeaders().get("Authorization");
+      assertNotNull(header);
+      assertTrue(header.startsWith("OAuth "));
+      Map<String, String> oauth = new LinkedHashMap<>();
+      for (String part : header.substring(6).split(", ")) {
+        int eq = part.indexOf('=');
+        oauth.put(part.substring(0, eq), URLDecoder.decode(part.substring(eq + 2, part.length() - 1), "UTF-8"));
+      }
+      assertEquals("token", oauth.get("oauth_token"));
+      Verb verb = request.getMethod() == JinxConstants.Method.GET ? Verb.GET : Verb.POST;
+      String expected = scribeSignature(verb, params, "token", "secret", oauth.get("oauth_timestamp"), oauth.get("oauth_nonce"));
+      assertEquals(expected, oauth.get("oauth_signature"));
+    }
+    assertTrue(requests.get(0).getUrl().contains("text=a%20b"));
+  }
+
+  private void assertMatchesScribe(Verb verb, Map<String, String> params, String token, String tokenSecret) {
+    String timestamp = "1530000000";
+    String nonce = "1530012345";
+    Map<String, String> oauth = new OAuthSigner(KEY, SECRET).sign(verb == Verb.GET ? JinxConstants.Method.GET : JinxConstants.Method.POST,
+        URL, params, token, tokenSecret, timestamp, nonce);
+    assertEquals(scribeSignature(verb, params, token, tokenSecret, timestamp, nonce), oauth.get("oauth_signature"));
+    assertEquals(token.isEmpty() ? 6 : 7, oauth.size());
+  }
+
+  private static String scribeSignature(Verb verb, Map<String, String> params, String token, String tokenSecret,
+                                        String timestamp, String nonce) {
+    FixedApi.timestamp = timestamp;
+    FixedApi.nonce = nonce;
+    OAuthService service = new ServiceBuilder().provider(FixedApi.class).apiKey(KEY).apiSecret(SECRET).build();
+    OAuthRequest request = new OAuthRequest(verb, URL);
+    for (Map.Entry<String, String> entry : params.entrySet()) {
+      if (verb == Verb.GET) {
+        request.addQuerystringParameter(entry.getKey(), entry.getValue());
+      } else {
+        request.addBodyParameter(entry.getKey(), entry.getValue());
+      }
+    }
+    service.signRequest(new Token(token, tokenSecret), request);
+    return request.getOauthParameters().get("oauth_signature");
+  }
+
+  /*
+   * Flickr API definition for Scribe that uses a known timestamp and nonce.
+   */
+  public static class FixedApi extends FlickrApi {
+    private static volatile String timestamp;
+    private static volatile String nonce;
+
+    @Override
+    public TimestampService getTimestampService() {
+      return new TimestampService() {
+        @Override
+        public String getTimestampInSeconds() {
+          return timestamp;
+        }
+
+        @Override
+        public String getNonce() {
+          return nonce;
+        }
+      };
+    }
+  }
+}
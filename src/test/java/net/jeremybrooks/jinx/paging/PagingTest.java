@@ -0,0 +1,137 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.paging;
+
+import com.google.gson.Gson;
+import net.jeremybrooks.jinx.Jinx;
+import net.jeremybrooks.jinx.JinxException;
+import net.jeremybrooks.jinx.UncheckedJinxException;
+import net.jeremybrooks.jinx.response.photos.Photo;
+import net.jeremybrooks.jinx.response.photos.Photos;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Jeremy Brooks
+ */
+public class PagingTest {
+
+  private final Gson gson = new Gson();
+  private final Jinx jinx = new Jinx("key", "secret");
+
+  /*
+   * Build a page of photos. Photo id's are "page-index".
+   */
+  private Photos page(int page, int pages, int perPage) {
+    StringBuilder sb = new StringBuilder("{\"photos\":{\"page\":").append(page)
+        .append(",\"pages\":").append(pages)
+        .append(",\"perpage\":").append(perPage)
+        .append(",\"total\":").append(pages * perPage)
+        .append(",\"photo\":[");
+    for (int i = 0; i < perPage; i++) {
+      if (i > 0) {
+        sb.append(',');
+      }
+      sb.append("{\"id\":\"").append(page).append('-').append(i).append("\"}");
+    }
+    sb.append("]},\"stat\":\"ok\"}");
+    return gson.fromJson(sb.toString(), Photos.class);
+  }
+
+  @Test
+  public void testIterateAllPages() {
+    List<Integer> requested = Collections.synchronizedList(new ArrayList<>());
+    PagedIterator<Photos, Photo> iterator = Paging.photos(jinx, p -> {
+      requested.add(p);
+      return page(p, 4, 3);
+    }, 0);
+    List<String> ids = new ArrayList<>();
+    while (iterator.hasNext()) {
+      ids.add(iterator.next().getPhotoId());
+    }
+    assertEquals(12, ids.size());
+    assertEquals("1-0", ids.get(0));
+    assertEquals("4-2", ids.get(11));
+    assertEquals(4, iterator.getPages());
+    assertEquals(List.of(1, 2, 3, 4), requested);
+  }
+
+  @Test
+  public void testPrefetch() {
+    Set<Integer> requested = ConcurrentHashMap.newKeySet();
+    List<String> ids;
+    try (PagedIterator<Photos, Photo> iterator = Paging.photos(jinx, p -> {
+      requested.add(p);
+      return page(p, 10, 2);
+    }, 3)) {
+      // consuming the first photo fetches page 1 and starts prefetching pages 2 - 4
+      assertEquals("1-0", iterator.next().getPhotoId());
+      ids = new ArrayList<>();
+      iterator.forEachRemaining(photo -> ids.add(photo.getPhotoId()));
+    }
+    assertEquals(19, ids.size());
+    assertEquals("10-1", ids.get(18));
+    assertEquals(10, requested.size());
+  }
+
+  @Test
+  public void testStopOnEmptyPage() {
+    List<Photo> photos = Paging.photoStream(jinx, p -> p == 1 ? page(1, 5, 2) : page(p, 5, 0), 2)
+        .collect(Collectors.toList());
+    assertEquals(2, photos.size());
+  }
+
+  @Test
+  public void testError() {
+    PagedIterator<Photos, Photo> iterator = Paging.photos(jinx, p -> {
+      if (p == 2) {
+        throw new JinxException("page 2 failed");
+      }
+      return page(p, 3, 1);
+    }, 1);
+    assertEquals("1-0", iterator.next().getPhotoId());
+    try {
+      iterator.hasNext();
+      fail();
+    } catch (UncheckedJinxException e) {
+      assertEquals("page 2 failed", e.getCause().getMessage());
+    }
+    assertFalse(iterator.hasNext());
+  }
+
+  @Test
+  public void testStreamLimit() {
+    List<String> ids = Paging.photoStream(jinx, p -> page(p, 100, 5), 1)
+        .limit(7)
+        .map(Photo::getPhotoId)
+        .collect(Collectors.toList());
+    assertEquals(7, ids.size());
+    assertTrue(ids.contains("2-1"));
+  }
+}
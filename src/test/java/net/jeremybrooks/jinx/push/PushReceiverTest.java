@@ -0,0 +1,292 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.push;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Jeremy Brooks
+ */
+public class PushReceiverTest {
+
+  private final PushSimulator hub = new PushSimulator();
+  private PushReceiver receiver;
+
+  @After
+  public void tearDown() {
+    if (receiver != null) {
+      receiver.stop(1000);
+    }
+  }
+
+  @Test
+  public void testQueue() {
+    BoundedQueue<Integer> queue = new BoundedQueue<>(3);
+    assertEquals(4, queue.capacity());
+    assertNull(queue.poll());
+    for (int round = 0; round < 3; round++) {
+      for (int i = 0; i < 4; i++) {
+        assertTrue(queue.offer(i));
+      }
+      assertFalse(queue.offer(99));
+      assertEquals(4, queue.size());
+      for (int i = 0; i < 4; i++) {
+        assertEquals(Integer.valueOf(i), queue.poll());
+      }
+      assertNull(queue.poll());
+    }
+  }
+
+  @Test
+  public void testQueueConcurrent() throws Exception {
+    BoundedQueue<Long> queue = new BoundedQueue<>(64);
+    int producers = 4;
+    int perProducer = 50_000;
+    AtomicLong sum = new AtomicLong();
+    AtomicLong taken = new AtomicLong();
+    List<Thread> threads = new ArrayList<>();
+    for (int p = 0; p < producers; p++) {
+      long base = (long) p * perProducer;
+      threads.add(new Thread(() -> {
+        for (long i = 1; i <= perProducer; i++) {
+          while (!queue.offer(base + i)) {
+            Thread.yield();
+          }
+        }
+      }));
+    }
+    for (int c = 0; c < 4; c++) {
+      threads.add(new Thread(() -> {
+        while (taken.get() < producers * perProducer) {
+          Long value = queue.poll();
+          if (value == null) {
+            Thread.yield();
+          } else {
+            sum.addAndGet(value);
+            taken.incrementAndGet();
+          }
+        }
+      }));
+    }
+    for (Thread t : threads) {
+      t.start();
+    }
+    for (Thread t : threads) {
+      t.join(30000);
+    }
+    long n = (long) producers * perProducer;
+    assertEquals(n, taken.get());
+    assertEquals(n * (n + 1) / 2, sum.get());
+  }
+
+  @Test
+  public void testParseFeed() throws Exception {
+    String atom = "<?xml version=\"1.0\" encoding=\"utf-8\"?>" +
+        "<feed xmlns=\"http://www.w3.org/2005/Atom\" xmlns:media=\"http://search.yahoo.com/mrss/\" xmlns:flickr=\"urn:flickr:user\">" +
+        "<title>Feed</title><entry><title>Bridge &amp; fog</title>" +
+        "<link rel=\"alternate\" type=\"text/html\" href=\"https://www.flickr.com/photos/me/42/\"/>" +
+        "<id>tag:flickr.com,2005:/photo/42</id><published>2018-06-01T10:00:00Z</published>" +
+        "<updated>2018-06-02T10:00:00Z</updated><flickr:date_taken>2018-05-30T09:00:00-08:00</flickr:date_taken>" +
+        "<content type=\"html\">&lt;p&gt;hi&lt;/p&gt;</content>" +
+        "<author><name>Jeremy</name><uri>https://www.flickr.com/people/me/</uri><flickr:nsid>85853333@N00</flickr:nsid></author>" +
+        "<category term=\"fog\" scheme=\"https://www.flickr.com/photos/tags/\"/><category term=\"sf\"/>" +
+        "<media:content url=\"https://live.staticflickr.com/1/42_s_b.jpg\" type=\"image/jpeg\"/>" +
+        "</entry><entry><id>tag:flickr.com,2005:/photo/43</id></entry></feed>";
+    List<PushEvent> events = new ArrayList<>();
+    int count = AtomParser.parse(new ByteArrayInputStream(atom.getBytes(StandardCharsets.UTF_8)), "sub", events::add);
+    assertEquals(2, count);
+    PushEvent event = events.get(0);
+    assertEquals("sub", event.getSubscription());
+    assertEquals("42", event.getPhotoId());
+    assertEquals("Bridge & fog", event.getTitle());
+    assertEquals("https://www.flickr.com/photos/me/42/", event.getLink());
+    assertEquals("https://live.staticflickr.com/1/42_s_b.jpg", event.getImageUrl());
+    assertEquals("<p>hi</p>", event.getContent());
+    assertEquals("Jeremy", event.getAuthorName());
+    assertEquals("85853333@N00", event.getAuthorNsid());
+    assertEquals("2018-06-02T10:00:00Z", event.getUpdated());
+    assertEquals("2018-05-30T09:00:00-08:00", event.getDateTaken());
+    assertEquals(Arrays.asList("fog", "sf"), event.getTags());
+    assertEquals("43", events.get(1).getPhotoId());
+    assertNull(events.get(1).getTitle());
+  }
+
+  @Test
+  public void testVerification() throws Exception {
+    receiver = new PushReceiver(0, new PushHandler() {
+      @Override
+      public void onEvent(PushEvent event) {
+      }
+
+      @Override
+      public boolean onVerify(String subscription, String mode, String topic, Integer leaseSeconds) {
+        return !subscription.equals("locked") || mode.equals("subscribe");
+      }
+    });
+    receiver.setVerifyToken("s3cret");
+    receiver.start();
+    String base = "http://localhost:" + receiver.getPort();
+    String callback = receiver.getCallbackUrl(base, "cats");
+    assertEquals(base + "/push/cats", callback);
+
+    assertTrue(hub.verify(callback, "subscribe", "tags", "s3cret", 3600));
+    assertFalse(hub.verify(callback, "subscribe", "tags", "wrong", null));
+    assertFalse(hub.verify(callback, "subscribe", "tags", null, null));
+    assertFalse(hub.verify(callback, "delete", "tags", "s3cret", null));
+    String locked = receiver.getCallbackUrl(base, "locked");
+    assertTrue(hub.verify(locked, "subscribe", "tags", "s3cret", null));
+    assertFalse(hub.verify(locked, "unsubscribe", "tags", "s3cret", null));
+    assertFalse(hub.verify(base + "/pushed", "subscribe", "tags", "s3cret", null));
+    assertEquals(2, receiver.getVerified());
+  }
+
+  @Test
+  public void testNotifications() throws Exception {
+    List<PushEvent> events = Collections.synchronizedList(new ArrayList<>());
+    CountDownLatch latch = new CountDownLatch(5);
+    receiver = new PushReceiver(0, event -> {
+      events.add(event);
+      latch.countDown();
+      if (event.getPhotoId().equals("2")) {
+        throw new IllegalStateException("handler failure");
+      }
+    });
+    receiver.start();
+    String callback = receiver.getCallbackUrl("http://localhost:" + receiver.getPort(), "contacts");
+
+    assertEquals(204, hub.publishPhotos(callback, "85853333@N00", Arrays.asList("1", "2", "3")));
+    assertEquals(204, hub.publishPhotos(callback, "85853333@N00", Arrays.asList("4", "5")));
+    assertTrue(latch.await(10, TimeUnit.SECONDS));
+
+    List<String> ids = new ArrayList<>();
+    for (PushEvent event : events) {
+      assertEquals("contacts", event.getSubscription());
+      assertEquals("85853333@N00", event.getAuthorNsid());
+      assertTrue(event.getImageUrl().endsWith("_b.jpg"));
+      ids.add(event.getPhotoId());
+    }
+    // one dispatch thread delivers in order
+    assertEquals(Arrays.asList("1", "2", "3", "4", "5"), ids);
+    assertEquals(5, receiver.getReceived());
+    receiver.stop(1000);
+    assertEquals(5, receiver.getDispatched());
+    assertEquals(1, receiver.getFailed());
+    assertFalse(receiver.isRunning());
+  }
+
+  @Test
+  public void testIdleDispatchers() throws Exception {
+    CountDownLatch latch = new CountDownLatch(3);
+    receiver = new PushReceiver(0, event -> latch.countDown());
+    receiver.setDispatchThreads(3);
+    receiver.start();
+    String callback = receiver.getCallbackUrl("http://localhost:" + receiver.getPort(), null);
+
+    // idle dispatchers park without a deadline, and are woken when an event is queued
+    awaitDispatchers(Thread.State.WAITING);
+    assertEquals(204, hub.publishPhotos(callback, "me", Arrays.asList("1", "2", "3")));
+    assertTrue(latch.await(5, TimeUnit.SECONDS));
+    awaitDispatchers(Thread.State.WAITING);
+
+    long start = System.nanoTime();
+    receiver.stop(5000);
+    assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+    assertEquals(3, receiver.getDispatched());
+  }
+
+  @Test
+  public void testBackpressure() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicLong handled = new AtomicLong();
+    receiver = new PushReceiver(0, event -> {
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      handled.incrementAndGet();
+    });
+    receiver.setQueueCapacity(2);
+    receiver.setOfferTimeout(100);
+    receiver.start();
+    String callback = receiver.getCallbackUrl("http://localhost:" + receiver.getPort(), null);
+
+    // the handler holds one event and the queue holds two, so the fourth cannot be queued
+    assertEquals(503, hub.publishPhotos(callback, "me", Arrays.asList("1", "2", "3", "4", "5")));
+    assertEquals(1, receiver.getRejected());
+    assertEquals(3, receiver.getReceived());
+
+    release.countDown();
+    assertEquals(204, hub.publishPhotos(callback, "me", Arrays.asList("6")));
+    receiver.stop(5000);
+    assertEquals(4, handled.get());
+  }
+
+  @Test
+  public void testBadRequests() throws Exception {
+    receiver = new PushReceiver(0, event -> {
+    });
+    receiver.setMaxBodyBytes(2000);
+    receiver.start();
+    String callback = receiver.getCallbackUrl("http://localhost:" + receiver.getPort(), "x");
+    assertEquals(400, hub.publish(callback, "<feed><entry>"));
+    List<String> many = new ArrayList<>();
+    for (int i = 0; i < 50; i++) {
+      many.add(Integer.toString(i));
+    }
+    assertEquals(413, hub.publishPhotos(callback, "me", many));
+    assertEquals(404, hub.publish("http://localhost:" + receiver.getPort() + "/other", "<feed/>"));
+    assertEquals(204, hub.publish(callback, "<feed xmlns=\"http://www.w3.org/2005/Atom\"/>"));
+  }
+
+  /*
+   * Wait until every dispatch thread is in a state.
+   */
+  private void awaitDispatchers(Thread.State state) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (true) {
+      boolean all = true;
+      for (Thread t : Thread.getAllStackTraces().keySet()) {
+        if (t.getName().startsWith("jinx-push-dispatch-") && t.isAlive() && t.getState() != state) {
+          all = false;
+        }
+      }
+      if (all) {
+        return;
+      }
+      assertTrue("Dispatchers did not reach " + state, System.nanoTime() < deadline);
+      Thread.sleep(10);
+    }
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.ratelimit;
+
+import net.jeremybrooks.jinx.Jinx;
+import net.jeremybrooks.jinx.JinxException;
+import net.jeremybrooks.jinx.OAuthAccessToken;
+import net.jeremybrooks.jinx.response.Response;
+import net.jeremybrooks.jinx.transport.TransportResponse;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Jeremy Brooks
+ */
+public class RateLimiterTest {
+
+  @Test
+  public void testBurst() {
+    RateLimiter limiter = new RateLimiter(1, 3);
+    assertTrue(limiter.tryAcquire());
+    assertTrue(limiter.tryAcquire());
+    assertTrue(limiter.tryAcquire());
+    assertFalse(limiter.tryAcquire());
+  }
+
+  @Test
+  public void testRate() throws Exception {
+    RateLimiter limiter = new RateLimiter(100, 1);
+    long start = System.nanoTime();
+    for (int i = 0; i < 11; i++) {
+      limiter.acquire();
+    }
+    long elapsedMillis = (System.nanoTime() - start) / 1000000;
+    // first request uses the burst token, the next ten wait 10ms each
+    assertTrue("elapsed " + elapsedMillis, elapsedMillis >= 90);
+  }
+
+  @Test
+  public void testAdaptive() {
+    RateLimiter limiter = new RateLimiter(8, 1);
+    limiter.onThrottled();
+    assertEquals(8, limiter.getCurrentRate(), 0.0001);
+    assertEquals(1, limiter.getThrottledCount());
+
+    limiter.setAdaptive(true);
+    limiter.setMinRate(1);
+    limiter.onThrottled();
+    assertEquals(4, limiter.getCurrentRate(), 0.0001);
+    limiter.onThrottled();
+    limiter.onThrottled();
+    limiter.onThrottled();
+    assertEquals(1, limiter.getCurrentRate(), 0.0001);
+    for (int i = 0; i < 100; i++) {
+      limiter.onSuccess();
+    }
+    assertEquals(8, limiter.getCurrentRate(), 0.0001);
+  }
+
+  @Test
+  public void testJinxReportsThrottling() throws Exception {
+    OAuthAccessToken token = new OAuthAccessToken();
+    token.setOauthToken("token");
+    token.setOauthTokenSecret("secret");
+    Jinx jinx = new Jinx("key", "secret", token);
+    String unavailable = "{\"stat\":\"fail\",\"code\":105,\"message\":\"Service currently unavailable\"}";
+    jinx.setTransport(request ->
+        new TransportResponse(200, null, new ByteArrayInputStream(unavailable.getBytes(StandardCharsets.UTF_8))));
+    RateLimiter limiter = new RateLimiter(100, 10);
+    limiter.setAdaptive(true);
+    jinx.setRestRateLimiter(limiter);
+
+    Map<String, String> params = new TreeMap<>();
+    params.put("method", "flickr.test.echo");
+    try {
+      jinx.flickrGet(params, Response.class);
+      fail();
+    } catch (JinxException e) {
+      assertEquals(105, e.getFlickrErrorCode());
+    }
+    assertEquals(1, limiter.getThrottledCount());
+    assertEquals(50, limiter.getCurrentRate(), 0.0001);
+
+    jinx.setTransport(request -> new TransportResponse(429, null, null));
+    try {
+      jinx.flickrGet(params, Response.class);
+      fail();
+    } catch (JinxException e) {
+      assertEquals(2, limiter.getThrottledCount());
+    }
+  }
+}
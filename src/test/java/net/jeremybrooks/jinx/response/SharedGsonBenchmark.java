@@ -0,0 +1,73 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.response;
+
+import com.google.gson.Gson;
+import net.jeremybrooks.jinx.response.photos.Photos;
+import net.jeremybrooks.jinx.response.photosets.PhotosetPhotos;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Measures the cost of creating a Gson instance per parse, as each new Jinx instance did before Gson was shared.
+ * The sample photo list responses are parsed with a new Gson instance each time, and with one shared instance
+ * that keeps the reflective adapters it has built.
+ * <br>
+ * This is not run as part of the test suite. Run it from the command line after building the test classes:
+ * <br>
+ * {@code java -cp target/classes:target/test-classes:<gson jar> net.jeremybrooks.jinx.response.SharedGsonBenchmark [iterations]}
+ *
+ * @author Jeremy Brooks
+ */
+public class SharedGsonBenchmark {
+
+  private static final Path RESPONSES = Paths.get("src", "test", "resources", "response");
+
+  public static void main(String[] args) throws Exception {
+    int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+    run("photos/sample_search.json", Photos.class, iterations);
+    run("photos/sample_get_recent.json", Photos.class, iterations);
+    run("photosets/sample_photosets_get_photos.json", PhotosetPhotos.class, iterations);
+  }
+
+  private static void run(String sample, Class<?> type, int iterations) throws Exception {
+    String json = new String(Files.readAllBytes(RESPONSES.resolve(sample)), StandardCharsets.UTF_8);
+    Gson shared = new Gson();
+    int perInstance = Math.max(1, iterations / 20);
+
+    for (int round = 0; round < 3; round++) {
+      long start = System.nanoTime();
+      for (int i = 0; i < perInstance; i++) {
+        new Gson().fromJson(json, type);
+      }
+      long newGson = (System.nanoTime() - start) / perInstance;
+
+      start = System.nanoTime();
+      for (int i = 0; i < iterations; i++) {
+        shared.fromJson(json, type);
+      }
+      long sharedGson = (System.nanoTime() - start) / iterations;
+
+      System.out.printf("%s round %d: new gson %,d ns/op, shared gson %,d ns/op%n",
+          sample, round + 1, newGson, sharedGson);
+    }
+  }
+}
@@ -0,0 +1,168 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.response.photos;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import net.jeremybrooks.jinx.JinxConstants;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Jeremy Brooks
+ */
+public class CompactPhotosTest {
+
+  private static final Path PHOTOS = Paths.get("src", "test", "resources", "response", "photos");
+
+  @Test
+  public void testAllExtras() throws Exception {
+    List<Photo> expected = load("sample_search.json", "sample_get_recent.json", "sample_recently_updated.json",
+        "sample_with_geo_data.json", "sample_get_untagged.json");
+    CompactPhotos photos = new CompactPhotos(EnumSet.allOf(JinxConstants.PhotoExtras.class), 2);
+    photos.addAll(expected);
+    assertEquals(expected.size(), photos.size());
+
+    for (int i = 0; i < expected.size(); i++) {
+      Photo original = expected.get(i);
+      Photo view = photos.get(i);
+      for (CompactPhotos.Field field : CompactPhotos.Field.values()) {
+        assertEquals(field.name(), field.getter.apply(original), field.getter.apply(view));
+      }
+      assertEquals(original.getPhotoId(), photos.getPhotoId(i));
+      assertUrl(original.getUrlSq(), view.getUrlSq());
+      assertUrl(original.getUrlM(), view.getUrlM());
+      assertUrl(original.getUrlO(), view.getUrlO());
+
+      Photo copy = photos.toPhoto(i);
+      assertFalse(copy instanceof CompactPhotos.View);
+      for (CompactPhotos.Field field : CompactPhotos.Field.values()) {
+        assertEquals(field.name(), field.getter.apply(original), field.getter.apply(copy));
+      }
+      assertEquals(view.getUrlL(), copy.getUrlL());
+    }
+  }
+
+  @Test
+  public void testExtrasNotRequested() throws Exception {
+    List<Photo> expected = load("sample_search.json");
+    CompactPhotos photos = new CompactPhotos(EnumSet.of(JinxConstants.PhotoExtras.date_taken));
+    photos.addAll(expected);
+    for (int i = 0; i < expected.size(); i++) {
+      Photo view = photos.get(i);
+      assertEquals(expected.get(i).getPhotoId(), view.getPhotoId());
+      assertEquals(expected.get(i).getSecret(), view.getSecret());
+      assertEquals(expected.get(i).getTitle(), view.getTitle());
+      assertEquals(expected.get(i).getDateTaken(), view.getDateTaken());
+      assertNotNull(view.getDateTaken());
+      assertNull(view.getDescription());
+      assertNull(view.getDateUpload());
+      assertNull(view.getUrlO());
+      assertNull(view.getUrlM());
+    }
+  }
+
+  @Test
+  public void testIrregularValues() {
+    Gson gson = new Gson();
+    Photo photo = gson.fromJson("{\"id\":\"0123\",\"secret\":\"ABCdef\",\"server\":\"65535\",\"farm\":\"x\","
+        + "\"datetaken\":\"2014-00-00 00:00:00\",\"o_width\":\"-1\",\"views\":\"007\"}", Photo.class);
+    CompactPhotos photos = new CompactPhotos(EnumSet.allOf(JinxConstants.PhotoExtras.class));
+    photos.add(photo);
+    Photo view = photos.get(0);
+    for (CompactPhotos.Field field : CompactPhotos.Field.values()) {
+      assertEquals(field.name(), field.getter.apply(photo), field.getter.apply(view));
+    }
+  }
+
+  @Test
+  public void testListAndSerialization() throws Exception {
+    List<Photo> expected = load("sample_get_recent.json");
+    CompactPhotos photos = new CompactPhotos(null);
+    photos.addAll(expected);
+    photos.trimToSize();
+
+    List<String> ids = new ArrayList<>();
+    for (Photo photo : photos) {
+      ids.add(photo.getPhotoId());
+    }
+    assertEquals(expected.size(), ids.size());
+    assertEquals(expected.get(expected.size() - 1).getPhotoId(), photos.asList().get(ids.size() - 1).getPhotoId());
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(photos.get(0));
+    }
+    Object read;
+    try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      read = in.readObject();
+    }
+    assertEquals(Photo.class, read.getClass());
+    assertEquals(expected.get(0).getPhotoId(), ((Photo) read).getPhotoId());
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void testIndex() {
+    new CompactPhotos(null).get(0);
+  }
+
+  /*
+   * Flickr returns urls on its own hosts; rebuilt urls use the farm host, so only the file name is compared.
+   */
+  private void assertUrl(String expected, String actual) {
+    if (expected == null) {
+      assertNull(actual);
+    } else {
+      assertNotNull(actual);
+      assertEquals(expected.substring(expected.lastIndexOf('/')), actual.substring(actual.lastIndexOf('/')));
+    }
+  }
+
+  private List<Photo> load(String... names) throws Exception {
+    Gson gson = new Gson();
+    List<Photo> list = new ArrayList<>();
+    for (String name : names) {
+      try (Reader reader = Files.newBufferedReader(PHOTOS.resolve(name), StandardCharsets.UTF_8)) {
+        JsonElement root = new JsonParser().parse(reader);
+        Photos photos = gson.fromJson(root.getAsJsonObject(), Photos.class);
+        list.addAll(photos.getPhotoList());
+      }
+    }
+    assertTrue(list.size() > 0);
+    return list;
+  }
+}
@@ -0,0 +1,55 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.response.photos.upload;
+
+import com.google.gson.Gson;
+import net.jeremybrooks.jinx.JinxUtils;
+
+/**
+ * Compares the two ways of reading upload and replace responses: converting the XML to JSON with the xml2json
+ * stylesheet and parsing the JSON with Gson, and mapping the XML directly with {@link UploadXmlParser}.
+ * <br>
+ * This is not run as part of the test suite. Run it from the command line after building the test classes:
+ * <br>
+ * {@code java -cp target/classes:target/test-classes:<gson jar> net.jeremybrooks.jinx.response.photos.upload.UploadXmlBenchmark [iterations]}
+ *
+ * @author Jeremy Brooks
+ */
+public class UploadXmlBenchmark {
+
+  public static void main(String[] args) throws Exception {
+    int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+    Gson gson = new Gson();
+
+    for (int round = 0; round < 3; round++) {
+      long start = System.nanoTime();
+      for (int i = 0; i < iterations; i++) {
+        gson.fromJson(JinxUtils.xml2json(UploadXmlParserTest.REPLACE_XML), ReplaceResponse.class);
+      }
+      long xslt = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      for (int i = 0; i < iterations; i++) {
+        UploadXmlParser.parse(UploadXmlParserTest.stream(UploadXmlParserTest.REPLACE_XML), ReplaceResponse.class);
+      }
+      long stax = System.nanoTime() - start;
+
+      System.out.printf("round %d: xml2json+gson %,d ns/op, stax %,d ns/op%n", round + 1, xslt / iterations, stax / iterations);
+    }
+  }
+}
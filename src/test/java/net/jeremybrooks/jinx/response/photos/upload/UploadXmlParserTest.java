@@ -0,0 +1,117 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.response.photos.upload;
+
+import com.google.gson.Gson;
+import net.jeremybrooks.jinx.JinxException;
+import net.jeremybrooks.jinx.JinxUtils;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Jeremy Brooks
+ */
+public class UploadXmlParserTest {
+
+  static final String UPLOAD_XML = "<?xml version=\"1.0\" encoding=\"utf-8\" ?>\n" +
+      "<rsp stat=\"ok\">\n" +
+      "<photoid>14837291641</photoid>\n" +
+      "</rsp>";
+  static final String REPLACE_XML = "<?xml version=\"1.0\" encoding=\"utf-8\" ?>\n" +
+      "<rsp stat=\"ok\">\n" +
+      "<photoid secret=\"320935a61d\" originalsecret=\"829e925e23\">14859730194</photoid>\n" +
+      "</rsp>";
+  static final String ASYNC_XML = "<?xml version=\"1.0\" encoding=\"utf-8\" ?>\n" +
+      "<rsp stat=\"ok\">\n" +
+      "<ticketid>124834485-72157646287534644</ticketid>\n" +
+      "</rsp>";
+  static final String ERROR_XML = "<?xml version=\"1.0\" encoding=\"utf-8\" ?>\n" +
+      "<rsp stat=\"fail\">\n" +
+      "<err code=\"5\" msg=\"Filetype was not recognised\" />\n" +
+      "</rsp>";
+
+  @Test
+  public void testUpload() throws Exception {
+    UploadResponse response = UploadXmlParser.parse(stream(UPLOAD_XML), UploadResponse.class);
+    UploadResponse expected = new Gson().fromJson(JinxUtils.xml2json(UPLOAD_XML), UploadResponse.class);
+    assertEquals("ok", response.getStat());
+    assertEquals(0, response.getCode());
+    assertEquals("14837291641", response.getPhotoId());
+    assertNull(response.getTicketId());
+    assertEquals(expected.toString(), response.toString());
+
+    response = UploadXmlParser.parse(stream(ASYNC_XML), UploadResponse.class);
+    assertEquals("124834485-72157646287534644", response.getTicketId());
+    assertNull(response.getPhotoId());
+  }
+
+  @Test
+  public void testReplace() throws Exception {
+    ReplaceResponse response = UploadXmlParser.parse(stream(REPLACE_XML), ReplaceResponse.class);
+    ReplaceResponse expected = new Gson().fromJson(JinxUtils.xml2json(REPLACE_XML), ReplaceResponse.class);
+    assertEquals("ok", response.getStat());
+    assertEquals("14859730194", response.getPhotoId());
+    assertEquals("320935a61d", response.getSecret());
+    assertEquals("829e925e23", response.getOriginalSecret());
+    assertEquals(expected.toString(), response.toString());
+
+    response = UploadXmlParser.parse(stream(ASYNC_XML), ReplaceResponse.class);
+    assertEquals("124834485-72157646287534644", response.getTicketId());
+    assertNull(response.getPhotoId());
+  }
+
+  @Test
+  public void testError() throws Exception {
+    UploadResponse response = UploadXmlParser.parse(stream(ERROR_XML), UploadResponse.class);
+    assertEquals("fail", response.getStat());
+    assertEquals(5, response.getCode());
+    assertEquals("Filetype was not recognised", response.getMessage());
+  }
+
+  @Test
+  public void testInvalid() throws Exception {
+    try {
+      UploadXmlParser.parse(stream("not xml"), UploadResponse.class);
+      fail();
+    } catch (JinxException e) {
+      // expected
+    }
+    try {
+      UploadXmlParser.parse(stream(""), UploadResponse.class);
+      fail();
+    } catch (JinxException e) {
+      // expected
+    }
+    try {
+      UploadXmlParser.parse(stream(UPLOAD_XML), CheckTicketsResponse.class);
+      fail();
+    } catch (JinxException e) {
+      // expected
+    }
+  }
+
+  static ByteArrayInputStream stream(String xml) {
+    return new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8));
+  }
+}
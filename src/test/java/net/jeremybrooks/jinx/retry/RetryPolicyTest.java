@@ -0,0 +1,163 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.retry;
+
+import net.jeremybrooks.jinx.FakeTransport;
+import net.jeremybrooks.jinx.Jinx;
+import net.jeremybrooks.jinx.JinxConstants;
+import net.jeremybrooks.jinx.JinxException;
+import net.jeremybrooks.jinx.response.Response;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Jeremy Brooks
+ */
+public class RetryPolicyTest {
+
+  private static final String OK = "{\"stat\":\"ok\"}";
+
+  @Test
+  public void testIdempotent() {
+    RetryPolicy policy = new RetryPolicy(3, 1, 10, TimeUnit.MILLISECONDS);
+    assertTrue(policy.isIdempotent("flickr.photos.getInfo", JinxConstants.Method.GET));
+    assertTrue(policy.isIdempotent("flickr.photos.search", JinxConstants.Method.POST));
+    assertFalse(policy.isIdempotent("flickr.photos.delete", JinxConstants.Method.POST));
+    assertFalse(policy.isIdempotent("flickr.photos.comments.addComment", JinxConstants.Method.POST));
+    assertFalse(policy.isIdempotent("flickr.blogs.postPhoto", JinxConstants.Method.POST));
+    // a POST to a method that is not known to only read data is never retried
+    assertFalse(policy.isIdempotent("flickr.photos.someNewMethod", JinxConstants.Method.POST));
+    assertFalse(policy.isIdempotent(null, JinxConstants.Method.POST));
+    assertTrue(policy.isIdempotent("flickr.places.placesForUser", JinxConstants.Method.POST));
+    assertTrue(policy.isIdempotent("flickr.photos.upload.checkTickets", JinxConstants.Method.POST));
+    policy.setIdempotent("flickr.photos.addTags", true);
+    assertTrue(policy.isIdempotent("flickr.photos.addTags", JinxConstants.Method.POST));
+  }
+
+  @Test
+  public void testTransient() {
+    RetryPolicy policy = new RetryPolicy(3, 1, 10, TimeUnit.MILLISECONDS);
+    assertTrue(policy.isTransient(new JinxException("io", new IOException())));
+    JinxException e = new JinxException("status");
+    e.setHttpStatus(503);
+    assertTrue(policy.isTransient(e));
+    e.setHttpStatus(404);
+    assertFalse(policy.isTransient(e));
+    e = new JinxException("code");
+    e.setFlickrErrorCode(105);
+    assertTrue(policy.isTransient(e));
+    e.setFlickrErrorCode(1);
+    assertFalse(policy.isTransient(e));
+  }
+
+  @Test
+  public void testDelay() {
+    RetryPolicy policy = new RetryPolicy(10, 100, 1000, TimeUnit.MILLISECONDS);
+    for (int attempt = 1; attempt < 10; attempt++) {
+      long delay = policy.getDelayMillis(attempt);
+      assertTrue(delay >= 0);
+      assertTrue(delay <= 1000);
+    }
+  }
+
+  @Test
+  public void testBudget() {
+    RetryBudget budget = new RetryBudget(0.5, 0, 2);
+    assertTrue(budget.tryRetry());
+    assertTrue(budget.tryRetry());
+    assertFalse(budget.tryRetry());
+    budget.onRequest();
+    budget.onRequest();
+    assertTrue(budget.tryRetry());
+    assertFalse(budget.tryRetry());
+  }
+
+  @Test
+  public void testJinxRetriesTransientFailure() throws Exception {
+    FakeTransport transport = FakeTransport.of(null, null, OK);
+    Jinx jinx = FakeTransport.createJinx(transport);
+    RetryPolicy policy = new RetryPolicy(3, 1, 5, TimeUnit.MILLISECONDS);
+    jinx.setRetryPolicy(policy);
+
+    Response response = jinx.flickrGet(params("flickr.test.echo"), Response.class);
+    assertEquals("ok", response.getStat());
+    assertEquals(3, transport.getCalls());
+    assertEquals(2, policy.getRetryCount());
+  }
+
+  @Test
+  public void testJinxGivesUpAfterMaxAttempts() throws Exception {
+    FakeTransport transport = new FakeTransport(request -> {
+      throw new IOException("Connection reset");
+    });
+    Jinx jinx = FakeTransport.createJinx(transport);
+    RetryPolicy policy = new RetryPolicy(2, 1, 5, TimeUnit.MILLISECONDS);
+    jinx.setRetryPolicy(policy);
+    try {
+      jinx.flickrGet(params("flickr.test.echo"), Response.class);
+      fail();
+    } catch (JinxException e) {
+      assertTrue(e.getCause() instanceof IOException);
+    }
+    assertEquals(2, transport.getCalls());
+    assertEquals(1, policy.getAttemptsExhaustedCount());
+  }
+
+  @Test
+  public void testJinxDoesNotRetryWrites() throws Exception {
+    FakeTransport transport = FakeTransport.of((String) null);
+    Jinx jinx = FakeTransport.createJinx(transport);
+    jinx.setRetryPolicy(new RetryPolicy(3, 1, 5, TimeUnit.MILLISECONDS));
+    try {
+      jinx.flickrPost(params("flickr.photos.delete"), Response.class);
+      fail();
+    } catch (JinxException e) {
+      assertEquals(503, e.getHttpStatus());
+    }
+    assertEquals(1, transport.getCalls());
+  }
+
+  @Test
+  public void testJinxDoesNotRetryPostPhoto() throws Exception {
+    FakeTransport transport = FakeTransport.of((String) null);
+    Jinx jinx = FakeTransport.createJinx(transport);
+    jinx.setRetryPolicy(new RetryPolicy(3, 1, 5, TimeUnit.MILLISECONDS));
+    try {
+      jinx.flickrPost(params("flickr.blogs.postPhoto"), Response.class);
+      fail();
+    } catch (JinxException e) {
+      assertEquals(503, e.getHttpStatus());
+    }
+    assertEquals(1, transport.getCalls());
+  }
+
+  private Map<String, String> params(String method) {
+    Map<String, String> params = new TreeMap<>();
+    params.put("method", method);
+    return params;
+  }
+}
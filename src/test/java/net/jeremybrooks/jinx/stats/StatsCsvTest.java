@@ -0,0 +1,213 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.stats;
+
+import com.google.gson.Gson;
+import net.jeremybrooks.jinx.Jinx;
+import net.jeremybrooks.jinx.JinxException;
+import net.jeremybrooks.jinx.response.stats.CSV;
+import net.jeremybrooks.jinx.transport.TransportResponse;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Jeremy Brooks
+ */
+public class StatsCsvTest {
+
+  @Test
+  public void testCsvReader() throws Exception {
+    String data = "\uFEFFa,\"b,c\",\"say \"\"hi\"\"\"\r\n\"multi\nline\",,x\n\nlast";
+    // a tiny buffer makes every quote and line ending cross a buffer boundary
+    CsvReader reader = new CsvReader(new StringReader(data), 1, 100);
+    assertTrue(reader.next());
+    assertArrayEquals(new String[]{"a", "b,c", "say \"hi\""}, reader.getFields());
+    assertTrue(reader.next());
+    assertArrayEquals(new String[]{"multi\nline", "", "x"}, reader.getFields());
+    assertTrue(reader.next());
+    assertArrayEquals(new String[]{""}, reader.getFields());
+    assertTrue(reader.next());
+    assertEquals("last", reader.getField(0));
+    assertEquals("", reader.getField(5));
+    assertEquals(4, reader.getRow());
+    assertFalse(reader.next());
+  }
+
+  @Test
+  public void testCsvReaderLimits() throws Exception {
+    try {
+      new CsvReader(new StringReader("\"never closed"), 4, 100).next();
+      fail("Expected unterminated quote to fail.");
+    } catch (IOException expected) {
+    }
+    try {
+      new CsvReader(new StringReader("abcdefghijk"), 4, 10).next();
+      fail("Expected long field to fail.");
+    } catch (IOException expected) {
+    }
+  }
+
+  @Test
+  public void testParseLongLayout() throws Exception {
+    String data = "Date,Photo ID,Title,Views\n" +
+        "2010-04-01,123,\"Sunset, again\",\"1,204\"\n" +
+        "2010-04-01,456,Dog,7\n" +
+        "2010-04-02,123,\"Sunset, again\",\n" +
+        "2010-04-02,456,Dog,3\n";
+    List<ViewRecord> records = new ArrayList<>();
+    long count = new StatsCsvParser().parse(new StringReader(data), null, records::add);
+    assertEquals(3, count);
+    assertEquals("123", records.get(0).getId());
+    assertEquals("Sunset, again", records.get(0).getTitle());
+    assertEquals(LocalDate.of(2010, 4, 1), records.get(0).getDate());
+    assertEquals(1204, records.get(0).getViews());
+    assertEquals(LocalDate.of(2010, 4, 2), records.get(2).getDate());
+    assertEquals(3, records.get(2).getViews());
+  }
+
+  @Test
+  public void testParseWideLayout() throws Exception {
+    String data = "Photo ID,2010-04-01,2010-04-02,2010-04-03\n123,1,,5\n456,0,2,1\n";
+    ViewSeries series = new ViewSeries();
+    assertEquals(5, new StatsCsvParser().parse(new StringReader(data), null, series));
+    assertArrayEquals(new int[]{1, 0, 5}, series.getViews("123", LocalDate.of(2010, 4, 1), LocalDate.of(2010, 4, 3)));
+    assertEquals(3, series.getTotal("456"));
+  }
+
+  @Test
+  public void testParseFileDate() throws Exception {
+    List<ViewRecord> records = new ArrayList<>();
+    new StatsCsvParser().parse(new StringReader("id,views\n1,10\n"), LocalDate.of(2010, 3, 1), records::add);
+    assertEquals(LocalDate.of(2010, 3, 1), records.get(0).getDate());
+    try {
+      new StatsCsvParser().parse(new StringReader("id,views\n1,10\n"), null, records::add);
+      fail("Expected missing date to fail.");
+    } catch (IOException expected) {
+    }
+    try {
+      new StatsCsvParser().parse(new StringReader("a,b\n1,2\n"), LocalDate.of(2010, 3, 1), records::add);
+      fail("Expected missing views column to fail.");
+    } catch (IOException expected) {
+    }
+  }
+
+  @Test
+  public void testViewSeries() {
+    ViewSeries series = new ViewSeries();
+    LocalDate day = LocalDate.of(2009, 12, 30);
+    series.add("1", day, 5);
+    series.add("1", day.plusDays(400), 7);
+    series.add("1", day.minusDays(20), 1);
+    series.add("1", day, 2);
+    series.add("2", day, 100);
+    series.accept(new ViewRecord(null, null, day, 1000));
+
+    assertEquals(2, series.size());
+    assertEquals(7, series.getViews("1", day));
+    assertEquals(0, series.getViews("1", day.plusDays(1)));
+    assertEquals(0, series.getViews("missing", day));
+    assertEquals(15, series.getTotal("1"));
+    assertEquals(day.minusDays(20), series.getFirstDate("1"));
+    assertEquals(day.plusDays(400), series.getLastDate("1"));
+    assertNull(series.getFirstDate("missing"));
+    assertArrayEquals(new int[]{0, 1, 0}, series.getViews("1", day.minusDays(21), day.minusDays(19)));
+    assertArrayEquals(new long[]{107, 0}, series.getDailyTotals(day, day.plusDays(1)));
+    series.trimToSize();
+    assertEquals(7, series.getViews("1", day.plusDays(400)));
+  }
+
+  @Test
+  public void testLoader() throws Exception {
+    Gson gson = new Gson();
+    List<CSV> files = Arrays.asList(
+        gson.fromJson("{\"href\":\"https://example.com/daily.csv\",\"type\":\"daily\",\"date\":\"2010-04-01\"}", CSV.class),
+        gson.fromJson("{\"href\":\"https://example.com/monthly.csv\",\"type\":\"monthly\",\"date\":\"2010-04-01\"}", CSV.class));
+    List<String> fetched = new ArrayList<>();
+    Jinx jinx = new Jinx("key", "secret");
+    jinx.setTransport(request -> {
+      fetched.add(request.getUrl());
+      if (request.getUrl().endsWith("missing.csv")) {
+        return new TransportResponse(404, null, new ByteArrayInputStream(new byte[0]));
+      }
+      return new TransportResponse(200, null,
+          new ByteArrayInputStream("Photo ID,Views\n123,4\n456,\"1,000\"\n".getBytes(StandardCharsets.UTF_8)));
+    });
+
+    ViewSeries series = new ViewSeries();
+    StatsCsvLoader loader = new StatsCsvLoader(jinx);
+    assertEquals(2, loader.load(files, "daily", series));
+    assertEquals(Arrays.asList("https://example.com/daily.csv"), fetched);
+    assertEquals(1000, series.getViews("456", LocalDate.of(2010, 4, 1)));
+
+    try {
+      loader.load(gson.fromJson("{\"href\":\"https://example.com/missing.csv\",\"date\":\"2010-04-01\"}", CSV.class), series);
+      fail("Expected a 404 to fail.");
+    } catch (JinxException expected) {
+    }
+  }
+
+  @Test
+  public void testLargeInputIsStreamed() throws Exception {
+    int rows = 200_000;
+    Reader reader = new Reader() {
+      private int row = -1;
+      private String line = "";
+      private int pos;
+
+      @Override
+      public int read(char[] buf, int off, int len) {
+        if (pos == line.length()) {
+          row++;
+          if (row > rows) {
+            return -1;
+          }
+          line = row == 0 ? "Date,Photo ID,Views\n" : "2010-04-0" + (1 + row % 9) + "," + (row % 50) + ",1\n";
+          pos = 0;
+        }
+        int n = Math.min(len, line.length() - pos);
+        line.getChars(pos, pos + n, buf, off);
+        pos += n;
+        return n;
+      }
+
+      @Override
+      public void close() {
+      }
+    };
+    ViewSeries series = new ViewSeries();
+    assertEquals(rows, new StatsCsvParser().parse(reader, null, series));
+    assertEquals(50, series.size());
+    assertEquals(rows / 50, series.getTotal("0"));
+  }
+}
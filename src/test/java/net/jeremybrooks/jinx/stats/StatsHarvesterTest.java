@@ -0,0 +1,175 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.stats;
+
+import net.jeremybrooks.jinx.FakeTransport;
+import net.jeremybrooks.jinx.Jinx;
+import net.jeremybrooks.jinx.transport.TransportRequest;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Jeremy Brooks
+ */
+public class StatsHarvesterTest {
+
+  private static final LocalDate DAY = LocalDate.of(2018, 5, 1);
+  private static final List<String> IDS = Arrays.asList("1", "2", "3", "4");
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  /* photo 3 does not exist; the referrers of photo 4 fail until this is set */
+  private volatile boolean fixed;
+
+  @Test
+  public void testHarvest() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      // three workers share the two threads
+      FakeTransport transport = new FakeTransport(this::respond).awaitConcurrency(2);
+      Jinx jinx = FakeTransport.createJinx(transport);
+      jinx.setExecutor(executor);
+      StatsHarvester harvester = new StatsHarvester(jinx, 3);
+      harvester.setReferrers(true);
+      harvester.setPerPage(2);
+      assertTrue(harvester.isDomains());
+
+      HarvestResult result = harvester.harvest(ObjectType.PHOTO, IDS, DAY, DAY.plusDays(1)).get(10, TimeUnit.SECONDS);
+      StatsTable table = result.getTable();
+      assertEquals(4, result.getHarvested());
+      assertEquals(0, result.getSkipped());
+      assertEquals(4, result.getFailures().size());
+      assertEquals(1, result.getFailures().get("PHOTO:3:" + DAY).getFlickrErrorCode());
+      assertTrue(result.getFailures().containsKey("PHOTO:4:" + DAY.plusDays(1)));
+      assertEquals(2, transport.getMaxActive());
+
+      assertEquals(4, table.getCountRows());
+      assertEquals(Integer.valueOf(20), table.getViews(ObjectType.PHOTO, "2", DAY));
+      assertEquals(Integer.valueOf(2), table.getComments(ObjectType.PHOTO, "2", DAY.plusDays(1)));
+      assertEquals(Integer.valueOf(3), table.getFavorites(ObjectType.PHOTO, "1", DAY));
+      assertFalse(table.contains(ObjectType.PHOTO, "4", DAY));
+      assertFalse(table.contains(ObjectType.PHOTOSET, "1", DAY));
+
+      Map<String, Integer> domains = table.getDomainViews(ObjectType.PHOTO, "1", DAY);
+      assertEquals(3, domains.size());
+      assertEquals(Integer.valueOf(2), domains.get("b.com"));
+      Map<String, Integer> referrers = table.getReferrerViews(ObjectType.PHOTO, "1", DAY, "c.com");
+      assertEquals(3, referrers.size());
+      assertEquals(Integer.valueOf(7), referrers.get("https://c.com/2"));
+      // 4 pairs, each with 3 domains and 3 referrers per domain
+      assertEquals(4 * (3 + 9), table.getTrafficRows());
+
+      // the saved table is reloaded, and only the missing pairs are harvested
+      Path file = folder.getRoot().toPath().resolve("stats.dat");
+      table.write(file);
+      StatsTable loaded = StatsTable.read(file);
+      assertEquals(Integer.valueOf(20), loaded.getViews(ObjectType.PHOTO, "2", DAY));
+      assertEquals(domains, loaded.getDomainViews(ObjectType.PHOTO, "1", DAY));
+
+      fixed = true;
+      result = harvester.harvest(ObjectType.PHOTO, IDS, DAY, DAY.plusDays(1), loaded).get(10, TimeUnit.SECONDS);
+      assertEquals(2, result.getHarvested());
+      assertEquals(4, result.getSkipped());
+      assertEquals(2, result.getFailures().size());
+      assertEquals(6, loaded.getCountRows());
+      assertEquals(6 * (3 + 9), loaded.getTrafficRows());
+      assertEquals(Integer.valueOf(40), loaded.getViews(ObjectType.PHOTO, "4", DAY));
+
+      ViewSeries series = loaded.toViewSeries(ObjectType.PHOTO);
+      assertEquals(3, series.size());
+      assertEquals(80, series.getTotal("4"));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testPhotostream() throws Exception {
+    StatsHarvester harvester = new StatsHarvester(FakeTransport.createJinx(new FakeTransport(this::respond)), 2);
+    HarvestResult result = harvester.harvest(ObjectType.PHOTOSTREAM, null, DAY, DAY.plusDays(2)).get(10, TimeUnit.SECONDS);
+    assertEquals(3, result.getHarvested());
+    assertEquals(3, result.getCalls());
+    assertEquals(Integer.valueOf(99), result.getTable().getViews(ObjectType.PHOTOSTREAM, null, DAY));
+    assertNull(result.getTable().getComments(ObjectType.PHOTOSTREAM, null, DAY));
+    assertEquals(0, result.getTable().getTrafficRows());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidRange() {
+    new StatsHarvester(FakeTransport.createJinx(new FakeTransport(this::respond)), 1).harvest(ObjectType.PHOTO, IDS, DAY, DAY.minusDays(1));
+  }
+
+  private String respond(TransportRequest request) {
+    String url = request.getUrl();
+    String method = param(url, "method");
+    String id = param(url, "photo_id");
+    int page = url.contains("page=") ? Integer.parseInt(param(url, "page")) : 1;
+    String body;
+    if ("3".equals(id)) {
+      body = "{\"stat\":\"fail\",\"code\":1,\"message\":\"Photo not found\"}";
+    } else if (method.equals("flickr.stats.getPhotostreamStats")) {
+      body = "{\"stats\":{\"views\":99},\"stat\":\"ok\"}";
+    } else if (method.equals("flickr.stats.getPhotoStats")) {
+      int n = Integer.parseInt(id);
+      body = "{\"stats\":{\"views\":" + (n * 10) + ",\"comments\":" + n + ",\"favorites\":" + (n + 2) + "},\"stat\":\"ok\"}";
+    } else if (method.equals("flickr.stats.getPhotoDomains")) {
+      // three domains, two per page
+      body = "{\"domains\":{\"page\":" + page + ",\"perpage\":2,\"pages\":2,\"total\":3,\"domain\":["
+          + (page == 1 ? "{\"name\":\"a.com\",\"views\":1},{\"name\":\"b.com\",\"views\":2}" : "{\"name\":\"c.com\",\"views\":3}")
+          + "]},\"stat\":\"ok\"}";
+    } else if (method.equals("flickr.stats.getPhotoReferrers")) {
+      String domain = param(url, "domain");
+      if ("4".equals(id) && domain.equals("b.com") && !fixed) {
+        body = "{\"stat\":\"fail\",\"code\":105,\"message\":\"Service currently unavailable\"}";
+      } else {
+        body = "{\"domain\":{\"name\":\"" + domain + "\",\"page\":" + page + ",\"perpage\":2,\"pages\":2,\"total\":3,\"referrer\":["
+            + (page == 1 ? "{\"url\":\"https://" + domain + "/0\",\"views\":5},{\"url\":\"https://" + domain + "/1\",\"views\":6}"
+            : "{\"url\":\"https://" + domain + "/2\",\"views\":7,\"searchterm\":\"cats\"}")
+            + "]},\"stat\":\"ok\"}";
+      }
+    } else {
+      body = "{\"stat\":\"fail\",\"code\":112,\"message\":\"Method not found\"}";
+    }
+    return body;
+  }
+
+  private static String param(String url, String name) {
+    for (String pair : url.substring(url.indexOf('?') + 1).split("&")) {
+      if (pair.startsWith(name + "=")) {
+        return pair.substring(name.length() + 1);
+      }
+    }
+    return null;
+  }
+}
@@ -0,0 +1,271 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.store;
+
+import com.google.gson.Gson;
+import net.jeremybrooks.jinx.JinxConstants;
+import net.jeremybrooks.jinx.response.photos.CompactPhotos;
+import net.jeremybrooks.jinx.response.photos.Photo;
+import net.jeremybrooks.jinx.response.photos.PhotoInfo;
+import net.jeremybrooks.jinx.response.photos.Photos;
+import net.jeremybrooks.jinx.sync.SyncCheckpoint;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Jeremy Brooks
+ */
+public class PhotoStoreTest {
+
+  private static final Path PHOTOS = Paths.get("src", "test", "resources", "response", "photos");
+  private static final String OWNER = "85853333@N00";
+  private static final String INFO_ID = "14118630850";
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private final Gson gson = new Gson();
+  private Path file;
+  private List<Photo> photos;
+  private PhotoInfo info;
+
+  @Before
+  public void setUp() throws Exception {
+    file = folder.getRoot().toPath().resolve("photos.store");
+    try (Reader reader = Files.newBufferedReader(PHOTOS.resolve("sample_with_geo_data.json"), StandardCharsets.UTF_8)) {
+      photos = gson.fromJson(reader, Photos.class).getPhotoList();
+    }
+    try (Reader reader = Files.newBufferedReader(PHOTOS.resolve("sample_get_info.json"), StandardCharsets.UTF_8)) {
+      info = gson.fromJson(reader, PhotoInfo.class);
+    }
+  }
+
+  @Test
+  public void testIndexes() throws Exception {
+    try (PhotoStore store = fill()) {
+      assertIndexes(store);
+    }
+  }
+
+  @Test
+  public void testReopen() throws Exception {
+    fill().close();
+    try (PhotoStore store = new PhotoStore(file)) {
+      assertIndexes(store);
+      for (Photo photo : photos) {
+        assertEquals(gson.toJson(photo), gson.toJson(store.getPhoto(photo.getPhotoId())));
+      }
+      assertEquals(info.getTitle(), store.getInfo(INFO_ID).getTitle());
+      assertEquals(info.getTags().size(), store.getInfo(INFO_ID).getTags().size());
+      assertNull(store.getPhoto(INFO_ID));
+      assertNull(store.getInfo("nope"));
+    }
+  }
+
+  @Test
+  public void testReplaceAndDelete() throws Exception {
+    Photo first = photos.get(0);
+    try (PhotoStore store = fill()) {
+      assertEquals(0, store.getGarbageSize());
+      assertTrue(store.findByTag("neon").contains(first.getPhotoId()));
+      Photo changed = gson.fromJson(gson.toJson(first).replace("neon", "argon"), Photo.class);
+      store.put(changed);
+      assertFalse(store.findByTag("neon").contains(first.getPhotoId()));
+      assertTrue(store.findByTag("argon").contains(first.getPhotoId()));
+      assertTrue(store.getGarbageSize() > 0);
+
+      store.delete(photos.get(1).getPhotoId());
+      store.delete("not there");
+      assertEquals(photos.size(), store.size());
+    }
+    try (PhotoStore store = new PhotoStore(file)) {
+      assertEquals(new HashSet<>(Arrays.asList(first.getPhotoId())), store.findByTag("argon"));
+      assertFalse(store.contains(photos.get(1).getPhotoId()));
+      assertFalse(store.findByOwner(OWNER).contains(photos.get(1).getPhotoId()));
+      assertEquals(photos.size(), store.size());
+    }
+  }
+
+  @Test
+  public void testCompact() throws Exception {
+    try (PhotoStore store = fill()) {
+      for (Photo photo : photos) {
+        store.put(photo);
+      }
+      store.delete(photos.get(2).getPhotoId());
+      long before = store.getLogSize();
+      store.compact();
+      assertEquals(0, store.getGarbageSize());
+      assertTrue(store.getLogSize() < before);
+      assertEquals(photos.size(), store.size());
+      assertEquals(photos.get(3).getTitle(), store.getPhoto(photos.get(3).getPhotoId()).getTitle());
+      store.put(photos.get(2));
+    }
+    try (PhotoStore store = new PhotoStore(file)) {
+      assertIndexes(store);
+      assertEquals(0, store.getGarbageSize());
+    }
+  }
+
+  @Test
+  public void testDamagedTail() throws Exception {
+    fill().close();
+    long size = Files.size(file);
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+      // a record that was being written when the process stopped: length and part of the payload
+      ByteBuffer torn = ByteBuffer.allocate(20);
+      torn.putInt(100).putInt(12345).put((byte) 1).put("{\"id\":\"1".getBytes(StandardCharsets.UTF_8));
+      torn.flip();
+      channel.write(torn, size - 4);
+    }
+    try (PhotoStore store = new PhotoStore(file)) {
+      assertIndexes(store);
+      store.put(gson.fromJson("{\"id\":\"1\",\"tags\":\"recovered\"}", Photo.class));
+    }
+    try (PhotoStore store = new PhotoStore(file)) {
+      assertEquals(photos.size() + 2, store.size());
+      assertEquals(new HashSet<>(Arrays.asList("1")), store.findByTag("recovered"));
+    }
+  }
+
+  @Test
+  public void testPutView() throws Exception {
+    CompactPhotos compact = new CompactPhotos(EnumSet.allOf(JinxConstants.PhotoExtras.class));
+    compact.addAll(photos);
+    try (PhotoStore store = new PhotoStore(file)) {
+      for (Photo view : compact) {
+        store.put(view);
+      }
+    }
+    try (PhotoStore store = new PhotoStore(file)) {
+      assertEquals(photos.size(), store.size());
+      for (int i = 0; i < compact.size(); i++) {
+        Photo copy = compact.toPhoto(i);
+        assertEquals(gson.toJson(copy), gson.toJson(store.getPhoto(copy.getPhotoId())));
+      }
+    }
+  }
+
+  @Test
+  public void testRecordWithoutId() throws Exception {
+    fill().close();
+    long size = Files.size(file);
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+      // a photo record written without an id
+      byte[] payload = "{}".getBytes(StandardCharsets.UTF_8);
+      CRC32 crc = new CRC32();
+      crc.update(1);
+      crc.update(payload);
+      ByteBuffer record = ByteBuffer.allocate(9 + payload.length + 4);
+      record.putInt(payload.length).putInt((int) crc.getValue()).put((byte) 1).put(payload).putInt(0);
+      record.flip();
+      channel.write(record, size - 4);
+    }
+    try (PhotoStore store = new PhotoStore(file)) {
+      assertIndexes(store);
+      assertTrue(store.getGarbageSize() > 0);
+    }
+  }
+
+  @Test
+  public void testCheckpoint() throws Exception {
+    SyncCheckpoint checkpoint = new SyncCheckpoint(Instant.ofEpochSecond(1_500_000_000L), null);
+    try (PhotoStore store = new PhotoStore(file)) {
+      assertNull(store.getCheckpoint());
+      store.setCheckpoint(new SyncCheckpoint(null, Instant.ofEpochSecond(1)));
+      store.setCheckpoint(checkpoint);
+    }
+    try (PhotoStore store = new PhotoStore(file)) {
+      assertEquals(checkpoint, store.getCheckpoint());
+      store.compact();
+      assertEquals(checkpoint, store.getCheckpoint());
+    }
+    try (PhotoStore store = new PhotoStore(file)) {
+      assertEquals(checkpoint, store.getCheckpoint());
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testClosed() throws Exception {
+    PhotoStore store = fill();
+    store.close();
+    store.getPhoto(photos.get(0).getPhotoId());
+  }
+
+  private PhotoStore fill() throws Exception {
+    PhotoStore store = new PhotoStore(file);
+    for (Photo photo : photos) {
+      store.put(photo);
+    }
+    store.put(info);
+    return store;
+  }
+
+  private void assertIndexes(PhotoStore store) {
+    assertEquals(photos.size() + 1, store.size());
+
+    Set<String> california = photos.stream()
+        .filter(p -> Arrays.asList(p.getTags().split(" ")).contains("california"))
+        .map(Photo::getPhotoId)
+        .collect(Collectors.toSet());
+    california.add(INFO_ID);
+    assertEquals(california, store.findByTag("California"));
+    assertTrue(store.findByTag("nothing").isEmpty());
+
+    Set<String> owned = photos.stream().map(Photo::getPhotoId).collect(Collectors.toSet());
+    owned.add(INFO_ID);
+    assertEquals(owned, store.findByOwner(OWNER));
+
+    Set<String> taken2013 = photos.stream()
+        .filter(p -> p.getDateTaken().startsWith("2013"))
+        .map(Photo::getPhotoId)
+        .collect(Collectors.toSet());
+    assertFalse(taken2013.isEmpty());
+    assertEquals(taken2013, store.findByDateTaken(LocalDateTime.of(2013, 1, 1, 0, 0), LocalDateTime.of(2013, 12, 31, 23, 59, 59)));
+    assertEquals(owned, store.findByDateTaken(null, null));
+
+    // downtown San Francisco
+    assertEquals(new HashSet<>(Arrays.asList("10547944204", INFO_ID)), store.findWithin(37.7, -122.5, 37.9, -122.3));
+    assertEquals(owned, store.findWithin(-90, -180, 90, 180));
+  }
+}
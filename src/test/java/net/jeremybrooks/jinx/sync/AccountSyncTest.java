@@ -0,0 +1,245 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.sync;
+
+import net.jeremybrooks.jinx.Jinx;
+import net.jeremybrooks.jinx.OAuthAccessToken;
+import net.jeremybrooks.jinx.response.photos.Photo;
+import net.jeremybrooks.jinx.transport.TransportRequest;
+import net.jeremybrooks.jinx.transport.TransportResponse;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Jeremy Brooks
+ */
+public class AccountSyncTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  /* the account on Flickr: photo id to last update time in seconds */
+  private final Map<String, Long> account = new ConcurrentHashMap<>();
+  /* photos that exist but are not returned by people.getPhotos, as if skipped during a walk */
+  private final Set<String> hidden = ConcurrentHashMap.newKeySet();
+  private final Map<String, Integer> calls = new ConcurrentHashMap<>();
+  private final MemoryStore store = new MemoryStore();
+  private AccountSync sync;
+
+  @Before
+  public void setUp() {
+    for (int i = 1; i <= 25; i++) {
+      account.put(Integer.toString(1000 + i), 1_500_000_000L + i * 1000);
+    }
+    OAuthAccessToken token = new OAuthAccessToken();
+    token.setOauthToken("token");
+    token.setOauthTokenSecret("secret");
+    Jinx jinx = new Jinx("key", "secret", token);
+    jinx.setTransport(this::respond);
+    sync = new AccountSync(jinx, store, null);
+    sync.setPerPage(10);
+    sync.setOverlap(Duration.ZERO);
+  }
+
+  @Test
+  public void testFullThenIncremental() throws Exception {
+    SyncResult result = sync.sync();
+    assertEquals(SyncResult.Type.FULL, result.getType());
+    assertEquals(25, result.getSaved());
+    assertEquals(account.keySet(), store.photos.keySet());
+    assertEquals(Instant.ofEpochSecond(1_500_025_000L), store.checkpoint.getLastUpdate());
+
+    account.put("1003", 1_600_000_000L);
+    account.put("1026", 1_600_000_100L);
+    calls.clear();
+    result = sync.sync();
+    assertEquals(SyncResult.Type.INCREMENTAL, result.getType());
+    // the photo at the checkpoint is fetched again, plus the two changes
+    assertEquals(3, result.getSaved());
+    assertEquals(1, result.getPages());
+    assertNull(calls.get("flickr.people.getPhotos"));
+    assertEquals("1600000000", store.photos.get("1003").getLastUpdate());
+    assertTrue(store.photos.containsKey("1026"));
+    assertEquals(Instant.ofEpochSecond(1_600_000_100L), store.checkpoint.getLastUpdate());
+
+    result = sync.sync();
+    assertEquals(1, result.getSaved());
+    assertEquals(Instant.ofEpochSecond(1_600_000_100L), result.getCheckpoint().getLastUpdate());
+  }
+
+  @Test
+  public void testTooManyChanges() throws Exception {
+    sync.fullSync();
+    for (String id : account.keySet()) {
+      account.put(id, account.get(id) + 100_000);
+    }
+    sync.setMaxIncrementalPhotos(20);
+    SyncResult result = sync.incrementalSync();
+    assertEquals(SyncResult.Type.FULL, result.getType());
+    assertEquals(25, result.getSaved());
+  }
+
+  @Test
+  public void testFullSyncInterval() throws Exception {
+    store.checkpoint = new SyncCheckpoint(Instant.ofEpochSecond(1_500_025_000L), Instant.now().minus(Duration.ofDays(2)));
+    sync.setFullSyncInterval(Duration.ofDays(1));
+    assertEquals(SyncResult.Type.FULL, sync.sync().getType());
+    assertEquals(SyncResult.Type.INCREMENTAL, sync.sync().getType());
+    sync.setFullSyncInterval(null);
+    store.checkpoint = new SyncCheckpoint(store.checkpoint.getLastUpdate(), null);
+    assertEquals(SyncResult.Type.INCREMENTAL, sync.sync().getType());
+  }
+
+  @Test
+  public void testReconcile() throws Exception {
+    sync.fullSync();
+    SyncCheckpoint checkpoint = store.checkpoint;
+    account.remove("1005");
+    account.remove("1017");
+    hidden.add("1020");
+    calls.clear();
+
+    SyncResult result = sync.reconcile();
+    assertEquals(SyncResult.Type.RECONCILE, result.getType());
+    assertEquals(2, result.getDeleted());
+    assertEquals(0, result.getSaved());
+    assertFalse(store.photos.containsKey("1005"));
+    assertFalse(store.photos.containsKey("1017"));
+    assertTrue(store.photos.containsKey("1020"));
+    assertEquals(3, (int) calls.get("flickr.photos.getInfo"));
+    assertEquals(checkpoint, store.checkpoint);
+  }
+
+  @Test
+  public void testCheckpointFile() throws Exception {
+    Path file = folder.getRoot().toPath().resolve("checkpoint.properties");
+    assertNull(SyncCheckpoint.read(file));
+    SyncCheckpoint checkpoint = new SyncCheckpoint(Instant.ofEpochSecond(1_500_000_000L), Instant.parse("2018-06-01T10:15:30Z"));
+    checkpoint.write(file);
+    assertEquals(checkpoint, SyncCheckpoint.read(file));
+    new SyncCheckpoint(null, null).write(file);
+    assertEquals(new SyncCheckpoint(null, null), SyncCheckpoint.read(file));
+  }
+
+  private TransportResponse respond(TransportRequest request) throws UnsupportedEncodingException {
+    Map<String, String> params = new HashMap<>();
+    String url = request.getUrl();
+    for (String pair : url.substring(url.indexOf('?') + 1).split("&")) {
+      int i = pair.indexOf('=');
+      params.put(pair.substring(0, i), URLDecoder.decode(pair.substring(i + 1), "UTF-8"));
+    }
+    String method = params.get("method");
+    calls.merge(method, 1, Integer::sum);
+    String body;
+    switch (method) {
+      case "flickr.photos.recentlyUpdated":
+        long minDate = Long.parseLong(params.get("min_date"));
+        body = page(account.entrySet().stream()
+            .filter(e -> e.getValue() >= minDate)
+            .sorted((a, b) -> Long.compare(b.getValue(), a.getValue()))
+            .map(Map.Entry::getKey)
+            .collect(Collectors.toList()), params);
+        break;
+      case "flickr.people.getPhotos":
+        List<String> ids = new ArrayList<>(new TreeMap<>(account).keySet());
+        ids.removeAll(hidden);
+        body = page(ids, params);
+        break;
+      default:
+        String id = params.get("photo_id");
+        body = account.containsKey(id) ? "{\"photo\":{\"id\":\"" + id + "\"},\"stat\":\"ok\"}" :
+            "{\"stat\":\"fail\",\"code\":1,\"message\":\"Photo not found\"}";
+    }
+    return new TransportResponse(200, null, new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  private String page(List<String> ids, Map<String, String> params) {
+    int perPage = Integer.parseInt(params.get("per_page"));
+    int page = Integer.parseInt(params.get("page"));
+    int pages = (ids.size() + perPage - 1) / perPage;
+    StringBuilder sb = new StringBuilder("{\"photos\":{\"page\":").append(page)
+        .append(",\"pages\":").append(pages)
+        .append(",\"perpage\":").append(perPage)
+        .append(",\"total\":").append(ids.size())
+        .append(",\"photo\":[");
+    List<String> list = ids.subList(Math.min(ids.size(), (page - 1) * perPage), Math.min(ids.size(), page * perPage));
+    for (int i = 0; i < list.size(); i++) {
+      sb.append(i == 0 ? "" : ",").append("{\"id\":\"").append(list.get(i)).append('"');
+      if (params.containsKey("extras")) {
+        sb.append(",\"lastupdate\":\"").append(account.get(list.get(i))).append('"');
+      }
+      sb.append('}');
+    }
+    return sb.append("]},\"stat\":\"ok\"}").toString();
+  }
+
+  private static class MemoryStore implements SyncStore {
+    private final Map<String, Photo> photos = new ConcurrentHashMap<>();
+    private SyncCheckpoint checkpoint;
+
+    @Override
+    public void save(Photo photo) {
+      photos.put(photo.getPhotoId(), photo);
+    }
+
+    @Override
+    public void delete(String photoId) {
+      photos.remove(photoId);
+    }
+
+    @Override
+    public Set<String> getPhotoIds() {
+      return Collections.unmodifiableSet(new HashSet<>(photos.keySet()));
+    }
+
+    @Override
+    public SyncCheckpoint getCheckpoint() {
+      return checkpoint;
+    }
+
+    @Override
+    public void setCheckpoint(SyncCheckpoint checkpoint) {
+      this.checkpoint = checkpoint;
+    }
+  }
+}
@@ -0,0 +1,133 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.transport;
+
+import net.jeremybrooks.jinx.Jinx;
+import net.jeremybrooks.jinx.OAuthAccessToken;
+import net.jeremybrooks.jinx.api.PhotosUploadApi;
+import net.jeremybrooks.jinx.response.photos.upload.UploadResponse;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Jeremy Brooks
+ */
+public class MultipartBodyTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testBody() throws Exception {
+    Map<String, String> fields = new LinkedHashMap<>();
+    fields.put("title", "Test");
+    fields.put("is_public", "1");
+    MultipartBody body = new MultipartBody("BOUNDARY", fields, "photo", "test.jpg", "image/jpeg",
+        RequestBody.of("DATA".getBytes(StandardCharsets.UTF_8)));
+
+    String expected = "--BOUNDARY\r\n" +
+        "Content-Disposition: form-data; name=\"title\"\r\n\r\nTest\r\n--BOUNDARY\r\n" +
+        "Content-Disposition: form-data; name=\"is_public\"\r\n\r\n1\r\n--BOUNDARY\r\n" +
+        "Content-Disposition: form-data; name=\"photo\"; filename=\"test.jpg\";\r\n" +
+        "Content-Type: image/jpeg\r\n\r\n" +
+        "DATA\r\n--BOUNDARY--\r\n";
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    body.writeTo(out);
+    assertEquals(expected, out.toString("UTF-8"));
+    assertEquals(out.size(), body.getContentLength());
+  }
+
+  @Test
+  public void testFileBody() throws Exception {
+    byte[] data = new byte[200 * 1024 + 17];
+    for (int i = 0; i < data.length; i++) {
+      data[i] = (byte) i;
+    }
+    File file = folder.newFile("video.mp4");
+    Files.write(file.toPath(), data);
+
+    RequestBody body = RequestBody.of(file.toPath());
+    assertEquals(data.length, body.getContentLength());
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    body.writeTo(out);
+    assertTrue(Arrays.equals(data, out.toByteArray()));
+  }
+
+  @Test
+  public void testStreamBody() throws Exception {
+    byte[] data = "0123456789".getBytes(StandardCharsets.UTF_8);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    RequestBody.of(new ByteArrayInputStream(data), 4).writeTo(out);
+    assertEquals("0123", out.toString("UTF-8"));
+
+    RequestBody unknown = RequestBody.of(new ByteArrayInputStream(data), -1);
+    assertEquals(-1, unknown.getContentLength());
+    assertEquals(-1, new MultipartBody("B", new LinkedHashMap<>(), "photo", "f", "image/jpeg", unknown).getContentLength());
+
+    try {
+      RequestBody.of(new ByteArrayInputStream(data), 20).writeTo(new ByteArrayOutputStream());
+      fail();
+    } catch (IOException e) {
+      // expected, stream is shorter than the length
+    }
+  }
+
+  @Test
+  public void testUploadStreamsFile() throws Exception {
+    File file = folder.newFile("photo.jpg");
+    Files.write(file.toPath(), "JPEGDATA".getBytes(StandardCharsets.UTF_8));
+
+    OAuthAccessToken token = new OAuthAccessToken();
+    token.setOauthToken("token");
+    token.setOauthTokenSecret("secret");
+    Jinx jinx = new Jinx("key", "secret", token);
+    AtomicReference<String> sent = new AtomicReference<>();
+    String xml = "<?xml version=\"1.0\" encoding=\"utf-8\" ?>\n<rsp stat=\"ok\">\n<photoid>1234</photoid>\n</rsp>";
+    jinx.setTransport(request -> {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      request.getBody().writeTo(out);
+      assertEquals(out.size(), request.getBody().getContentLength());
+      sent.set(out.toString("UTF-8"));
+      return new TransportResponse(200, null, new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+    });
+
+    UploadResponse response = new PhotosUploadApi(jinx).upload(file, null, null, null, null, null, null, null, null, null, null);
+    assertNotNull(response);
+    assertEquals("1234", response.getPhotoId());
+    assertTrue(sent.get().contains("name=\"title\"\r\n\r\nphoto\r\n"));
+    assertTrue(sent.get().contains("name=\"oauth_signature\""));
+    assertTrue(sent.get().contains("Content-Type: image/jpeg\r\n\r\nJPEGDATA\r\n"));
+  }
+}
@@ -0,0 +1,270 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.transport;
+
+import com.sun.net.httpserver.HttpServer;
+import net.jeremybrooks.jinx.Jinx;
+import net.jeremybrooks.jinx.JinxConstants;
+import net.jeremybrooks.jinx.OAuthAccessToken;
+import net.jeremybrooks.jinx.api.PhotosLicensesApi;
+import net.jeremybrooks.jinx.response.photos.licenses.Licenses;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests the default transport against a local stub server.
+ *
+ * @author Jeremy Brooks
+ */
+public class PooledHttpTransportTest {
+
+  private HttpServer server;
+  private String baseUrl;
+  private final List<String> requestUris = Collections.synchronizedList(new ArrayList<>());
+  private final List<String> authorizationHeaders = Collections.synchronizedList(new ArrayList<>());
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final AtomicInteger maxInFlight = new AtomicInteger();
+  private final CountDownLatch gate = new CountDownLatch(6);
+
+  @Before
+  public void setUp() throws Exception {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/services/rest/", exchange -> {
+      requestUris.add(exchange.getRequestURI().toString());
+      authorizationHeaders.add(exchange.getRequestHeaders().getFirst("Authorization"));
+      byte[] response;
+      try (InputStream in = getClass().getResourceAsStream("/response/photos/licenses/sample_get_info.json")) {
+        response = readAll(in);
+      }
+      exchange.getResponseHeaders().add("Content-Type", "application/json");
+      exchange.sendResponseHeaders(200, response.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(response);
+      }
+    });
+    server.createContext("/slow", exchange -> {
+      int current = inFlight.incrementAndGet();
+      maxInFlight.accumulateAndGet(current, Math::max);
+      try {
+        Thread.sleep(100);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      inFlight.decrementAndGet();
+      byte[] response = "ok".getBytes(StandardCharsets.UTF_8);
+      exchange.sendResponseHeaders(200, response.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(response);
+      }
+    });
+    server.createContext("/gate", exchange -> {
+      gate.countDown();
+      try {
+        gate.await(5, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      byte[] response = "ok".getBytes(StandardCharsets.UTF_8);
+      exchange.sendResponseHeaders(200, response.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(response);
+      }
+    });
+    server.createContext("/large", exchange -> {
+      byte[] chunk = new byte[8192];
+      exchange.sendResponseHeaders(200, chunk.length * 128L);
+      try (OutputStream out = exchange.getResponseBody()) {
+        for (int i = 0; i < 128; i++) {
+          out.write(chunk);
+        }
+      } catch (IOException e) {
+        // the client disconnected
+      }
+    });
+    server.createContext("/error", exchange -> {
+      byte[] response = "unavailable".getBytes(StandardCharsets.UTF_8);
+      exchange.sendResponseHeaders(503, response.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(response);
+      }
+    });
+    server.setExecutor(Executors.newFixedThreadPool(8));
+    server.start();
+    baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+  }
+
+  @After
+  public void tearDown() {
+    server.stop(0);
+  }
+
+  @Test
+  public void testJinxUsesTransport() throws Exception {
+    OAuthAccessToken token = new OAuthAccessToken();
+    token.setOauthToken("token");
+    token.setOauthTokenSecret("secret");
+    Jinx jinx = new Jinx("key", "secret", token);
+    jinx.setEndpoints(baseUrl + "/services/rest/", null, null);
+
+    Licenses licenses = new PhotosLicensesApi(jinx).getInfo();
+    assertNotNull(licenses);
+    assertEquals(9, licenses.getLicenseList().size());
+    assertEquals(1, requestUris.size());
+    String uri = requestUris.get(0);
+    assertTrue(uri.contains("method=flickr.photos.licenses.getInfo"));
+    assertTrue(uri.contains("api_key=key"));
+    assertTrue(uri.contains("format=json"));
+    assertNull(authorizationHeaders.get(0));
+
+    // signed requests carry the OAuth header
+    Map<String, String> params = new TreeMap<>();
+    params.put("method", "flickr.photos.licenses.getInfo");
+    assertNotNull(jinx.flickrGet(params, Licenses.class));
+    assertEquals(2, authorizationHeaders.size());
+    assertNotNull(authorizationHeaders.get(1));
+    assertTrue(authorizationHeaders.get(1).contains("oauth_signature="));
+  }
+
+  @Test
+  public void testErrorStatus() throws Exception {
+    PooledHttpTransport transport = new PooledHttpTransport();
+    try (TransportResponse response = transport.execute(
+        new TransportRequest(JinxConstants.Method.GET, baseUrl + "/error", null, null))) {
+      assertEquals(503, response.getCode());
+      assertEquals("unavailable", new String(readAll(response.getBody()), StandardCharsets.UTF_8));
+    }
+  }
+
+  @Test
+  public void testRouteLimit() throws Exception {
+    PooledHttpTransport transport = new PooledHttpTransport(2, 5000, 5000);
+    ExecutorService executor = Executors.newFixedThreadPool(6);
+    List<Future<Integer>> futures = new ArrayList<>();
+    for (int i = 0; i < 6; i++) {
+      futures.add(executor.submit(() -> {
+        try (TransportResponse response = transport.execute(
+            new TransportRequest(JinxConstants.Method.GET, baseUrl + "/slow", null, null))) {
+          return response.getCode();
+        }
+      }));
+    }
+    for (Future<Integer> future : futures) {
+      assertEquals(200, (int) future.get());
+    }
+    executor.shutdown();
+    assertTrue(maxInFlight.get() <= 2);
+  }
+
+  @Test
+  public void testDefaultLimit() {
+    // the default keeps every connection within the JDK keep-alive capacity
+    int capacity = Integer.getInteger("http.maxConnections", 5);
+    assertEquals(capacity > 0 ? capacity : 5, new PooledHttpTransport().getMaxConnectionsPerRoute());
+  }
+
+  @Test
+  public void testUnlimited() throws Exception {
+    PooledHttpTransport transport = new PooledHttpTransport(PooledHttpTransport.UNLIMITED, 5000, 5000);
+    ExecutorService executor = Executors.newFixedThreadPool(6);
+    List<Future<Integer>> futures = new ArrayList<>();
+    for (int i = 0; i < 6; i++) {
+      futures.add(executor.submit(() -> {
+        try (TransportResponse response = transport.execute(
+            new TransportRequest(JinxConstants.Method.GET, baseUrl + "/gate", null, null))) {
+          return response.getCode();
+        }
+      }));
+    }
+    for (Future<Integer> future : futures) {
+      assertEquals(200, (int) future.get());
+    }
+    executor.shutdown();
+    // every request was in flight at once
+    assertEquals(0, gate.getCount());
+  }
+
+  @Test
+  public void testAcquireTimeout() throws Exception {
+    PooledHttpTransport transport = new PooledHttpTransport(1, 5000, 5000, 50);
+    try (TransportResponse held = transport.execute(
+        new TransportRequest(JinxConstants.Method.GET, baseUrl + "/error", null, null))) {
+      assertEquals(503, held.getCode());
+      try {
+        transport.execute(new TransportRequest(JinxConstants.Method.GET, baseUrl + "/error", null, null));
+        fail("Expected the permit wait to time out.");
+      } catch (IOException e) {
+        assertTrue(e.getMessage().startsWith("Timed out waiting"));
+      }
+    }
+    // closing the held response released its permit
+    try (TransportResponse response = transport.execute(
+        new TransportRequest(JinxConstants.Method.GET, baseUrl + "/error", null, null))) {
+      assertEquals(503, response.getCode());
+    }
+  }
+
+  @Test
+  public void testLargeUnreadBody() throws Exception {
+    PooledHttpTransport transport = new PooledHttpTransport(1, 5000, 5000, 5000);
+    try (TransportResponse response = transport.execute(
+        new TransportRequest(JinxConstants.Method.GET, baseUrl + "/large", null, null))) {
+      assertEquals(200, response.getCode());
+      assertTrue(response.getBody().read() != -1);
+    }
+    try (TransportResponse response = transport.execute(
+        new TransportRequest(JinxConstants.Method.GET, baseUrl + "/error", null, null))) {
+      assertEquals(503, response.getCode());
+      assertEquals("unavailable", new String(readAll(response.getBody()), StandardCharsets.UTF_8));
+    }
+  }
+
+  private static byte[] readAll(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[4096];
+    int count;
+    while ((count = in.read(buffer)) != -1) {
+      out.write(buffer, 0, count);
+    }
+    return out.toByteArray();
+  }
+}
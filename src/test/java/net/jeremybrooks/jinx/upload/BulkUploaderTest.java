@@ -0,0 +1,211 @@
+/*
+ * Jinx is Copyright 2010-2018 by Jeremy Brooks and Contributors
+ *
+ * Jinx is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Jinx is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Jinx.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.jeremybrooks.jinx.upload;
+
+import net.jeremybrooks.jinx.FakeTransport;
+import net.jeremybrooks.jinx.Jinx;
+import net.jeremybrooks.jinx.JinxConstants;
+import net.jeremybrooks.jinx.JinxException;
+import net.jeremybrooks.jinx.transport.TransportRequest;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Jeremy Brooks
+ */
+public class BulkUploaderTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private final AtomicInteger ticketCounter = new AtomicInteger();
+  private final AtomicInteger checkCalls = new AtomicInteger();
+  private final AtomicInteger maxBatch = new AtomicInteger();
+  private final Map<String, Integer> checksPerTicket = new ConcurrentHashMap<>();
+  private final Map<String, String> invalidTickets = new ConcurrentHashMap<>();
+  private final Map<String, String> stuckTickets = new ConcurrentHashMap<>();
+
+  @Test
+  public void testUploadDirectory() throws Exception {
+    for (int i = 0; i < 12; i++) {
+      Files.write(folder.getRoot().toPath().resolve("photo" + i + ".jpg"), ("data" + i).getBytes(StandardCharsets.UTF_8));
+    }
+    Files.write(folder.getRoot().toPath().resolve("bad.jpg"), "bad".getBytes(StandardCharsets.UTF_8));
+    Files.write(folder.getRoot().toPath().resolve(".hidden"), "x".getBytes(StandardCharsets.UTF_8));
+
+    // ticket checks run beside the uploads, so only uploads count toward the limit
+    FakeTransport transport = new FakeTransport(this::respond)
+        .track(request -> request.getMethod() == JinxConstants.Method.POST)
+        .awaitConcurrency(3);
+    BulkUploader uploader = new BulkUploader(FakeTransport.createJinx(transport), 3);
+    uploader.setPollInterval(5, 40, TimeUnit.MILLISECONDS);
+    uploader.setMaxTicketsPerCheck(5);
+
+    List<File> uploaded = new ArrayList<>();
+    AtomicInteger completed = new AtomicInteger();
+    AtomicInteger failed = new AtomicInteger();
+    BulkUploadResult result = uploader.upload(folder.getRoot().toPath(), new UploadListener() {
+      @Override
+      public void onUploaded(File file, String ticketId) {
+        synchronized (uploaded) {
+          uploaded.add(file);
+        }
+      }
+
+      @Override
+      public void onComplete(File file, String photoId) {
+        completed.incrementAndGet();
+      }
+
+      @Override
+      public void onFailure(File file, JinxException e) {
+        failed.incrementAndGet();
+      }
+    }).get(10, TimeUnit.SECONDS);
+
+    assertEquals(13, uploaded.size());
+    assertEquals(12, completed.get());
+    assertEquals(1, failed.get());
+    assertEquals(12, result.getPhotoIds().size());
+    assertEquals(1, result.getFailures().size());
+    assertTrue(result.getFailures().containsKey(new File(folder.getRoot(), "bad.jpg")));
+    assertTrue(result.getPhotoIds().get(new File(folder.getRoot(), "photo0.jpg")).startsWith("photo-"));
+    assertEquals(3, transport.getMaxActive());
+    assertTrue("max batch " + maxBatch.get(), maxBatch.get() <= 5);
+    // every ticket is incomplete on its first check, so tickets must be batched to finish in this many calls
+    assertTrue("check calls " + checkCalls.get(), checkCalls.get() < 26);
+  }
+
+  @Test
+  public void testListenerFailureAndTicketTimeout() throws Exception {
+    File good = folder.newFile("good.jpg");
+    Files.write(good.toPath(), "good".getBytes(StandardCharsets.UTF_8));
+    File stuck = folder.newFile("stuck.jpg");
+    Files.write(stuck.toPath(), "stuck".getBytes(StandardCharsets.UTF_8));
+
+    BulkUploader uploader = new BulkUploader(FakeTransport.createJinx(new FakeTransport(this::respond)), 2);
+    uploader.setPollInterval(5, 20, TimeUnit.MILLISECONDS);
+    uploader.setTicketTimeout(200, TimeUnit.MILLISECONDS);
+    BulkUploadResult result = uploader.upload(Arrays.asList(good, stuck), new UploadListener() {
+      @Override
+      public void onUploaded(File file, String ticketId) {
+        throw new IllegalStateException("listener failure");
+      }
+
+      @Override
+      public void onComplete(File file, String photoId) {
+      }
+
+      @Override
+      public void onFailure(File file, JinxException e) {
+      }
+    }).get(10, TimeUnit.SECONDS);
+
+    // the listener error does not lose the uploaded file, and the ticket Flickr never finishes times out
+    assertTrue(result.getPhotoIds().get(good).startsWith("photo-"));
+    assertEquals(1, result.getFailures().size());
+    assertTrue(result.getFailures().get(stuck).getMessage().contains("did not finish processing"));
+  }
+
+  @Test
+  public void testEmptyList() throws Exception {
+    BulkUploadResult result = new BulkUploader(FakeTransport.createJinx(), 2).upload(new ArrayList<>(), null).get(1, TimeUnit.SECONDS);
+    assertTrue(result.getPhotoIds().isEmpty());
+    assertTrue(result.getFailures().isEmpty());
+  }
+
+  @Test
+  public void testExecutorRejects() throws Exception {
+    Jinx jinx = FakeTransport.createJinx();
+    jinx.setExecutor(command -> {
+      throw new RejectedExecutionException("shut down");
+    });
+    File file = folder.newFile("a.jpg");
+    CompletableFuture<BulkUploadResult> future = new BulkUploader(jinx, 2).upload(Arrays.asList(file), null);
+    try {
+      future.get(1, TimeUnit.SECONDS);
+      fail("Expected the upload to fail.");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof JinxException);
+    }
+  }
+
+  private String respond(TransportRequest request) throws IOException {
+    String body;
+    if (request.getMethod() == JinxConstants.Method.POST) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      request.getBody().writeTo(out);
+      String ticketId = "t" + ticketCounter.incrementAndGet();
+      if (out.toString("UTF-8").contains("\r\n\r\nbad\r\n")) {
+        invalidTickets.put(ticketId, ticketId);
+      } else if (out.toString("UTF-8").contains("\r\n\r\nstuck\r\n")) {
+        stuckTickets.put(ticketId, ticketId);
+      }
+      body = "<?xml version=\"1.0\" encoding=\"utf-8\" ?>\n<rsp stat=\"ok\">\n<ticketid>" + ticketId + "</ticketid>\n</rsp>";
+    } else {
+      checkCalls.incrementAndGet();
+      String url = request.getUrl();
+      String tickets = url.substring(url.indexOf("tickets=") + 8);
+      if (tickets.contains("&")) {
+        tickets = tickets.substring(0, tickets.indexOf('&'));
+      }
+      String[] ids = URLDecoder.decode(tickets, "UTF-8").split(",");
+      maxBatch.accumulateAndGet(ids.length, Math::max);
+      StringBuilder sb = new StringBuilder("{\"uploader\":{\"ticket\":[");
+      for (int i = 0; i < ids.length; i++) {
+        String id = ids[i];
+        int checks = checksPerTicket.merge(id, 1, Integer::sum);
+        if (i > 0) {
+          sb.append(',');
+        }
+        if (invalidTickets.containsKey(id)) {
+          sb.append("{\"id\":\"").append(id).append("\",\"invalid\":1}");
+        } else if (checks == 1 || stuckTickets.containsKey(id)) {
+          sb.append("{\"id\":\"").append(id).append("\",\"complete\":0}");
+        } else {
+          sb.append("{\"id\":\"").append(id).append("\",\"complete\":1,\"photoid\":\"photo-").append(id).append("\"}");
+        }
+      }
+      sb.append("]},\"stat\":\"ok\"}");
+      body = sb.toString();
+    }
+    return body;
+  }
+}